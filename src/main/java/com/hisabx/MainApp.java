@@ -1,6 +1,11 @@
 package com.hisabx;
 
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 import javafx.scene.Scene;
 import javafx.fxml.FXMLLoader;
@@ -10,13 +15,25 @@ import javafx.scene.layout.StackPane;
 import javafx.scene.paint.Color;
 import javafx.stage.StageStyle;
 import com.hisabx.database.DatabaseManager;
+import com.hisabx.database.QueryMetrics;
+import com.hisabx.database.ReportingDatabase;
 import com.hisabx.controller.LoginController;
 import com.hisabx.controller.ActivationController;
 import com.hisabx.model.User;
 import com.hisabx.model.UserRole;
+import com.hisabx.service.AlertService;
+import com.hisabx.service.CustomerDirectory;
+import com.hisabx.service.InventoryService;
 import com.hisabx.service.LicenseService;
+import com.hisabx.service.ReceivablesAgingService;
+import com.hisabx.service.ReorderEngine;
+import com.hisabx.util.FxStallWatchdog;
 import com.hisabx.util.SessionManager;
+import com.hisabx.util.StartupOrchestrator;
+import com.hisabx.util.SvgImageLoader;
 import com.hisabx.util.TabManager;
+import com.hisabx.util.UserActivity;
+import com.hisabx.util.ViewFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,7 +49,17 @@ public class MainApp extends Application {
     private BorderPane mainLayout;
     private com.hisabx.controller.MainController mainController;
 
+    private static final String STAGE_DATABASE = "database";
+    private static final String STAGE_LICENSE = "license";
+    private static final String STAGE_APP_ICON = "app-icon";
+    private static final String STAGE_STYLESHEETS = "stylesheets";
+    private static final String STAGE_ICONS = "icons";
+    private static final String STAGE_LOGIN_VIEW = "login-view";
+    private static final String STAGE_CUSTOMER_DIRECTORY = "customer-directory";
+    private static final String STAGE_RECEIVABLES_AGING = "receivables-aging";
+
     private final List<Stage> managedStages = new ArrayList<>();
+    private volatile FXMLLoader preloadedLoginLoader;
 
     private com.hisabx.service.drive.GoogleDriveService googleDriveService;
     private com.hisabx.service.drive.BackupService backupService;
@@ -74,15 +101,6 @@ public class MainApp extends Application {
             logger.error("Failed to initialize Backup Service", e);
         }
 
-        // Set application icon
-        try {
-            javafx.scene.image.Image icon = new javafx.scene.image.Image(
-                    getClass().getResourceAsStream("/templates/HisabX.ico"));
-            this.primaryStage.getIcons().add(icon);
-        } catch (Exception e) {
-            logger.warn("Failed to load application icon", e);
-        }
-
         // Window size (main window maximized only)
         this.primaryStage.setWidth(900);
         this.primaryStage.setHeight(700);
@@ -90,26 +108,137 @@ public class MainApp extends Application {
         this.primaryStage.setMaximized(true);
         this.primaryStage.setFullScreen(false);
 
-        try {
-            // Initialize database (pending restore already applied in main() before JavaFX)
+        // Set up logout callback
+        SessionManager.getInstance().setOnLogoutCallback(this::showLoginScreen);
+
+        // Record where the FX thread gets blocked
+        FxStallWatchdog.getInstance().start();
+        // Database maintenance waits for the user to be idle
+        UserActivity.install();
+
+        runStartupStages();
+    }
+
+    /**
+     * Runs database initialization, license check and UI warm-up in parallel behind a
+     * splash window, then shows the login (or activation) screen on the FX thread.
+     */
+    private void runStartupStages() {
+        long startupBegin = System.nanoTime();
+        ProgressBar splashProgress = new ProgressBar(0);
+        Stage splashStage = showSplashScreen(splashProgress);
+
+        StartupOrchestrator startup = new StartupOrchestrator();
+        startup.stage(STAGE_DATABASE, () -> {
+            // Pending restore already applied in main() before JavaFX
             DatabaseManager.initialize();
+            QueryMetrics.getInstance().start();
+            ReportingDatabase.getInstance().start();
+            return null;
+        });
+        startup.stage(STAGE_LICENSE, () -> new LicenseService().isActivated());
+        startup.optionalStage(STAGE_APP_ICON, () -> new javafx.scene.image.Image(
+                MainApp.class.getResourceAsStream("/templates/HisabX.ico")));
+        startup.optionalStage(STAGE_STYLESHEETS, MainApp::warmUpStylesheets);
+        startup.optionalStage(STAGE_ICONS, () -> SvgImageLoader.prewarmIcons(
+                SvgImageLoader.DASHBOARD_TILE_SIZE, SvgImageLoader.TAB_ICON_SIZE));
+        startup.optionalStage(STAGE_CUSTOMER_DIRECTORY, () -> CustomerDirectory.getInstance().size(), STAGE_DATABASE);
+        startup.optionalStage(STAGE_RECEIVABLES_AGING, () -> ReceivablesAgingService.getInstance().rebuild(null),
+                STAGE_DATABASE);
+        startup.optionalStage(STAGE_LOGIN_VIEW, () -> {
+            Boolean activated = startup.getResult(STAGE_LICENSE);
+            return Boolean.TRUE.equals(activated) ? createLoginLoader() : null;
+        }, STAGE_DATABASE, STAGE_LICENSE);
+
+        int stageCount = startup.getStageCount();
+        startup.setProgressListener((stageName, done) ->
+                Platform.runLater(() -> splashProgress.setProgress((double) done / stageCount)));
+
+        startup.start().whenComplete((v, err) -> Platform.runLater(() -> {
+            splashStage.close();
+            if (err != null) {
+                logger.error("Failed to start application", err);
+                Throwable cause = err.getCause() != null ? err.getCause() : err;
+                showError("خطأ في بدء التطبيق", "فشل في بدء التطبيق: " + cause.getMessage());
+                return;
+            }
 
-            // Set up logout callback
-            SessionManager.getInstance().setOnLogoutCallback(this::showLoginScreen);
+            javafx.scene.image.Image icon = startup.getResult(STAGE_APP_ICON);
+            if (icon != null) {
+                primaryStage.getIcons().add(icon);
+            } else {
+                logger.warn("Failed to load application icon");
+            }
 
             // License gate (offline activation)
-            if (new LicenseService().isActivated()) {
-                // Show login screen first
+            if (Boolean.TRUE.equals(startup.getResult(STAGE_LICENSE))) {
+                preloadedLoginLoader = startup.getResult(STAGE_LOGIN_VIEW);
                 showLoginScreen();
             } else {
                 showActivationScreen();
             }
 
-            logger.info("Application started successfully");
+            logger.info("Application started successfully, first screen shown after {} ms",
+                    (System.nanoTime() - startupBegin) / 1_000_000);
+
+            startStockReconciliation();
+            ReorderEngine.getInstance().start();
+            AlertService.getInstance().start();
+        }));
+    }
+
+    /**
+     * Compare the stock journal with quantity_in_stock once per start, after the first screen
+     * is up; differences are logged and shown in Diagnostics.
+     */
+    private static void startStockReconciliation() {
+        Thread thread = new Thread(() -> {
+            try {
+                new InventoryService().reconcileStock();
+            } catch (RuntimeException e) {
+                logger.warn("Stock reconciliation failed", e);
+            }
+        }, "Stock-Reconcile");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private Stage showSplashScreen(ProgressBar progressBar) {
+        Stage splashStage = new Stage(StageStyle.UNDECORATED);
+
+        VBox content = new VBox(14);
+        content.setAlignment(Pos.CENTER);
+        content.setStyle("-fx-background-color: white; -fx-padding: 28; -fx-border-color: #e2e8f0;");
+        try {
+            javafx.scene.image.ImageView logo = new javafx.scene.image.ImageView(new javafx.scene.image.Image(
+                    MainApp.class.getResourceAsStream("/templates/HisabX_transparent.png")));
+            logo.setFitWidth(140);
+            logo.setPreserveRatio(true);
+            content.getChildren().add(logo);
         } catch (Exception e) {
-            logger.error("Failed to start application", e);
-            showError("خطأ في بدء التطبيق", "فشل في بدء التطبيق: " + e.getMessage());
+            logger.warn("Failed to load splash logo", e);
+        }
+        Label statusLabel = new Label("جاري تشغيل البرنامج...");
+        statusLabel.setStyle("-fx-font-size: 14px; -fx-text-fill: #334155;");
+        progressBar.setPrefWidth(260);
+        content.getChildren().addAll(statusLabel, progressBar);
+
+        splashStage.setScene(new Scene(content, 360, 260));
+        splashStage.centerOnScreen();
+        splashStage.show();
+        return splashStage;
+    }
+
+    /**
+     * Parses the shared stylesheet off the FX thread so the CSS classes and parser
+     * are loaded before the first scene is styled.
+     */
+    private static Object warmUpStylesheets() throws IOException {
+        java.net.URL css = MainApp.class.getResource("/styles/main.css");
+        if (css == null) {
+            return null;
         }
+        return new javafx.css.CssParser().parse(css);
     }
 
     @Override
@@ -160,12 +289,20 @@ public class MainApp extends Application {
         }
     }
 
+    private FXMLLoader createLoginLoader() throws IOException {
+        FXMLLoader loader = new FXMLLoader();
+        loader.setLocation(MainApp.class.getResource("/views/Login.fxml"));
+        loader.setCharset(StandardCharsets.UTF_8);
+        loader.load();
+        return loader;
+    }
+
     private void showLoginScreen() {
         try {
-            FXMLLoader loader = new FXMLLoader();
-            loader.setLocation(MainApp.class.getResource("/views/Login.fxml"));
-            loader.setCharset(StandardCharsets.UTF_8);
-            Parent loginRoot = loader.load();
+            // The first login screen is built in the background during startup
+            FXMLLoader loader = preloadedLoginLoader != null ? preloadedLoginLoader : createLoginLoader();
+            preloadedLoginLoader = null;
+            Parent loginRoot = loader.getRoot();
 
             LoginController controller = loader.getController();
             controller.setOnLoginSuccess(() -> {
@@ -208,10 +345,14 @@ public class MainApp extends Application {
         primaryStage.setResizable(true);
         primaryStage.setMaximized(true);
         primaryStage.show();
+
+        // Build the most used screens in the background so their tabs open instantly
+        ViewFactory.getInstance().preload(ViewFactory.DEFAULT_PRELOAD_VIEWS);
     }
 
     public void logout() {
         // Clear UI state that is kept in singletons between sessions
+        ViewFactory.getInstance().clear();
         TabManager.getInstance().reset();
         SessionManager.getInstance().endSession();
     }
@@ -257,6 +398,9 @@ public class MainApp extends Application {
                 boolean roleChanged = previousRole != null && currentRole != null && previousRole != currentRole;
 
                 if (userChanged || roleChanged) {
+                    // Pooled views were initialized with the previous user's permissions
+                    ViewFactory.getInstance().clear();
+                    ViewFactory.getInstance().preload(ViewFactory.DEFAULT_PRELOAD_VIEWS);
                     TabManager.getInstance().closeAllTabs();
                 }
 
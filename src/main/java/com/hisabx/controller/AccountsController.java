@@ -2,23 +2,27 @@ package com.hisabx.controller;
 
 import com.hisabx.MainApp;
 import com.hisabx.model.*;
+import com.hisabx.model.dto.AgingReport;
+import com.hisabx.model.dto.CustomerExposure;
 import com.hisabx.model.dto.StatementItem;
 import com.hisabx.service.*;
 import com.hisabx.util.SessionManager;
+import com.hisabx.util.Typeahead;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
+import javafx.geometry.NodeOrientation;
+import javafx.geometry.Pos;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
 import javafx.stage.FileChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
-import javafx.util.StringConverter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,11 +35,13 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.function.Function;
 
 public class AccountsController {
     private static final Logger logger = LoggerFactory.getLogger(AccountsController.class);
     private static final DecimalFormat currencyFormat = new DecimalFormat("#,##0.00");
     private static final DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final int BALANCES_PAGE_SIZE = 50;
 
     // ===== Statement =====
     @FXML private ComboBox<Customer> customerCombo;
@@ -76,7 +82,7 @@ public class AccountsController {
     private MainApp mainApp;
     private boolean tabMode = false;
     private String tabId;
-    private ObservableList<Customer> customers = FXCollections.observableArrayList();
+    private Typeahead<Customer> customerTypeahead;
 
     public void setMainApp(MainApp mainApp) { this.mainApp = mainApp; }
     public void setTabMode(boolean tabMode) { this.tabMode = tabMode; }
@@ -85,7 +91,7 @@ public class AccountsController {
     public void selectCustomerAndGenerate(Customer customer) {
         if (customer == null) return;
         javafx.application.Platform.runLater(() -> {
-            customerCombo.setValue(customer);
+            customerTypeahead.select(customer);
             generateStatement();
         });
     }
@@ -127,7 +133,8 @@ public class AccountsController {
     private void handleEditSelectedCustomer() {
         Customer customer = customerCombo.getValue();
         if (customer == null) { showAlert(Alert.AlertType.WARNING, "تنبيه", "يرجى اختيار العميل أولاً"); return; }
-        openCustomerForm(customer);
+        // The picker holds a directory summary; edit the full entity
+        customerService.getCustomerById(customer.getId()).ifPresent(this::openCustomerForm);
     }
 
     @FXML
@@ -141,9 +148,8 @@ public class AccountsController {
         confirm.showAndWait().ifPresent(response -> {
             if (response == ButtonType.OK) {
                 try {
-                    customerService.deleteCustomer(customer);
-                    refreshCustomerCombo();
-                    customerCombo.setValue(null);
+                    customerService.deleteCustomer(customer.getId());
+                    customerTypeahead.clear();
                     showAlert(Alert.AlertType.INFORMATION, "تم", "تم حذف العميل بنجاح");
                 } catch (Exception e) {
                     logger.error("Failed to delete customer", e);
@@ -186,11 +192,11 @@ public class AccountsController {
 
     private void refreshCustomerCombo() {
         Customer selected = customerCombo.getValue();
-        List<Customer> list = customerService.getAllCustomers();
-        customers.setAll(list);
-        customerCombo.setItems(customers);
+        customerTypeahead.refresh();
         if (selected != null) {
-            customers.stream().filter(c -> c.getId().equals(selected.getId())).findFirst().ifPresent(customerCombo::setValue);
+            CustomerDirectory.getInstance().get(selected.getId())
+                    .map(CustomerDirectory.Entry::toCustomer)
+                    .ifPresent(customerTypeahead::select);
         }
     }
 
@@ -218,53 +224,7 @@ public class AccountsController {
 
     private void setupCombos() {
         // Customers
-        List<Customer> customerList = customerService.getAllCustomers();
-        customers.setAll(customerList);
-        customerCombo.setItems(customers);
-        customerCombo.setEditable(true);
-        customerCombo.setConverter(new StringConverter<>() {
-            @Override
-            public String toString(Customer c) {
-                return c != null ? c.getName() + " (" + c.getCustomerCode() + ")" : "";
-            }
-            @Override
-            public Customer fromString(String s) {
-                if (s == null || s.isEmpty()) return null;
-                return customers.stream()
-                        .filter(c -> {
-                            String label = toString(c);
-                            return label.equals(s) || (c.getName() != null && c.getName().contains(s));
-                        })
-                        .findFirst().orElse(null);
-            }
-        });
-
-        // Filter customers as user types
-        if (customerCombo.getEditor() != null) {
-            customerCombo.getEditor().textProperty().addListener((obs, oldText, newText) -> {
-                if (customerCombo.getValue() != null) {
-                    String rendered = customerCombo.getConverter().toString(customerCombo.getValue());
-                    if (rendered.equals(newText)) return;
-                }
-                if (newText != null) {
-                    boolean isSelection = customers.stream()
-                            .anyMatch(c -> {
-                                String label = customerCombo.getConverter().toString(c);
-                                return label != null && label.equals(newText);
-                            });
-                    if (isSelection) return;
-                }
-                String query = newText == null ? "" : newText.trim().toLowerCase();
-                ObservableList<Customer> filtered = customers.filtered(c -> {
-                    if (query.isEmpty()) return true;
-                    String name = c.getName() != null ? c.getName().toLowerCase() : "";
-                    String code = c.getCustomerCode() != null ? c.getCustomerCode().toLowerCase() : "";
-                    return name.contains(query) || code.contains(query);
-                });
-                customerCombo.setItems(filtered);
-                if (!customerCombo.isShowing()) customerCombo.show();
-            });
-        }
+        customerTypeahead = Typeahead.forCustomers(customerCombo, c -> c.getName() + " (" + c.getCustomerCode() + ")");
 
         customerCombo.valueProperty().addListener((obs, oldVal, newVal) -> updateProjectLocations(newVal));
 
@@ -873,6 +833,120 @@ public class AccountsController {
         }
     }
 
+    @FXML
+    private void handlePrintAging() {
+        try {
+            FileChooser fileChooser = new FileChooser();
+            fileChooser.setTitle("حفظ تقرير أعمار الذمم");
+            fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("PDF", "*.pdf"));
+            fileChooser.setInitialFileName("receivables_aging_" + LocalDate.now() + ".pdf");
+
+            Stage owner = (Stage) statementTable.getScene().getWindow();
+            File selectedFile = fileChooser.showSaveDialog(owner);
+            if (selectedFile == null) return;
+
+            AgingReport report = ReceivablesAgingService.getInstance().getAgingReport();
+            File pdfFile = new PrintService().generateReceivablesAgingPdf(report, selectedFile);
+
+            if (pdfFile != null && pdfFile.exists()) {
+                if (mainApp != null) {
+                    mainApp.showPdfPreview(pdfFile);
+                } else if (Desktop.isDesktopSupported()) {
+                    Desktop.getDesktop().open(pdfFile);
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Failed to print receivables aging", e);
+            showAlert(Alert.AlertType.ERROR, "خطأ", "فشل في طباعة تقرير أعمار الذمم: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Debtors (with aging) or creditors in one currency, largest first, a page at a time.
+     * Double-click opens the customer's statement.
+     */
+    @FXML
+    private void handleShowBalances() {
+        Dialog<Void> dialog = new Dialog<>();
+        dialog.setTitle("المدينون والدائنون");
+        dialog.setHeaderText(null);
+        dialog.initOwner(statementTable.getScene().getWindow());
+        dialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+
+        ComboBox<String> currency = new ComboBox<>(FXCollections.observableArrayList("دينار", "دولار"));
+        currency.setValue(currencyCombo.getValue() != null ? currencyCombo.getValue() : "دينار");
+        ComboBox<String> side = new ComboBox<>(FXCollections.observableArrayList("المدينون", "الدائنون"));
+        side.getSelectionModel().selectFirst();
+        Button prev = new Button("السابق");
+        Button next = new Button("التالي");
+        Label pageLabel = new Label();
+
+        TableView<CustomerExposure> table = new TableView<>();
+        table.setNodeOrientation(NodeOrientation.RIGHT_TO_LEFT);
+        table.setPrefSize(820, 460);
+        table.getColumns().add(balanceColumn("الكود", 90, CustomerExposure::getCustomerCode));
+        table.getColumns().add(balanceColumn("العميل", 180, CustomerExposure::getCustomerName));
+        table.getColumns().add(balanceColumn("الهاتف", 110, CustomerExposure::getPhoneNumber));
+        table.getColumns().add(balanceColumn("المبلغ", 110, e -> currencyFormat.format(e.getAmount())));
+        List<TableColumn<CustomerExposure, String>> agingColumns = List.of(
+                balanceColumn("0-30", 80, e -> currencyFormat.format(e.getAge0To30())),
+                balanceColumn("31-60", 80, e -> currencyFormat.format(e.getAge31To60())),
+                balanceColumn("61-90", 80, e -> currencyFormat.format(e.getAge61To90())),
+                balanceColumn("+90", 80, e -> currencyFormat.format(e.getAge90Plus())));
+        table.getColumns().addAll(agingColumns);
+
+        int[] page = {0};
+        Runnable load = () -> {
+            try {
+                boolean debtors = side.getSelectionModel().getSelectedIndex() == 0;
+                String cur = currency.getValue();
+                long count = debtors ? customerService.countDebtors(cur) : customerService.countCreditors(cur);
+                int pages = (int) Math.max(1, (count + BALANCES_PAGE_SIZE - 1) / BALANCES_PAGE_SIZE);
+                page[0] = Math.min(page[0], pages - 1);
+                int offset = page[0] * BALANCES_PAGE_SIZE;
+                table.setItems(FXCollections.observableArrayList(debtors
+                        ? ReceivablesAgingService.getInstance().getDebtorsPage(cur, offset, BALANCES_PAGE_SIZE)
+                        : customerService.getCreditorsPage(cur, offset, BALANCES_PAGE_SIZE)));
+                agingColumns.forEach(c -> c.setVisible(debtors));
+                pageLabel.setText(count + " عميل - صفحة " + (page[0] + 1) + " من " + pages);
+                prev.setDisable(page[0] == 0);
+                next.setDisable(page[0] >= pages - 1);
+            } catch (Exception e) {
+                logger.error("Failed to load customer balances", e);
+                showAlert(Alert.AlertType.ERROR, "خطأ", "فشل في تحميل الأرصدة: " + e.getMessage());
+            }
+        };
+        currency.setOnAction(e -> { page[0] = 0; load.run(); });
+        side.setOnAction(e -> { page[0] = 0; load.run(); });
+        prev.setOnAction(e -> { page[0]--; load.run(); });
+        next.setOnAction(e -> { page[0]++; load.run(); });
+        table.setOnMouseClicked(e -> {
+            CustomerExposure selected = table.getSelectionModel().getSelectedItem();
+            if (e.getClickCount() == 2 && selected != null) {
+                customerService.getCustomerById(selected.getCustomerId()).ifPresent(customer -> {
+                    dialog.close();
+                    currencyCombo.setValue(currency.getValue());
+                    customerTypeahead.select(customer);
+                    generateStatement();
+                });
+            }
+        });
+
+        HBox toolbar = new HBox(8, currency, side, prev, next, pageLabel);
+        toolbar.setAlignment(Pos.CENTER_LEFT);
+        dialog.getDialogPane().setContent(new VBox(8, toolbar, table));
+        load.run();
+        dialog.showAndWait();
+    }
+
+    private static TableColumn<CustomerExposure, String> balanceColumn(String title, double width,
+            Function<CustomerExposure, String> value) {
+        TableColumn<CustomerExposure, String> column = new TableColumn<>(title);
+        column.setPrefWidth(width);
+        column.setCellValueFactory(data -> new SimpleStringProperty(value.apply(data.getValue())));
+        return column;
+    }
+
     // ========== Helpers ==========
 
     private String promptAdminPin() {
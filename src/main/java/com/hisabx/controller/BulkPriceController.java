@@ -0,0 +1,351 @@
+package com.hisabx.controller;
+
+import com.hisabx.model.dto.PriceChangeBatch;
+import com.hisabx.model.dto.PricePreviewLine;
+import com.hisabx.service.BulkPriceService;
+import com.hisabx.service.BulkPriceService.Field;
+import com.hisabx.service.BulkPriceService.Rule;
+import com.hisabx.service.BulkPriceService.RuleType;
+import com.hisabx.service.BulkPriceService.Scope;
+import com.hisabx.service.CustomerDirectory;
+import com.hisabx.service.InventoryService;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.collections.FXCollections;
+import javafx.fxml.FXML;
+import javafx.scene.control.*;
+import javafx.stage.Stage;
+import javafx.util.StringConverter;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * تعديل الأسعار الجماعي - pick a scope and a rule, page through the preview, apply or undo.
+ */
+public class BulkPriceController {
+    private static final int PAGE_SIZE = 100;
+    private static final String SCOPE_CATEGORY = "فئة وفروعها";
+    private static final String SCOPE_SEARCH = "نتيجة البحث";
+    private static final String SCOPE_SUPPLIER = "مشتريات مورد";
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    @FXML private ComboBox<String> scopeCombo;
+    @FXML private ComboBox<String> categoryCombo;
+    @FXML private TextField searchField;
+    @FXML private ComboBox<CustomerDirectory.Entry> supplierCombo;
+    @FXML private ComboBox<Field> fieldCombo;
+    @FXML private ComboBox<RuleType> ruleCombo;
+    @FXML private TextField valueField;
+    @FXML private TextField roundField;
+    @FXML private Button applyButton;
+    @FXML private TableView<PricePreviewLine> previewTable;
+    @FXML private TableColumn<PricePreviewLine, String> codeColumn;
+    @FXML private TableColumn<PricePreviewLine, String> nameColumn;
+    @FXML private TableColumn<PricePreviewLine, String> categoryColumn;
+    @FXML private TableColumn<PricePreviewLine, String> costColumn;
+    @FXML private TableColumn<PricePreviewLine, String> oldValueColumn;
+    @FXML private TableColumn<PricePreviewLine, String> newValueColumn;
+    @FXML private Label countLabel;
+    @FXML private Label pageLabel;
+    @FXML private Button previousPageButton;
+    @FXML private Button nextPageButton;
+    @FXML private TableView<PriceChangeBatch> historyTable;
+    @FXML private TableColumn<PriceChangeBatch, String> historyDateColumn;
+    @FXML private TableColumn<PriceChangeBatch, String> historyDescriptionColumn;
+    @FXML private TableColumn<PriceChangeBatch, String> historyRowsColumn;
+    @FXML private TableColumn<PriceChangeBatch, String> historyUserColumn;
+    @FXML private TableColumn<PriceChangeBatch, String> historyStatusColumn;
+    @FXML private Button undoButton;
+
+    private final BulkPriceService bulkPriceService = new BulkPriceService();
+    private final InventoryService inventoryService = new InventoryService();
+    private final DecimalFormat numberFormat;
+    private Stage dialogStage;
+
+    // The change being previewed; apply uses exactly this
+    private Scope previewScope;
+    private Field previewField;
+    private Rule previewRule;
+    private long previewCount;
+    private int page;
+
+    public BulkPriceController() {
+        DecimalFormatSymbols symbols = new DecimalFormatSymbols(Locale.US);
+        symbols.setGroupingSeparator(',');
+        numberFormat = new DecimalFormat("#,##0.##", symbols);
+    }
+
+    @FXML
+    private void initialize() {
+        scopeCombo.setItems(FXCollections.observableArrayList(SCOPE_CATEGORY, SCOPE_SEARCH, SCOPE_SUPPLIER));
+        scopeCombo.setValue(SCOPE_CATEGORY);
+        scopeCombo.valueProperty().addListener((obs, old, value) -> updateScopeInputs());
+        categoryCombo.setItems(FXCollections.observableArrayList(inventoryService.getAllCategories()));
+        supplierCombo.setItems(FXCollections.observableArrayList(bulkPriceService.getSuppliers()));
+        supplierCombo.setConverter(new StringConverter<>() {
+            @Override
+            public String toString(CustomerDirectory.Entry entry) {
+                return entry == null ? "" : entry.getName();
+            }
+
+            @Override
+            public CustomerDirectory.Entry fromString(String string) {
+                return null;
+            }
+        });
+        fieldCombo.setItems(FXCollections.observableArrayList(Field.values()));
+        fieldCombo.setValue(Field.PRICE);
+        fieldCombo.setConverter(arabicNames(Field::getArabicName));
+        ruleCombo.setItems(FXCollections.observableArrayList(RuleType.values()));
+        ruleCombo.setValue(RuleType.PERCENT);
+        ruleCombo.setConverter(arabicNames(RuleType::getArabicName));
+
+        // Any change to the inputs needs a new preview before applying
+        for (ComboBox<?> combo : List.of(scopeCombo, categoryCombo, supplierCombo, fieldCombo, ruleCombo)) {
+            combo.valueProperty().addListener((obs, old, value) -> clearPreview());
+        }
+        for (TextField field : List.of(searchField, valueField, roundField)) {
+            field.textProperty().addListener((obs, old, value) -> clearPreview());
+        }
+
+        codeColumn.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getProductCode()));
+        nameColumn.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getName()));
+        categoryColumn.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getCategory()));
+        costColumn.setCellValueFactory(data -> new SimpleStringProperty(format(data.getValue().getCostPrice())));
+        oldValueColumn.setCellValueFactory(data -> new SimpleStringProperty(format(data.getValue().getOldValue())));
+        newValueColumn.setCellValueFactory(data -> new SimpleStringProperty(format(data.getValue().getNewValue())));
+
+        historyDateColumn.setCellValueFactory(data -> new SimpleStringProperty(
+                data.getValue().getCreatedAt() != null ? data.getValue().getCreatedAt().format(DATE_FORMAT) : ""));
+        historyDescriptionColumn.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getDescription()));
+        historyRowsColumn.setCellValueFactory(data -> new SimpleStringProperty(String.valueOf(data.getValue().getRowCount())));
+        historyUserColumn.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getCreatedBy()));
+        historyStatusColumn.setCellValueFactory(data -> new SimpleStringProperty(
+                data.getValue().isUndone() ? "تم التراجع" : "مطبق"));
+        undoButton.disableProperty().bind(historyTable.getSelectionModel().selectedItemProperty().isNull());
+
+        updateScopeInputs();
+        loadHistory();
+    }
+
+    public void setDialogStage(Stage dialogStage) {
+        this.dialogStage = dialogStage;
+    }
+
+    /** Start from the inventory list's current search. */
+    public void setSearchScope(String text, String category) {
+        scopeCombo.setValue(SCOPE_SEARCH);
+        searchField.setText(text);
+        if (category != null) {
+            categoryCombo.setValue(category);
+        }
+    }
+
+    private void updateScopeInputs() {
+        String scope = scopeCombo.getValue();
+        categoryCombo.setVisible(!SCOPE_SUPPLIER.equals(scope));
+        categoryCombo.setManaged(!SCOPE_SUPPLIER.equals(scope));
+        categoryCombo.setPromptText(SCOPE_SEARCH.equals(scope) ? "كل الفئات" : "الفئة");
+        searchField.setVisible(SCOPE_SEARCH.equals(scope));
+        searchField.setManaged(SCOPE_SEARCH.equals(scope));
+        supplierCombo.setVisible(SCOPE_SUPPLIER.equals(scope));
+        supplierCombo.setManaged(SCOPE_SUPPLIER.equals(scope));
+    }
+
+    @FXML
+    private void handlePreview() {
+        try {
+            Scope scope = currentScope();
+            Field field = fieldCombo.getValue();
+            Rule rule = currentRule();
+            long count = bulkPriceService.count(scope, field, rule);
+            previewScope = scope;
+            previewField = field;
+            previewRule = rule;
+            previewCount = count;
+            page = 0;
+            loadPage();
+        } catch (Exception e) {
+            showError("خطأ", e.getMessage());
+        }
+    }
+
+    @FXML
+    private void handlePreviousPage() {
+        if (page > 0) {
+            page--;
+            loadPage();
+        }
+    }
+
+    @FXML
+    private void handleNextPage() {
+        if ((long) (page + 1) * PAGE_SIZE < previewCount) {
+            page++;
+            loadPage();
+        }
+    }
+
+    private void loadPage() {
+        List<PricePreviewLine> lines = bulkPriceService.preview(previewScope, previewField, previewRule,
+                page * PAGE_SIZE, PAGE_SIZE);
+        previewTable.setItems(FXCollections.observableArrayList(lines));
+        long pages = Math.max(1, (previewCount + PAGE_SIZE - 1) / PAGE_SIZE);
+        countLabel.setText("المنتجات التي ستتغير: " + previewCount);
+        pageLabel.setText((page + 1) + " / " + pages);
+        previousPageButton.setDisable(page == 0);
+        nextPageButton.setDisable(page + 1 >= pages);
+        applyButton.setDisable(previewCount == 0);
+    }
+
+    private void clearPreview() {
+        previewScope = null;
+        previewCount = 0;
+        previewTable.getItems().clear();
+        countLabel.setText("-");
+        pageLabel.setText("-");
+        previousPageButton.setDisable(true);
+        nextPageButton.setDisable(true);
+        applyButton.setDisable(true);
+    }
+
+    @FXML
+    private void handleApply() {
+        if (previewScope == null) {
+            return;
+        }
+        Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
+        confirm.setTitle("تأكيد");
+        confirm.setHeaderText(null);
+        confirm.setContentText("سيتم تعديل " + previewField.getArabicName() + " لـ " + previewCount
+                + " منتج. يمكن التراجع عن التعديل لاحقاً. هل تريد المتابعة؟");
+        if (confirm.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK) {
+            return;
+        }
+        try {
+            int rows = bulkPriceService.apply(previewScope, previewField, previewRule, previewCount)
+                    .map(PriceChangeBatch::getRowCount).orElse(0);
+            clearPreview();
+            loadHistory();
+            showInfo("تم", "تم تعديل " + rows + " منتج");
+        } catch (IllegalArgumentException e) {
+            // The products changed since the preview; show the current one
+            showError("خطأ", e.getMessage());
+            handlePreview();
+        } catch (Exception e) {
+            showError("خطأ", e.getMessage());
+        }
+    }
+
+    @FXML
+    private void handleUndo() {
+        PriceChangeBatch batch = historyTable.getSelectionModel().getSelectedItem();
+        if (batch == null) {
+            return;
+        }
+        if (batch.isUndone()) {
+            showError("خطأ", "تم التراجع عن هذا التعديل مسبقاً");
+            return;
+        }
+        Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
+        confirm.setTitle("تأكيد");
+        confirm.setHeaderText(null);
+        confirm.setContentText("التراجع عن: " + batch.getDescription()
+                + "\nالمنتجات التي عُدّلت بعده تحتفظ بقيمتها الحالية.");
+        if (confirm.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK) {
+            return;
+        }
+        try {
+            int restored = bulkPriceService.undo(batch.getId());
+            clearPreview();
+            loadHistory();
+            showInfo("تم", "تمت استعادة القيم السابقة لـ " + restored + " منتج");
+        } catch (Exception e) {
+            showError("خطأ", e.getMessage());
+        }
+    }
+
+    @FXML
+    private void handleClose() {
+        if (dialogStage != null) {
+            dialogStage.close();
+        }
+    }
+
+    private void loadHistory() {
+        historyTable.setItems(FXCollections.observableArrayList(bulkPriceService.getRecentBatches(50)));
+    }
+
+    private Scope currentScope() {
+        String scope = scopeCombo.getValue();
+        if (SCOPE_SUPPLIER.equals(scope)) {
+            CustomerDirectory.Entry supplier = supplierCombo.getValue();
+            if (supplier == null) {
+                throw new IllegalArgumentException("اختر المورد");
+            }
+            return Scope.supplier(supplier.getId(), supplier.getName());
+        }
+        if (SCOPE_SEARCH.equals(scope)) {
+            return Scope.search(searchField.getText(), categoryCombo.getValue());
+        }
+        return Scope.category(categoryCombo.getValue());
+    }
+
+    private Rule currentRule() {
+        double value = parse(valueField.getText(), "القيمة", true);
+        double roundTo = parse(roundField.getText(), "قيمة التقريب", false);
+        return new Rule(ruleCombo.getValue(), value, roundTo);
+    }
+
+    private static double parse(String text, String label, boolean required) {
+        if (text == null || text.isBlank()) {
+            if (required) {
+                throw new IllegalArgumentException(label + " مطلوبة");
+            }
+            return 0;
+        }
+        try {
+            return Double.parseDouble(text.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(label + " يجب أن تكون رقماً");
+        }
+    }
+
+    private String format(Double value) {
+        return value == null ? "-" : numberFormat.format(value);
+    }
+
+    private static <T> StringConverter<T> arabicNames(Function<T, String> name) {
+        return new StringConverter<>() {
+            @Override
+            public String toString(T value) {
+                return value == null ? "" : name.apply(value);
+            }
+
+            @Override
+            public T fromString(String string) {
+                return null;
+            }
+        };
+    }
+
+    private void showError(String title, String message) {
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle(title);
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
+
+    private void showInfo(String title, String message) {
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle(title);
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
+}
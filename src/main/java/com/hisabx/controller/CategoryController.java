@@ -2,7 +2,6 @@ package com.hisabx.controller;
 
 import com.hisabx.model.Category;
 import com.hisabx.service.CategoryService;
-import com.hisabx.service.InventoryService;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
@@ -12,15 +11,22 @@ import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.stage.Stage;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 public class CategoryController {
     @FXML private TextField categoryNameField;
     @FXML private TextField categoryDescField;
+    @FXML private ComboBox<Category> parentCombo;
     @FXML private Button addButton;
     @FXML private TableView<Category> categoriesTable;
     @FXML private TableColumn<Category, Long> idColumn;
     @FXML private TableColumn<Category, String> nameColumn;
+    @FXML private TableColumn<Category, String> parentColumn;
     @FXML private TableColumn<Category, String> descriptionColumn;
     @FXML private TableColumn<Category, Integer> productCountColumn;
     @FXML private TableColumn<Category, String> statusColumn;
@@ -29,8 +35,10 @@ public class CategoryController {
     
     private Stage dialogStage;
     private final CategoryService categoryService = new CategoryService();
-    private final InventoryService inventoryService = new InventoryService();
     private Category editingCategory = null;
+    // Refreshed with the table: names for the parent column, products per category with its subcategories
+    private Map<Long, Category> categoriesById = Map.of();
+    private Map<Long, Long> productCounts = Map.of();
     private boolean tabMode = false;
     
     @FXML
@@ -43,10 +51,13 @@ public class CategoryController {
         idColumn.setCellValueFactory(new PropertyValueFactory<>("id"));
         nameColumn.setCellValueFactory(new PropertyValueFactory<>("name"));
         descriptionColumn.setCellValueFactory(new PropertyValueFactory<>("description"));
+        parentColumn.setCellValueFactory(cellData -> {
+            Category parent = categoriesById.get(cellData.getValue().getParentId());
+            return new SimpleStringProperty(parent != null ? parent.getName() : "");
+        });
         
         productCountColumn.setCellValueFactory(cellData -> {
-            Category cat = cellData.getValue();
-            long count = inventoryService.getProductsByCategory(cat.getName()).size();
+            long count = productCounts.getOrDefault(cellData.getValue().getId(), 0L);
             return new SimpleIntegerProperty((int) count).asObject();
         });
         
@@ -104,6 +115,12 @@ public class CategoryController {
     
     private void loadCategories() {
         List<Category> categories = categoryService.getAllCategories();
+        categoriesById = categories.stream().collect(Collectors.toMap(Category::getId, Function.identity()));
+        productCounts = categoryService.getProductCounts(true);
+        List<Category> parents = new ArrayList<>();
+        parents.add(null);
+        parents.addAll(categories);
+        parentCombo.setItems(FXCollections.observableArrayList(parents));
         ObservableList<Category> categoriesList = FXCollections.observableArrayList(categories);
         categoriesTable.setItems(categoriesList);
         totalCategoriesLabel.setText("إجمالي الفئات: " + categories.size());
@@ -121,6 +138,7 @@ public class CategoryController {
     private void handleAddCategory() {
         String name = categoryNameField.getText().trim();
         String desc = categoryDescField.getText().trim();
+        Long parentId = parentCombo.getValue() != null ? parentCombo.getValue().getId() : null;
         
         if (name.isEmpty()) {
             showError("خطأ", "اسم الفئة مطلوب");
@@ -130,20 +148,26 @@ public class CategoryController {
         
         try {
             if (editingCategory != null) {
-                editingCategory.setName(name);
-                editingCategory.setDescription(desc);
-                categoryService.updateCategory(editingCategory);
+                // Edit a copy: the listed categories are shared with the other screens until saved
+                Category updated = new Category(name, desc);
+                updated.setId(editingCategory.getId());
+                updated.setParentId(parentId);
+                updated.setIsActive(editingCategory.getIsActive());
+                updated.setCreatedAt(editingCategory.getCreatedAt());
+                categoryService.updateCategory(updated);
                 showInfo("تم", "تم تحديث الفئة بنجاح");
                 editingCategory = null;
                 addButton.setText("إضافة");
             } else {
                 Category category = new Category(name, desc);
+                category.setParentId(parentId);
                 categoryService.createCategory(category);
                 showInfo("تم", "تم إضافة الفئة بنجاح");
             }
             
             categoryNameField.clear();
             categoryDescField.clear();
+            parentCombo.setValue(null);
             loadCategories();
         } catch (Exception e) {
             showError("خطأ", e.getMessage());
@@ -154,16 +178,22 @@ public class CategoryController {
         editingCategory = category;
         categoryNameField.setText(category.getName());
         categoryDescField.setText(category.getDescription());
+        parentCombo.setValue(categoriesById.get(category.getParentId()));
         addButton.setText("تحديث");
         categoryNameField.requestFocus();
     }
     
     private void handleDeleteCategory(Category category) {
-        long productCount = inventoryService.getProductsByCategory(category.getName()).size();
+        long productCount = categoryService.getProductCounts(false).getOrDefault(category.getId(), 0L);
+        boolean hasChildren = categoriesById.values().stream()
+                .anyMatch(c -> Objects.equals(c.getParentId(), category.getId()));
         
         String message = productCount > 0 
-            ? "هذه الفئة تحتوي على " + productCount + " منتج. هل أنت متأكد من الحذف؟"
+            ? "هذه الفئة تحتوي على " + productCount + " منتج ستصبح بدون فئة. هل أنت متأكد من الحذف؟"
             : "هل أنت متأكد من حذف هذه الفئة؟";
+        if (hasChildren) {
+            message += "\nالفئات الفرعية ستنتقل إلى الفئة الأم.";
+        }
         
         Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
         confirm.setTitle("تأكيد الحذف");
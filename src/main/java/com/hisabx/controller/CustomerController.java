@@ -23,6 +23,7 @@ public class CustomerController {
     private final CustomerService customerService = new CustomerService();
     private Customer editingCustomer = null;
     private boolean saved = false;
+    private Customer savedCustomer = null;
     private boolean tabMode = false;
     
     @FXML
@@ -67,6 +68,10 @@ public class CustomerController {
     public boolean isSaved() {
         return saved;
     }
+
+    public Customer getSavedCustomer() {
+        return savedCustomer;
+    }
     
     @FXML
     private void handleSave() {
@@ -122,6 +127,7 @@ public class CustomerController {
             }
             
             saved = true;
+            savedCustomer = customer;
             closeForm();
             
         } catch (IllegalArgumentException e) {
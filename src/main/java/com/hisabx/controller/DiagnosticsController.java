@@ -0,0 +1,366 @@
+package com.hisabx.controller;
+
+import com.hisabx.database.DatabaseMaintenance;
+import com.hisabx.database.IndexAdvisor;
+import com.hisabx.database.QueryMetrics;
+import com.hisabx.model.dto.DatabaseHealth;
+import com.hisabx.model.dto.StockDiscrepancy;
+import com.hisabx.service.InventoryService;
+import com.hisabx.util.FxStallWatchdog;
+import com.hisabx.util.ViewFactory;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.collections.FXCollections;
+import javafx.concurrent.Task;
+import javafx.fxml.FXML;
+import javafx.scene.control.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.Desktop;
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class DiagnosticsController {
+    private static final Logger logger = LoggerFactory.getLogger(DiagnosticsController.class);
+
+    @FXML private TextField thresholdField;
+    @FXML private Label summaryLabel;
+    @FXML private TableView<FxStallWatchdog.CallSiteStats> stallsTable;
+    @FXML private TableColumn<FxStallWatchdog.CallSiteStats, String> siteColumn;
+    @FXML private TableColumn<FxStallWatchdog.CallSiteStats, Long> countColumn;
+    @FXML private TableColumn<FxStallWatchdog.CallSiteStats, Long> totalColumn;
+    @FXML private TableColumn<FxStallWatchdog.CallSiteStats, Long> maxColumn;
+    @FXML private TableColumn<FxStallWatchdog.CallSiteStats, String> averageColumn;
+    @FXML private TableColumn<FxStallWatchdog.CallSiteStats, String> sqlColumn;
+    @FXML private TableView<Map.Entry<String, ViewFactory.OpenLatency>> viewsTable;
+    @FXML private TableColumn<Map.Entry<String, ViewFactory.OpenLatency>, String> viewColumn;
+    @FXML private TableColumn<Map.Entry<String, ViewFactory.OpenLatency>, Long> opensColumn;
+    @FXML private TableColumn<Map.Entry<String, ViewFactory.OpenLatency>, Long> pooledColumn;
+    @FXML private TableColumn<Map.Entry<String, ViewFactory.OpenLatency>, String> viewAverageColumn;
+    @FXML private TableColumn<Map.Entry<String, ViewFactory.OpenLatency>, Long> viewMaxColumn;
+
+    @FXML private CheckBox metricsEnabledCheck;
+    @FXML private Button analyzeIndexesButton;
+    @FXML private Button databaseHealthButton;
+    @FXML private Button compactDatabaseButton;
+    @FXML private Button reconcileStockButton;
+    @FXML private TextField slowThresholdField;
+    @FXML private Label querySummaryLabel;
+    @FXML private TableView<QueryMetrics.QueryStats> queriesTable;
+    @FXML private TableColumn<QueryMetrics.QueryStats, String> queryNameColumn;
+    @FXML private TableColumn<QueryMetrics.QueryStats, Long> queryCountColumn;
+    @FXML private TableColumn<QueryMetrics.QueryStats, String> queryAverageColumn;
+    @FXML private TableColumn<QueryMetrics.QueryStats, String> queryP95Column;
+    @FXML private TableColumn<QueryMetrics.QueryStats, Long> queryMaxColumn;
+    @FXML private TableColumn<QueryMetrics.QueryStats, Long> querySlowColumn;
+    @FXML private TableColumn<QueryMetrics.QueryStats, String> queryHistogramColumn;
+    @FXML private TableView<QueryMetrics.HqlStats> hqlTable;
+    @FXML private TableColumn<QueryMetrics.HqlStats, String> hqlColumn;
+    @FXML private TableColumn<QueryMetrics.HqlStats, Long> hqlCountColumn;
+    @FXML private TableColumn<QueryMetrics.HqlStats, Long> hqlRowsColumn;
+    @FXML private TableColumn<QueryMetrics.HqlStats, Long> hqlAverageColumn;
+    @FXML private TableColumn<QueryMetrics.HqlStats, Long> hqlMaxColumn;
+
+    private final FxStallWatchdog watchdog = FxStallWatchdog.getInstance();
+    private final QueryMetrics queryMetrics = QueryMetrics.getInstance();
+
+    @FXML
+    private void initialize() {
+        siteColumn.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getCallSite()));
+        countColumn.setCellValueFactory(data -> new ReadOnlyObjectWrapper<>(data.getValue().getCount()));
+        totalColumn.setCellValueFactory(data -> new ReadOnlyObjectWrapper<>(data.getValue().getTotalMs()));
+        maxColumn.setCellValueFactory(data -> new ReadOnlyObjectWrapper<>(data.getValue().getMaxMs()));
+        averageColumn.setCellValueFactory(data -> new SimpleStringProperty(
+                String.format("%.0f", data.getValue().getAverageMs())));
+        sqlColumn.setCellValueFactory(data -> new SimpleStringProperty(
+                data.getValue().getLastSql() != null ? data.getValue().getLastSql().replaceAll("\\s+", " ") : "-"));
+
+        viewColumn.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getKey()));
+        opensColumn.setCellValueFactory(data -> new ReadOnlyObjectWrapper<>(data.getValue().getValue().getCount()));
+        pooledColumn.setCellValueFactory(data -> new ReadOnlyObjectWrapper<>(
+                data.getValue().getValue().getPooledCount()));
+        viewAverageColumn.setCellValueFactory(data -> new SimpleStringProperty(
+                String.format("%.0f", data.getValue().getValue().getAverageMs())));
+        viewMaxColumn.setCellValueFactory(data -> new ReadOnlyObjectWrapper<>(data.getValue().getValue().getMaxMs()));
+
+        queryNameColumn.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getName()));
+        queryCountColumn.setCellValueFactory(data -> new ReadOnlyObjectWrapper<>(data.getValue().getCount()));
+        queryAverageColumn.setCellValueFactory(data -> new SimpleStringProperty(
+                String.format("%.1f", data.getValue().getAverageMs())));
+        queryP95Column.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getP95Label()));
+        queryMaxColumn.setCellValueFactory(data -> new ReadOnlyObjectWrapper<>(data.getValue().getMaxMs()));
+        querySlowColumn.setCellValueFactory(data -> new ReadOnlyObjectWrapper<>(data.getValue().getSlowCount()));
+        queryHistogramColumn.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getHistogramLabel()));
+
+        hqlColumn.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getHql().replaceAll("\\s+", " ")));
+        hqlCountColumn.setCellValueFactory(data -> new ReadOnlyObjectWrapper<>(data.getValue().getCount()));
+        hqlRowsColumn.setCellValueFactory(data -> new ReadOnlyObjectWrapper<>(data.getValue().getRows()));
+        hqlAverageColumn.setCellValueFactory(data -> new ReadOnlyObjectWrapper<>(data.getValue().getAverageMs()));
+        hqlMaxColumn.setCellValueFactory(data -> new ReadOnlyObjectWrapper<>(data.getValue().getMaxMs()));
+
+        thresholdField.setText(String.valueOf(watchdog.getThresholdMs()));
+        metricsEnabledCheck.setSelected(QueryMetrics.isEnabled());
+        slowThresholdField.setText(String.valueOf(queryMetrics.getSlowThresholdMs()));
+        loadData();
+    }
+
+    private void loadData() {
+        List<FxStallWatchdog.CallSiteStats> stats = watchdog.getStats();
+        stallsTable.setItems(FXCollections.observableArrayList(stats));
+
+        long totalStalls = stats.stream().mapToLong(FxStallWatchdog.CallSiteStats::getCount).sum();
+        long totalBlocked = stats.stream().mapToLong(FxStallWatchdog.CallSiteStats::getTotalMs).sum();
+        summaryLabel.setText("عدد مرات التجمد: " + totalStalls + " | مجموع زمن التجمد: " + totalBlocked + " ms");
+
+        viewsTable.setItems(FXCollections.observableArrayList(
+                new ArrayList<>(ViewFactory.getInstance().getLatencyStats().entrySet())));
+
+        queriesTable.setItems(FXCollections.observableArrayList(queryMetrics.getStats()));
+        hqlTable.setItems(FXCollections.observableArrayList(queryMetrics.getHqlStats()));
+        querySummaryLabel.setText("الجلسات: " + queryMetrics.getSessionsOpened() + "/" + queryMetrics.getSessionsClosed()
+                + " | المعاملات: " + queryMetrics.getTransactions() + " (تراجع " + queryMetrics.getRollbacks() + ")"
+                + String.format(" | متوسط المعاملة: %.1f ms | الأقصى: %d ms",
+                        queryMetrics.getAverageTransactionMs(), queryMetrics.getMaxTransactionMs()));
+    }
+
+    @FXML
+    private void handleRefresh() {
+        loadData();
+    }
+
+    @FXML
+    private void handleReset() {
+        watchdog.resetStats();
+        queryMetrics.reset();
+        loadData();
+    }
+
+    @FXML
+    private void handleSaveThreshold() {
+        try {
+            long value = Long.parseLong(thresholdField.getText().trim());
+            watchdog.setThresholdMs(value);
+            thresholdField.setText(String.valueOf(watchdog.getThresholdMs()));
+        } catch (NumberFormatException e) {
+            showError("خطأ", "الرجاء إدخال رقم صحيح");
+        }
+    }
+
+    @FXML
+    private void handleToggleMetrics() {
+        queryMetrics.setEnabled(metricsEnabledCheck.isSelected());
+        loadData();
+    }
+
+    @FXML
+    private void handleSaveSlowThreshold() {
+        try {
+            long value = Long.parseLong(slowThresholdField.getText().trim());
+            queryMetrics.setSlowThresholdMs(value);
+            slowThresholdField.setText(String.valueOf(queryMetrics.getSlowThresholdMs()));
+        } catch (NumberFormatException e) {
+            showError("خطأ", "الرجاء إدخال رقم صحيح");
+        }
+    }
+
+    @FXML
+    private void handleAnalyzeIndexes() {
+        Set<String> shapes = queryMetrics.getCapturedShapes();
+        if (shapes.isEmpty()) {
+            showError("تنبيه", "لا توجد استعلامات مسجلة - فعّل قياس الاستعلامات واستخدم البرنامج ثم أعد المحاولة");
+            return;
+        }
+        analyzeIndexesButton.setDisable(true);
+        Task<String> task = new Task<>() {
+            @Override
+            protected String call() {
+                return IndexAdvisor.format(new IndexAdvisor().analyze(shapes));
+            }
+        };
+        task.setOnSucceeded(e -> {
+            analyzeIndexesButton.setDisable(false);
+            showReport("تحليل الفهارس", task.getValue());
+        });
+        task.setOnFailed(e -> {
+            analyzeIndexesButton.setDisable(false);
+            logger.error("Index analysis failed", task.getException());
+            showError("خطأ", "فشل في تحليل الفهارس");
+        });
+        Thread thread = new Thread(task, "Index-Advisor");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @FXML
+    private void handleDatabaseHealth() {
+        databaseHealthButton.setDisable(true);
+        Task<DatabaseHealth> task = new Task<>() {
+            @Override
+            protected DatabaseHealth call() {
+                return DatabaseMaintenance.getInstance().getHealth();
+            }
+        };
+        task.setOnSucceeded(e -> {
+            databaseHealthButton.setDisable(false);
+            showReport("حالة قاعدة البيانات", formatHealth(task.getValue()));
+        });
+        task.setOnFailed(e -> {
+            databaseHealthButton.setDisable(false);
+            logger.error("Failed to read database health", task.getException());
+            showError("خطأ", "فشل في قراءة حالة قاعدة البيانات");
+        });
+        Thread thread = new Thread(task, "DB-Health");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @FXML
+    private void handleCompactDatabase() {
+        Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
+        confirm.setTitle("ضغط قاعدة البيانات");
+        confirm.setHeaderText("تحويل قاعدة البيانات إلى الاسترداد التدريجي للمساحة");
+        confirm.setContentText("سيتم إعادة كتابة ملف قاعدة البيانات بالكامل، وقد يتوقف حفظ البيانات حتى ينتهي."
+                + "\nيفضّل تنفيذه عندما لا يعمل أحد على البرنامج. هل تريد المتابعة؟");
+        if (confirm.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK) {
+            return;
+        }
+        compactDatabaseButton.setDisable(true);
+        Task<DatabaseHealth> task = new Task<>() {
+            @Override
+            protected DatabaseHealth call() {
+                return DatabaseMaintenance.getInstance().convertToIncrementalVacuum();
+            }
+        };
+        task.setOnSucceeded(e -> {
+            compactDatabaseButton.setDisable(false);
+            showReport("حالة قاعدة البيانات", formatHealth(task.getValue()));
+        });
+        task.setOnFailed(e -> {
+            compactDatabaseButton.setDisable(false);
+            logger.error("Failed to compact database", task.getException());
+            showError("خطأ", "فشل في ضغط قاعدة البيانات");
+        });
+        Thread thread = new Thread(task, "DB-Compact");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @FXML
+    private void handleReconcileStock() {
+        reconcileStockButton.setDisable(true);
+        Task<List<StockDiscrepancy>> task = new Task<>() {
+            @Override
+            protected List<StockDiscrepancy> call() {
+                return new InventoryService().reconcileStock();
+            }
+        };
+        task.setOnSucceeded(e -> {
+            reconcileStockButton.setDisable(false);
+            List<StockDiscrepancy> discrepancies = task.getValue();
+            if (discrepancies.isEmpty()) {
+                showReport("مطابقة المخزون", "المخزون مطابق لسجل الحركات لجميع المنتجات");
+                return;
+            }
+            StringBuilder text = new StringBuilder(String.format("%-14s %-30s %12s %12s %12s%n",
+                    "الكود", "المنتج", "المخزون", "السجل", "الفرق"));
+            for (StockDiscrepancy d : discrepancies) {
+                text.append(String.format("%-14s %-30s %12.2f %12.2f %12.2f%n", d.getProductCode(),
+                        d.getProductName(), d.getStock(), d.getJournalBalance(), d.getDifference()));
+            }
+            showReport("مطابقة المخزون", text.toString());
+        });
+        task.setOnFailed(e -> {
+            reconcileStockButton.setDisable(false);
+            logger.error("Stock reconciliation failed", task.getException());
+            showError("خطأ", "فشل في مطابقة المخزون");
+        });
+        Thread thread = new Thread(task, "Stock-Reconcile");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static String formatHealth(DatabaseHealth health) {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("حجم الملف: %,d KB (%,d صفحة × %d بايت)%n",
+                health.getFileBytes() / 1024, health.getPageCount(), health.getPageSize()));
+        text.append(String.format("الصفحات الفارغة: %,d (%.1f%%)%n",
+                health.getFreelistCount(), health.getFreeRatio() * 100));
+        text.append(String.format("حجم ملف WAL: %,d KB%n", health.getWalBytes() / 1024));
+        text.append("auto_vacuum: ").append(health.getAutoVacuum()).append('\n');
+        text.append('\n');
+        text.append("آخر PRAGMA optimize: ").append(formatTime(health.getLastOptimize())).append('\n');
+        text.append("آخر checkpoint: ").append(formatTime(health.getLastCheckpoint())).append('\n');
+        text.append("آخر استرداد للمساحة: ").append(formatTime(health.getLastVacuum()))
+                .append(String.format(" (%,d صفحة منذ التشغيل)%n", health.getReclaimedPages()));
+        text.append("آخر quick_check: ").append(formatTime(health.getLastQuickCheck()));
+        if (health.getQuickCheckResult() != null) {
+            text.append(" - ").append(health.getQuickCheckResult());
+        }
+        return text.toString();
+    }
+
+    private static String formatTime(LocalDateTime time) {
+        return time != null ? time.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")) : "لم يتم بعد";
+    }
+
+    @FXML
+    private void handleOpenSlowLog() {
+        try {
+            File logFile = queryMetrics.getSlowLogFile();
+            if (!logFile.exists()) {
+                showError("تنبيه", "لم يتم تسجيل أي استعلام بطيء بعد");
+                return;
+            }
+            if (Desktop.isDesktopSupported()) {
+                Desktop.getDesktop().open(logFile);
+            }
+        } catch (Exception e) {
+            logger.error("Failed to open slow query log", e);
+            showError("خطأ", "فشل في فتح ملف السجل");
+        }
+    }
+
+    @FXML
+    private void handleOpenLog() {
+        try {
+            File logFile = watchdog.getLogFile();
+            if (!logFile.exists()) {
+                showError("تنبيه", "لم يتم تسجيل أي تجمد بعد");
+                return;
+            }
+            if (Desktop.isDesktopSupported()) {
+                Desktop.getDesktop().open(logFile);
+            }
+        } catch (Exception e) {
+            logger.error("Failed to open stall log", e);
+            showError("خطأ", "فشل في فتح ملف السجل");
+        }
+    }
+
+    private void showReport(String title, String text) {
+        TextArea area = new TextArea(text);
+        area.setEditable(false);
+        area.setWrapText(false);
+        area.setPrefSize(900, 500);
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle(title);
+        alert.setHeaderText(null);
+        alert.getDialogPane().setContent(area);
+        alert.setResizable(true);
+        alert.showAndWait();
+    }
+
+    private void showError(String title, String message) {
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle(title);
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
+}
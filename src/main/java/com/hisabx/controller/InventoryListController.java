@@ -4,8 +4,12 @@ import com.hisabx.MainApp;
 import com.hisabx.model.Category;
 import com.hisabx.model.Product;
 import com.hisabx.service.CategoryService;
+import com.hisabx.service.DomainEvent;
+import com.hisabx.service.DomainEventBus;
 import com.hisabx.service.InventoryService;
 import com.hisabx.service.PrintService;
+import com.hisabx.util.ReusableView;
+import com.hisabx.util.SessionManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import javafx.beans.property.SimpleStringProperty;
@@ -29,10 +33,13 @@ import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
 
-public class InventoryListController {
+public class InventoryListController implements ReusableView {
     private static final Logger logger = LoggerFactory.getLogger(InventoryListController.class);
     
     @FXML private TextField searchField;
@@ -53,11 +60,16 @@ public class InventoryListController {
     @FXML private Label inventoryValueLabel;
     @FXML private Label lowStockLabel;
     @FXML private Label statusLabel;
+    @FXML private Button bulkPriceButton;
+    @FXML private Button stocktakeButton;
+    @FXML private Button transferButton;
     
     private final InventoryService inventoryService = new InventoryService();
     private final CategoryService categoryService = new CategoryService();
     private ObservableList<Product> productsList;
     private FilteredList<Product> filteredProducts;
+    // Ids of the filtered category and its subcategories; null shows every category
+    private Set<Long> categoryScope;
     private final DecimalFormat numberFormat;
     
     public InventoryListController() {
@@ -72,6 +84,14 @@ public class InventoryListController {
         setupFilters();
         setupSearch();
         loadProducts();
+        bulkPriceButton.setVisible(SessionManager.getInstance().canEditProducts());
+        bulkPriceButton.setManaged(bulkPriceButton.isVisible());
+        stocktakeButton.setVisible(SessionManager.getInstance().canEditProducts());
+        stocktakeButton.setManaged(stocktakeButton.isVisible());
+        transferButton.setVisible(SessionManager.getInstance().canEditProducts());
+        transferButton.setManaged(transferButton.isVisible());
+        DomainEventBus.getInstance().subscribeWhileShowing(productsTable, this::onProductsChanged,
+                List.of(DomainEvent.StockChanged.class, DomainEvent.ProductChanged.class, DomainEvent.BulkDataChanged.class));
     }
     
     private void setupTableColumns() {
@@ -154,20 +174,50 @@ public class InventoryListController {
         });
     }
     
+    @Override
+    public Runnable resetView() {
+        List<Product> products = inventoryService.getAllProducts();
+        List<String> categories = categoryNames();
+        Statistics statistics = readStatistics();
+        return () -> {
+            searchField.clear();
+            setupFilters(categories);
+            categoryScope = null;
+            showProducts(products);
+            showStatistics(statistics);
+        };
+    }
+
     private void setupFilters() {
+        setupFilters(categoryNames());
+    }
+
+    private void setupFilters(List<String> categories) {
         statusFilter.setItems(FXCollections.observableArrayList("الكل", "متوفر", "منخفض", "نفد", "غير نشط"));
         statusFilter.setValue("الكل");
         statusFilter.setOnAction(e -> applyFilters());
         
+        categoryFilter.setItems(FXCollections.observableArrayList(categories));
+        categoryFilter.setValue("الكل");
+        categoryFilter.setOnAction(e -> {
+            updateCategoryScope();
+            applyFilters();
+        });
+    }
+
+    private List<String> categoryNames() {
         List<String> categories = new ArrayList<>(categoryService.getActiveCategories().stream()
                 .map(Category::getName)
                 .distinct()
                 .sorted()
                 .toList());
         categories.add(0, "الكل");
-        categoryFilter.setItems(FXCollections.observableArrayList(categories));
-        categoryFilter.setValue("الكل");
-        categoryFilter.setOnAction(e -> applyFilters());
+        return categories;
+    }
+
+    private void updateCategoryScope() {
+        String category = categoryFilter.getValue();
+        categoryScope = category == null || category.equals("الكل") ? null : categoryService.getSubtreeIds(category);
     }
     
     private void setupSearch() {
@@ -175,17 +225,64 @@ public class InventoryListController {
     }
     
     private void loadProducts() {
-        List<Product> products = inventoryService.getAllProducts();
+        showProducts(inventoryService.getAllProducts());
+        updateStatistics();
+    }
+
+    private void showProducts(List<Product> products) {
         productsList = FXCollections.observableArrayList(products);
         filteredProducts = new FilteredList<>(productsList, p -> true);
         productsTable.setItems(filteredProducts);
-        updateStatistics();
         statusLabel.setText("تم تحميل " + products.size() + " منتج");
     }
     
+    /**
+     * Patch only the rows of products changed elsewhere (sales, vouchers, other tabs).
+     */
+    private void onProductsChanged(List<DomainEvent> events) {
+        if (productsList == null) {
+            return;
+        }
+        Set<Long> changedIds = new LinkedHashSet<>();
+        for (DomainEvent event : events) {
+            if (event instanceof DomainEvent.BulkDataChanged bulk && bulk.isProducts()) {
+                // Categories may have been renamed or moved as well
+                updateCategoryScope();
+                loadProducts();
+                return;
+            }
+            if (event instanceof DomainEvent.StockChanged stockChanged) {
+                changedIds.add(stockChanged.getProductId());
+            } else if (event instanceof DomainEvent.ProductChanged productChanged) {
+                changedIds.add(productChanged.getProductId());
+            }
+        }
+        for (Long productId : changedIds) {
+            int index = indexOfProduct(productId);
+            Optional<Product> product = inventoryService.getProductById(productId);
+            if (product.isPresent() && index >= 0) {
+                productsList.set(index, product.get());
+            } else if (product.isPresent()) {
+                productsList.add(product.get());
+            } else if (index >= 0) {
+                productsList.remove(index);
+            }
+        }
+        updateStatistics();
+    }
+
+    private int indexOfProduct(Long productId) {
+        for (int i = 0; i < productsList.size(); i++) {
+            if (productId != null && productId.equals(productsList.get(i).getId())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     private void applyFilters() {
         String searchText = searchField.getText() == null ? "" : searchField.getText().toLowerCase();
-        String category = categoryFilter.getValue();
+        Set<Long> categories = categoryScope;
         String status = statusFilter.getValue();
         
         filteredProducts.setPredicate(product -> {
@@ -194,8 +291,7 @@ public class InventoryListController {
                     (product.getProductCode() != null && product.getProductCode().toLowerCase().contains(searchText)) ||
                     (product.getBarcode() != null && product.getBarcode().toLowerCase().contains(searchText));
             
-            boolean matchesCategory = category == null || category.equals("الكل") ||
-                    (product.getCategory() != null && product.getCategory().equals(category));
+            boolean matchesCategory = categories == null || categories.contains(product.getCategoryId());
             
             boolean matchesStatus = status == null || status.equals("الكل") ||
                     matchesProductStatus(product, status);
@@ -218,12 +314,34 @@ public class InventoryListController {
     }
     
     private void updateStatistics() {
-        List<Product> allProducts = inventoryService.getAllProducts();
-        
-        totalProductsLabel.setText(String.valueOf(allProducts.size()));
-        totalStockLabel.setText(String.valueOf(inventoryService.getTotalStockCount()));
-        inventoryValueLabel.setText(String.format("%s د.ع", numberFormat.format(inventoryService.getTotalInventoryValue())));
-        lowStockLabel.setText(String.valueOf(inventoryService.getLowStockProducts().size()));
+        showStatistics(readStatistics());
+    }
+
+    private Statistics readStatistics() {
+        return new Statistics(inventoryService.getAllProducts().size(), inventoryService.getTotalStockCount(),
+                inventoryService.getTotalInventoryValue(), inventoryService.getLowStockProducts().size());
+    }
+
+    private void showStatistics(Statistics statistics) {
+        totalProductsLabel.setText(String.valueOf(statistics.products));
+        totalStockLabel.setText(String.valueOf(statistics.stock));
+        inventoryValueLabel.setText(String.format("%s د.ع", numberFormat.format(statistics.value)));
+        lowStockLabel.setText(String.valueOf(statistics.lowStock));
+    }
+
+    /** Figures shown above the table, read together so they can be read off the FX thread. */
+    private static final class Statistics {
+        private final int products;
+        private final double stock;
+        private final double value;
+        private final int lowStock;
+
+        private Statistics(int products, double stock, double value, int lowStock) {
+            this.products = products;
+            this.stock = stock;
+            this.value = value;
+            this.lowStock = lowStock;
+        }
     }
     
     @FXML
@@ -326,6 +444,84 @@ public class InventoryListController {
         }
     }
     
+    @FXML
+    private void handleBulkPrice() {
+        try {
+            FXMLLoader loader = new FXMLLoader();
+            loader.setLocation(MainApp.class.getResource("/views/BulkPrice.fxml"));
+            loader.setCharset(StandardCharsets.UTF_8);
+            Parent root = loader.load();
+            
+            Stage stage = new Stage();
+            stage.setTitle("تعديل الأسعار الجماعي");
+            stage.initModality(Modality.APPLICATION_MODAL);
+            Scene scene = new Scene(root);
+            com.hisabx.MainApp.applyCurrentFontSize(scene);
+            stage.setScene(scene);
+            stage.setMaximized(true);
+            
+            BulkPriceController controller = loader.getController();
+            controller.setDialogStage(stage);
+            String category = categoryFilter.getValue();
+            controller.setSearchScope(searchField.getText(),
+                    category == null || "الكل".equals(category) ? null : category);
+            
+            stage.showAndWait();
+        } catch (IOException e) {
+            showError("خطأ", "فشل في فتح نافذة تعديل الأسعار");
+        }
+    }
+    
+    @FXML
+    private void handleStocktake() {
+        try {
+            FXMLLoader loader = new FXMLLoader();
+            loader.setLocation(MainApp.class.getResource("/views/Stocktake.fxml"));
+            loader.setCharset(StandardCharsets.UTF_8);
+            Parent root = loader.load();
+            
+            Stage stage = new Stage();
+            stage.setTitle("الجرد");
+            stage.initModality(Modality.APPLICATION_MODAL);
+            Scene scene = new Scene(root);
+            com.hisabx.MainApp.applyCurrentFontSize(scene);
+            stage.setScene(scene);
+            stage.setMaximized(true);
+            
+            StocktakeController controller = loader.getController();
+            controller.setDialogStage(stage);
+            
+            stage.showAndWait();
+        } catch (IOException e) {
+            showError("خطأ", "فشل في فتح نافذة الجرد");
+        }
+    }
+    
+    @FXML
+    private void handleStockTransfer() {
+        try {
+            FXMLLoader loader = new FXMLLoader();
+            loader.setLocation(MainApp.class.getResource("/views/StockTransfer.fxml"));
+            loader.setCharset(StandardCharsets.UTF_8);
+            Parent root = loader.load();
+            
+            Stage stage = new Stage();
+            stage.setTitle("المخازن والتحويل");
+            stage.initModality(Modality.APPLICATION_MODAL);
+            Scene scene = new Scene(root);
+            com.hisabx.MainApp.applyCurrentFontSize(scene);
+            stage.setScene(scene);
+            stage.setMaximized(true);
+            
+            StockTransferController controller = loader.getController();
+            controller.setDialogStage(stage);
+            
+            stage.showAndWait();
+        } catch (IOException e) {
+            showError("خطأ", "فشل في فتح نافذة المخازن والتحويل");
+        }
+    }
+    
     @FXML
     private void handleRefresh() {
         loadProducts();
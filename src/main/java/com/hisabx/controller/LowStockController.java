@@ -2,6 +2,7 @@ package com.hisabx.controller;
 
 import com.hisabx.model.Product;
 import com.hisabx.service.InventoryService;
+import com.hisabx.service.ReorderEngine;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
@@ -23,6 +24,7 @@ public class LowStockController {
     @FXML private TableColumn<Product, String> categoryColumn;
     @FXML private TableColumn<Product, Double> currentStockColumn;
     @FXML private TableColumn<Product, Double> minimumStockColumn;
+    @FXML private TableColumn<Product, String> dailyDemandColumn;
     @FXML private TableColumn<Product, Double> neededColumn;
     @FXML private TableColumn<Product, String> costColumn;
     @FXML private TableColumn<Product, Void> actionsColumn;
@@ -51,22 +53,20 @@ public class LowStockController {
         nameColumn.setCellValueFactory(new PropertyValueFactory<>("name"));
         categoryColumn.setCellValueFactory(new PropertyValueFactory<>("category"));
         currentStockColumn.setCellValueFactory(new PropertyValueFactory<>("quantityInStock"));
-        minimumStockColumn.setCellValueFactory(new PropertyValueFactory<>("minimumStock"));
-        
-        neededColumn.setCellValueFactory(cellData -> {
-            Product p = cellData.getValue();
-            double min = p.getMinimumStock() != null ? p.getMinimumStock() : 0.0;
-            double curr = p.getQuantityInStock() != null ? p.getQuantityInStock() : 0.0;
-            double needed = Math.max(0, min - curr);
-            return new SimpleDoubleProperty(needed).asObject();
+        // Reorder level and suggested quantity come precomputed from ReorderEngine
+        minimumStockColumn.setCellValueFactory(cellData ->
+                new SimpleDoubleProperty(ReorderEngine.reorderLevelOf(cellData.getValue())).asObject());
+        dailyDemandColumn.setCellValueFactory(cellData -> {
+            Double rate = cellData.getValue().getDailyDemand();
+            return new SimpleStringProperty(rate != null ? numberFormat.format(rate) : "-");
         });
         
+        neededColumn.setCellValueFactory(cellData ->
+                new SimpleDoubleProperty(ReorderEngine.suggestedQuantityOf(cellData.getValue())).asObject());
+        
         costColumn.setCellValueFactory(cellData -> {
             Product p = cellData.getValue();
-            double min = p.getMinimumStock() != null ? p.getMinimumStock() : 0.0;
-            double curr = p.getQuantityInStock() != null ? p.getQuantityInStock() : 0.0;
-            double needed = Math.max(0, min - curr);
-            double cost = needed * (p.getCostPrice() != null ? p.getCostPrice() : 0);
+            double cost = ReorderEngine.suggestedQuantityOf(p) * (p.getCostPrice() != null ? p.getCostPrice() : 0);
             return new SimpleStringProperty(String.format("%s د.ع", numberFormat.format(cost)));
         });
         
@@ -134,9 +134,7 @@ public class LowStockController {
                 lowStock++;
             }
             
-            double min = p.getMinimumStock() != null ? p.getMinimumStock() : 0.0;
-            double needed = Math.max(0, min - qty);
-            totalRestockCost += needed * (p.getCostPrice() != null ? p.getCostPrice() : 0);
+            totalRestockCost += ReorderEngine.suggestedQuantityOf(p) * (p.getCostPrice() != null ? p.getCostPrice() : 0);
         }
         
         lowStockCountLabel.setText(String.valueOf(lowStock));
@@ -150,9 +148,7 @@ public class LowStockController {
     }
     
     private void handleAddStock(Product product) {
-        double min = product.getMinimumStock() != null ? product.getMinimumStock() : 0.0;
-        double curr = product.getQuantityInStock() != null ? product.getQuantityInStock() : 0.0;
-        double needed = Math.max(1, min - curr);
+        double needed = Math.max(1, ReorderEngine.suggestedQuantityOf(product));
         
         TextInputDialog dialog = new TextInputDialog(String.valueOf(needed));
         dialog.setTitle("إضافة مخزون");
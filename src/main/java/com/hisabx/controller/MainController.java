@@ -36,11 +36,16 @@ import com.hisabx.model.Product;
 import com.hisabx.model.Sale;
 import com.hisabx.model.UserRole;
 import com.hisabx.model.VoucherType;
+import com.hisabx.model.dto.AgingSummary;
 import javafx.scene.control.ButtonType;
-import com.hisabx.service.CustomerService;
+import com.hisabx.service.AlertService;
+import com.hisabx.service.CustomerDirectory;
+import com.hisabx.service.DomainEvent;
+import com.hisabx.service.DomainEventBus;
 import com.hisabx.service.InventoryService;
+import com.hisabx.service.ReceivablesAgingService;
+import com.hisabx.service.ReorderEngine;
 import com.hisabx.service.SalesService;
-import com.hisabx.service.VoucherService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -141,7 +146,7 @@ public class MainController {
 
     private static final String PREF_COMPANY_NAME = "company.name";
     private static final String PREF_INSTALLMENT_REMINDER_DAYS = "installment.reminder.days";
-    private static final int DEFAULT_REMINDER_DAYS = 3;
+    private static final int DEFAULT_REMINDER_DAYS = AlertService.DEFAULT_REMINDER_DAYS;
     private static final DataFormat TILE_DATA_FORMAT = new DataFormat("application/x-hisabx-tile-id");
 
     private boolean editMode = false;
@@ -151,10 +156,9 @@ public class MainController {
     private Set<String> sellerHiddenTileIds = new HashSet<>(); // hidden from sellers only
 
     private MainApp mainApp;
-    private final CustomerService customerService = new CustomerService();
     private final InventoryService inventoryService = new InventoryService();
     private final SalesService salesService = new SalesService();
-    private final VoucherService voucherService = new VoucherService();
+    private final AlertService alertService = AlertService.getInstance();
 
     private final UpdateService updateService = new UpdateService();
     private volatile UpdateCheckResult availableUpdate;
@@ -508,11 +512,11 @@ public class MainController {
         Node iconNode;
         if (def.iconFile != null) {
             javafx.scene.image.Image svgImage = com.hisabx.util.SvgImageLoader.loadSvgImage("/icons/" + def.iconFile,
-                    48, 48);
+                    com.hisabx.util.SvgImageLoader.DASHBOARD_TILE_SIZE, com.hisabx.util.SvgImageLoader.DASHBOARD_TILE_SIZE);
             if (svgImage != null) {
                 javafx.scene.image.ImageView imageView = new javafx.scene.image.ImageView(svgImage);
-                imageView.setFitWidth(48);
-                imageView.setFitHeight(48);
+                imageView.setFitWidth(com.hisabx.util.SvgImageLoader.DASHBOARD_TILE_SIZE);
+                imageView.setFitHeight(com.hisabx.util.SvgImageLoader.DASHBOARD_TILE_SIZE);
                 imageView.setPreserveRatio(true);
 
                 // Colorize to white using ColorAdjust
@@ -794,6 +798,7 @@ public class MainController {
         if (mainTabPane != null && dashboardTab != null) {
             TabManager.getInstance().initialize(mainTabPane, dashboardTab, mainApp);
             TabManager.getInstance().setDashboardRefreshCallback(this::refreshDashboard);
+            DomainEventBus.getInstance().subscribeWhileShowing(mainTabPane, this::onDataChanged, List.of());
         }
         refreshDashboard();
         // Update drive status after mainApp is set (delayed to allow background token reconnect)
@@ -804,19 +809,102 @@ public class MainController {
     }
 
     private void refreshDashboard() {
+        refreshCustomerStats();
+        refreshProductStats();
+        refreshSalesStats();
+        refreshLowStockAlert();
+        refreshInstallmentAlerts();
+    }
+
+    /**
+     * Update only the dashboard figures affected by a burst of data change events.
+     */
+    private void onDataChanged(List<DomainEvent> events) {
+        boolean customers = false;
+        boolean products = false;
+        boolean sales = false;
+        boolean alerts = false;
+        for (DomainEvent event : events) {
+            if (event instanceof DomainEvent.CustomerUpdated) {
+                customers = true;
+            } else if (event instanceof DomainEvent.StockChanged || event instanceof DomainEvent.ProductChanged) {
+                products = true;
+            } else if (event instanceof DomainEvent.SaleCreated || event instanceof DomainEvent.SaleUpdated
+                    || event instanceof DomainEvent.SaleDeleted || event instanceof DomainEvent.ReturnChanged) {
+                sales = true;
+            } else if (event instanceof DomainEvent.AlertsChanged) {
+                alerts = true;
+            } else if (event instanceof DomainEvent.BulkDataChanged bulk) {
+                customers |= bulk.isCustomers();
+                products |= bulk.isProducts();
+            }
+        }
+        if (customers) {
+            refreshCustomerStats();
+        }
+        if (products) {
+            refreshProductStats();
+        }
+        if (sales) {
+            refreshSalesStats();
+        }
+        if (alerts) {
+            refreshLowStockAlert();
+            refreshInstallmentAlerts();
+        }
+    }
+
+    private void refreshCustomerStats() {
         try {
             // Total customers
-            int customersCount = customerService.getAllCustomers().size();
+            int customersCount = CustomerDirectory.getInstance().size();
             if (totalCustomersLabel != null) {
                 totalCustomersLabel.setText(String.valueOf(customersCount));
             }
+        } catch (Exception e) {
+            logger.error("Failed to refresh customer stats", e);
+        }
+    }
 
+    private void refreshProductStats() {
+        try {
             // Total products
             int productsCount = inventoryService.getAllProducts().size();
             if (totalProductsLabel != null) {
                 totalProductsLabel.setText(String.valueOf(productsCount));
             }
 
+            // Inventory value
+            double inventoryValue = inventoryService.getTotalInventoryValue();
+            if (inventoryValueLabel != null) {
+                inventoryValueLabel.setText(currencyFormat.format(inventoryValue) + " د.ع");
+            }
+        } catch (Exception e) {
+            logger.error("Failed to refresh product stats", e);
+        }
+    }
+
+    private void refreshLowStockAlert() {
+        try {
+            int lowStockCount = alertService.getSummary().getLowStock();
+            if (lowStockCountLabel != null) {
+                if (lowStockCount == 0) {
+                    lowStockCountLabel.setText("لا توجد تنبيهات");
+                    lowStockCountLabel.setStyle(
+                            "-fx-font-size: 12px; -fx-text-fill: #35b585; -fx-background-color: #e6fff4; -fx-padding: 6 10; -fx-background-radius: 8;");
+                } else {
+                    lowStockCountLabel.setText(lowStockCount + " منتج منخفض");
+                    lowStockCountLabel.setStyle(
+                            "-fx-font-size: 12px; -fx-text-fill: #ef4444; -fx-background-color: #fee2e2; -fx-padding: 6 10; -fx-background-radius: 8;");
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Failed to refresh low stock alert", e);
+        }
+    }
+
+    private void refreshSalesStats() {
+        try {
             // Total sales count
             List<Sale> allSales = salesService.getAllSales();
             if (totalSalesLabel != null) {
@@ -838,20 +926,6 @@ public class MainController {
                 todaySalesAmountLabel.setText(currencyFormat.format(todayAmount) + " د.ع");
             }
 
-            // Low stock products
-            List<Product> lowStockProducts = inventoryService.getLowStockProducts();
-            if (lowStockCountLabel != null) {
-                if (lowStockProducts.isEmpty()) {
-                    lowStockCountLabel.setText("لا توجد تنبيهات");
-                    lowStockCountLabel.setStyle(
-                            "-fx-font-size: 12px; -fx-text-fill: #35b585; -fx-background-color: #e6fff4; -fx-padding: 6 10; -fx-background-radius: 8;");
-                } else {
-                    lowStockCountLabel.setText(lowStockProducts.size() + " منتج منخفض");
-                    lowStockCountLabel.setStyle(
-                            "-fx-font-size: 12px; -fx-text-fill: #ef4444; -fx-background-color: #fee2e2; -fx-padding: 6 10; -fx-background-radius: 8;");
-                }
-            }
-
             // Pending payments
             List<Sale> pendingPayments = salesService.getPendingPayments();
             double pendingAmount = pendingPayments.stream().mapToDouble(s -> {
@@ -872,18 +946,8 @@ public class MainController {
                             "-fx-font-size: 12px; -fx-text-fill: #ff8c42; -fx-background-color: #fff2e5; -fx-padding: 6 10; -fx-background-radius: 8;");
                 }
             }
-
-            // Inventory value
-            double inventoryValue = inventoryService.getTotalInventoryValue();
-            if (inventoryValueLabel != null) {
-                inventoryValueLabel.setText(currencyFormat.format(inventoryValue) + " د.ع");
-            }
-
-            // Installment alerts
-            refreshInstallmentAlerts();
-
         } catch (Exception e) {
-            logger.error("Failed to refresh dashboard", e);
+            logger.error("Failed to refresh sales stats", e);
         }
     }
 
@@ -901,6 +965,20 @@ public class MainController {
         if (installmentReminderDaysLabel != null) {
             installmentReminderDaysLabel.setText("تنبيه قبل: " + days + " أيام");
         }
+        try {
+            alertService.setInstallmentReminderDays(days);
+        } catch (RuntimeException e) {
+            logger.error("Failed to apply installment reminder days", e);
+        }
+    }
+
+    /**
+     * Installments with an alert, split into overdue (due today or earlier, key true) and upcoming.
+     */
+    private Map<Boolean, List<Installment>> installmentAlertsByOverdue() {
+        LocalDate today = LocalDate.now();
+        return alertService.getInstallmentAlerts().stream()
+                .collect(Collectors.partitioningBy(i -> !i.getDueDate().isAfter(today)));
     }
 
     @FXML
@@ -935,12 +1013,9 @@ public class MainController {
 
     private void refreshInstallmentAlerts() {
         try {
-            int reminderDays = getInstallmentReminderDays();
-            List<Installment> overdueInstallments = voucherService.getDueInstallments();
-            List<Installment> upcomingInstallments = voucherService.getUpcomingInstallments(reminderDays);
-
-            int overdueCount = overdueInstallments.size();
-            int upcomingCount = upcomingInstallments.size();
+            AlertService.Summary summary = alertService.getSummary();
+            int overdueCount = summary.getOverdueInstallments();
+            int upcomingCount = summary.getUpcomingInstallments();
             int totalAlerts = overdueCount + upcomingCount;
 
             if (installmentAlertLabel != null) {
@@ -978,8 +1053,9 @@ public class MainController {
     private void handleInstallmentAlertClick() {
         try {
             int reminderDays = getInstallmentReminderDays();
-            List<Installment> overdueInstallments = voucherService.getDueInstallments();
-            List<Installment> upcomingInstallments = voucherService.getUpcomingInstallments(reminderDays);
+            Map<Boolean, List<Installment>> alerts = installmentAlertsByOverdue();
+            List<Installment> overdueInstallments = alerts.get(true);
+            List<Installment> upcomingInstallments = alerts.get(false);
 
             if (overdueInstallments.isEmpty() && upcomingInstallments.isEmpty()) {
                 showInfo("تنبيهات الأقساط", "لا توجد أقساط مستحقة أو قادمة.");
@@ -1039,13 +1115,13 @@ public class MainController {
     private void showInstallmentStartupAlert() {
         Platform.runLater(() -> {
             try {
-                int reminderDays = getInstallmentReminderDays();
-                List<Installment> overdueInstallments = voucherService.getDueInstallments();
-                List<Installment> upcomingInstallments = voucherService.getUpcomingInstallments(reminderDays);
-
-                if (overdueInstallments.isEmpty() && upcomingInstallments.isEmpty()) {
+                if (!alertService.getSummary().hasInstallments()) {
                     return;
                 }
+                int reminderDays = getInstallmentReminderDays();
+                Map<Boolean, List<Installment>> alerts = installmentAlertsByOverdue();
+                List<Installment> overdueInstallments = alerts.get(true);
+                List<Installment> upcomingInstallments = alerts.get(false);
 
                 DateTimeFormatter fmt = DateTimeFormatter.ofPattern("yyyy-MM-dd");
                 StringBuilder msg = new StringBuilder();
@@ -1126,6 +1202,19 @@ public class MainController {
                 }
             }
 
+            // Totals over all debtors, not just the listed invoices, from one aggregate per currency
+            msg.append("\nإجمالي الذمم:\n");
+            for (String currency : List.of("دينار", "دولار")) {
+                AgingSummary aging = ReceivablesAgingService.getInstance().getAgingSummary(currency);
+                if (aging.getDebtorCount() == 0) {
+                    continue;
+                }
+                msg.append("• ").append(currency).append(": ").append(aging.getDebtorCount()).append(" مدين")
+                        .append(" - الإجمالي: ").append(currencyFormat.format(aging.getTotal()))
+                        .append(" - أكثر من 90 يوماً: ").append(currencyFormat.format(aging.getAge90Plus()))
+                        .append("\n");
+            }
+
             msg.append("\nهل تريد فتح حساب عميل معين؟");
 
             Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
@@ -1188,7 +1277,7 @@ public class MainController {
 
             for (Product product : lowStockProducts) {
                 double qty = product.getQuantityInStock() != null ? product.getQuantityInStock() : 0;
-                double minStock = product.getMinimumStock() != null ? product.getMinimumStock() : 0;
+                double minStock = ReorderEngine.reorderLevelOf(product);
                 String unit = product.getUnitOfMeasure() != null ? product.getUnitOfMeasure() : "";
 
                 msg.append("• ").append(product.getName());
@@ -1196,7 +1285,7 @@ public class MainController {
                     msg.append(" (").append(product.getProductCode()).append(")");
                 }
                 msg.append("\n   الكمية الحالية: ").append(currencyFormat.format(qty)).append(" ").append(unit)
-                        .append(" | الحد الأدنى: ").append(currencyFormat.format(minStock)).append(" ").append(unit)
+                        .append(" | حد إعادة الطلب: ").append(currencyFormat.format(minStock)).append(" ").append(unit)
                         .append("\n");
             }
 
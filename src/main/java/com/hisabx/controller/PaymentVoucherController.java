@@ -5,6 +5,7 @@ import com.hisabx.service.CustomerService;
 import com.hisabx.service.VoucherService;
 import com.hisabx.util.SessionManager;
 import com.hisabx.util.TabManager;
+import com.hisabx.util.Typeahead;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -19,7 +20,6 @@ import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
-import javafx.util.StringConverter;
 
 import java.io.File;
 import java.nio.charset.StandardCharsets;
@@ -67,7 +67,7 @@ public class PaymentVoucherController implements Initializable {
     private final DecimalFormat numberFormat = new DecimalFormat("#,###.##");
     private static final String DEFAULT_CASH_ACCOUNT = "صندوق 181";
     
-    private ObservableList<Customer> customers;
+    private Typeahead<Customer> customerTypeahead;
     private Customer selectedCustomer;
     private ObservableList<PreviousVoucherRow> previousVoucherSource;
     private FilteredList<PreviousVoucherRow> previousVoucherRows;
@@ -86,7 +86,6 @@ public class PaymentVoucherController implements Initializable {
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
         setupForm();
-        loadCustomers();
         setupPreviousVouchersTable();
         setupListeners();
         handleNew();
@@ -144,26 +143,12 @@ public class PaymentVoucherController implements Initializable {
         amountCurrencyCombo.setValue("دينار");
         firstInstallmentDatePicker.setValue(LocalDate.now().plusMonths(1));
         
-        customerCombo.setConverter(new StringConverter<Customer>() {
-            @Override
-            public String toString(Customer customer) {
-                if (customer == null) return "";
-                return customer.getCustomerCode() + " - " + customer.getName();
-            }
-            
-            @Override
-            public Customer fromString(String s) {
-                if (s == null || s.isEmpty()) return null;
-                return customers.stream()
-                    .filter(c -> (c.getCustomerCode() + " - " + c.getName()).equals(s) || c.getName().contains(s))
-                    .findFirst().orElse(null);
-            }
-        });
+        customerTypeahead = Typeahead.forCustomers(customerCombo,
+                customer -> customer.getCustomerCode() + " - " + customer.getName());
     }
     
     private void loadCustomers() {
-        customers = FXCollections.observableArrayList(customerService.getAllCustomers());
-        customerCombo.setItems(customers);
+        customerTypeahead.refresh();
     }
     
     private void setupListeners() {
@@ -342,7 +327,7 @@ public class PaymentVoucherController implements Initializable {
             voucher.setVoucherDate(voucherDatePicker.getValue().atStartOfDay());
             voucher.setCurrency(amountCurrencyCombo.getValue());
             voucher.setExchangeRate(1.0);
-            voucher.setCustomer(selectedCustomer);
+            voucher.setCustomer(Customer.reference(selectedCustomer.getId()));
             voucher.setCashAccount(DEFAULT_CASH_ACCOUNT);
             voucher.setAmount(amount);
             voucher.setDiscountPercentage(parseAmount(discountPercentField.getText()));
@@ -3,9 +3,11 @@ package com.hisabx.controller;
 import com.hisabx.model.*;
 import com.hisabx.service.CustomerService;
 import com.hisabx.service.InventoryService;
+import com.hisabx.service.StockLocationService;
 import com.hisabx.service.VoucherService;
 import com.hisabx.util.SessionManager;
 import com.hisabx.util.TabManager;
+import com.hisabx.util.Typeahead;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
@@ -35,6 +37,8 @@ public class PurchaseController implements Initializable {
 
     @FXML private TextField voucherNumberField;
     @FXML private DatePicker voucherDatePicker;
+    @FXML private Label locationLabel;
+    @FXML private ComboBox<StockLocation> locationCombo;
     @FXML private ComboBox<Customer> customerCombo;
     @FXML private TextField discountPercentField;
     @FXML private TextField discountAmountField;
@@ -59,11 +63,12 @@ public class PurchaseController implements Initializable {
     private final VoucherService voucherService = new VoucherService();
     private final CustomerService customerService = new CustomerService();
     private final InventoryService inventoryService = new InventoryService();
+    private final StockLocationService locationService = new StockLocationService();
     private final DecimalFormat numberFormat = new DecimalFormat("#,###.##");
     private static final String DEFAULT_CASH_ACCOUNT = "صندوق 181";
     private static final String DEFAULT_CURRENCY = "دينار";
 
-    private ObservableList<Customer> customers;
+    private Typeahead<Customer> customerTypeahead;
     private ObservableList<Product> products;
     private Customer selectedCustomer;
     private ObservableList<PurchaseItemRow> itemRows = FXCollections.observableArrayList();
@@ -82,7 +87,6 @@ public class PurchaseController implements Initializable {
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
         setupForm();
-        loadCustomers();
         loadProducts();
         setupItemsTable();
         setupListeners();
@@ -91,27 +95,18 @@ public class PurchaseController implements Initializable {
 
     private void setupForm() {
         voucherDatePicker.setValue(LocalDate.now());
-
-        customerCombo.setConverter(new StringConverter<Customer>() {
-            @Override
-            public String toString(Customer customer) {
-                if (customer == null) return "";
-                return customer.getCustomerCode() + " - " + customer.getName();
-            }
-
-            @Override
-            public Customer fromString(String s) {
-                if (s == null || s.isEmpty()) return null;
-                return customers.stream()
-                    .filter(c -> (c.getCustomerCode() + " - " + c.getName()).equals(s) || c.getName().contains(s))
-                    .findFirst().orElse(null);
-            }
-        });
+        // Goods are received at the default location unless there are others to choose from
+        locationCombo.setItems(FXCollections.observableArrayList(locationService.getLocations()));
+        locationCombo.setValue(locationService.getDefaultLocation());
+        locationLabel.setVisible(locationService.hasMultipleLocations());
+        locationCombo.setVisible(locationService.hasMultipleLocations());
+
+        customerTypeahead = Typeahead.forCustomers(customerCombo,
+                customer -> customer.getCustomerCode() + " - " + customer.getName());
     }
 
     private void loadCustomers() {
-        customers = FXCollections.observableArrayList(customerService.getAllCustomers());
-        customerCombo.setItems(customers);
+        customerTypeahead.refresh();
     }
 
     private void loadProducts() {
@@ -431,7 +426,8 @@ public class PurchaseController implements Initializable {
             voucher.setVoucherDate(voucherDatePicker.getValue().atStartOfDay());
             voucher.setCurrency(DEFAULT_CURRENCY);
             voucher.setExchangeRate(1.0);
-            voucher.setCustomer(selectedCustomer);
+            voucher.setCustomer(Customer.reference(selectedCustomer.getId()));
+            voucher.setLocationId(locationCombo.getValue() != null ? locationCombo.getValue().getId() : null);
             voucher.setCashAccount(DEFAULT_CASH_ACCOUNT);
             voucher.setAmount(itemsTotal);
             voucher.setDiscountPercentage(parseAmount(discountPercentField.getText()));
@@ -5,6 +5,7 @@ import com.hisabx.service.CustomerService;
 import com.hisabx.service.VoucherService;
 import com.hisabx.util.SessionManager;
 import com.hisabx.util.TabManager;
+import com.hisabx.util.Typeahead;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
@@ -16,7 +17,6 @@ import javafx.scene.control.*;
 import javafx.scene.layout.VBox;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
-import javafx.util.StringConverter;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.transformation.FilteredList;
 
@@ -62,7 +62,7 @@ public class ReceiptVoucherController implements Initializable {
     private final DecimalFormat numberFormat = new DecimalFormat("#,###.##");
     private static final String DEFAULT_CASH_ACCOUNT = "صندوق 181";
     
-    private ObservableList<Customer> customers;
+    private Typeahead<Customer> customerTypeahead;
     private Customer selectedCustomer;
 
     private ObservableList<PreviousVoucherRow> previousVoucherSource;
@@ -125,7 +125,6 @@ public class ReceiptVoucherController implements Initializable {
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
         setupForm();
-        loadCustomers();
         setupPreviousVouchersTable();
         setupListeners();
         handleNew();
@@ -154,27 +153,12 @@ public class ReceiptVoucherController implements Initializable {
         amountCurrencyCombo.setItems(FXCollections.observableArrayList("دينار", "دولار"));
         amountCurrencyCombo.setValue("دينار");
         
-        // Customer ComboBox converter
-        customerCombo.setConverter(new StringConverter<Customer>() {
-            @Override
-            public String toString(Customer customer) {
-                if (customer == null) return "";
-                return customer.getCustomerCode() + " - " + customer.getName();
-            }
-            
-            @Override
-            public Customer fromString(String s) {
-                if (s == null || s.isEmpty()) return null;
-                return customers.stream()
-                    .filter(c -> (c.getCustomerCode() + " - " + c.getName()).equals(s) || c.getName().contains(s))
-                    .findFirst().orElse(null);
-            }
-        });
+        customerTypeahead = Typeahead.forCustomers(customerCombo,
+                customer -> customer.getCustomerCode() + " - " + customer.getName());
     }
     
     private void loadCustomers() {
-        customers = FXCollections.observableArrayList(customerService.getAllCustomers());
-        customerCombo.setItems(customers);
+        customerTypeahead.refresh();
     }
     
     private void setupListeners() {
@@ -409,7 +393,7 @@ public class ReceiptVoucherController implements Initializable {
             voucher.setVoucherDate(LocalDateTime.of(voucherDay, LocalTime.now()));
             voucher.setCurrency(amountCurrencyCombo.getValue());
             voucher.setExchangeRate(1.0);
-            voucher.setCustomer(selectedCustomer);
+            voucher.setCustomer(Customer.reference(selectedCustomer.getId()));
             voucher.setCashAccount(DEFAULT_CASH_ACCOUNT);
             voucher.setAmount(amount);
             voucher.setDiscountPercentage(parseAmount(discountPercentField.getText()));
@@ -1,9 +1,9 @@
 package com.hisabx.controller;
 
 import com.hisabx.model.*;
-import com.hisabx.service.CustomerService;
 import com.hisabx.service.ReturnService;
 import com.hisabx.service.SalesService;
+import com.hisabx.util.Typeahead;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleStringProperty;
@@ -42,7 +42,6 @@ public class ReturnController {
     @FXML private TextArea notesArea;
     @FXML private Label totalReturnLabel;
 
-    private final CustomerService customerService = new CustomerService();
     private final SalesService salesService = new SalesService();
     private final ReturnService returnService = new ReturnService();
     
@@ -70,21 +69,7 @@ public class ReturnController {
     }
 
     private void setupCustomerComboBox() {
-        customerComboBox.setItems(FXCollections.observableArrayList(customerService.getAllCustomers()));
-        customerComboBox.setCellFactory(lv -> new ListCell<>() {
-            @Override
-            protected void updateItem(Customer item, boolean empty) {
-                super.updateItem(item, empty);
-                setText(empty || item == null ? null : item.getName());
-            }
-        });
-        customerComboBox.setButtonCell(new ListCell<>() {
-            @Override
-            protected void updateItem(Customer item, boolean empty) {
-                super.updateItem(item, empty);
-                setText(empty || item == null ? null : item.getName());
-            }
-        });
+        Typeahead.forCustomers(customerComboBox, Customer::getName);
     }
 
     private void setupSaleComboBox() {
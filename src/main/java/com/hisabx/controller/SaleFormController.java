@@ -7,7 +7,6 @@ import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
-import javafx.collections.transformation.FilteredList;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.control.*;
@@ -17,9 +16,10 @@ import javafx.scene.layout.VBox;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javafx.stage.Modality;
-import javafx.util.StringConverter;
-import javafx.application.Platform;
+import javafx.stage.Window;
+import com.hisabx.util.BarcodeScanner;
 import com.hisabx.util.SessionManager;
+import com.hisabx.util.Typeahead;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,8 +31,11 @@ import java.nio.file.StandardCopyOption;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
 
 public class SaleFormController {
     private static final Logger logger = LoggerFactory.getLogger(SaleFormController.class);
@@ -42,13 +45,15 @@ public class SaleFormController {
     @FXML private ComboBox<String> projectLocationComboBox;
     @FXML private TextField newProjectLocationField;
     @FXML private Button addProjectLocationBtn;
-    private FilteredList<Customer> filteredCustomers;
-    private String customerSearchQuery = "";
+    private Typeahead<Customer> customerTypeahead;
     @FXML private ComboBox<String> categoryFilterComboBox;
     @FXML private ComboBox<Product> productComboBox;
+    @FXML private VBox locationBox;
+    @FXML private ComboBox<StockLocation> locationComboBox;
     @FXML private TextField quantityField;
     @FXML private Label stockLabel;
     @FXML private Label priceLabel;
+    @FXML private Label scanStatusLabel;
     @FXML private TableView<SaleItemRow> itemsTable;
     @FXML private TableColumn<SaleItemRow, String> productNameColumn;
     @FXML private TableColumn<SaleItemRow, Double> quantityColumn;
@@ -79,9 +84,9 @@ public class SaleFormController {
     private final ReceiptService receiptService;
     private final CustomerRepository customerRepository;
     private final ProductRepository productRepository;
+    private final StockLocationService locationService = new StockLocationService();
     private final ObservableList<SaleItemRow> saleItems = FXCollections.observableArrayList();
-    private FilteredList<Product> filteredProducts;
-    private String productSearchQuery = "";
+    private Typeahead<Product> productTypeahead;
     private Product selectedProduct = null;
     private final DecimalFormat numberFormatter;
     private com.hisabx.MainApp mainApp;
@@ -108,14 +113,21 @@ public class SaleFormController {
         setupCurrencyComboBox();
         setupCustomerComboBox();
         setupProductComboBox();
+        setupLocationComboBox();
         setupItemsTable();
+        setupBarcodeScanner();
         setupDefaults();
+    }
 
-        Platform.runLater(() -> {
-            if (root != null && root.getScene() != null && root.getScene().getWindow() instanceof Stage s) {
-                dialogStage = s;
-            }
-        });
+    /**
+     * Window to own dialogs opened from the form. Looked up when a dialog opens: a form built
+     * ahead of time by ViewFactory has no window yet when it is initialized.
+     */
+    private Window ownerWindow() {
+        if (dialogStage != null) {
+            return dialogStage;
+        }
+        return root != null && root.getScene() != null ? root.getScene().getWindow() : null;
     }
 
     private void setupCurrencyComboBox() {
@@ -236,120 +248,33 @@ public class SaleFormController {
         });
     }
 
-    private void setupCategoryFilter(List<Product> products) {
+    private void setupCategoryFilter() {
         if (categoryFilterComboBox == null) {
             return;
         }
 
-        List<String> categories = products.stream()
-                .map(Product::getCategory)
-                .filter(c -> c != null && !c.trim().isEmpty())
-                .distinct()
-                .sorted()
-                .toList();
-
         ObservableList<String> items = FXCollections.observableArrayList();
         items.add("كل الفئات");
-        items.addAll(categories);
+        items.addAll(new InventoryService().getProductCategories());
         categoryFilterComboBox.setItems(items);
         categoryFilterComboBox.setValue("كل الفئات");
 
         categoryFilterComboBox.valueProperty().addListener((obs, oldVal, newVal) -> {
-            applyProductFilters();
+            productTypeahead.refresh();
             if (!productComboBox.isShowing()) {
                 productComboBox.show();
             }
         });
     }
 
-    private void applyProductFilters() {
+    private String selectedCategoryFilter() {
         String selectedCategory = categoryFilterComboBox != null ? categoryFilterComboBox.getValue() : null;
-        boolean allCategories = selectedCategory == null || selectedCategory.equals("كل الفئات");
-        String query = productSearchQuery == null ? "" : productSearchQuery.trim();
-
-        filteredProducts.setPredicate(p -> {
-            if (!allCategories) {
-                String cat = p.getCategory();
-                if (cat == null || !cat.equals(selectedCategory)) {
-                    return false;
-                }
-            }
-
-            if (query.isEmpty()) {
-                return true;
-            }
-
-            String name = p.getName() != null ? p.getName().toLowerCase() : "";
-            String code = p.getProductCode() != null ? p.getProductCode().toLowerCase() : "";
-            String barcode = p.getBarcode() != null ? p.getBarcode().toLowerCase() : "";
-            return name.contains(query) || code.contains(query) || barcode.contains(query);
-        });
+        return selectedCategory == null || selectedCategory.equals("كل الفئات") ? null : selectedCategory;
     }
 
     private void setupCustomerComboBox() {
-        List<Customer> customers = customerRepository.findAll();
-        filteredCustomers = new FilteredList<>(FXCollections.observableArrayList(customers), c -> true);
-        customerComboBox.setItems(filteredCustomers);
-        customerComboBox.setEditable(true);
-        
-        customerComboBox.setConverter(new StringConverter<>() {
-            @Override
-            public String toString(Customer customer) {
-                return customer != null ? customer.getName() + " (" + customer.getCustomerCode() + ")" : "";
-            }
-
-            @Override
-            public Customer fromString(String s) {
-                if (s == null || s.isEmpty()) return null;
-                return filteredCustomers.getSource().stream()
-                        .filter(c -> (c.getName() + " (" + c.getCustomerCode() + ")").equals(s))
-                        .findFirst()
-                        .orElse(null);
-            }
-        });
-
-        // Enable search in customer ComboBox
-        if (customerComboBox.getEditor() != null) {
-            customerComboBox.getEditor().textProperty().addListener((obs, oldText, newText) -> {
-                if (customerComboBox.getValue() != null) {
-                    String rendered = customerComboBox.getConverter().toString(customerComboBox.getValue());
-                    if (rendered.equals(newText)) {
-                        return;
-                    }
-                }
-
-                // Handle case where selection updates text but valueProperty hasn't fired yet
-                if (newText != null) {
-                    boolean isSelection = filteredCustomers.getSource().stream()
-                            .anyMatch(c -> {
-                                String s = customerComboBox.getConverter().toString(c);
-                                return s != null && s.equals(newText);
-                            });
-                    if (isSelection) {
-                        return;
-                    }
-                }
-
-                customerSearchQuery = newText == null ? "" : newText.trim().toLowerCase();
-                filteredCustomers.setPredicate(c -> {
-                    if (customerSearchQuery.isEmpty()) return true;
-                    
-                    String fullString = (c.getName() + " (" + c.getCustomerCode() + ")").toLowerCase();
-                    String name = c.getName() != null ? c.getName().toLowerCase() : "";
-                    String code = c.getCustomerCode() != null ? c.getCustomerCode().toLowerCase() : "";
-                    String phone = c.getPhoneNumber() != null ? c.getPhoneNumber().toLowerCase() : "";
-                    
-                    return fullString.contains(customerSearchQuery) || 
-                           name.contains(customerSearchQuery) || 
-                           code.contains(customerSearchQuery) || 
-                           phone.contains(customerSearchQuery);
-                });
-
-                if (!customerComboBox.isShowing()) {
-                    customerComboBox.show();
-                }
-            });
-        }
+        customerTypeahead = Typeahead.forCustomers(customerComboBox,
+                customer -> customer.getName() + " (" + customer.getCustomerCode() + ")");
 
         customerComboBox.valueProperty().addListener((obs, oldCustomer, newCustomer) -> {
             updateProjectLocations(newCustomer);
@@ -398,7 +323,7 @@ public class SaleFormController {
         fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("PDF Files", "*.pdf"));
         fileChooser.setInitialFileName(sourceFile.getName());
 
-        File targetFile = dialogStage != null ? fileChooser.showSaveDialog(dialogStage) : fileChooser.showSaveDialog(null);
+        File targetFile = fileChooser.showSaveDialog(ownerWindow());
         if (targetFile == null) {
             return sourceFile;
         }
@@ -414,68 +339,61 @@ public class SaleFormController {
     }
 
     private void setupProductComboBox() {
-        // Show all active products including out of stock ones
-        List<Product> products = productRepository.findAll().stream()
-                .filter(Product::getIsActive)
-                .toList();
-
-        filteredProducts = new FilteredList<>(FXCollections.observableArrayList(products), p -> true);
-        productComboBox.setItems(filteredProducts);
-        productComboBox.setEditable(true);
-
-        setupCategoryFilter(products);
-
-        productComboBox.setConverter(new StringConverter<>() {
-            @Override
-            public String toString(Product product) {
-                return product != null ? product.getName() : "";
-            }
-
-            @Override
-            public Product fromString(String s) {
-                return null;
-            }
-        });
-
-        if (productComboBox.getEditor() != null) {
-            productComboBox.getEditor().textProperty().addListener((obs, oldText, newText) -> {
-                if (productComboBox.getValue() != null) {
-                    String rendered = productComboBox.getConverter().toString(productComboBox.getValue());
-                    if (rendered.equals(newText)) {
-                        return;
-                    }
-                }
-
-                productSearchQuery = newText == null ? "" : newText.trim().toLowerCase();
-                applyProductFilters();
-
-                if (!productComboBox.isShowing()) {
-                    productComboBox.show();
-                }
-            });
-        }
+        // Active products including out of stock ones; Enter on a barcode or code selects directly
+        productTypeahead = Typeahead.forProducts(productComboBox, Product::getName, this::selectedCategoryFilter);
+        setupCategoryFilter();
 
         productComboBox.setOnAction(e -> {
             Product selected = productComboBox.getValue();
             if (selected != null) {
                 selectedProduct = selected;
-                String unit = selected.getUnitOfMeasure();
-                if (unit == null || unit.trim().isEmpty()) {
-                    unit = "وحدة";
-                }
-                double stock = selected.getQuantityInStock();
-                if (stock <= 0) {
-                    stockLabel.setText("المخزون المتاح: 0 " + unit + " (نفذ المخزون)");
-                    stockLabel.setStyle("-fx-text-fill: #e74c3c; -fx-font-weight: bold;");
-                } else {
-                    stockLabel.setText("المخزون المتاح: " + stock + " " + unit);
-                    stockLabel.setStyle("-fx-text-fill: #7f8c8d;");
-                }
+                updateStockLabel();
                 updateSelectedProductPriceLabel();
             }
         });
     }
 
+    /**
+     * The location to sell from is only asked for once there is more than one; otherwise
+     * sales use the default location.
+     */
+    private void setupLocationComboBox() {
+        if (locationComboBox == null) {
+            return;
+        }
+        locationComboBox.setItems(FXCollections.observableArrayList(locationService.getLocations()));
+        locationComboBox.setValue(locationService.getDefaultLocation());
+        boolean multiple = locationService.hasMultipleLocations();
+        locationBox.setVisible(multiple);
+        locationBox.setManaged(multiple);
+        locationComboBox.valueProperty().addListener((obs, oldVal, newVal) -> updateStockLabel());
+    }
+
+    private Long selectedLocationId() {
+        StockLocation location = locationComboBox != null ? locationComboBox.getValue() : null;
+        return location != null ? location.getId() : null;
+    }
+
+    private void updateStockLabel() {
+        if (selectedProduct == null) {
+            return;
+        }
+        String unit = selectedProduct.getUnitOfMeasure();
+        if (unit == null || unit.trim().isEmpty()) {
+            unit = "وحدة";
+        }
+        double stock = locationService.hasMultipleLocations()
+                ? locationService.getStock(selectedProduct.getId(), selectedLocationId())
+                : selectedProduct.getQuantityInStock();
+        if (stock <= 0) {
+            stockLabel.setText("المخزون المتاح: " + stock + " " + unit + " (نفذ المخزون)");
+            stockLabel.setStyle("-fx-text-fill: #e74c3c; -fx-font-weight: bold;");
+        } else {
+            stockLabel.setText("المخزون المتاح: " + stock + " " + unit);
+            stockLabel.setStyle("-fx-text-fill: #7f8c8d;");
+        }
+    }
+
     private void updateSelectedProductPriceLabel() {
         if (priceLabel == null) {
             return;
@@ -497,6 +415,83 @@ public class SaleFormController {
         }
     }
 
+    /**
+     * Scanner input goes to the item lines directly instead of through the product picker;
+     * the barcode index is loaded in the background before the first scan.
+     */
+    private void setupBarcodeScanner() {
+        if (root == null) {
+            return;
+        }
+        BarcodeScanner.attach(root, this::applyScans);
+        Thread warmUp = new Thread(() -> {
+            try {
+                ProductBarcodeIndex.getInstance().warmUp();
+            } catch (RuntimeException e) {
+                logger.warn("Failed to preload barcode index", e);
+            }
+        }, "Barcode-Index");
+        warmUp.setDaemon(true);
+        warmUp.start();
+    }
+
+    /**
+     * Adds the codes scanned since the last frame: a repeated code adds to the quantity of its
+     * line, and the table and totals are updated once for the whole batch.
+     */
+    private void applyScans(List<String> codes) {
+        ProductBarcodeIndex index = ProductBarcodeIndex.getInstance();
+        Map<Long, SaleItemRow> rowsByProduct = new HashMap<>();
+        for (SaleItemRow row : saleItems) {
+            rowsByProduct.put(row.getProductId(), row);
+        }
+        String currency = currencyComboBox != null ? currencyComboBox.getValue() : "دينار";
+        double exchangeRate = getExchangeRateOrDefault();
+        List<SaleItemRow> added = new ArrayList<>();
+        SaleItemRow last = null;
+        String unknownCode = null;
+        int unknownCount = 0;
+        for (String code : codes) {
+            Optional<ProductBarcodeIndex.Entry> entry = index.find(code);
+            if (entry.isEmpty()) {
+                unknownCode = code;
+                unknownCount++;
+                continue;
+            }
+            ProductBarcodeIndex.Entry product = entry.get();
+            SaleItemRow row = rowsByProduct.get(product.getId());
+            if (row == null) {
+                row = new SaleItemRow(product.getId(), product.getName(), 1, product.getUnitPrice(), 0);
+                row.setCurrencyAndRate(currency, exchangeRate);
+                rowsByProduct.put(product.getId(), row);
+                added.add(row);
+            } else {
+                row.setQuantity(row.getQuantity() + 1);
+            }
+            row.recalculate();
+            last = row;
+        }
+
+        if (!added.isEmpty()) {
+            saleItems.addAll(added);
+        }
+        if (last != null) {
+            itemsTable.refresh();
+            itemsTable.scrollTo(last);
+            updateTotals();
+        }
+        if (scanStatusLabel != null) {
+            if (unknownCount > 0) {
+                scanStatusLabel.setText("باركود غير معروف: " + unknownCode
+                        + (unknownCount > 1 ? " (+" + (unknownCount - 1) + ")" : ""));
+                scanStatusLabel.setStyle("-fx-text-fill: #e74c3c; -fx-font-weight: bold;");
+            } else {
+                scanStatusLabel.setText("آخر مسح: " + last.getProductName() + " × " + last.getQuantity());
+                scanStatusLabel.setStyle("-fx-text-fill: #7f8c8d;");
+            }
+        }
+    }
+
     private void setupItemsTable() {
         productNameColumn.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getProductName()));
         quantityColumn.setCellValueFactory(data -> new SimpleDoubleProperty(data.getValue().getQuantity()).asObject());
@@ -842,8 +837,9 @@ public class SaleFormController {
             Stage stage = new Stage();
             stage.setTitle("تعديل منتج");
             stage.initModality(Modality.WINDOW_MODAL);
-            if (dialogStage != null) {
-                stage.initOwner(dialogStage);
+            Window owner = ownerWindow();
+            if (owner != null) {
+                stage.initOwner(owner);
             }
             Scene scene = new Scene(root);
             com.hisabx.MainApp.applyCurrentFontSize(scene);
@@ -865,16 +861,7 @@ public class SaleFormController {
                  if (updated != null) {
                      selectedProduct = updated;
                      // Update labels
-                     String unit = updated.getUnitOfMeasure();
-                     if (unit == null || unit.trim().isEmpty()) unit = "وحدة";
-                     double stock = updated.getQuantityInStock();
-                    if (stock <= 0) {
-                        stockLabel.setText("المخزون المتاح: " + stock + " " + unit + " (نفذ المخزون)");
-                        stockLabel.setStyle("-fx-text-fill: #e74c3c; -fx-font-weight: bold;");
-                    } else {
-                        stockLabel.setText("المخزون المتاح: " + stock + " " + unit);
-                        stockLabel.setStyle("-fx-text-fill: #7f8c8d;");
-                    }
+                     updateStockLabel();
                      priceLabel.setText("السعر: " + numberFormatter.format(updated.getUnitPrice()) + " دينار");
                  }
             }
@@ -894,12 +881,19 @@ public class SaleFormController {
             return;
         }
 
-        Customer customer = customerComboBox.getValue();
-        if (customer == null) {
+        Customer picked = customerComboBox.getValue();
+        if (picked == null) {
             showError("خطأ", "الرجاء اختيار العميل أولاً");
             return;
         }
 
+        // The picker holds a directory summary; update the full entity
+        Customer customer = customerRepository.findById(picked.getId()).orElse(null);
+        if (customer == null) {
+            showError("خطأ", "العميل غير موجود");
+            return;
+        }
+
         // Add new location to customer's project locations
         String existingLocations = customer.getProjectLocation();
         String updatedLocations;
@@ -913,6 +907,7 @@ public class SaleFormController {
         // Save customer with new location
         try {
             customerRepository.save(customer);
+            DomainEventBus.getInstance().publish(new DomainEvent.CustomerUpdated(customer.getId(), false));
             updateProjectLocations(customer);
             projectLocationComboBox.setValue(newLocation);
             newProjectLocationField.clear();
@@ -939,7 +934,7 @@ public class SaleFormController {
 
     public void setSelectedCustomer(Customer customer) {
         if (customer != null) {
-            customerComboBox.setValue(customer);
+            customerTypeahead.select(customer);
             updateProjectLocations(customer);
         }
     }
@@ -955,8 +950,9 @@ public class SaleFormController {
             Stage stage = new Stage();
             stage.setTitle("إضافة عميل جديد");
             stage.initModality(Modality.WINDOW_MODAL);
-            if (dialogStage != null) {
-                stage.initOwner(dialogStage);
+            Window owner = ownerWindow();
+            if (owner != null) {
+                stage.initOwner(owner);
             }
             Scene scene = new Scene(root);
             com.hisabx.MainApp.applyCurrentFontSize(scene);
@@ -969,7 +965,7 @@ public class SaleFormController {
             stage.showAndWait();
 
             if (controller.isSaved()) {
-                refreshCustomersAndSelectLast();
+                selectNewCustomer(controller.getSavedCustomer());
             }
         } catch (Exception e) {
             logger.error("Failed to open customer form", e);
@@ -977,17 +973,11 @@ public class SaleFormController {
         }
     }
 
-    private void refreshCustomersAndSelectLast() {
-        List<Customer> customers = customerRepository.findAll();
-        customerComboBox.setItems(FXCollections.observableArrayList(customers));
-
-        Customer last = customers.stream()
-                .max((a, b) -> Long.compare(a.getId() != null ? a.getId() : 0L, b.getId() != null ? b.getId() : 0L))
-                .orElse(null);
-
-        if (last != null) {
-            customerComboBox.setValue(last);
-            updateProjectLocations(last);
+    private void selectNewCustomer(Customer customer) {
+        customerTypeahead.refresh();
+        if (customer != null) {
+            customerTypeahead.select(customer);
+            updateProjectLocations(customer);
         }
     }
 
@@ -1041,8 +1031,7 @@ public class SaleFormController {
 
     private void clearProductSelection() {
         selectedProduct = null;
-        productComboBox.setValue(null);
-        productComboBox.getEditor().clear();
+        productTypeahead.clear();
         quantityField.setText("1");
         stockLabel.setText("المخزون المتاح: -");
         priceLabel.setText("السعر: -");
@@ -1182,6 +1171,7 @@ public class SaleFormController {
             SalesService.SaleRequest request = new SalesService.SaleRequest();
             request.setCustomerId(customerComboBox.getValue().getId());
             request.setProjectLocation(projectLocationComboBox.getValue().trim());
+            request.setLocationId(selectedLocationId());
             request.setPaymentMethod(paymentMethod);
             request.setCurrency(currency);
             request.setNotes(notesArea.getText());
@@ -1246,7 +1236,7 @@ public class SaleFormController {
     }
 
     private void resetSaleForm() {
-        customerComboBox.setValue(null);
+        customerTypeahead.clear();
         projectLocationComboBox.getSelectionModel().clearSelection();
         newProjectLocationField.clear();
         categoryFilterComboBox.getSelectionModel().clearSelection();
@@ -1254,6 +1244,9 @@ public class SaleFormController {
         quantityField.clear();
         stockLabel.setText("");
         priceLabel.setText("");
+        if (scanStatusLabel != null) {
+            scanStatusLabel.setText("");
+        }
         saleItems.clear();
         itemsTable.refresh();
         additionalDiscountField.setText("0");
@@ -1,8 +1,11 @@
 package com.hisabx.controller;
 
 import com.hisabx.model.Sale;
+import com.hisabx.service.DomainEvent;
+import com.hisabx.service.DomainEventBus;
 import com.hisabx.service.ReceiptService;
 import com.hisabx.service.SalesService;
+import com.hisabx.util.ReusableView;
 import com.hisabx.util.TabManager;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleStringProperty;
@@ -18,9 +21,12 @@ import java.awt.Desktop;
 import java.io.File;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
-public class SaleListController {
+public class SaleListController implements ReusableView {
     private static final Logger logger = LoggerFactory.getLogger(SaleListController.class);
 
     @FXML private TextField searchField;
@@ -70,6 +76,8 @@ public class SaleListController {
         setupTable();
         setupFilters();
         loadSales();
+        DomainEventBus.getInstance().subscribeWhileShowing(salesTable, this::onSalesChanged,
+                List.of(DomainEvent.SaleCreated.class, DomainEvent.SaleUpdated.class, DomainEvent.SaleDeleted.class));
     }
 
     private void setupTable() {
@@ -131,6 +139,16 @@ public class SaleListController {
         });
     }
 
+    @Override
+    public Runnable resetView() {
+        List<Sale> sales = salesService.getAllSales();
+        return () -> {
+            searchField.clear();
+            setupFilters();
+            showSales(sales);
+        };
+    }
+
     private void setupFilters() {
         statusComboBox.setValue("الكل");
         fromDatePicker.setValue(LocalDate.now().minusMonths(1));
@@ -138,12 +156,53 @@ public class SaleListController {
     }
 
     private void loadSales() {
-        List<Sale> sales = salesService.getAllSales();
+        showSales(salesService.getAllSales());
+    }
+
+    private void showSales(List<Sale> sales) {
         allSales = FXCollections.observableArrayList(sales);
         applyFilters();
         updateSummary();
     }
 
+    /**
+     * Patch only the sales changed elsewhere instead of reloading the whole list.
+     */
+    private void onSalesChanged(List<DomainEvent> events) {
+        if (allSales == null) {
+            return;
+        }
+        Set<Long> changedIds = new LinkedHashSet<>();
+        for (DomainEvent event : events) {
+            if (event instanceof DomainEvent.SaleCreated created) {
+                changedIds.add(created.getSaleId());
+            } else if (event instanceof DomainEvent.SaleUpdated updated) {
+                changedIds.add(updated.getSaleId());
+            } else if (event instanceof DomainEvent.SaleDeleted deleted) {
+                changedIds.add(deleted.getSaleId());
+            }
+        }
+        for (Long saleId : changedIds) {
+            int index = -1;
+            for (int i = 0; i < allSales.size(); i++) {
+                if (saleId != null && saleId.equals(allSales.get(i).getId())) {
+                    index = i;
+                    break;
+                }
+            }
+            Optional<Sale> sale = salesService.getSaleById(saleId);
+            if (sale.isPresent() && index >= 0) {
+                allSales.set(index, sale.get());
+            } else if (sale.isPresent()) {
+                // List is ordered newest first
+                allSales.add(0, sale.get());
+            } else if (index >= 0) {
+                allSales.remove(index);
+            }
+        }
+        applyFilters();
+    }
+
     @FXML
     private void handleSearch() {
         applyFilters();
@@ -2,7 +2,14 @@ package com.hisabx.controller;
 
 import com.hisabx.model.Sale;
 import com.hisabx.model.SaleItem;
+import com.hisabx.model.dto.GrossProfitLine;
+import com.hisabx.service.GrossProfitService;
 import com.hisabx.service.SalesService;
+import com.hisabx.service.export.ExportService;
+import com.hisabx.service.export.ExportSources;
+import com.hisabx.service.export.ExportTask;
+import com.hisabx.util.ExportProgressDialog;
+import com.hisabx.util.SessionManager;
 import com.itextpdf.text.BaseColor;
 import com.itextpdf.text.Document;
 import com.itextpdf.text.Element;
@@ -28,10 +35,10 @@ import org.apache.poi.ss.usermodel.FillPatternType;
 import org.apache.poi.ss.usermodel.FontUnderline;
 import org.apache.poi.ss.usermodel.IndexedColors;
 import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFCellStyle;
 import org.apache.poi.xssf.usermodel.XSSFFont;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 import java.awt.Desktop;
 import java.io.File;
@@ -50,6 +57,8 @@ public class SalesReportController {
     @FXML private Label invoiceCountLabel;
     @FXML private Label avgSaleLabel;
     @FXML private Label totalDiscountLabel;
+    @FXML private VBox grossProfitBox;
+    @FXML private Label grossProfitLabel;
     @FXML private VBox paymentBreakdownBox;
     @FXML private TableView<ProductStat> topProductsTable;
     @FXML private TableColumn<ProductStat, String> productNameColumn;
@@ -60,14 +69,19 @@ public class SalesReportController {
     @FXML private TableColumn<CustomerStat, Double> customerTotalColumn;
 
     private final SalesService salesService;
+    private final GrossProfitService grossProfitService;
     private List<Sale> reportData;
 
     public SalesReportController() {
         this.salesService = new SalesService();
+        this.grossProfitService = new GrossProfitService();
     }
 
     @FXML
     private void initialize() {
+        boolean canSeeProfit = SessionManager.getInstance().canSeeProfit();
+        grossProfitBox.setVisible(canSeeProfit);
+        grossProfitBox.setManaged(canSeeProfit);
         setupTables();
         setupDefaults();
         handleGenerateReport();
@@ -170,13 +184,10 @@ public class SalesReportController {
         LocalDateTime startDateTime = fromDate.atStartOfDay();
         LocalDateTime endDateTime = toDate.atTime(23, 59, 59);
 
-        reportData = salesService.getAllSales().stream()
-                .filter(sale -> sale.getSaleDate() != null &&
-                        !sale.getSaleDate().isBefore(startDateTime) &&
-                        !sale.getSaleDate().isAfter(endDateTime))
-                .toList();
+        reportData = salesService.getSalesBetween(startDateTime, endDateTime);
 
         updateSummary();
+        updateGrossProfit(startDateTime, endDateTime);
         updatePaymentBreakdown();
         updateTopProducts();
         updateTopCustomers();
@@ -194,6 +205,16 @@ public class SalesReportController {
         totalDiscountLabel.setText(df.format(totalDiscount));
     }
 
+    private void updateGrossProfit(LocalDateTime from, LocalDateTime to) {
+        if (!grossProfitBox.isVisible()) {
+            return;
+        }
+        double profit = grossProfitService.getGrossProfit(GrossProfitService.Grouping.MONTH, from, to).stream()
+                .mapToDouble(GrossProfitLine::getProfit)
+                .sum();
+        grossProfitLabel.setText(formatNumber(profit));
+    }
+
     private void updatePaymentBreakdown() {
         paymentBreakdownBox.getChildren().clear();
 
@@ -317,22 +338,31 @@ public class SalesReportController {
 
     @FXML
     private void handleExportExcel() {
-        try {
-            if (reportData == null) {
-                showError("خطأ", "الرجاء إنشاء التقرير أولاً");
-                return;
-            }
-
-            File selectedFile = showSaveDialog("حفظ تقرير المبيعات (Excel)", "sales_report.xlsx", "Excel", "*.xlsx");
-            if (selectedFile == null) {
-                return;
-            }
+        if (reportData == null) {
+            showError("خطأ", "الرجاء إنشاء التقرير أولاً");
+            return;
+        }
 
-            generateSalesReportExcel(selectedFile);
-            showInfo("تم", "تم تصدير تقرير المبيعات (Excel):\n" + selectedFile.getAbsolutePath());
-        } catch (Exception e) {
-            showError("خطأ", "فشل في تصدير Excel: " + e.getMessage());
+        File selectedFile = showSaveDialog("حفظ تقرير المبيعات (Excel)", "sales_report.xlsx", "Excel", "*.xlsx");
+        if (selectedFile == null) {
+            return;
         }
+
+        // Everything shown on screen is read here; the workbook is written in the background
+        LocalDate from = fromDatePicker.getValue();
+        LocalDate to = toDatePicker.getValue();
+        String[][] summary = {
+                {"إجمالي المبيعات", totalSalesLabel.getText() + " دينار"},
+                {"عدد الفواتير", invoiceCountLabel.getText()},
+                {"متوسط الفاتورة", avgSaleLabel.getText() + " دينار"},
+                {"إجمالي الخصومات", totalDiscountLabel.getText() + " دينار"}
+        };
+        List<ProductStat> products = topProductsTable.getItems() != null
+                ? new ArrayList<>(topProductsTable.getItems()) : new ArrayList<>();
+        List<CustomerStat> customers = topCustomersTable.getItems() != null
+                ? new ArrayList<>(topCustomersTable.getItems()) : new ArrayList<>();
+        ExportProgressDialog.run(topProductsTable.getScene().getWindow(), new ExportTask(selectedFile,
+                (file, progress) -> generateSalesReportExcel(file, from, to, summary, products, customers, progress)));
     }
 
     private String generateTextReport() {
@@ -470,7 +500,13 @@ public class SalesReportController {
         document.add(wrapper);
     }
 
-    private void generateSalesReportExcel(File outputFile) throws Exception {
+    /**
+     * Write the summary sheet and stream every sale of the period into a detail sheet.
+     *
+     * @return the number of sales written
+     */
+    private static long generateSalesReportExcel(File outputFile, LocalDate from, LocalDate to, String[][] summary,
+            List<ProductStat> products, List<CustomerStat> customers, ExportService.Progress progress) throws Exception {
         if (outputFile == null) {
             throw new IllegalArgumentException("مسار الملف غير صحيح");
         }
@@ -480,8 +516,12 @@ public class SalesReportController {
             parent.mkdirs();
         }
 
-        try (Workbook workbook = new XSSFWorkbook()) {
-            var sheet = workbook.createSheet("Sales Report");
+        // Streaming workbook so the detail sheet never holds every sale in memory
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ExportService.XLSX_ROW_WINDOW);
+        try {
+            workbook.setCompressTempFiles(true);
+            SXSSFSheet sheet = workbook.createSheet("Sales Report");
+            sheet.trackAllColumnsForAutoSizing();
 
             XSSFFont titleFont = (XSSFFont) workbook.createFont();
             titleFont.setBold(true);
@@ -505,7 +545,7 @@ public class SalesReportController {
 
             DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
             Row periodRow = sheet.createRow(rowIdx++);
-            periodRow.createCell(0).setCellValue("الفترة: " + fromDatePicker.getValue().format(formatter) + " إلى " + toDatePicker.getValue().format(formatter));
+            periodRow.createCell(0).setCellValue("الفترة: " + from.format(formatter) + " إلى " + to.format(formatter));
 
             rowIdx++;
 
@@ -513,10 +553,9 @@ public class SalesReportController {
             summaryHeader.createCell(0).setCellValue("الملخص");
             summaryHeader.getCell(0).setCellStyle(headerStyle);
 
-            rowIdx = writeKeyValue(sheet, rowIdx, "إجمالي المبيعات", totalSalesLabel.getText() + " دينار");
-            rowIdx = writeKeyValue(sheet, rowIdx, "عدد الفواتير", invoiceCountLabel.getText());
-            rowIdx = writeKeyValue(sheet, rowIdx, "متوسط الفاتورة", avgSaleLabel.getText() + " دينار");
-            rowIdx = writeKeyValue(sheet, rowIdx, "إجمالي الخصومات", totalDiscountLabel.getText() + " دينار");
+            for (String[] line : summary) {
+                rowIdx = writeKeyValue(sheet, rowIdx, line[0], line[1]);
+            }
 
             rowIdx++;
 
@@ -531,7 +570,6 @@ public class SalesReportController {
                 prodHeader.getCell(c).setCellStyle(headerStyle);
             }
 
-            List<ProductStat> products = topProductsTable.getItems() != null ? topProductsTable.getItems() : FXCollections.observableArrayList();
             int i = 1;
             for (ProductStat p : products) {
                 Row r = sheet.createRow(rowIdx++);
@@ -554,7 +592,6 @@ public class SalesReportController {
                 custHeader.getCell(c).setCellStyle(headerStyle);
             }
 
-            List<CustomerStat> customers = topCustomersTable.getItems() != null ? topCustomersTable.getItems() : FXCollections.observableArrayList();
             int j = 1;
             for (CustomerStat c : customers) {
                 Row r = sheet.createRow(rowIdx++);
@@ -567,13 +604,26 @@ public class SalesReportController {
                 sheet.autoSizeColumn(col);
             }
 
+            SXSSFSheet detailSheet = workbook.createSheet("Sales");
+            detailSheet.setRightToLeft(true);
+            int detailRows = new ExportService().writeToSheet(ExportSources.sales(from, to),
+                    detailSheet, 0, headerStyle, ExportService.createDateStyle(workbook), progress);
+
             try (FileOutputStream fos = new FileOutputStream(outputFile)) {
                 workbook.write(fos);
             }
+            return detailRows - 1;
+        } catch (Exception e) {
+            // No half-written report is left behind on failure or cancel
+            outputFile.delete();
+            throw e;
+        } finally {
+            workbook.dispose();
+            workbook.close();
         }
     }
 
-    private int writeKeyValue(org.apache.poi.ss.usermodel.Sheet sheet, int rowIdx, String key, String value) {
+    private static int writeKeyValue(org.apache.poi.ss.usermodel.Sheet sheet, int rowIdx, String key, String value) {
         Row r = sheet.createRow(rowIdx++);
         r.createCell(0).setCellValue(key);
         r.createCell(1).setCellValue(value);
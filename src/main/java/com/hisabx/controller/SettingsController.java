@@ -1,18 +1,26 @@
 package com.hisabx.controller;
 
-import com.hisabx.model.Customer;
-import com.hisabx.model.Product;
-import com.hisabx.model.Sale;
-import com.hisabx.service.CustomerService;
+import com.hisabx.MainApp;
+import com.hisabx.model.dto.FiscalArchive;
+import com.hisabx.service.CustomerDirectory;
+import com.hisabx.service.FiscalArchiveService;
 import com.hisabx.service.InventoryService;
 import com.hisabx.service.ReceiptService;
 import com.hisabx.service.SalesService;
+import com.hisabx.service.export.ExportSources;
+import com.hisabx.service.importing.ImportTarget;
+import com.hisabx.util.ExportProgressDialog;
+import com.hisabx.util.ImportProgressDialog;
 import com.hisabx.util.SessionManager;
 import com.hisabx.util.TabManager;
 import javafx.fxml.FXML;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
+import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.scene.layout.VBox;
 import javafx.scene.control.ListView;
@@ -28,6 +36,7 @@ import org.slf4j.LoggerFactory;
 
 import java.awt.Desktop;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
@@ -72,9 +81,14 @@ public class SettingsController {
     private Label lastBackupLabel;
     @FXML
     private ProgressBar backupProgressBar;
+    @FXML
+    private ComboBox<Integer> archiveYearCombo;
+    @FXML
+    private Button archiveYearButton;
+    @FXML
+    private Label archivesLabel;
 
     private com.hisabx.service.drive.BackupService backupService;
-    private final CustomerService customerService = new CustomerService();
     private final InventoryService inventoryService = new InventoryService();
     private final SalesService salesService = new SalesService();
     private final ReceiptService receiptService = new ReceiptService();
@@ -120,6 +134,8 @@ public class SettingsController {
             });
         }
 
+        loadArchives();
+
         // Initialize Drive Services
         com.hisabx.MainApp app = TabManager.getInstance().getMainApp();
         if (app != null) {
@@ -698,7 +714,7 @@ public class SettingsController {
     @FXML
     private void handleRefreshStats() {
         try {
-            int customersCount = customerService.getAllCustomers().size();
+            int customersCount = CustomerDirectory.getInstance().size();
             int productsCount = inventoryService.getAllProducts().size();
             int salesCount = salesService.getAllSales().size();
             int receiptsCount = receiptService.getAllReceipts().size();
@@ -718,6 +734,27 @@ public class SettingsController {
         }
     }
 
+    @FXML
+    private void handleOpenDiagnostics() {
+        try {
+            FXMLLoader loader = new FXMLLoader();
+            loader.setLocation(MainApp.class.getResource("/views/Diagnostics.fxml"));
+            loader.setCharset(StandardCharsets.UTF_8);
+            Parent root = loader.load();
+
+            Stage stage = new Stage();
+            stage.setTitle("تشخيص الأداء");
+            stage.initModality(Modality.APPLICATION_MODAL);
+            Scene scene = new Scene(root);
+            MainApp.applyCurrentFontSize(scene);
+            stage.setScene(scene);
+            stage.showAndWait();
+        } catch (Exception e) {
+            logger.error("Failed to open diagnostics", e);
+            showError("خطأ", "فشل في فتح شاشة التشخيص");
+        }
+    }
+
     @FXML
     private void handleResetDatabase() {
         Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
@@ -765,90 +802,117 @@ public class SettingsController {
         });
     }
 
-    @FXML
-    private void handleExportCustomers() {
-        exportToCSV("customers", () -> {
-            List<Customer> customers = customerService.getAllCustomers();
-            StringBuilder sb = new StringBuilder();
-            sb.append("الكود,الاسم,الهاتف,العنوان,موقع المشروع,الرصيد\n");
-            for (Customer c : customers) {
-                sb.append(escape(c.getCustomerCode())).append(",");
-                sb.append(escape(c.getName())).append(",");
-                sb.append(escape(c.getPhoneNumber())).append(",");
-                sb.append(escape(c.getAddress())).append(",");
-                sb.append(escape(c.getProjectLocation())).append(",");
-                sb.append(c.getCurrentBalance() != null ? c.getCurrentBalance() : 0).append("\n");
+    private void loadArchives() {
+        if (archiveYearCombo == null) {
+            return;
+        }
+        Task<Object[]> task = new Task<>() {
+            @Override
+            protected Object[] call() {
+                FiscalArchiveService archiveService = FiscalArchiveService.getInstance();
+                return new Object[]{archiveService.getArchivableYears(), archiveService.getArchives()};
+            }
+        };
+        task.setOnSucceeded(e -> {
+            @SuppressWarnings("unchecked")
+            List<Integer> years = (List<Integer>) task.getValue()[0];
+            @SuppressWarnings("unchecked")
+            List<FiscalArchive> archives = (List<FiscalArchive>) task.getValue()[1];
+            archiveYearCombo.getItems().setAll(years);
+            if (!years.isEmpty()) {
+                archiveYearCombo.setValue(years.get(years.size() - 1));
+            }
+            if (archives.isEmpty()) {
+                archivesLabel.setText("لا توجد سنوات مؤرشفة");
+            } else {
+                StringBuilder text = new StringBuilder("السنوات المؤرشفة:");
+                for (FiscalArchive archive : archives) {
+                    text.append("\n").append(archive.getFiscalYear()).append(" - ")
+                            .append(archive.getSalesCount()).append(" فاتورة، ")
+                            .append(archive.getVouchersCount()).append(" سند، ")
+                            .append(archive.getReturnsCount()).append(" مرتجع (")
+                            .append(archive.getFileName()).append(")");
+                }
+                archivesLabel.setText(text.toString());
             }
-            return sb.toString();
         });
+        task.setOnFailed(e -> logger.error("Failed to load fiscal archives", task.getException()));
+        Thread thread = new Thread(task, "Archive-Info");
+        thread.setDaemon(true);
+        thread.start();
     }
 
     @FXML
-    private void handleExportProducts() {
-        exportToCSV("products", () -> {
-            List<Product> products = inventoryService.getAllProducts();
-            StringBuilder sb = new StringBuilder();
-            sb.append("الكود,الاسم,الفئة,السعر,التكلفة,الكمية,الحد الأدنى\n");
-            for (Product p : products) {
-                sb.append(escape(p.getProductCode())).append(",");
-                sb.append(escape(p.getName())).append(",");
-                sb.append(escape(p.getCategory())).append(",");
-                sb.append(p.getUnitPrice() != null ? p.getUnitPrice() : 0).append(",");
-                sb.append(p.getCostPrice() != null ? p.getCostPrice() : 0).append(",");
-                sb.append(p.getQuantityInStock() != null ? p.getQuantityInStock() : 0).append(",");
-                sb.append(p.getMinimumStock() != null ? p.getMinimumStock() : 0).append("\n");
+    private void handleArchiveYear() {
+        Integer year = archiveYearCombo.getValue();
+        if (year == null) {
+            showError("خطأ", "الرجاء اختيار السنة");
+            return;
+        }
+        Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
+        confirm.setTitle("تأكيد الأرشفة");
+        confirm.setHeaderText("أرشفة سنة " + year);
+        confirm.setContentText("سيتم نقل فواتير وسندات ومرتجعات سنة " + year
+                + " المغلقة إلى ملف أرشيف منفصل.\nيُنصح بإنشاء نسخة احتياطية أولاً. هل تريد المتابعة؟");
+        if (confirm.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK) {
+            return;
+        }
+
+        String user = SessionManager.getInstance().getCurrentUsername();
+        archiveYearButton.setDisable(true);
+        Task<FiscalArchive> task = new Task<>() {
+            @Override
+            protected FiscalArchive call() {
+                return FiscalArchiveService.getInstance().archiveYear(year, user);
             }
-            return sb.toString();
+        };
+        task.setOnSucceeded(e -> {
+            archiveYearButton.setDisable(false);
+            FiscalArchive result = task.getValue();
+            showSuccess("تم", "تمت أرشفة سنة " + year + ":\n"
+                    + result.getSalesCount() + " فاتورة، " + result.getVouchersCount() + " سند، "
+                    + result.getReturnsCount() + " مرتجع");
+            loadArchives();
+            handleRefreshStats();
         });
+        task.setOnFailed(e -> {
+            archiveYearButton.setDisable(false);
+            logger.error("Failed to archive fiscal year {}", year, task.getException());
+            showError("خطأ", task.getException().getMessage());
+        });
+        Thread thread = new Thread(task, "Fiscal-Archive");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @FXML
+    private void handleExportCustomers() {
+        ExportProgressDialog.chooseFileAndExport(dialogStage, ExportSources.customers());
+    }
+
+    @FXML
+    private void handleExportProducts() {
+        ExportProgressDialog.chooseFileAndExport(dialogStage, ExportSources.products());
     }
 
     @FXML
     private void handleExportSales() {
-        exportToCSV("sales", () -> {
-            List<Sale> sales = salesService.getAllSales();
-            StringBuilder sb = new StringBuilder();
-            sb.append("رقم الفاتورة,العميل,التاريخ,الإجمالي,المدفوع,الحالة\n");
-            for (Sale s : sales) {
-                sb.append(escape(s.getSaleCode())).append(",");
-                sb.append(escape(s.getCustomer() != null ? s.getCustomer().getName() : "-")).append(",");
-                sb.append(s.getSaleDate() != null
-                        ? s.getSaleDate().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"))
-                        : "-").append(",");
-                sb.append(s.getFinalAmount() != null ? s.getFinalAmount() : 0).append(",");
-                sb.append(s.getPaidAmount() != null ? s.getPaidAmount() : 0).append(",");
-                sb.append(escape(s.getPaymentStatus())).append("\n");
-            }
-            return sb.toString();
-        });
+        ExportProgressDialog.chooseFileAndExport(dialogStage, ExportSources.sales());
     }
 
-    private void exportToCSV(String name, java.util.function.Supplier<String> dataSupplier) {
-        FileChooser chooser = new FileChooser();
-        chooser.setTitle("حفظ ملف CSV");
-        chooser.setInitialFileName(name + "_export.csv");
-        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV Files", "*.csv"));
-        File file = chooser.showSaveDialog(dialogStage);
+    @FXML
+    private void handleImportProducts() {
+        ImportProgressDialog.chooseFileAndImport(dialogStage, ImportTarget.PRODUCTS);
+    }
 
-        if (file != null) {
-            try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"))) {
-                // Add BOM for Excel compatibility
-                writer.write('\ufeff');
-                writer.write(dataSupplier.get());
-                showSuccess("تم", "تم تصدير البيانات بنجاح إلى:\n" + file.getAbsolutePath());
-            } catch (Exception e) {
-                logger.error("Failed to export to CSV", e);
-                showError("خطأ", "فشل في تصدير البيانات");
-            }
-        }
+    @FXML
+    private void handleImportCustomers() {
+        ImportProgressDialog.chooseFileAndImport(dialogStage, ImportTarget.CUSTOMERS);
     }
 
-    private String escape(String value) {
-        if (value == null)
-            return "";
-        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
-            return "\"" + value.replace("\"", "\"\"") + "\"";
-        }
-        return value;
+    @FXML
+    private void handleImportOpeningStock() {
+        ImportProgressDialog.chooseFileAndImport(dialogStage, ImportTarget.OPENING_STOCK);
     }
 
     private void showError(String title, String message) {
@@ -0,0 +1,276 @@
+package com.hisabx.controller;
+
+import com.hisabx.model.Product;
+import com.hisabx.model.StockLocation;
+import com.hisabx.model.dto.StockTransfer;
+import com.hisabx.service.InventoryService;
+import com.hisabx.service.StockLocationService;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.fxml.FXML;
+import javafx.scene.control.*;
+import javafx.stage.Stage;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * المواقع والتحويل المخزني - add stock locations and move scanned products from one location to
+ * another.
+ */
+public class StockTransferController {
+    private static final int HISTORY_SIZE = 50;
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    @FXML private TextField newLocationField;
+    @FXML private ListView<StockLocation> locationsList;
+    @FXML private ComboBox<StockLocation> fromCombo;
+    @FXML private ComboBox<StockLocation> toCombo;
+    @FXML private TextField notesField;
+    @FXML private TextField quantityField;
+    @FXML private TextField scanField;
+    @FXML private Label linesSummaryLabel;
+    @FXML private TableView<TransferLine> linesTable;
+    @FXML private TableColumn<TransferLine, String> codeColumn;
+    @FXML private TableColumn<TransferLine, String> nameColumn;
+    @FXML private TableColumn<TransferLine, String> availableColumn;
+    @FXML private TableColumn<TransferLine, String> quantityColumn;
+    @FXML private TableView<StockTransfer> historyTable;
+    @FXML private TableColumn<StockTransfer, String> historyNumberColumn;
+    @FXML private TableColumn<StockTransfer, String> historyDateColumn;
+    @FXML private TableColumn<StockTransfer, String> historyFromColumn;
+    @FXML private TableColumn<StockTransfer, String> historyToColumn;
+    @FXML private TableColumn<StockTransfer, String> historyItemsColumn;
+    @FXML private TableColumn<StockTransfer, String> historyUserColumn;
+    @FXML private TableColumn<StockTransfer, String> historyNotesColumn;
+
+    private final StockLocationService locationService = new StockLocationService();
+    private final InventoryService inventoryService = new InventoryService();
+    private final ObservableList<TransferLine> lines = FXCollections.observableArrayList();
+    private final DecimalFormat numberFormat;
+    private Stage dialogStage;
+
+    public StockTransferController() {
+        DecimalFormatSymbols symbols = new DecimalFormatSymbols(Locale.US);
+        symbols.setGroupingSeparator(',');
+        numberFormat = new DecimalFormat("#,##0.##", symbols);
+    }
+
+    @FXML
+    private void initialize() {
+        codeColumn.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().product.getProductCode()));
+        nameColumn.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().product.getName()));
+        availableColumn.setCellValueFactory(data -> new SimpleStringProperty(format(data.getValue().available)));
+        quantityColumn.setCellValueFactory(data -> new SimpleStringProperty(format(data.getValue().quantity)));
+        linesTable.setItems(lines);
+
+        historyNumberColumn.setCellValueFactory(data -> new SimpleStringProperty(String.valueOf(data.getValue().getId())));
+        historyDateColumn.setCellValueFactory(data -> new SimpleStringProperty(
+                data.getValue().getTransferDate() != null ? data.getValue().getTransferDate().format(DATE_FORMAT) : ""));
+        historyFromColumn.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getFromLocation()));
+        historyToColumn.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getToLocation()));
+        historyItemsColumn.setCellValueFactory(data -> new SimpleStringProperty(String.valueOf(data.getValue().getItemCount())));
+        historyUserColumn.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getCreatedBy()));
+        historyNotesColumn.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getNotes()));
+
+        locationsList.setCellFactory(list -> new ListCell<>() {
+            @Override
+            protected void updateItem(StockLocation item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(empty || item == null ? null
+                        : item.getName() + (Boolean.TRUE.equals(item.getIsDefault()) ? " (الافتراضي)" : ""));
+            }
+        });
+        locationsList.setOnMouseClicked(e -> {
+            if (e.getClickCount() == 2 && locationsList.getSelectionModel().getSelectedItem() != null) {
+                handleRenameLocation(locationsList.getSelectionModel().getSelectedItem());
+            }
+        });
+        fromCombo.valueProperty().addListener((obs, old, value) -> refreshAvailable());
+
+        loadLocations();
+        loadHistory();
+    }
+
+    public void setDialogStage(Stage dialogStage) {
+        this.dialogStage = dialogStage;
+    }
+
+    private void loadLocations() {
+        List<StockLocation> locations = locationService.getLocations();
+        StockLocation from = fromCombo.getValue();
+        StockLocation to = toCombo.getValue();
+        locationsList.setItems(FXCollections.observableArrayList(locations));
+        fromCombo.setItems(FXCollections.observableArrayList(locations));
+        toCombo.setItems(FXCollections.observableArrayList(locations));
+        fromCombo.setValue(find(locations, from).orElse(locations.isEmpty() ? null : locations.get(0)));
+        toCombo.setValue(find(locations, to).orElse(locations.size() > 1 ? locations.get(1) : null));
+    }
+
+    private static Optional<StockLocation> find(List<StockLocation> locations, StockLocation location) {
+        return location == null ? Optional.empty()
+                : locations.stream().filter(l -> l.getId().equals(location.getId())).findFirst();
+    }
+
+    private void loadHistory() {
+        historyTable.setItems(FXCollections.observableArrayList(locationService.getRecentTransfers(HISTORY_SIZE)));
+    }
+
+    @FXML
+    private void handleAddLocation() {
+        try {
+            locationService.createLocation(newLocationField.getText());
+            newLocationField.clear();
+            loadLocations();
+        } catch (IllegalArgumentException e) {
+            showError("خطأ", e.getMessage());
+        }
+    }
+
+    private void handleRenameLocation(StockLocation location) {
+        TextInputDialog dialog = new TextInputDialog(location.getName());
+        dialog.setTitle("تعديل اسم الموقع");
+        dialog.setHeaderText(null);
+        dialog.setContentText("الاسم:");
+        dialog.showAndWait().ifPresent(name -> {
+            try {
+                locationService.renameLocation(location, name);
+                loadLocations();
+                loadHistory();
+            } catch (IllegalArgumentException e) {
+                showError("خطأ", e.getMessage());
+            }
+        });
+    }
+
+    @FXML
+    private void handleScan() {
+        String code = scanField.getText();
+        scanField.clear();
+        if (code == null || code.isBlank()) {
+            return;
+        }
+        double quantity;
+        try {
+            quantity = Double.parseDouble(quantityField.getText().trim());
+        } catch (NumberFormatException | NullPointerException e) {
+            showError("خطأ", "الكمية يجب أن تكون رقماً");
+            return;
+        }
+        Optional<Product> product = inventoryService.findProductByCodeOrBarcode(code);
+        if (product.isEmpty()) {
+            showError("خطأ", "المنتج غير موجود: " + code.trim());
+            return;
+        }
+        TransferLine line = lines.stream()
+                .filter(l -> l.product.getId().equals(product.get().getId()))
+                .findFirst()
+                .orElse(null);
+        if (line == null) {
+            line = new TransferLine(product.get());
+            line.available = availableAtSource(line.product);
+            lines.add(0, line);
+        }
+        line.quantity += quantity;
+        if (line.quantity <= 0) {
+            lines.remove(line);
+        }
+        linesTable.refresh();
+        updateSummary();
+    }
+
+    @FXML
+    private void handleRemoveLine() {
+        TransferLine selected = linesTable.getSelectionModel().getSelectedItem();
+        if (selected != null) {
+            lines.remove(selected);
+            updateSummary();
+        }
+    }
+
+    @FXML
+    private void handleTransfer() {
+        StockLocation from = fromCombo.getValue();
+        StockLocation to = toCombo.getValue();
+        Map<Long, Double> quantities = new LinkedHashMap<>();
+        for (TransferLine line : lines) {
+            quantities.put(line.product.getId(), line.quantity);
+        }
+        try {
+            long id = locationService.transfer(from != null ? from.getId() : null, to != null ? to.getId() : null,
+                    quantities, notesField.getText());
+            showInfo("تم", "تم تنفيذ التحويل رقم " + id + " (" + quantities.size() + " منتج)");
+            lines.clear();
+            notesField.clear();
+            updateSummary();
+            loadHistory();
+        } catch (IllegalArgumentException e) {
+            showError("خطأ", e.getMessage());
+            refreshAvailable();
+        } catch (RuntimeException e) {
+            showError("خطأ", e.getMessage());
+        }
+    }
+
+    @FXML
+    private void handleClose() {
+        if (dialogStage != null) {
+            dialogStage.close();
+        }
+    }
+
+    private void refreshAvailable() {
+        for (TransferLine line : lines) {
+            line.available = availableAtSource(line.product);
+        }
+        linesTable.refresh();
+    }
+
+    private double availableAtSource(Product product) {
+        StockLocation from = fromCombo.getValue();
+        return from != null ? locationService.getStock(product.getId(), from.getId()) : 0.0;
+    }
+
+    private void updateSummary() {
+        double total = lines.stream().mapToDouble(l -> l.quantity).sum();
+        linesSummaryLabel.setText(lines.isEmpty() ? "-" : lines.size() + " منتج، إجمالي الكمية " + format(total));
+    }
+
+    private String format(double value) {
+        return numberFormat.format(value);
+    }
+
+    private void showError(String title, String message) {
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle(title);
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
+
+    private void showInfo(String title, String message) {
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle(title);
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
+
+    /** A product being transferred and its stock at the source location. */
+    private static final class TransferLine {
+        private final Product product;
+        private double quantity;
+        private double available;
+
+        private TransferLine(Product product) {
+            this.product = product;
+        }
+    }
+}
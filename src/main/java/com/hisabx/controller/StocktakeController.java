@@ -0,0 +1,496 @@
+package com.hisabx.controller;
+
+import com.hisabx.model.StockLocation;
+import com.hisabx.model.dto.Stocktake;
+import com.hisabx.model.dto.StocktakeLine;
+import com.hisabx.service.InventoryService;
+import com.hisabx.service.StockLocationService;
+import com.hisabx.service.StocktakeCounter;
+import com.hisabx.service.StocktakeService;
+import com.hisabx.service.export.ExportSources;
+import com.hisabx.util.ExportProgressDialog;
+import com.hisabx.util.SessionManager;
+import javafx.application.Platform;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
+import javafx.concurrent.Task;
+import javafx.fxml.FXML;
+import javafx.scene.control.*;
+import javafx.scene.control.cell.CheckBoxTableCell;
+import javafx.stage.Stage;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * الجرد - start a stocktake, count by scanning, reconcile against the frozen stock and post the
+ * approved differences.
+ */
+public class StocktakeController {
+    // Counts are saved in the background once this many products changed
+    private static final int SAVE_EVERY = 25;
+    private static final int RECENT_SCANS = 200;
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    @FXML private Label stocktakeLabel;
+    @FXML private ComboBox<String> categoryCombo;
+    @FXML private ComboBox<StockLocation> locationCombo;
+    @FXML private TextField notesField;
+    @FXML private Button startButton;
+    @FXML private Button cancelStocktakeButton;
+    @FXML private TextField counterField;
+    @FXML private Button openCounterButton;
+    @FXML private TextField quantityField;
+    @FXML private TextField scanField;
+    @FXML private Button saveCountsButton;
+    @FXML private Label lastScanLabel;
+    @FXML private Label counterStatsLabel;
+    @FXML private ListView<String> recentScansList;
+    @FXML private Button reconcileButton;
+    @FXML private CheckBox differencesOnlyCheck;
+    @FXML private Label varianceSummaryLabel;
+    @FXML private TableView<StocktakeLine> varianceTable;
+    @FXML private TableColumn<StocktakeLine, Boolean> approveColumn;
+    @FXML private TableColumn<StocktakeLine, String> codeColumn;
+    @FXML private TableColumn<StocktakeLine, String> nameColumn;
+    @FXML private TableColumn<StocktakeLine, String> frozenColumn;
+    @FXML private TableColumn<StocktakeLine, String> countedColumn;
+    @FXML private TableColumn<StocktakeLine, String> countersColumn;
+    @FXML private TableColumn<StocktakeLine, String> varianceColumn;
+    @FXML private TableColumn<StocktakeLine, String> valueColumn;
+    @FXML private TableView<Stocktake> historyTable;
+    @FXML private TableColumn<Stocktake, String> historyDateColumn;
+    @FXML private TableColumn<Stocktake, String> historyScopeColumn;
+    @FXML private TableColumn<Stocktake, String> historyProductsColumn;
+    @FXML private TableColumn<Stocktake, String> historyAdjustedColumn;
+    @FXML private TableColumn<Stocktake, String> historyValueColumn;
+    @FXML private TableColumn<Stocktake, String> historyUserColumn;
+    @FXML private TableColumn<Stocktake, String> historyStatusColumn;
+    @FXML private Button postButton;
+    @FXML private Button exportButton;
+
+    private final StocktakeService stocktakeService = new StocktakeService();
+    private final InventoryService inventoryService = new InventoryService();
+    private final StockLocationService locationService = new StockLocationService();
+    private final DecimalFormat numberFormat;
+    private final AtomicBoolean saving = new AtomicBoolean();
+    private final ObservableList<String> recentScans = FXCollections.observableArrayList();
+    private Stage dialogStage;
+
+    private Stocktake openStocktake;
+    private StocktakeCounter counter;
+    private FilteredList<StocktakeLine> lines;
+
+    public StocktakeController() {
+        DecimalFormatSymbols symbols = new DecimalFormatSymbols(Locale.US);
+        symbols.setGroupingSeparator(',');
+        numberFormat = new DecimalFormat("#,##0.##", symbols);
+    }
+
+    @FXML
+    private void initialize() {
+        List<String> categories = inventoryService.getAllCategories();
+        categoryCombo.getItems().add(null);
+        categoryCombo.getItems().addAll(categories);
+        // Each location is counted on its own; the default one unless there are others to choose from
+        locationCombo.setItems(FXCollections.observableArrayList(locationService.getLocations()));
+        locationCombo.setValue(locationService.getDefaultLocation());
+        locationCombo.setVisible(locationService.hasMultipleLocations());
+        counterField.setText(SessionManager.getInstance().getCurrentUsername());
+        recentScansList.setItems(recentScans);
+
+        approveColumn.setCellValueFactory(data -> {
+            StocktakeLine line = data.getValue();
+            SimpleBooleanProperty approved = new SimpleBooleanProperty(line.isApproved());
+            approved.addListener((obs, old, value) -> {
+                line.setApproved(value);
+                updateVarianceSummary();
+            });
+            return approved;
+        });
+        approveColumn.setCellFactory(CheckBoxTableCell.forTableColumn(approveColumn));
+        codeColumn.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getProductCode()));
+        nameColumn.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getName()));
+        frozenColumn.setCellValueFactory(data -> new SimpleStringProperty(format(data.getValue().getFrozenQty())));
+        countedColumn.setCellValueFactory(data -> new SimpleStringProperty(
+                data.getValue().isCounted() ? format(data.getValue().getCountedQty()) : "لم يُعد"));
+        countersColumn.setCellValueFactory(data -> new SimpleStringProperty(String.valueOf(data.getValue().getCounters())));
+        varianceColumn.setCellValueFactory(data -> new SimpleStringProperty(format(data.getValue().getVariance())));
+        valueColumn.setCellValueFactory(data -> new SimpleStringProperty(format(data.getValue().getVarianceValue())));
+        valueColumn.setVisible(SessionManager.getInstance().canSeeCost());
+        differencesOnlyCheck.selectedProperty().addListener((obs, old, value) -> applyLineFilter());
+
+        historyDateColumn.setCellValueFactory(data -> new SimpleStringProperty(
+                data.getValue().getStartedAt() != null ? data.getValue().getStartedAt().format(DATE_FORMAT) : ""));
+        historyScopeColumn.setCellValueFactory(data -> new SimpleStringProperty(scopeOf(data.getValue())));
+        historyProductsColumn.setCellValueFactory(data -> new SimpleStringProperty(
+                String.valueOf(data.getValue().getProductCount())));
+        historyAdjustedColumn.setCellValueFactory(data -> new SimpleStringProperty(
+                String.valueOf(data.getValue().getAdjustedCount())));
+        historyValueColumn.setCellValueFactory(data -> new SimpleStringProperty(format(data.getValue().getVarianceValue())));
+        historyValueColumn.setVisible(SessionManager.getInstance().canSeeCost());
+        historyUserColumn.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getStartedBy()));
+        historyStatusColumn.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getStatusArabic()));
+        exportButton.disableProperty().bind(historyTable.getSelectionModel().selectedItemProperty().isNull());
+
+        refresh();
+    }
+
+    public void setDialogStage(Stage dialogStage) {
+        this.dialogStage = dialogStage;
+        // Counts not yet saved must not be lost when the window is closed from its title bar
+        dialogStage.setOnHidden(e -> saveQuietly());
+    }
+
+    private void refresh() {
+        openStocktake = stocktakeService.getOpenStocktake().orElse(null);
+        boolean open = openStocktake != null;
+        if (open) {
+            stocktakeLabel.setText("جرد رقم " + openStocktake.getId() + " - " + scopeOf(openStocktake)
+                    + " - " + openStocktake.getProductCount() + " منتج - بدأ "
+                    + openStocktake.getStartedAt().format(DATE_FORMAT));
+        } else {
+            stocktakeLabel.setText("لا يوجد جرد مفتوح");
+            counter = null;
+            varianceTable.setItems(FXCollections.observableArrayList());
+            lines = null;
+            varianceSummaryLabel.setText("-");
+        }
+        startButton.setDisable(open);
+        categoryCombo.setDisable(open);
+        locationCombo.setDisable(open);
+        notesField.setDisable(open);
+        cancelStocktakeButton.setDisable(!open);
+        openCounterButton.setDisable(!open);
+        reconcileButton.setDisable(!open);
+        scanField.setDisable(counter == null);
+        saveCountsButton.setDisable(counter == null);
+        postButton.setDisable(lines == null);
+        updateCounterStats();
+        historyTable.setItems(FXCollections.observableArrayList(stocktakeService.getRecentStocktakes(50)));
+    }
+
+    @FXML
+    private void handleStart() {
+        String category = categoryCombo.getValue();
+        StockLocation location = locationCombo.getValue();
+        Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
+        confirm.setTitle("تأكيد");
+        confirm.setHeaderText(null);
+        confirm.setContentText("سيتم تثبيت رصيد " + (category != null ? "منتجات الفئة " + category : "جميع المنتجات")
+                + (location != null ? " في " + location.getName() : "") + " الآن وبدء الجرد. هل تريد المتابعة؟");
+        if (confirm.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK) {
+            return;
+        }
+        try {
+            String notes = notesField.getText();
+            stocktakeService.start(category, location != null ? location.getId() : null,
+                    notes == null || notes.isBlank() ? null : notes.trim());
+            notesField.clear();
+            refresh();
+            handleOpenCounter();
+        } catch (Exception e) {
+            showError("خطأ", e.getMessage());
+        }
+    }
+
+    @FXML
+    private void handleCancelStocktake() {
+        if (openStocktake == null) {
+            return;
+        }
+        Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
+        confirm.setTitle("تأكيد");
+        confirm.setHeaderText(null);
+        confirm.setContentText("إلغاء الجرد رقم " + openStocktake.getId() + " دون تعديل أي رصيد؟");
+        if (confirm.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK) {
+            return;
+        }
+        try {
+            saveQuietly();
+            stocktakeService.cancel(openStocktake.getId());
+            counter = null;
+            refresh();
+        } catch (Exception e) {
+            showError("خطأ", e.getMessage());
+        }
+    }
+
+    @FXML
+    private void handleOpenCounter() {
+        if (openStocktake == null) {
+            return;
+        }
+        try {
+            saveQuietly();
+            counter = stocktakeService.openCounter(openStocktake.getId(), counterField.getText());
+            recentScans.clear();
+            lastScanLabel.setText("العدّاد " + counter.getCounter() + " جاهز");
+            lastScanLabel.setStyle("-fx-font-size: 18px; -fx-font-weight: bold; -fx-text-fill: #22c55e;");
+            scanField.setDisable(false);
+            saveCountsButton.setDisable(false);
+            updateCounterStats();
+            scanField.requestFocus();
+        } catch (Exception e) {
+            showError("خطأ", e.getMessage());
+        }
+    }
+
+    @FXML
+    private void handleScan() {
+        if (counter == null) {
+            return;
+        }
+        String code = scanField.getText();
+        scanField.clear();
+        if (code == null || code.isBlank()) {
+            return;
+        }
+        double quantity;
+        try {
+            quantity = Double.parseDouble(quantityField.getText().trim());
+        } catch (NumberFormatException | NullPointerException e) {
+            showError("خطأ", "الكمية يجب أن تكون رقماً");
+            return;
+        }
+        int slot = counter.scan(code, quantity);
+        if (slot < 0) {
+            lastScanLabel.setText("غير موجود ضمن الجرد: " + code.trim());
+            lastScanLabel.setStyle("-fx-font-size: 18px; -fx-font-weight: bold; -fx-text-fill: #ef4444;");
+        } else {
+            String text = counter.nameOf(slot) + " = " + format(counter.countOf(slot));
+            lastScanLabel.setText(text);
+            lastScanLabel.setStyle("-fx-font-size: 18px; -fx-font-weight: bold; -fx-text-fill: #22c55e;");
+            recentScans.add(0, counter.productCodeOf(slot) + "  " + text
+                    + (quantity != 1 ? "  (+" + format(quantity) + ")" : ""));
+            if (recentScans.size() > RECENT_SCANS) {
+                recentScans.remove(RECENT_SCANS, recentScans.size());
+            }
+        }
+        updateCounterStats();
+        if (counter.getPendingCount() >= SAVE_EVERY) {
+            saveInBackground();
+        }
+    }
+
+    @FXML
+    private void handleSaveCounts() {
+        if (counter == null) {
+            return;
+        }
+        try {
+            int saved = stocktakeService.saveCounts(counter);
+            updateCounterStats();
+            showInfo("تم", "تم حفظ عد " + saved + " منتج");
+        } catch (Exception e) {
+            showError("خطأ", e.getMessage());
+        }
+    }
+
+    @FXML
+    private void handleReconcile() {
+        if (openStocktake == null) {
+            return;
+        }
+        try {
+            saveQuietly();
+            List<StocktakeLine> reconciled = stocktakeService.reconcile(openStocktake.getId());
+            for (StocktakeLine line : reconciled) {
+                // Counted differences are approved by default; products nobody counted are not
+                line.setApproved(line.isCounted() && Math.abs(line.getVariance()) > 0.000001);
+            }
+            lines = new FilteredList<>(FXCollections.observableArrayList(reconciled));
+            applyLineFilter();
+            varianceTable.setItems(lines);
+            postButton.setDisable(false);
+            updateVarianceSummary();
+        } catch (Exception e) {
+            showError("خطأ", e.getMessage());
+        }
+    }
+
+    @FXML
+    private void handlePost() {
+        if (openStocktake == null || lines == null) {
+            return;
+        }
+        List<Long> approved = lines.getSource().stream()
+                .filter(StocktakeLine::isApproved)
+                .map(StocktakeLine::getProductId)
+                .toList();
+        Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
+        confirm.setTitle("تأكيد");
+        confirm.setHeaderText(null);
+        confirm.setContentText("سيتم تعديل رصيد " + approved.size() + " منتج بفروقات الجرد وإغلاق الجرد."
+                + "\nالمبيعات التي تمت أثناء الجرد تبقى محسوبة. هل تريد المتابعة؟");
+        if (confirm.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK) {
+            return;
+        }
+        saveQuietly();
+        long stocktakeId = openStocktake.getId();
+        // Every adjustment goes through the stock journal; thousands of them take a few seconds
+        Task<Stocktake> task = new Task<>() {
+            @Override
+            protected Stocktake call() {
+                return stocktakeService.post(stocktakeId, approved);
+            }
+        };
+        varianceTable.getScene().getRoot().setDisable(true);
+        varianceSummaryLabel.setText("جاري ترحيل الجرد...");
+        task.setOnSucceeded(e -> {
+            varianceTable.getScene().getRoot().setDisable(false);
+            Stocktake posted = task.getValue();
+            counter = null;
+            lines = null;
+            recentScans.clear();
+            lastScanLabel.setText("-");
+            refresh();
+            historyTable.getItems().stream()
+                    .filter(s -> s.getId().equals(posted.getId()))
+                    .findFirst()
+                    .ifPresent(s -> historyTable.getSelectionModel().select(s));
+            showInfo("تم", "تم ترحيل الجرد رقم " + posted.getId() + " وتعديل رصيد "
+                    + posted.getAdjustedCount() + " منتج.\nيمكن تصدير تقرير الفروقات من قائمة الجرد السابقة.");
+        });
+        task.setOnFailed(e -> {
+            varianceTable.getScene().getRoot().setDisable(false);
+            updateVarianceSummary();
+            Throwable error = task.getException();
+            showError("خطأ", error != null ? error.getMessage() : "فشل في ترحيل الجرد");
+        });
+        Thread thread = new Thread(task, "Stocktake-Post");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @FXML
+    private void handleExport() {
+        Stocktake selected = historyTable.getSelectionModel().getSelectedItem();
+        if (selected == null) {
+            return;
+        }
+        if (!Stocktake.POSTED.equals(selected.getStatus())) {
+            showError("خطأ", "تقرير الفروقات متاح للجرد المُرحّل فقط");
+            return;
+        }
+        ExportProgressDialog.chooseFileAndExport(dialogStage, ExportSources.stocktakeVariances(selected.getId()));
+    }
+
+    @FXML
+    private void handleClose() {
+        if (dialogStage != null) {
+            dialogStage.close();
+        }
+    }
+
+    private void applyLineFilter() {
+        if (lines != null) {
+            boolean differencesOnly = differencesOnlyCheck.isSelected();
+            lines.setPredicate(line -> !differencesOnly || Math.abs(line.getVariance()) > 0.000001);
+        }
+    }
+
+    private void updateVarianceSummary() {
+        if (lines == null) {
+            varianceSummaryLabel.setText("-");
+            return;
+        }
+        int counted = 0;
+        int differences = 0;
+        int approved = 0;
+        double approvedValue = 0;
+        for (StocktakeLine line : lines.getSource()) {
+            if (line.isCounted()) {
+                counted++;
+            }
+            if (Math.abs(line.getVariance()) > 0.000001) {
+                differences++;
+            }
+            if (line.isApproved()) {
+                approved++;
+                approvedValue += line.getVarianceValue();
+            }
+        }
+        String text = "المعدود " + counted + " من " + lines.getSource().size() + " | فروقات: " + differences
+                + " | المعتمد: " + approved;
+        if (SessionManager.getInstance().canSeeCost()) {
+            text += " | قيمة المعتمد: " + format(approvedValue);
+        }
+        varianceSummaryLabel.setText(text);
+    }
+
+    private void updateCounterStats() {
+        if (counter == null) {
+            counterStatsLabel.setText("-");
+            return;
+        }
+        counterStatsLabel.setText("المسح: " + counter.getScans() + " | منتجات معدودة: " + counter.getCountedProducts()
+                + " | غير معروف: " + counter.getUnknownScans() + " | بانتظار الحفظ: " + counter.getPendingCount());
+    }
+
+    private void saveInBackground() {
+        StocktakeCounter current = counter;
+        if (current == null || !saving.compareAndSet(false, true)) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                stocktakeService.saveCounts(current);
+            } catch (Exception e) {
+                Platform.runLater(() -> {
+                    lastScanLabel.setText("تعذر حفظ العد، ستتم إعادة المحاولة");
+                    lastScanLabel.setStyle("-fx-font-size: 18px; -fx-font-weight: bold; -fx-text-fill: #f59e0b;");
+                });
+            } finally {
+                saving.set(false);
+                Platform.runLater(this::updateCounterStats);
+            }
+        }, "Stocktake-Save");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void saveQuietly() {
+        if (counter == null || counter.getPendingCount() == 0) {
+            return;
+        }
+        try {
+            stocktakeService.saveCounts(counter);
+        } catch (Exception e) {
+            showError("خطأ", e.getMessage());
+        }
+    }
+
+    private static String scopeOf(Stocktake stocktake) {
+        String scope = Optional.ofNullable(stocktake.getCategory()).map(c -> "الفئة: " + c).orElse("كل المنتجات");
+        return stocktake.getLocationName() != null ? scope + " - " + stocktake.getLocationName() : scope;
+    }
+
+    private String format(Double value) {
+        return value == null ? "-" : numberFormat.format(value);
+    }
+
+    private void showError(String title, String message) {
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle(title);
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
+
+    private void showInfo(String title, String message) {
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle(title);
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
+}
@@ -1,9 +1,10 @@
 package com.hisabx.controller;
 
 import com.hisabx.model.*;
-import com.hisabx.service.CustomerService;
+import com.hisabx.service.CustomerDirectory;
 import com.hisabx.service.VoucherService;
 import com.hisabx.util.SessionManager;
+import com.hisabx.util.Typeahead;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -25,8 +26,6 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.ResourceBundle;
-import javafx.collections.transformation.FilteredList;
-import javafx.util.StringConverter;
 
 public class VoucherListController implements Initializable {
     
@@ -48,16 +47,13 @@ public class VoucherListController implements Initializable {
     @FXML private Label totalUsdLabel;
     
     private final VoucherService voucherService = new VoucherService();
-    private final CustomerService customerService = new CustomerService();
     private final DecimalFormat numberFormat = new DecimalFormat("#,###.##");
     private final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy/MM/dd");
     
     private VoucherType voucherType = VoucherType.RECEIPT;
     private ObservableList<Voucher> vouchers = FXCollections.observableArrayList();
-    private ObservableList<Customer> customers = FXCollections.observableArrayList();
-    private FilteredList<Customer> filteredCustomers;
+    private Typeahead<Customer> customerTypeahead;
     private Customer selectedCustomer;
-    private String customerSearchQuery;
     private String initialSearchTerm;
     
     @Override
@@ -87,65 +83,11 @@ public class VoucherListController implements Initializable {
         if (customerFilterCombo == null) {
             return;
         }
-        filteredCustomers = new FilteredList<>(customers, c -> true);
-        customerFilterCombo.setItems(filteredCustomers);
-        customerFilterCombo.setEditable(true);
-        customerFilterCombo.setConverter(new StringConverter<>() {
-            @Override
-            public String toString(Customer customer) {
-                if (customer == null) return "";
-                String code = customer.getCustomerCode() != null ? customer.getCustomerCode() : "";
-                return (code.isEmpty() ? "" : code + " - ") + customer.getName();
-            }
-
-            @Override
-            public Customer fromString(String s) {
-                if (s == null || s.isEmpty()) return null;
-                return filteredCustomers.getSource().stream()
-                        .filter(c -> {
-                            String label = toString(c);
-                            return label.equals(s) || (c.getName() != null && c.getName().contains(s));
-                        })
-                        .findFirst()
-                        .orElse(null);
-            }
+        customerTypeahead = Typeahead.forCustomers(customerFilterCombo, customer -> {
+            String code = customer.getCustomerCode() != null ? customer.getCustomerCode() : "";
+            return (code.isEmpty() ? "" : code + " - ") + customer.getName();
         });
 
-        if (customerFilterCombo.getEditor() != null) {
-            customerFilterCombo.getEditor().textProperty().addListener((obs, oldText, newText) -> {
-                if (customerFilterCombo.getValue() != null) {
-                    String rendered = customerFilterCombo.getConverter().toString(customerFilterCombo.getValue());
-                    if (rendered.equals(newText)) {
-                        return;
-                    }
-                }
-
-                if (newText != null) {
-                    boolean isSelection = filteredCustomers.getSource().stream()
-                            .anyMatch(c -> {
-                                String label = customerFilterCombo.getConverter().toString(c);
-                                return label != null && label.equals(newText);
-                            });
-                    if (isSelection) {
-                        return;
-                    }
-                }
-
-                customerSearchQuery = newText == null ? "" : newText.trim().toLowerCase();
-                filteredCustomers.setPredicate(c -> {
-                    if (customerSearchQuery.isEmpty()) return true;
-                    String name = c.getName() != null ? c.getName().toLowerCase() : "";
-                    String code = c.getCustomerCode() != null ? c.getCustomerCode().toLowerCase() : "";
-                    String full = (code + " - " + name).toLowerCase();
-                    return name.contains(customerSearchQuery) || code.contains(customerSearchQuery) || full.contains(customerSearchQuery);
-                });
-
-                if (!customerFilterCombo.isShowing()) {
-                    customerFilterCombo.show();
-                }
-            });
-        }
-
         customerFilterCombo.valueProperty().addListener((obs, oldVal, newVal) -> {
             selectedCustomer = newVal;
             updateProjectLocations(newVal);
@@ -161,9 +103,8 @@ public class VoucherListController implements Initializable {
     }
 
     private void loadCustomers() {
-        customers.setAll(customerService.getAllCustomers());
-        if (filteredCustomers != null) {
-            filteredCustomers.setPredicate(c -> true);
+        if (customerTypeahead != null) {
+            customerTypeahead.refresh();
         }
         if (initialSearchTerm != null && !initialSearchTerm.isBlank()) {
             selectCustomerByName(initialSearchTerm.trim());
@@ -174,13 +115,15 @@ public class VoucherListController implements Initializable {
         if (name == null || name.isBlank()) {
             return;
         }
-        Customer match = customers.stream()
+        CustomerDirectory.getInstance().all().stream()
                 .filter(c -> c.getName() != null && c.getName().contains(name))
                 .findFirst()
-                .orElse(null);
-        if (match != null && customerFilterCombo != null) {
-            customerFilterCombo.setValue(match);
-        }
+                .map(CustomerDirectory.Entry::toCustomer)
+                .ifPresent(match -> {
+                    if (customerTypeahead != null) {
+                        customerTypeahead.select(match);
+                    }
+                });
     }
 
     private void updateProjectLocations(Customer customer) {
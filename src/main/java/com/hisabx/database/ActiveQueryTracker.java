@@ -0,0 +1,200 @@
+package com.hisabx.database;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Tracks the SQL statement each thread is executing so stall diagnostics can report which
+ * query the FX thread was running.
+ *
+ * <p>Hibernate statements are picked up through the statement inspector and timed by
+ * {@link QueryMetricsListener}; plain JDBC connections are covered by wrapping them with
+ * {@link #track(Connection)}. State lives in a thread local, so threads that end are not kept
+ * alive; a thread that is watched from another one hands out its {@link Holder} through
+ * {@link #register()}.</p>
+ */
+public class ActiveQueryTracker implements StatementInspector {
+    private static final ThreadLocal<Holder> CURRENT = ThreadLocal.withInitial(Holder::new);
+    private static volatile long lastStatementAt;
+
+    @Override
+    public String inspect(String sql) {
+        CURRENT.get().prepared = sql;
+        lastStatementAt = System.currentTimeMillis();
+        return sql;
+    }
+
+    /**
+     * Time any thread last prepared or executed a statement, 0 if none yet.
+     */
+    public static long getLastStatementAt() {
+        return lastStatementAt;
+    }
+
+    /**
+     * Holder of the calling thread, for another thread to read what it is executing.
+     */
+    public static Holder register() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Mark the statement last prepared by Hibernate on this thread as executing.
+     */
+    static ActiveQuery hibernateExecutionStarted() {
+        Holder holder = CURRENT.get();
+        return holder.begin(holder.prepared);
+    }
+
+    /**
+     * Mark an execution returned by {@link #hibernateExecutionStarted()} as finished.
+     */
+    static void executionFinished(ActiveQuery query) {
+        if (query != null) {
+            CURRENT.get().end(query);
+        }
+    }
+
+    /**
+     * Wrap a plain JDBC connection so statements executed through it are tracked while they
+     * run. Queries stay active until their result set or statement is closed, since SQLite
+     * does most of the work while the rows are read.
+     */
+    public static Connection track(Connection conn) {
+        return (Connection) Proxy.newProxyInstance(ActiveQueryTracker.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    Object result = invoke(conn, method, args);
+                    if (result instanceof Statement) {
+                        String sql = method.getName().startsWith("prepare") ? (String) args[0] : null;
+                        return trackStatement((Statement) result, sql);
+                    }
+                    return result;
+                });
+    }
+
+    private static Statement trackStatement(Statement stmt, String preparedSql) {
+        Class<?> type = stmt instanceof CallableStatement ? CallableStatement.class
+                : stmt instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+        InvocationHandler handler = new InvocationHandler() {
+            private ActiveQuery open;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+                if (name.equals("close")) {
+                    finish();
+                    return ActiveQueryTracker.invoke(stmt, method, args);
+                }
+                if (!name.startsWith("execute")) {
+                    return ActiveQueryTracker.invoke(stmt, method, args);
+                }
+                finish();
+                String sql = args != null && args.length > 0 && args[0] instanceof String
+                        ? (String) args[0] : preparedSql;
+                lastStatementAt = System.currentTimeMillis();
+                ActiveQuery query = CURRENT.get().begin(sql);
+                if (!name.equals("executeQuery")) {
+                    try {
+                        return ActiveQueryTracker.invoke(stmt, method, args);
+                    } finally {
+                        CURRENT.get().end(query);
+                    }
+                }
+                try {
+                    open = query;
+                    ResultSet rs = (ResultSet) ActiveQueryTracker.invoke(stmt, method, args);
+                    return trackResultSet(rs, this::finish);
+                } catch (Throwable t) {
+                    finish();
+                    throw t;
+                }
+            }
+
+            private void finish() {
+                if (open != null) {
+                    CURRENT.get().end(open);
+                    open = null;
+                }
+            }
+        };
+        return (Statement) Proxy.newProxyInstance(ActiveQueryTracker.class.getClassLoader(),
+                new Class<?>[]{type}, handler);
+    }
+
+    private static ResultSet trackResultSet(ResultSet rs, Runnable onClose) {
+        return (ResultSet) Proxy.newProxyInstance(ActiveQueryTracker.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("close")) {
+                        onClose.run();
+                    }
+                    return invoke(rs, method, args);
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * What one thread is executing. Written by the owning thread, read by watchers.
+     */
+    public static class Holder {
+        private String prepared;
+        private volatile ActiveQuery active;
+
+        private Holder() {
+        }
+
+        /**
+         * Statement the thread is executing right now, or null if none.
+         */
+        public ActiveQuery getActive() {
+            return active;
+        }
+
+        private ActiveQuery begin(String sql) {
+            ActiveQuery query = new ActiveQuery(sql, System.currentTimeMillis(), active);
+            active = query;
+            return query;
+        }
+
+        private void end(ActiveQuery query) {
+            query.finished = true;
+            // Nested statements (a lookup while iterating a result set) hand back the outer one
+            ActiveQuery current = active;
+            while (current != null && current.finished) {
+                current = current.outer;
+            }
+            active = current;
+        }
+    }
+
+    public static class ActiveQuery {
+        private final String sql;
+        private final long startedAt;
+        private final ActiveQuery outer;
+        private boolean finished;
+
+        private ActiveQuery(String sql, long startedAt, ActiveQuery outer) {
+            this.sql = sql;
+            this.startedAt = startedAt;
+            this.outer = outer;
+        }
+
+        public String getSql() { return sql; }
+        public long getStartedAt() { return startedAt; }
+    }
+}
@@ -0,0 +1,324 @@
+package com.hisabx.database;
+
+import com.hisabx.model.dto.DatabaseHealth;
+import com.hisabx.util.AppConfigStore;
+import com.hisabx.util.UserActivity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * صيانة قاعدة البيانات - keeps the SQLite file healthy while the app runs for months.
+ *
+ * Every tick, once no statement ran for a few seconds, the planner statistics are refreshed
+ * ({@code PRAGMA optimize}, every few hours) and the WAL is checkpointed passively. Heavier
+ * work waits until the user has been idle: truncating a large WAL, returning free pages with
+ * {@code incremental_vacuum} and a rolling {@code quick_check}, one table at a time. Each
+ * tick stops after a small time budget or as soon as the user is back, and resumes on the
+ * next idle tick. A file created before incremental auto-vacuum was enabled needs a full
+ * VACUUM first; that rewrites the whole file, so it only runs when asked for from the
+ * diagnostics screen.
+ */
+public final class DatabaseMaintenance {
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseMaintenance.class);
+
+    private static final String IDLE_SECONDS_KEY = "maintenance_idle_seconds";
+    private static final String SLICE_MS_KEY = "maintenance_slice_ms";
+    private static final int DEFAULT_IDLE_SECONDS = 120;
+    private static final int DEFAULT_SLICE_MS = 200;
+
+    private static final long TICK_SECONDS = 30;
+    private static final long DB_QUIET_MS = 5000;
+    private static final long OPTIMIZE_FIRST_DELAY_MINUTES = 10;
+    private static final long OPTIMIZE_INTERVAL_MINUTES = 6 * 60;
+    private static final long QUICK_CHECK_INTERVAL_HOURS = 24;
+    private static final long WAL_TRUNCATE_BYTES = 8L * 1024 * 1024;
+    private static final int VACUUM_STEP_PAGES = 256;
+    private static final int MIN_FREE_PAGES = 64;
+    private static final double MIN_FREE_RATIO = 0.01;
+    private static final int BUSY_TIMEOUT_MS = 100;
+
+    private static final File WAL_FILE = new File("hisabx.db-wal");
+
+    private static DatabaseMaintenance instance;
+
+    private final long idleMillis;
+    private final long sliceNanos;
+    private ScheduledExecutorService worker;
+
+    // Maintenance thread state
+    private long nextOptimizeAt;
+    private long nextQuickCheckAt;
+    private final Deque<String> quickCheckQueue = new ArrayDeque<>();
+    private final List<String> quickCheckIssues = new ArrayList<>();
+
+    private volatile LocalDateTime lastOptimize;
+    private volatile LocalDateTime lastCheckpoint;
+    private volatile LocalDateTime lastVacuum;
+    private volatile long reclaimedPages;
+    private volatile LocalDateTime lastQuickCheck;
+    private volatile String quickCheckResult;
+
+    private DatabaseMaintenance() {
+        Properties props = new AppConfigStore().load();
+        idleMillis = TimeUnit.SECONDS.toMillis(Math.max(10, parseInt(props.getProperty(IDLE_SECONDS_KEY), DEFAULT_IDLE_SECONDS)));
+        sliceNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(20, parseInt(props.getProperty(SLICE_MS_KEY), DEFAULT_SLICE_MS)));
+    }
+
+    public static synchronized DatabaseMaintenance getInstance() {
+        if (instance == null) {
+            instance = new DatabaseMaintenance();
+        }
+        return instance;
+    }
+
+    public synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        nextOptimizeAt = now + TimeUnit.MINUTES.toMillis(OPTIMIZE_FIRST_DELAY_MINUTES);
+        nextQuickCheckAt = now;
+        worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "DB-Maintenance");
+            t.setDaemon(true);
+            return t;
+        });
+        worker.scheduleWithFixedDelay(this::tick, TICK_SECONDS, TICK_SECONDS, TimeUnit.SECONDS);
+        logger.info("Database maintenance scheduled (idle after {} s)", TimeUnit.MILLISECONDS.toSeconds(idleMillis));
+    }
+
+    /**
+     * Stop the scheduler, waiting briefly for a running step; used before the database file
+     * is replaced.
+     */
+    public synchronized void stop() {
+        if (worker == null) {
+            return;
+        }
+        worker.shutdownNow();
+        try {
+            worker.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        worker = null;
+    }
+
+    /**
+     * Current size of the file, the WAL and the free list, with the last maintenance results.
+     */
+    public DatabaseHealth getHealth() {
+        try (Connection conn = DatabaseManager.openConnection();
+             Statement stmt = conn.createStatement()) {
+            return new DatabaseHealth(pragma(stmt, "page_size"), pragma(stmt, "page_count"),
+                    pragma(stmt, "freelist_count"), WAL_FILE.length(), autoVacuumName(pragma(stmt, "auto_vacuum")),
+                    lastOptimize, lastCheckpoint, lastVacuum, reclaimedPages, lastQuickCheck, quickCheckResult);
+        } catch (SQLException e) {
+            logger.error("Failed to read database health", e);
+            throw new RuntimeException("فشل في قراءة حالة قاعدة البيانات", e);
+        }
+    }
+
+    private void tick() {
+        if (System.currentTimeMillis() - ActiveQueryTracker.getLastStatementAt() < DB_QUIET_MS) {
+            return;
+        }
+        long deadline = System.nanoTime() + sliceNanos;
+        try (Connection conn = DatabaseManager.openConnection();
+             Statement stmt = conn.createStatement()) {
+            // Give way to the application instead of waiting for its locks
+            stmt.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MS);
+
+            long now = System.currentTimeMillis();
+            if (now >= nextOptimizeAt) {
+                DatabaseManager.optimize();
+                lastOptimize = LocalDateTime.now();
+                nextOptimizeAt = now + TimeUnit.MINUTES.toMillis(OPTIMIZE_INTERVAL_MINUTES);
+            }
+            checkpoint(stmt, "PASSIVE");
+            if (!userIdle()) {
+                return;
+            }
+
+            long walBytes = WAL_FILE.length();
+            if (walBytes > WAL_TRUNCATE_BYTES && checkpoint(stmt, "TRUNCATE")) {
+                logger.info("WAL truncated ({} KB)", walBytes / 1024);
+            }
+            if (System.nanoTime() < deadline && userIdle()) {
+                reclaimFreePages(stmt, deadline);
+            }
+            if (System.nanoTime() < deadline && userIdle()) {
+                quickCheck(stmt, deadline, now);
+            }
+        } catch (SQLException e) {
+            // Usually SQLITE_BUSY: the app is writing, try again on the next tick
+            logger.debug("Database maintenance step skipped", e);
+        } catch (RuntimeException e) {
+            logger.warn("Database maintenance step failed", e);
+        }
+    }
+
+    private boolean userIdle() {
+        return UserActivity.getIdleMillis() >= idleMillis && !Thread.currentThread().isInterrupted();
+    }
+
+    /** @return false when a reader or writer kept the checkpoint from completing */
+    private boolean checkpoint(Statement stmt, String mode) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA wal_checkpoint(" + mode + ")")) {
+            // Columns: busy, WAL frames, frames checkpointed
+            if (rs.next() && rs.getInt(1) == 0) {
+                lastCheckpoint = LocalDateTime.now();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Convert the file to incremental auto-vacuum with a full VACUUM, which also returns its
+     * free pages. Other connections wait for the whole rewrite, so this runs on the maintenance
+     * thread between ticks and only on request. Nothing is done for a file already converted.
+     *
+     * @return the health of the file afterwards
+     */
+    public DatabaseHealth convertToIncrementalVacuum() {
+        Callable<Void> work = () -> {
+            try (Connection conn = DatabaseManager.openConnection();
+                 Statement stmt = conn.createStatement()) {
+                if (pragma(stmt, "auto_vacuum") != 2) {
+                    long free = pragma(stmt, "freelist_count");
+                    long started = System.nanoTime();
+                    stmt.execute("PRAGMA auto_vacuum = INCREMENTAL");
+                    stmt.execute("VACUUM");
+                    recordReclaimed(free);
+                    logger.info("Database converted to incremental auto-vacuum, {} free pages reclaimed in {} ms",
+                            free, (System.nanoTime() - started) / 1_000_000);
+                }
+            }
+            return null;
+        };
+        try {
+            ScheduledExecutorService current;
+            synchronized (this) {
+                current = worker;
+            }
+            if (current != null) {
+                current.submit(work).get();
+            } else {
+                work.call();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("تم إيقاف ضغط قاعدة البيانات", e);
+        } catch (Exception e) {
+            logger.error("Failed to convert database to incremental auto-vacuum", e);
+            throw new RuntimeException("فشل في ضغط قاعدة البيانات", e);
+        }
+        return getHealth();
+    }
+
+    /**
+     * Return free pages to the file system in small steps. Files not yet converted to
+     * incremental auto-vacuum are left alone; see {@link #convertToIncrementalVacuum()}.
+     */
+    private void reclaimFreePages(Statement stmt, long deadline) throws SQLException {
+        long pageCount = pragma(stmt, "page_count");
+        long free = pragma(stmt, "freelist_count");
+        if (free < MIN_FREE_PAGES || free < pageCount * MIN_FREE_RATIO || pragma(stmt, "auto_vacuum") != 2) {
+            return;
+        }
+        while (free > 0 && System.nanoTime() < deadline && userIdle()) {
+            // executeUpdate steps the pragma to completion; execute() would free a single page
+            stmt.executeUpdate("PRAGMA incremental_vacuum(" + VACUUM_STEP_PAGES + ")");
+            long left = pragma(stmt, "freelist_count");
+            if (left >= free) {
+                break;
+            }
+            recordReclaimed(free - left);
+            free = left;
+        }
+    }
+
+    private void recordReclaimed(long pages) {
+        reclaimedPages += pages;
+        lastVacuum = LocalDateTime.now();
+    }
+
+    /**
+     * Rolling quick_check: one table (with its indexes) per step, a full pass once a day.
+     */
+    private void quickCheck(Statement stmt, long deadline, long now) throws SQLException {
+        if (quickCheckQueue.isEmpty()) {
+            if (now < nextQuickCheckAt) {
+                return;
+            }
+            try (ResultSet rs = stmt.executeQuery(
+                    "SELECT name FROM sqlite_master WHERE type = 'table' AND name NOT LIKE 'sqlite_%' ORDER BY name")) {
+                while (rs.next()) {
+                    quickCheckQueue.add(rs.getString(1));
+                }
+            }
+            quickCheckIssues.clear();
+        }
+        while (!quickCheckQueue.isEmpty() && System.nanoTime() < deadline && userIdle()) {
+            String table = quickCheckQueue.peek();
+            try (ResultSet rs = stmt.executeQuery("PRAGMA quick_check(\"" + table.replace("\"", "\"\"") + "\")")) {
+                while (rs.next()) {
+                    String result = rs.getString(1);
+                    if (!"ok".equalsIgnoreCase(result)) {
+                        quickCheckIssues.add(table + ": " + result);
+                    }
+                }
+            }
+            quickCheckQueue.poll();
+        }
+        if (quickCheckQueue.isEmpty()) {
+            lastQuickCheck = LocalDateTime.now();
+            nextQuickCheckAt = now + TimeUnit.HOURS.toMillis(QUICK_CHECK_INTERVAL_HOURS);
+            if (quickCheckIssues.isEmpty()) {
+                quickCheckResult = "ok";
+                logger.info("Database quick_check passed");
+            } else {
+                quickCheckResult = String.join("\n", quickCheckIssues);
+                logger.warn("Database quick_check reported issues: {}", quickCheckResult);
+            }
+        }
+    }
+
+    private static long pragma(Statement stmt, String name) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA " + name)) {
+            return rs.next() ? rs.getLong(1) : 0L;
+        }
+    }
+
+    private static String autoVacuumName(long mode) {
+        return mode == 2 ? "INCREMENTAL" : mode == 1 ? "FULL" : "NONE";
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid maintenance setting: {}", value);
+            }
+        }
+        return defaultValue;
+    }
+}
@@ -1,5 +1,7 @@
 package com.hisabx.database;
 
+import com.hisabx.model.CostingMethod;
+import com.hisabx.util.AppConfigStore;
 import org.hibernate.SessionFactory;
 import org.hibernate.cfg.Configuration;
 import org.slf4j.Logger;
@@ -15,6 +17,23 @@ import java.sql.ResultSet;
 public class DatabaseManager {
     private static final Logger logger = LoggerFactory.getLogger(DatabaseManager.class);
     private static final String DB_URL = "jdbc:sqlite:hisabx.db";
+    private static final String COSTING_METHOD_KEY = "inventory_costing_method";
+    private static final String CATEGORY_LINK_MIGRATION = "link_product_categories";
+    private static final String STOCK_JOURNAL_MIGRATION = "seed_stock_journal";
+
+    /**
+     * Stock left above the reorder level: the larger of the typed minimum and the reorder point
+     * computed from sales. Low-stock queries must use this exact expression to hit its index.
+     */
+    public static final String REORDER_GAP =
+            "quantity_in_stock - MAX(COALESCE(minimum_stock, 0), COALESCE(reorder_point, 0))";
+
+    /**
+     * Ids of a category (bound by name) and all categories under it, for
+     * {@code category_id IN (...)} filters.
+     */
+    public static final String CATEGORY_SUBTREE =
+            "SELECT cc.descendant_id FROM category_closure cc JOIN categories c ON c.id = cc.ancestor_id WHERE c.name = ?";
     private static SessionFactory sessionFactory;
     
     public static void initialize() {
@@ -24,6 +43,8 @@ public class DatabaseManager {
             
             // Configure Hibernate
             configureHibernate();
+
+            DatabaseMaintenance.getInstance().start();
             
             logger.info("Database initialized successfully");
         } catch (Exception e) {
@@ -34,11 +55,16 @@ public class DatabaseManager {
     
     private static void initializeSQLite() throws SQLException {
         File dbFile = new File("hisabx.db");
+        boolean newFile = !dbFile.exists();
         
         try (Connection conn = DriverManager.getConnection(DB_URL);
              Statement stmt = conn.createStatement()) {
 
             stmt.execute("PRAGMA busy_timeout = 5000");
+            if (newFile) {
+                // Only takes effect before the first table; older files are converted from the diagnostics screen
+                stmt.execute("PRAGMA auto_vacuum = INCREMENTAL");
+            }
             stmt.execute("PRAGMA journal_mode = WAL");
             
             // Create tables if they don't exist
@@ -97,6 +123,403 @@ public class DatabaseManager {
         } catch (SQLException ignored) {
             // Column already exists or table missing; ignore
         }
+
+        // Per-currency balances and sale currency are otherwise only added by Hibernate after
+        // this point; the indexes and reports below need them on a fresh database
+        for (String column : new String[]{
+                "customers ADD COLUMN balance_iqd REAL DEFAULT 0",
+                "customers ADD COLUMN balance_usd REAL DEFAULT 0",
+                "sales ADD COLUMN currency TEXT",
+                // Inventory costing, filled in by seedInventoryValuation below
+                "products ADD COLUMN average_cost REAL",
+                "products ADD COLUMN stock_value REAL",
+                "sale_items ADD COLUMN cost_amount REAL",
+                "return_items ADD COLUMN cost_amount REAL",
+                "stock_movements ADD COLUMN unit_cost REAL",
+                "stock_movements ADD COLUMN cost_amount REAL",
+                // Reorder levels, filled in by ReorderEngine
+                "products ADD COLUMN daily_demand REAL",
+                "products ADD COLUMN reorder_point REAL",
+                "products ADD COLUMN reorder_up_to REAL",
+                "products ADD COLUMN reorder_updated_at INTEGER",
+                // Category link by id, filled in by seedCategoryTree from the old name column
+                "products ADD COLUMN category_id INTEGER",
+                // Stock locations; null means the default location
+                "stock_movements ADD COLUMN location_id INTEGER",
+                "sales ADD COLUMN location_id INTEGER",
+                "vouchers ADD COLUMN location_id INTEGER",
+                "stocktakes ADD COLUMN location_id INTEGER"}) {
+            try {
+                stmt.execute("ALTER TABLE " + column);
+            } catch (SQLException ignored) {
+                // Column already exists; ignore
+            }
+        }
+
+        // Partial indexes for debtor / creditor lists: only non-zero balances are indexed and
+        // the index order gives the largest exposure first
+        try {
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_customers_debt_iqd ON customers(balance_iqd) WHERE balance_iqd < 0");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_customers_debt_usd ON customers(balance_usd) WHERE balance_usd < 0");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_customers_credit_iqd ON customers(balance_iqd) WHERE balance_iqd > 0");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_customers_credit_usd ON customers(balance_usd) WHERE balance_usd > 0");
+        } catch (SQLException e) {
+            logger.warn("Failed to create customer balance indexes", e);
+        }
+
+        seedStockJournal(stmt);
+        seedLocationStock(stmt);
+        seedInventoryValuation(stmt);
+        seedCategoryTree(stmt);
+        seedAlerts(stmt);
+
+        createCompositeIndexes(stmt);
+    }
+
+    /**
+     * Start the stock journal from the current stock, once: if the journal is still empty, every
+     * product with stock gets an OPENING movement, so journal and quantity_in_stock agree from
+     * day one. The run is recorded in schema_migrations, so a journal that is empty later is never
+     * seeded again (the location_stock trigger would count that stock twice).
+     */
+    private static void seedStockJournal(Statement stmt) {
+        try {
+            if (isMigrationApplied(stmt, STOCK_JOURNAL_MIGRATION)) {
+                return;
+            }
+            stmt.execute("BEGIN IMMEDIATE");
+            try {
+                boolean empty;
+                try (ResultSet rs = stmt.executeQuery("SELECT NOT EXISTS (SELECT 1 FROM stock_movements)")) {
+                    empty = rs.next() && rs.getInt(1) == 1;
+                }
+                if (empty) {
+                    int seeded = stmt.executeUpdate("INSERT INTO stock_movements (product_id, movement_date, quantity, movement_type, source_id)"
+                            + " SELECT id, " + System.currentTimeMillis() + ", quantity_in_stock, 'OPENING', id"
+                            + " FROM products WHERE COALESCE(quantity_in_stock, 0) <> 0");
+                    if (seeded > 0) {
+                        logger.info("Stock journal started with opening balances of {} products", seeded);
+                    }
+                }
+                markMigrationApplied(stmt, STOCK_JOURNAL_MIGRATION);
+                stmt.execute("COMMIT");
+            } catch (SQLException e) {
+                stmt.execute("ROLLBACK");
+                throw e;
+            }
+        } catch (SQLException e) {
+            logger.warn("Failed to seed stock journal", e);
+        }
+    }
+
+    /**
+     * Keep per-location stock in step with the journal: every movement adds its quantity to
+     * location_stock for its location (the default location when it has none), so availability
+     * at a location is one primary-key lookup and products.quantity_in_stock stays the total.
+     * Existing stock starts at the default location.
+     */
+    private static void seedLocationStock(Statement stmt) {
+        try {
+            stmt.execute("INSERT INTO stock_locations (name, is_default, is_active, created_at)"
+                    + " SELECT 'المخزن الرئيسي', 1, 1, " + System.currentTimeMillis()
+                    + " WHERE NOT EXISTS (SELECT 1 FROM stock_locations WHERE is_default = 1)");
+            stmt.execute("CREATE TRIGGER IF NOT EXISTS trg_stock_movements_location AFTER INSERT ON stock_movements"
+                    + " BEGIN INSERT INTO location_stock (product_id, location_id, quantity)"
+                    + " VALUES (NEW.product_id, COALESCE(NEW.location_id,"
+                    + " (SELECT id FROM stock_locations WHERE is_default = 1)), NEW.quantity)"
+                    + " ON CONFLICT (product_id, location_id) DO UPDATE SET quantity = quantity + excluded.quantity; END");
+            stmt.execute("CREATE TRIGGER IF NOT EXISTS trg_products_deleted_locations AFTER DELETE ON products"
+                    + " BEGIN DELETE FROM location_stock WHERE product_id = OLD.id; END");
+
+            try (ResultSet rs = stmt.executeQuery("SELECT EXISTS (SELECT 1 FROM location_stock)")) {
+                if (rs.next() && rs.getInt(1) == 1) {
+                    return;
+                }
+            }
+            int seeded = stmt.executeUpdate("INSERT INTO location_stock (product_id, location_id, quantity)"
+                    + " SELECT p.id, l.id, p.quantity_in_stock FROM products p, stock_locations l"
+                    + " WHERE l.is_default = 1 AND COALESCE(p.quantity_in_stock, 0) <> 0");
+            if (seeded > 0) {
+                logger.info("Stock of {} products placed at the default location", seeded);
+            }
+        } catch (SQLException e) {
+            logger.warn("Failed to set up location stock", e);
+        }
+    }
+
+    /**
+     * Keep the alerts table current with triggers: a product gets a LOW_STOCK row while its stock
+     * is at or under its reorder level, and an unpaid installment an INSTALLMENT row once it falls
+     * due within the reminder window (alert_state.installment_horizon, moved on daily by
+     * AlertService). The product triggers only act when a product crosses its level. Low-stock
+     * rows are rebuilt here on every start in case the table was changed outside the application.
+     */
+    private static void seedAlerts(Statement stmt) {
+        String now = "CAST(strftime('%s', 'now') AS INTEGER) * 1000";
+        try {
+            stmt.execute("INSERT OR IGNORE INTO alert_state (id, installment_days, installment_horizon)"
+                    + " VALUES (1, 0, 0)");
+            stmt.execute("CREATE TRIGGER IF NOT EXISTS trg_products_alert_insert AFTER INSERT ON products"
+                    + " WHEN " + isLowStock("NEW")
+                    + " BEGIN INSERT OR IGNORE INTO alerts (kind, ref_id, due_at, created_at)"
+                    + " VALUES ('LOW_STOCK', NEW.id, NULL, " + now + "); END");
+            stmt.execute("CREATE TRIGGER IF NOT EXISTS trg_products_alert_update"
+                    + " AFTER UPDATE OF quantity_in_stock, minimum_stock, reorder_point, is_active ON products"
+                    + " WHEN " + isLowStock("NEW") + " <> " + isLowStock("OLD")
+                    + " BEGIN DELETE FROM alerts WHERE kind = 'LOW_STOCK' AND ref_id = OLD.id;"
+                    + " INSERT INTO alerts (kind, ref_id, due_at, created_at)"
+                    + " SELECT 'LOW_STOCK', NEW.id, NULL, " + now + " WHERE " + isLowStock("NEW") + "; END");
+            stmt.execute("CREATE TRIGGER IF NOT EXISTS trg_products_alert_delete AFTER DELETE ON products"
+                    + " BEGIN DELETE FROM alerts WHERE kind = 'LOW_STOCK' AND ref_id = OLD.id; END");
+
+            String due = SqliteDates.epochMillis("NEW.due_date");
+            String dueInWindow = "COALESCE(NEW.is_paid, 0) = 0 AND " + due
+                    + " <= (SELECT installment_horizon FROM alert_state WHERE id = 1)";
+            stmt.execute("CREATE TRIGGER IF NOT EXISTS trg_installments_alert_insert AFTER INSERT ON installments"
+                    + " WHEN " + dueInWindow
+                    + " BEGIN INSERT OR REPLACE INTO alerts (kind, ref_id, due_at, created_at)"
+                    + " VALUES ('INSTALLMENT', NEW.id, " + due + ", " + now + "); END");
+            stmt.execute("CREATE TRIGGER IF NOT EXISTS trg_installments_alert_update"
+                    + " AFTER UPDATE OF is_paid, due_date ON installments"
+                    + " BEGIN DELETE FROM alerts WHERE kind = 'INSTALLMENT' AND ref_id = OLD.id;"
+                    + " INSERT INTO alerts (kind, ref_id, due_at, created_at)"
+                    + " SELECT 'INSTALLMENT', NEW.id, " + due + ", " + now + " WHERE " + dueInWindow + "; END");
+            stmt.execute("CREATE TRIGGER IF NOT EXISTS trg_installments_alert_delete AFTER DELETE ON installments"
+                    + " BEGIN DELETE FROM alerts WHERE kind = 'INSTALLMENT' AND ref_id = OLD.id; END");
+
+            String low = "is_active = 1 AND " + REORDER_GAP + " <= 0";
+            int removed = stmt.executeUpdate("DELETE FROM alerts WHERE kind = 'LOW_STOCK'"
+                    + " AND ref_id NOT IN (SELECT id FROM products WHERE " + low + ")");
+            int added = stmt.executeUpdate("INSERT OR IGNORE INTO alerts (kind, ref_id, due_at, created_at)"
+                    + " SELECT 'LOW_STOCK', id, NULL, " + now + " FROM products WHERE " + low);
+            if (removed > 0 || added > 0) {
+                logger.info("Low-stock alerts resynchronised: {} added, {} removed", added, removed);
+            }
+        } catch (SQLException e) {
+            logger.warn("Failed to set up alerts", e);
+        }
+    }
+
+    /** {@link #REORDER_GAP} at or under zero for an active product, on a trigger row; 0 or 1. */
+    private static String isLowStock(String row) {
+        return "COALESCE(" + row + ".is_active = 1 AND " + row + ".quantity_in_stock - MAX(COALESCE("
+                + row + ".minimum_stock, 0), COALESCE(" + row + ".reorder_point, 0)) <= 0, 0)";
+    }
+
+    /**
+     * Start inventory costing from the current stock at each product's cost price, and
+     * recompute stock values when the configured costing method changed since the last start.
+     * Lines sold before costing existed get their cost from the product's cost price.
+     */
+    private static void seedInventoryValuation(Statement stmt) {
+        CostingMethod configured = CostingMethod.fromConfig(
+                new AppConfigStore().load().getProperty(COSTING_METHOD_KEY));
+        try {
+            // products.stock_value is only written by costing; the total follows it here
+            stmt.execute("CREATE TRIGGER IF NOT EXISTS trg_products_stock_value AFTER UPDATE OF stock_value ON products"
+                    + " BEGIN UPDATE inventory_valuation SET total_value = total_value"
+                    + " + COALESCE(NEW.stock_value, 0) - COALESCE(OLD.stock_value, 0) WHERE id = 1; END");
+            stmt.execute("CREATE TRIGGER IF NOT EXISTS trg_products_deleted_value AFTER DELETE ON products"
+                    + " BEGIN UPDATE inventory_valuation SET total_value = total_value - COALESCE(OLD.stock_value, 0) WHERE id = 1;"
+                    + " DELETE FROM cost_layers WHERE product_id = OLD.id; END");
+
+            String stored = null;
+            try (ResultSet rs = stmt.executeQuery("SELECT costing_method FROM inventory_valuation WHERE id = 1")) {
+                if (rs.next()) {
+                    stored = rs.getString(1);
+                }
+            }
+            if (configured.name().equals(stored)) {
+                return;
+            }
+            stmt.execute("BEGIN IMMEDIATE");
+            try {
+                if (stored == null) {
+                    long now = System.currentTimeMillis();
+                    stmt.executeUpdate("UPDATE stock_movements SET unit_cost = COALESCE(p.cost_price, 0),"
+                            + " cost_amount = stock_movements.quantity * COALESCE(p.cost_price, 0)"
+                            + " FROM products p WHERE p.id = stock_movements.product_id AND stock_movements.unit_cost IS NULL");
+                    stmt.executeUpdate("INSERT INTO cost_layers (product_id, movement_id, layer_date, unit_cost, quantity, remaining)"
+                            + " SELECT p.id, (SELECT MAX(m.id) FROM stock_movements m WHERE m.product_id = p.id), " + now + ","
+                            + " COALESCE(p.cost_price, 0), p.quantity_in_stock, p.quantity_in_stock"
+                            + " FROM products p WHERE p.quantity_in_stock > 0");
+                    stmt.executeUpdate("UPDATE products SET average_cost = COALESCE(cost_price, 0),"
+                            + " stock_value = MAX(COALESCE(quantity_in_stock, 0), 0) * COALESCE(cost_price, 0)");
+                    stmt.executeUpdate("UPDATE sale_items SET cost_amount = quantity"
+                            + " * COALESCE((SELECT p.cost_price FROM products p WHERE p.id = sale_items.product_id), 0)"
+                            + " WHERE cost_amount IS NULL");
+                    stmt.executeUpdate("UPDATE return_items SET cost_amount = CASE WHEN condition_status = 'GOOD' THEN quantity"
+                            + " * COALESCE((SELECT p.cost_price FROM products p WHERE p.id = return_items.product_id), 0)"
+                            + " ELSE 0 END WHERE cost_amount IS NULL");
+                } else if (configured == CostingMethod.FIFO) {
+                    stmt.executeUpdate("UPDATE products SET stock_value = COALESCE((SELECT SUM(l.remaining * l.unit_cost)"
+                            + " FROM cost_layers l WHERE l.product_id = products.id AND l.remaining > 0), 0)");
+                } else {
+                    stmt.executeUpdate("UPDATE products SET stock_value = MAX(COALESCE(quantity_in_stock, 0), 0)"
+                            + " * COALESCE(average_cost, cost_price, 0)");
+                }
+                stmt.executeUpdate("INSERT OR REPLACE INTO inventory_valuation (id, costing_method, total_value)"
+                        + " SELECT 1, '" + configured.name() + "', COALESCE(SUM(stock_value), 0) FROM products");
+                stmt.execute("COMMIT");
+                logger.info("Inventory valued by {} (was {})", configured, stored);
+            } catch (SQLException e) {
+                stmt.execute("ROLLBACK");
+                throw e;
+            }
+        } catch (SQLException e) {
+            logger.warn("Failed to set up inventory valuation", e);
+        }
+    }
+
+    /**
+     * Link products to categories by id and keep the category_closure table (every ancestor /
+     * descendant pair with its depth) in step with categories.parent_id through triggers, so a
+     * subtree is one indexed lookup and renaming a category touches one row. The old free-text
+     * products.category column is linked once, creating missing categories. It is kept as it was
+     * and no longer written, so the original names stay available until a later, explicit
+     * migration removes it.
+     */
+    private static void seedCategoryTree(Statement stmt) {
+        try {
+            stmt.execute("DROP INDEX IF EXISTS idx_products_category");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_products_category_id ON products(category_id)");
+
+            stmt.execute("CREATE TRIGGER IF NOT EXISTS trg_categories_tree_insert AFTER INSERT ON categories"
+                    + " BEGIN INSERT INTO category_closure (ancestor_id, descendant_id, depth) VALUES (NEW.id, NEW.id, 0);"
+                    + " INSERT INTO category_closure (ancestor_id, descendant_id, depth)"
+                    + " SELECT ancestor_id, NEW.id, depth + 1 FROM category_closure WHERE descendant_id = NEW.parent_id; END");
+            stmt.execute("CREATE TRIGGER IF NOT EXISTS trg_categories_tree_cycle BEFORE UPDATE OF parent_id ON categories"
+                    + " WHEN NEW.parent_id IS NOT NULL AND EXISTS (SELECT 1 FROM category_closure"
+                    + " WHERE ancestor_id = NEW.id AND descendant_id = NEW.parent_id)"
+                    + " BEGIN SELECT RAISE(ABORT, 'category cycle'); END");
+            // Moving a category moves its whole subtree: cut every link from the subtree to the
+            // old ancestors, then hang the subtree under the new parent's ancestors
+            stmt.execute("CREATE TRIGGER IF NOT EXISTS trg_categories_tree_move AFTER UPDATE OF parent_id ON categories"
+                    + " WHEN OLD.parent_id IS NOT NEW.parent_id"
+                    + " BEGIN DELETE FROM category_closure"
+                    + " WHERE descendant_id IN (SELECT descendant_id FROM category_closure WHERE ancestor_id = NEW.id)"
+                    + " AND ancestor_id NOT IN (SELECT descendant_id FROM category_closure WHERE ancestor_id = NEW.id);"
+                    + " INSERT INTO category_closure (ancestor_id, descendant_id, depth)"
+                    + " SELECT up.ancestor_id, down.descendant_id, up.depth + down.depth + 1"
+                    + " FROM category_closure up, category_closure down"
+                    + " WHERE up.descendant_id = NEW.parent_id AND down.ancestor_id = NEW.id; END");
+            // A deleted category's children move up to its parent and its products become uncategorized
+            stmt.execute("CREATE TRIGGER IF NOT EXISTS trg_categories_tree_delete BEFORE DELETE ON categories"
+                    + " BEGIN UPDATE categories SET parent_id = OLD.parent_id WHERE parent_id = OLD.id;"
+                    + " UPDATE products SET category_id = NULL WHERE category_id = OLD.id; END");
+            stmt.execute("CREATE TRIGGER IF NOT EXISTS trg_categories_tree_deleted AFTER DELETE ON categories"
+                    + " BEGIN DELETE FROM category_closure WHERE ancestor_id = OLD.id OR descendant_id = OLD.id; END");
+
+            boolean seeded;
+            try (ResultSet rs = stmt.executeQuery("SELECT (SELECT COUNT(*) FROM categories)"
+                    + " = (SELECT COUNT(*) FROM category_closure WHERE depth = 0)")) {
+                seeded = rs.next() && rs.getInt(1) == 1;
+            }
+            boolean legacy;
+            try (ResultSet rs = stmt.executeQuery("SELECT EXISTS (SELECT 1 FROM pragma_table_info('products')"
+                    + " WHERE name = 'category')")) {
+                legacy = rs.next() && rs.getInt(1) == 1;
+            }
+            legacy = legacy && !isMigrationApplied(stmt, CATEGORY_LINK_MIGRATION);
+            if (seeded && !legacy) {
+                return;
+            }
+            stmt.execute("BEGIN IMMEDIATE");
+            try {
+                if (!seeded) {
+                    stmt.executeUpdate("DELETE FROM category_closure");
+                    stmt.executeUpdate("INSERT INTO category_closure (ancestor_id, descendant_id, depth)"
+                            + " WITH RECURSIVE tree(ancestor_id, descendant_id, depth) AS ("
+                            + " SELECT id, id, 0 FROM categories"
+                            + " UNION ALL SELECT c.parent_id, t.descendant_id, t.depth + 1"
+                            + " FROM tree t JOIN categories c ON c.id = t.ancestor_id"
+                            + " WHERE c.parent_id IS NOT NULL AND t.depth < 64)"
+                            + " SELECT ancestor_id, descendant_id, MIN(depth) FROM tree GROUP BY ancestor_id, descendant_id");
+                }
+                if (legacy) {
+                    long now = System.currentTimeMillis();
+                    int created = stmt.executeUpdate("INSERT INTO categories (name, is_active, created_at, updated_at)"
+                            + " SELECT DISTINCT trim(category), 1, " + now + ", " + now + " FROM products"
+                            + " WHERE category IS NOT NULL AND trim(category) <> ''"
+                            + " AND trim(category) NOT IN (SELECT name FROM categories)");
+                    int linked = stmt.executeUpdate("UPDATE products SET category_id = c.id"
+                            + " FROM categories c WHERE c.name = trim(products.category)");
+                    // The name is read through category_id from now on; the column is left untouched
+                    markMigrationApplied(stmt, CATEGORY_LINK_MIGRATION);
+                    logger.info("Linked {} products to categories ({} categories created)", linked, created);
+                }
+                stmt.execute("COMMIT");
+            } catch (SQLException e) {
+                stmt.execute("ROLLBACK");
+                throw e;
+            }
+        } catch (SQLException e) {
+            logger.warn("Failed to set up category tree", e);
+        }
+    }
+
+    private static boolean isMigrationApplied(Statement stmt, String name) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("SELECT 1 FROM schema_migrations WHERE name = '" + name + "'")) {
+            return rs.next();
+        }
+    }
+
+    private static void markMigrationApplied(Statement stmt, String name) throws SQLException {
+        stmt.executeUpdate("INSERT OR IGNORE INTO schema_migrations (name, applied_at) VALUES ('"
+                + name + "', " + System.currentTimeMillis() + ")");
+    }
+
+    /**
+     * Multi-column indexes matching how the application filters: equality columns first, then
+     * the range / ORDER BY column. They replace the single-column customer and voucher type
+     * indexes, which are now a prefix of them.
+     */
+    private static void createCompositeIndexes(Statement stmt) {
+        String[] ddl = {
+                // Statements, aging and customer sale lists: customer + currency, newest first
+                "CREATE INDEX IF NOT EXISTS idx_sales_customer_currency_date ON sales(customer_id, currency, sale_date)",
+                "CREATE INDEX IF NOT EXISTS idx_vouchers_customer_active_date ON vouchers(customer_id, is_cancelled, voucher_date)",
+                "CREATE INDEX IF NOT EXISTS idx_vouchers_type_active_date ON vouchers(voucher_type, is_cancelled, voucher_date)",
+                // Overdue / upcoming installments
+                "CREATE INDEX IF NOT EXISTS idx_installments_unpaid_due ON installments(is_paid, due_date)",
+                // Gross profit: per-sale sums read from the index alone
+                "CREATE INDEX IF NOT EXISTS idx_sale_items_sale_cost ON sale_items(sale_id, product_id, total_price, cost_amount)",
+                "CREATE INDEX IF NOT EXISTS idx_return_items_return_cost ON return_items(return_id, product_id, total_price, cost_amount)",
+                // Date ranges in reports: matched by SqliteDates.epochMillis(sale_date)
+                "CREATE INDEX IF NOT EXISTS idx_sales_date_millis ON sales(" + SqliteDates.epochMillis("sale_date") + ")",
+                "CREATE INDEX IF NOT EXISTS idx_returns_date_millis ON sale_returns(" + SqliteDates.epochMillis("return_date") + ")",
+                // Low-stock check: matched by the expression in ProductRepository.findLowStock
+                "CREATE INDEX IF NOT EXISTS idx_products_reorder ON products(is_active, (" + REORDER_GAP + "))",
+                "DROP INDEX IF EXISTS idx_products_low_stock",
+                "DROP INDEX IF EXISTS idx_sales_customer",
+                "DROP INDEX IF EXISTS idx_vouchers_customer",
+                "DROP INDEX IF EXISTS idx_vouchers_type"
+        };
+        boolean created = false;
+        for (String sql : ddl) {
+            try {
+                created |= sql.startsWith("CREATE") && !indexExists(stmt, sql.split(" ")[5]);
+                stmt.execute(sql);
+            } catch (SQLException e) {
+                logger.warn("Index migration failed: {}", sql, e);
+            }
+        }
+        // Give the planner statistics for the new indexes; later refreshes are left to optimize()
+        if (created) {
+            try {
+                stmt.execute("ANALYZE");
+                logger.info("Composite indexes created and statistics gathered");
+            } catch (SQLException e) {
+                logger.warn("ANALYZE failed", e);
+            }
+        }
+    }
+
+    private static boolean indexExists(Statement stmt, String name) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(
+                "SELECT 1 FROM sqlite_master WHERE type = 'index' AND name = '" + name + "'")) {
+            return rs.next();
+        }
     }
     
     private static void createTables(Statement stmt) throws SQLException {
@@ -125,7 +548,7 @@ public class DatabaseManager {
                 product_code TEXT UNIQUE NOT NULL,
                 name TEXT NOT NULL,
                 description TEXT,
-                category TEXT,
+                category_id INTEGER,
                 unit_price REAL,
                 cost_price REAL,
                 quantity_in_stock INTEGER DEFAULT 0,
@@ -210,6 +633,16 @@ public class DatabaseManager {
                 FOREIGN KEY (parent_id) REFERENCES categories(id)
             )
         """);
+
+        // Category tree: one row per ancestor / descendant pair, maintained by triggers
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS category_closure (
+                ancestor_id INTEGER NOT NULL,
+                descendant_id INTEGER NOT NULL,
+                depth INTEGER NOT NULL,
+                PRIMARY KEY (ancestor_id, descendant_id)
+            ) WITHOUT ROWID
+        """);
         
         // Sale Returns table
         stmt.execute("""
@@ -358,13 +791,260 @@ public class DatabaseManager {
             )
         """);
         
+        // Receivable open items (الذمم المفتوحة) - unpaid sale balances per customer and currency
+        // after FIFO allocation of payments; sale_id NULL holds debt not backed by a sale
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS receivable_open_items (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                customer_id INTEGER NOT NULL,
+                currency TEXT NOT NULL,
+                sale_id INTEGER,
+                item_date INTEGER,
+                original_amount REAL NOT NULL,
+                open_amount REAL NOT NULL,
+                FOREIGN KEY (customer_id) REFERENCES customers(id)
+            )
+        """);
+
+        // Fiscal archives (الأرشيف) - one row per closed year moved to archive/hisabx_YYYY.db, with
+        // the highest document numbers it took so numbering continues after them
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS fiscal_archives (
+                fiscal_year INTEGER PRIMARY KEY,
+                file_name TEXT NOT NULL,
+                period_start INTEGER NOT NULL,
+                period_end INTEGER NOT NULL,
+                sales_count INTEGER DEFAULT 0,
+                vouchers_count INTEGER DEFAULT 0,
+                returns_count INTEGER DEFAULT 0,
+                max_sale_id INTEGER DEFAULT 0,
+                max_voucher_number INTEGER DEFAULT 0,
+                max_receipt_number INTEGER DEFAULT 0,
+                max_return_code INTEGER DEFAULT 0,
+                archived_at INTEGER,
+                archived_by TEXT
+            )
+        """);
+
+        // Carry-forward (رصيد مدور) - net statement movement (debit - credit) of the archived documents
+        // per year, customer, currency and project; statements start from it instead of the archives
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS archive_carry_forward (
+                fiscal_year INTEGER NOT NULL,
+                customer_id INTEGER NOT NULL,
+                currency TEXT NOT NULL,
+                project_location TEXT NOT NULL DEFAULT '',
+                amount REAL NOT NULL,
+                PRIMARY KEY (customer_id, currency, project_location, fiscal_year)
+            )
+        """);
+
+        // Stock journal (حركات المخزون) - append-only, one line per change to quantity_in_stock
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS stock_movements (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                product_id INTEGER NOT NULL,
+                movement_date INTEGER NOT NULL,
+                quantity REAL NOT NULL,
+                movement_type TEXT NOT NULL,
+                source_id INTEGER,
+                reference TEXT,
+                created_by TEXT,
+                notes TEXT,
+                unit_cost REAL,
+                cost_amount REAL
+            )
+        """);
+
+        // Stock checkpoints - journal balance of a product up to and including movement_id
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS stock_checkpoints (
+                product_id INTEGER NOT NULL,
+                movement_id INTEGER NOT NULL,
+                checkpoint_date INTEGER NOT NULL,
+                quantity REAL NOT NULL,
+                PRIMARY KEY (product_id, movement_id)
+            )
+        """);
+
+        // Cost layers (طبقات التكلفة) - one per receipt into stock, consumed oldest first under FIFO
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS cost_layers (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                product_id INTEGER NOT NULL,
+                movement_id INTEGER,
+                layer_date INTEGER NOT NULL,
+                unit_cost REAL NOT NULL,
+                quantity REAL NOT NULL,
+                remaining REAL NOT NULL
+            )
+        """);
+
+        // Inventory valuation - single row with the costing method in effect and the total stock
+        // value, kept equal to SUM(products.stock_value) by triggers
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS inventory_valuation (
+                id INTEGER PRIMARY KEY CHECK (id = 1),
+                costing_method TEXT NOT NULL,
+                total_value REAL NOT NULL DEFAULT 0
+            )
+        """);
+
+        // Bulk price changes (تعديل الأسعار الجماعي) - one batch per change, with the values before
+        // and after for each product so the batch can be undone
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS price_change_batches (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                created_at INTEGER NOT NULL,
+                created_by TEXT,
+                field TEXT NOT NULL,
+                description TEXT,
+                row_count INTEGER NOT NULL DEFAULT 0,
+                undone_at INTEGER
+            )
+        """);
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS price_change_items (
+                batch_id INTEGER NOT NULL,
+                product_id INTEGER NOT NULL,
+                old_value REAL,
+                new_value REAL,
+                PRIMARY KEY (batch_id, product_id)
+            ) WITHOUT ROWID
+        """);
+
+        // Stocktakes (الجرد) - the stock at one location of every product in scope frozen at the start, counts per
+        // counter, and the variance report written when the approved differences are posted
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS stocktakes (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                started_at INTEGER NOT NULL,
+                started_by TEXT,
+                category TEXT,
+                location_id INTEGER,
+                notes TEXT,
+                status TEXT NOT NULL DEFAULT 'OPEN',
+                product_count INTEGER NOT NULL DEFAULT 0,
+                closed_at INTEGER,
+                closed_by TEXT,
+                adjusted_count INTEGER NOT NULL DEFAULT 0,
+                variance_value REAL NOT NULL DEFAULT 0
+            )
+        """);
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS stocktake_snapshot (
+                stocktake_id INTEGER NOT NULL,
+                product_id INTEGER NOT NULL,
+                frozen_qty REAL NOT NULL,
+                unit_cost REAL,
+                PRIMARY KEY (stocktake_id, product_id)
+            ) WITHOUT ROWID
+        """);
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS stocktake_counts (
+                stocktake_id INTEGER NOT NULL,
+                counter TEXT NOT NULL,
+                product_id INTEGER NOT NULL,
+                quantity REAL NOT NULL,
+                updated_at INTEGER,
+                PRIMARY KEY (stocktake_id, counter, product_id)
+            ) WITHOUT ROWID
+        """);
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS stocktake_variances (
+                stocktake_id INTEGER NOT NULL,
+                product_id INTEGER NOT NULL,
+                frozen_qty REAL NOT NULL,
+                counted_qty REAL NOT NULL,
+                variance REAL NOT NULL,
+                unit_cost REAL,
+                variance_value REAL,
+                approved INTEGER NOT NULL DEFAULT 0,
+                movement_id INTEGER,
+                PRIMARY KEY (stocktake_id, product_id)
+            ) WITHOUT ROWID
+        """);
+
+        // Stock locations (المخازن) - the shop floor and back warehouses. location_stock is kept
+        // by a trigger on stock_movements; a transfer is two movements that net to zero
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS stock_locations (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                name TEXT UNIQUE NOT NULL,
+                is_default INTEGER NOT NULL DEFAULT 0,
+                is_active INTEGER NOT NULL DEFAULT 1,
+                created_at INTEGER
+            )
+        """);
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS location_stock (
+                product_id INTEGER NOT NULL,
+                location_id INTEGER NOT NULL,
+                quantity REAL NOT NULL DEFAULT 0,
+                PRIMARY KEY (product_id, location_id)
+            ) WITHOUT ROWID
+        """);
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS stock_transfers (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                transfer_date INTEGER NOT NULL,
+                from_location_id INTEGER NOT NULL,
+                to_location_id INTEGER NOT NULL,
+                created_by TEXT,
+                notes TEXT,
+                item_count INTEGER NOT NULL DEFAULT 0
+            )
+        """);
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS stock_transfer_items (
+                transfer_id INTEGER NOT NULL,
+                product_id INTEGER NOT NULL,
+                quantity REAL NOT NULL,
+                PRIMARY KEY (transfer_id, product_id)
+            ) WITHOUT ROWID
+        """);
+
+        // One-off data migrations already applied, by name, so they never run twice
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS schema_migrations (
+                name TEXT PRIMARY KEY,
+                applied_at INTEGER NOT NULL
+            ) WITHOUT ROWID
+        """);
+
+        // Day of the last reorder-level refresh, so a restart on the same day does not repeat it
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS reorder_state (
+                id INTEGER PRIMARY KEY CHECK (id = 1),
+                last_run_day INTEGER NOT NULL
+            )
+        """);
+
+        // Alerts (التنبيهات) - low-stock products and installments due soon, one row each,
+        // maintained by triggers so the dashboard reads a small table instead of querying
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS alerts (
+                kind TEXT NOT NULL,
+                ref_id INTEGER NOT NULL,
+                due_at INTEGER,
+                created_at INTEGER NOT NULL,
+                PRIMARY KEY (kind, ref_id)
+            ) WITHOUT ROWID
+        """);
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS alert_state (
+                id INTEGER PRIMARY KEY CHECK (id = 1),
+                installment_days INTEGER NOT NULL,
+                installment_horizon INTEGER NOT NULL,
+                rolled_over_day INTEGER
+            )
+        """);
+
         // Create indexes for better performance
         stmt.execute("CREATE INDEX IF NOT EXISTS idx_customers_code ON customers(customer_code)");
         stmt.execute("CREATE INDEX IF NOT EXISTS idx_products_code ON products(product_code)");
         stmt.execute("CREATE INDEX IF NOT EXISTS idx_products_barcode ON products(barcode)");
-        stmt.execute("CREATE INDEX IF NOT EXISTS idx_products_category ON products(category)");
         stmt.execute("CREATE INDEX IF NOT EXISTS idx_sales_code ON sales(sale_code)");
-        stmt.execute("CREATE INDEX IF NOT EXISTS idx_sales_customer ON sales(customer_id)");
         stmt.execute("CREATE INDEX IF NOT EXISTS idx_receipts_number ON receipts(receipt_number)");
         stmt.execute("CREATE INDEX IF NOT EXISTS idx_categories_name ON categories(name)");
         stmt.execute("CREATE INDEX IF NOT EXISTS idx_returns_code ON sale_returns(return_code)");
@@ -375,13 +1055,21 @@ public class DatabaseManager {
         stmt.execute("CREATE INDEX IF NOT EXISTS idx_users_username ON users(username)");
         stmt.execute("CREATE INDEX IF NOT EXISTS idx_users_role ON users(role)");
         stmt.execute("CREATE INDEX IF NOT EXISTS idx_vouchers_number ON vouchers(voucher_number)");
-        stmt.execute("CREATE INDEX IF NOT EXISTS idx_vouchers_type ON vouchers(voucher_type)");
-        stmt.execute("CREATE INDEX IF NOT EXISTS idx_vouchers_customer ON vouchers(customer_id)");
         stmt.execute("CREATE INDEX IF NOT EXISTS idx_vouchers_date ON vouchers(voucher_date)");
         stmt.execute("CREATE INDEX IF NOT EXISTS idx_voucher_items_voucher ON voucher_items(voucher_id)");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_voucher_items_product ON voucher_items(product_id, voucher_id)");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_stocktake_counts_product ON stocktake_counts(stocktake_id, product_id, quantity)");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_location_stock_location ON location_stock(location_id, product_id, quantity)");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_stock_transfers_date ON stock_transfers(transfer_date)");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_alerts_kind_due ON alerts(kind, due_at)");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_category_closure_descendant ON category_closure(descendant_id, ancestor_id, depth)");
         stmt.execute("CREATE INDEX IF NOT EXISTS idx_installments_voucher ON installments(parent_voucher_id)");
         stmt.execute("CREATE INDEX IF NOT EXISTS idx_installments_due_date ON installments(due_date)");
-        
+
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_open_items_customer ON receivable_open_items(customer_id, currency)");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_stock_movements_product ON stock_movements(product_id, id)");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_cost_layers_open ON cost_layers(product_id, id) WHERE remaining > 0");
+
         logger.info("Database tables created successfully");
     }
     
@@ -398,6 +1086,9 @@ public class DatabaseManager {
             configuration.setProperty("hibernate.format_sql", "true");
             configuration.setProperty("hibernate.connection.pool_size", "10");
             configuration.setProperty("hibernate.current_session_context_class", "thread");
+            configuration.setProperty("hibernate.session_factory.statement_inspector",
+                    ActiveQueryTracker.class.getName());
+            configuration.setProperty("hibernate.session.events.auto", QueryMetricsListener.class.getName());
             
             // Add entity classes
             configuration.addAnnotatedClass(com.hisabx.model.Customer.class);
@@ -406,6 +1097,7 @@ public class DatabaseManager {
             configuration.addAnnotatedClass(com.hisabx.model.SaleItem.class);
             configuration.addAnnotatedClass(com.hisabx.model.Receipt.class);
             configuration.addAnnotatedClass(com.hisabx.model.Category.class);
+            configuration.addAnnotatedClass(com.hisabx.model.CategoryClosure.class);
             configuration.addAnnotatedClass(com.hisabx.model.SaleReturn.class);
             configuration.addAnnotatedClass(com.hisabx.model.ReturnItem.class);
             configuration.addAnnotatedClass(com.hisabx.model.CustomerPayment.class);
@@ -413,6 +1105,8 @@ public class DatabaseManager {
             configuration.addAnnotatedClass(com.hisabx.model.Voucher.class);
             configuration.addAnnotatedClass(com.hisabx.model.VoucherItem.class);
             configuration.addAnnotatedClass(com.hisabx.model.Installment.class);
+            configuration.addAnnotatedClass(com.hisabx.model.StockMovement.class);
+            configuration.addAnnotatedClass(com.hisabx.model.StockLocation.class);
             
             sessionFactory = configuration.buildSessionFactory();
             logger.info("Hibernate configured successfully");
@@ -430,7 +1124,36 @@ public class DatabaseManager {
         return sessionFactory;
     }
     
+    /**
+     * Open a plain JDBC connection to the application database for bulk reads that should
+     * not go through Hibernate (exports, reports). The caller must close it. Statements run
+     * through it are visible to stall diagnostics via {@link ActiveQueryTracker}.
+     */
+    public static Connection openConnection() throws SQLException {
+        Connection conn = DriverManager.getConnection(DB_URL);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout = 5000");
+        }
+        return ActiveQueryTracker.track(conn);
+    }
+    
+    /**
+     * Refresh planner statistics for tables whose contents changed enough since the last
+     * ANALYZE. Cheap when nothing changed; run periodically by {@link DatabaseMaintenance}.
+     */
+    public static void optimize() {
+        try (Connection conn = openConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA analysis_limit = 400");
+            stmt.execute("PRAGMA optimize");
+            logger.debug("PRAGMA optimize completed");
+        } catch (SQLException e) {
+            logger.warn("PRAGMA optimize failed", e);
+        }
+    }
+
     public static void shutdown() {
+        DatabaseMaintenance.getInstance().stop();
         if (sessionFactory != null) {
             sessionFactory.close();
             logger.info("Database connection closed");
@@ -0,0 +1,127 @@
+package com.hisabx.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Per-year archive databases (archive/hisabx_YYYY.db) holding closed fiscal years of documents.
+ * The registry table {@code fiscal_archives} in the main database records each archived year and
+ * its period; readers attach only the archives a date range reaches, under the schema name
+ * {@code arc_YYYY}, and read them with the same SQL as the main tables.
+ */
+public final class FiscalArchives {
+    private static final Logger logger = LoggerFactory.getLogger(FiscalArchives.class);
+
+    public static final String ARCHIVE_DIR = "archive";
+
+    /** Document tables moved to the archives, parents before children. */
+    public static final List<String> TABLES = List.of(
+            "sales", "sale_items", "receipts", "sale_returns", "return_items", "vouchers", "voucher_items");
+
+    private FiscalArchives() {}
+
+    public static File fileFor(int year) {
+        return new File(ARCHIVE_DIR, "hisabx_" + year + ".db");
+    }
+
+    public static String schemaFor(int year) {
+        return "arc_" + year;
+    }
+
+    /**
+     * Archived years whose period overlaps [fromMillis, toMillis); a null bound is open.
+     */
+    public static List<Integer> yearsOverlapping(Connection conn, Long fromMillis, Long toMillis) throws SQLException {
+        List<Integer> years = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT fiscal_year FROM fiscal_archives WHERE period_end > ? AND period_start < ? ORDER BY fiscal_year")) {
+            ps.setLong(1, fromMillis != null ? fromMillis : Long.MIN_VALUE);
+            ps.setLong(2, toMillis != null ? toMillis : Long.MAX_VALUE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    years.add(rs.getInt(1));
+                }
+            }
+        }
+        return years;
+    }
+
+    /**
+     * Attach the archives of the given years read-only. A missing archive file is logged and
+     * skipped, so a lost archive hides its documents instead of breaking every report.
+     *
+     * @return the years actually attached
+     */
+    public static List<Integer> attach(Connection conn, Collection<Integer> years) throws SQLException {
+        List<Integer> attached = new ArrayList<>();
+        try (Statement stmt = conn.createStatement()) {
+            for (int year : years) {
+                File file = fileFor(year);
+                if (!file.isFile()) {
+                    logger.warn("Archive of fiscal year {} is missing: {}", year, file.getAbsolutePath());
+                    continue;
+                }
+                String uri = file.getAbsoluteFile().toURI().toString().replace("'", "''");
+                stmt.execute("ATTACH DATABASE '" + uri + "?mode=ro' AS " + schemaFor(year));
+                attached.add(year);
+            }
+        }
+        return attached;
+    }
+
+    /**
+     * Attach the archives overlapping a date range; convenience for readers.
+     */
+    public static List<Integer> attachOverlapping(Connection conn, Long fromMillis, Long toMillis) throws SQLException {
+        return attach(conn, yearsOverlapping(conn, fromMillis, toMillis));
+    }
+
+    /**
+     * UNION ALL of a SELECT over the main database and the given archives. The template names
+     * its tables as {@code {db}.table}; {@code {db}} is replaced by main and by each archive schema.
+     */
+    public static String unionAll(String template, List<Integer> years) {
+        String main = template.replace("{db}", "main");
+        return years.isEmpty() ? main : main + " UNION ALL " + unionOfArchives(template, years);
+    }
+
+    /**
+     * Like {@link #unionAll} but over the archives only, for readers that load the main
+     * database through Hibernate.
+     */
+    public static String unionOfArchives(String template, List<Integer> years) {
+        StringBuilder sql = new StringBuilder();
+        for (int year : years) {
+            if (sql.length() > 0) {
+                sql.append(" UNION ALL ");
+            }
+            sql.append(template.replace("{db}", schemaFor(year)));
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Highest document number that went into the archives for a registry column such as
+     * max_sale_id, so number generators never reuse an archived number.
+     */
+    public static long maxArchivedNumber(String registryColumn) {
+        try (Connection conn = DatabaseManager.openConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(" + registryColumn + "), 0) FROM fiscal_archives")) {
+            return rs.next() ? rs.getLong(1) : 0L;
+        } catch (SQLException e) {
+            logger.warn("Failed to read archived numbers ({})", registryColumn, e);
+            return 0L;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.hisabx.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * مستشار الفهارس - replays captured SQL through {@code EXPLAIN QUERY PLAN} and flags full
+ * table scans and temporary B-trees. For a scanned table it proposes an index built from the
+ * query itself: equality and join columns first, then one range or ORDER BY column.
+ * Suggestions are advisory; reviewed ones are shipped in {@code DatabaseManager}.
+ */
+public class IndexAdvisor {
+    private static final Logger logger = LoggerFactory.getLogger(IndexAdvisor.class);
+
+    private static final Pattern TABLE_ALIAS = Pattern.compile(
+            "\\b(?:from|join)\\s+(\\w+)\\s+(?:as\\s+)?(\\w+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SCAN = Pattern.compile("^SCAN (?:TABLE )?(\\w+)(?: AS (\\w+))?$");
+
+    /**
+     * One flagged statement.
+     */
+    public static class Finding {
+        private final String sql;
+        private final List<String> problems;
+        private final List<String> suggestions;
+
+        private Finding(String sql, List<String> problems, List<String> suggestions) {
+            this.sql = sql;
+            this.problems = problems;
+            this.suggestions = suggestions;
+        }
+
+        public String getSql() { return sql; }
+        public List<String> getProblems() { return problems; }
+        public List<String> getSuggestions() { return suggestions; }
+    }
+
+    /**
+     * Explain each statement and return those whose plan has a full scan or a temp B-tree.
+     */
+    public List<Finding> analyze(Collection<String> statements) {
+        List<Finding> findings = new ArrayList<>();
+        try (Connection conn = DatabaseManager.openConnection();
+             Statement stmt = conn.createStatement()) {
+            for (String sql : statements) {
+                if (!sql.trim().toLowerCase(Locale.ROOT).startsWith("select")) {
+                    continue;
+                }
+                List<String> plan;
+                try {
+                    plan = explain(stmt, sql);
+                } catch (SQLException e) {
+                    logger.debug("Cannot explain statement: {}", sql, e);
+                    continue;
+                }
+                Finding finding = inspect(sql, plan);
+                if (finding != null) {
+                    findings.add(finding);
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Index advisor failed", e);
+            throw new RuntimeException("فشل في تحليل الفهارس", e);
+        }
+        return findings;
+    }
+
+    /** Plain-text report of the findings, one block per statement. */
+    public static String format(List<Finding> findings) {
+        if (findings.isEmpty()) {
+            return "لا توجد استعلامات تحتاج فهارس إضافية.";
+        }
+        StringBuilder sb = new StringBuilder();
+        Set<String> allSuggestions = new LinkedHashSet<>();
+        for (Finding f : findings) {
+            sb.append(f.getSql().replaceAll("\\s+", " ")).append('\n');
+            f.getProblems().forEach(p -> sb.append("  ! ").append(p).append('\n'));
+            f.getSuggestions().forEach(s -> sb.append("  + ").append(s).append('\n'));
+            allSuggestions.addAll(f.getSuggestions());
+            sb.append('\n');
+        }
+        if (!allSuggestions.isEmpty()) {
+            sb.append("-- الفهارس المقترحة\n");
+            allSuggestions.forEach(s -> sb.append(s).append(";\n"));
+        }
+        return sb.toString();
+    }
+
+    private static List<String> explain(Statement stmt, String sql) throws SQLException {
+        List<String> details = new ArrayList<>();
+        try (ResultSet rs = stmt.executeQuery("EXPLAIN QUERY PLAN " + sql)) {
+            while (rs.next()) {
+                details.add(rs.getString("detail"));
+            }
+        }
+        return details;
+    }
+
+    private static Finding inspect(String sql, List<String> plan) {
+        Map<String, String> tables = aliases(sql);
+        List<String> problems = new ArrayList<>();
+        Set<String> suggestions = new LinkedHashSet<>();
+        for (String detail : plan) {
+            Matcher scan = SCAN.matcher(detail.trim());
+            if (scan.matches()) {
+                problems.add(detail);
+                String alias = scan.group(2) != null ? scan.group(2) : scan.group(1);
+                String table = tables.getOrDefault(alias, scan.group(1));
+                String index = suggestIndex(sql, table, alias);
+                if (index != null) {
+                    suggestions.add(index);
+                }
+            } else if (detail.contains("USE TEMP B-TREE")) {
+                problems.add(detail);
+            }
+        }
+        return problems.isEmpty() ? null : new Finding(sql, problems, new ArrayList<>(suggestions));
+    }
+
+    private static Map<String, String> aliases(String sql) {
+        Map<String, String> byAlias = new HashMap<>();
+        Matcher m = TABLE_ALIAS.matcher(sql);
+        while (m.find()) {
+            String alias = m.group(2);
+            if (!isKeyword(alias)) {
+                byAlias.put(alias, m.group(1));
+            }
+        }
+        return byAlias;
+    }
+
+    /**
+     * Index on the table's equality / join columns followed by its first range or ORDER BY
+     * column, or null when the query does not filter the table at all.
+     */
+    private static String suggestIndex(String sql, String table, String alias) {
+        String lower = sql.toLowerCase(Locale.ROOT);
+        int orderAt = lower.lastIndexOf(" order by ");
+        String where = orderAt >= 0 ? sql.substring(0, orderAt) : sql;
+        String orderBy = orderAt >= 0 ? sql.substring(orderAt) : "";
+        String col = Pattern.quote(alias) + "\\.(\\w+)";
+
+        Set<String> columns = new LinkedHashSet<>();
+        Matcher eq = Pattern.compile("\\b" + col + "\\s*(?:=\\s*(?:\\?|\\d|'|\\w+\\.\\w+)|\\s+in\\s*\\()",
+                Pattern.CASE_INSENSITIVE).matcher(where);
+        while (eq.find()) {
+            columns.add(eq.group(1));
+        }
+        Matcher reverseEq = Pattern.compile("\\w+\\.\\w+\\s*=\\s*" + col + "\\b", Pattern.CASE_INSENSITIVE)
+                .matcher(where);
+        while (reverseEq.find()) {
+            columns.add(reverseEq.group(1));
+        }
+        Matcher range = Pattern.compile("\\b" + col + "\\s*(?:<=|>=|<|>|\\s+between\\b)", Pattern.CASE_INSENSITIVE)
+                .matcher(where);
+        String tail = null;
+        if (range.find()) {
+            tail = range.group(1);
+        } else {
+            Matcher order = Pattern.compile("\\b" + col, Pattern.CASE_INSENSITIVE).matcher(orderBy);
+            if (order.find()) {
+                tail = order.group(1);
+            }
+        }
+        if (tail != null) {
+            columns.add(tail);
+        }
+        if (columns.isEmpty()) {
+            return null;
+        }
+        return "CREATE INDEX IF NOT EXISTS idx_" + table + "_" + String.join("_", columns)
+                + " ON " + table + "(" + String.join(", ", columns) + ")";
+    }
+
+    private static boolean isKeyword(String word) {
+        switch (word.toLowerCase(Locale.ROOT)) {
+            case "where": case "on": case "left": case "inner": case "join": case "order": case "group":
+            case "limit": case "cross": case "outer": case "using":
+                return true;
+            default:
+                return false;
+        }
+    }
+}
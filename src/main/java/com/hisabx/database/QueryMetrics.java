@@ -0,0 +1,448 @@
+package com.hisabx.database;
+
+import com.hisabx.util.AppConfigStore;
+import com.hisabx.util.LogFiles;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * مقاييس الاستعلامات - زمن تنفيذ الاستعلامات وسجل الاستعلامات البطيئة
+ *
+ * Statement timings are collected by {@link QueryMetricsListener} and grouped by the
+ * application method that ran them (e.g. {@code CustomerRepository.findByCustomerCode}),
+ * each with a latency histogram. Statements slower than the threshold are written with
+ * their {@code EXPLAIN QUERY PLAN} to {@code logs/slow-queries.log}, and a snapshot is
+ * dumped to {@code logs/query-metrics.log} periodically. Off by default; when disabled
+ * the listener returns after a single volatile read.
+ */
+public final class QueryMetrics {
+    private static final Logger logger = LoggerFactory.getLogger(QueryMetrics.class);
+
+    private static final String ENABLED_KEY = "query_metrics_enabled";
+    private static final String SLOW_THRESHOLD_KEY = "slow_query_threshold_ms";
+    private static final long DEFAULT_SLOW_THRESHOLD_MS = 200;
+    private static final long DUMP_INTERVAL_MINUTES = 15;
+
+    private static final String SLOW_LOG_FILE = "slow-queries.log";
+    private static final String METRICS_LOG_FILE = "query-metrics.log";
+    private static final long MAX_LOG_BYTES = 1024 * 1024;
+    private static final int MAX_LOG_FILES = 3;
+    private static final int MAX_CACHED_PLANS = 200;
+    private static final int MAX_CAPTURED_SHAPES = 500;
+
+    /** Upper bounds of the histogram buckets in ms; a last bucket holds anything slower. */
+    public static final long[] BUCKET_BOUNDS_MS = {1, 5, 10, 50, 100, 500, 1000};
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static volatile boolean enabled;
+    private static QueryMetrics instance;
+
+    private final Map<String, QueryStats> statsByName = new ConcurrentHashMap<>();
+    private final Map<String, String> planCache = new ConcurrentHashMap<>();
+    private final Set<String> capturedShapes = ConcurrentHashMap.newKeySet();
+    private final AtomicLong sessionsOpened = new AtomicLong();
+    private final AtomicLong sessionsClosed = new AtomicLong();
+    private final AtomicLong transactions = new AtomicLong();
+    private final AtomicLong rollbacks = new AtomicLong();
+    private final AtomicLong transactionNanos = new AtomicLong();
+    private final AtomicLong maxTransactionNanos = new AtomicLong();
+    private volatile long slowThresholdMs = DEFAULT_SLOW_THRESHOLD_MS;
+    private ScheduledExecutorService worker;
+
+    private QueryMetrics() {
+    }
+
+    public static synchronized QueryMetrics getInstance() {
+        if (instance == null) {
+            instance = new QueryMetrics();
+        }
+        return instance;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Load the saved settings and start the periodic dump. Call once the session factory exists.
+     */
+    public synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+        Properties props = new AppConfigStore().load();
+        slowThresholdMs = parseThreshold(props.getProperty(SLOW_THRESHOLD_KEY));
+        worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Query-Metrics");
+            t.setDaemon(true);
+            return t;
+        });
+        worker.scheduleWithFixedDelay(this::dumpQuietly, DUMP_INTERVAL_MINUTES, DUMP_INTERVAL_MINUTES, TimeUnit.MINUTES);
+        applyEnabled(Boolean.parseBoolean(props.getProperty(ENABLED_KEY, "false")));
+        if (enabled) {
+            logger.info("Query metrics enabled (slow threshold {} ms)", slowThresholdMs);
+        }
+    }
+
+    public void setEnabled(boolean value) {
+        applyEnabled(value);
+        saveSetting(ENABLED_KEY, String.valueOf(value));
+    }
+
+    public long getSlowThresholdMs() {
+        return slowThresholdMs;
+    }
+
+    public void setSlowThresholdMs(long thresholdMs) {
+        this.slowThresholdMs = Math.max(1, thresholdMs);
+        saveSetting(SLOW_THRESHOLD_KEY, String.valueOf(this.slowThresholdMs));
+    }
+
+    /**
+     * Time a multi-query operation (e.g. a statement pipeline) under its own name.
+     */
+    public static <T> T time(String name, Supplier<T> work) {
+        if (!enabled) {
+            return work.get();
+        }
+        long started = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            getInstance().record(name, null, System.nanoTime() - started);
+        }
+    }
+
+    /** Record one execution; slow ones are explained and logged in the background. */
+    public void record(String name, String sql, long nanos) {
+        QueryStats stats = statsByName.computeIfAbsent(name, QueryStats::new);
+        long ms = TimeUnit.NANOSECONDS.toMillis(nanos);
+        boolean slow = ms >= slowThresholdMs;
+        stats.record(sql, nanos, slow);
+        if (sql != null && capturedShapes.size() < MAX_CAPTURED_SHAPES) {
+            capturedShapes.add(sql);
+        }
+        if (slow) {
+            ScheduledExecutorService executor = worker;
+            if (executor != null) {
+                executor.execute(() -> logSlow(name, sql, ms));
+            }
+        }
+    }
+
+    void sessionOpened() {
+        sessionsOpened.incrementAndGet();
+    }
+
+    void sessionClosed() {
+        sessionsClosed.incrementAndGet();
+    }
+
+    void transactionCompleted(long nanos, boolean successful) {
+        transactions.incrementAndGet();
+        if (!successful) {
+            rollbacks.incrementAndGet();
+        }
+        transactionNanos.addAndGet(nanos);
+        maxTransactionNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /** Per-name statistics, largest total time first. */
+    public List<QueryStats> getStats() {
+        List<QueryStats> copy = new ArrayList<>();
+        statsByName.values().forEach(s -> copy.add(s.copy()));
+        copy.sort(Comparator.comparingLong(QueryStats::getTotalNanos).reversed());
+        return copy;
+    }
+
+    /**
+     * Hibernate's per-HQL statistics, which carry the row counts. Collected while enabled.
+     */
+    public List<HqlStats> getHqlStats() {
+        Statistics statistics = DatabaseManager.getSessionFactory().getStatistics();
+        List<HqlStats> result = new ArrayList<>();
+        for (String hql : statistics.getQueries()) {
+            QueryStatistics q = statistics.getQueryStatistics(hql);
+            if (q.getExecutionCount() > 0) {
+                result.add(new HqlStats(hql, q.getExecutionCount(), q.getExecutionRowCount(),
+                        q.getExecutionAvgTime(), q.getExecutionMaxTime()));
+            }
+        }
+        result.sort(Comparator.comparingLong((HqlStats h) -> h.getAverageMs() * h.getCount()).reversed());
+        return result;
+    }
+
+    /** Distinct SQL statements seen while enabled, for {@link IndexAdvisor}. */
+    public Set<String> getCapturedShapes() {
+        return Set.copyOf(capturedShapes);
+    }
+
+    public long getSessionsOpened() { return sessionsOpened.get(); }
+    public long getSessionsClosed() { return sessionsClosed.get(); }
+    public long getTransactions() { return transactions.get(); }
+    public long getRollbacks() { return rollbacks.get(); }
+
+    public double getAverageTransactionMs() {
+        long count = transactions.get();
+        return count == 0 ? 0 : transactionNanos.get() / 1_000_000.0 / count;
+    }
+
+    public long getMaxTransactionMs() {
+        return TimeUnit.NANOSECONDS.toMillis(maxTransactionNanos.get());
+    }
+
+    public void reset() {
+        statsByName.clear();
+        planCache.clear();
+        capturedShapes.clear();
+        sessionsOpened.set(0);
+        sessionsClosed.set(0);
+        transactions.set(0);
+        rollbacks.set(0);
+        transactionNanos.set(0);
+        maxTransactionNanos.set(0);
+        DatabaseManager.getSessionFactory().getStatistics().clear();
+    }
+
+    public File getSlowLogFile() {
+        return LogFiles.get(SLOW_LOG_FILE);
+    }
+
+    /** Write the current snapshot to the metrics log now. */
+    public void dump() {
+        List<QueryStats> stats = getStats();
+        if (stats.isEmpty()) {
+            return;
+        }
+        File logFile = LogFiles.get(METRICS_LOG_FILE);
+        LogFiles.rollIfNeeded(logFile, MAX_LOG_BYTES, MAX_LOG_FILES);
+        try (PrintWriter out = new PrintWriter(new FileWriter(logFile, StandardCharsets.UTF_8, true))) {
+            out.println(LocalDateTime.now().format(TIME_FORMAT) + " sessions=" + getSessionsOpened() + "/"
+                    + getSessionsClosed() + " transactions=" + getTransactions() + " rollbacks=" + getRollbacks()
+                    + String.format(" tx_avg=%.1fms tx_max=%dms", getAverageTransactionMs(), getMaxTransactionMs()));
+            for (QueryStats s : stats) {
+                out.println(String.format("  %s count=%d avg=%.1fms p95<=%s max=%dms slow=%d hist=%s",
+                        s.getName(), s.getCount(), s.getAverageMs(), s.getP95Label(), s.getMaxMs(),
+                        s.getSlowCount(), s.getHistogramLabel()));
+            }
+            for (HqlStats h : getHqlStats()) {
+                out.println(String.format("  hql count=%d rows=%d avg=%dms max=%dms %s",
+                        h.getCount(), h.getRows(), h.getAverageMs(), h.getMaxMs(), h.getHql().replaceAll("\\s+", " ")));
+            }
+            out.println();
+        } catch (IOException e) {
+            logger.warn("Failed to write query metrics", e);
+        }
+    }
+
+    private void dumpQuietly() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            dump();
+        } catch (Exception e) {
+            logger.debug("Query metrics dump failed", e);
+        }
+    }
+
+    private void applyEnabled(boolean value) {
+        enabled = value;
+        try {
+            DatabaseManager.getSessionFactory().getStatistics().setStatisticsEnabled(value);
+        } catch (Exception e) {
+            logger.warn("Failed to toggle Hibernate statistics", e);
+        }
+    }
+
+    private void logSlow(String name, String sql, long ms) {
+        logger.warn("Slow query {} took {} ms", name, ms);
+        String plan = sql != null ? planCache.computeIfAbsent(sql, QueryMetrics::explain) : null;
+        if (planCache.size() > MAX_CACHED_PLANS) {
+            planCache.clear();
+        }
+        File logFile = getSlowLogFile();
+        LogFiles.rollIfNeeded(logFile, MAX_LOG_BYTES, MAX_LOG_FILES);
+        try (PrintWriter out = new PrintWriter(new FileWriter(logFile, StandardCharsets.UTF_8, true))) {
+            out.println(LocalDateTime.now().format(TIME_FORMAT) + " " + ms + "ms " + name);
+            if (sql != null) {
+                out.println("  sql: " + sql.replaceAll("\\s+", " "));
+                out.print(plan);
+            }
+            out.println();
+        } catch (IOException e) {
+            logger.warn("Failed to write slow query log", e);
+        }
+    }
+
+    /** EXPLAIN QUERY PLAN as an indented tree; unbound parameters are treated as NULL. */
+    private static String explain(String sql) {
+        StringBuilder sb = new StringBuilder();
+        try (Connection conn = DatabaseManager.openConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("EXPLAIN QUERY PLAN " + sql)) {
+            Map<Integer, Integer> depthById = new HashMap<>();
+            while (rs.next()) {
+                int id = rs.getInt("id");
+                int depth = depthById.getOrDefault(rs.getInt("parent"), 0) + 1;
+                depthById.put(id, depth);
+                sb.append("  plan: ").append("  ".repeat(depth - 1)).append(rs.getString("detail")).append('\n');
+            }
+        } catch (SQLException e) {
+            sb.append("  plan: unavailable (").append(e.getMessage()).append(")\n");
+        }
+        return sb.toString();
+    }
+
+    private static long parseThreshold(String value) {
+        if (value != null) {
+            try {
+                return Math.max(1, Long.parseLong(value.trim()));
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid {} value: {}", SLOW_THRESHOLD_KEY, value);
+            }
+        }
+        return DEFAULT_SLOW_THRESHOLD_MS;
+    }
+
+    private static void saveSetting(String key, String value) {
+        AppConfigStore store = new AppConfigStore();
+        Properties props = store.load();
+        props.setProperty(key, value);
+        store.save(props);
+    }
+
+    /**
+     * Aggregated executions for one query name.
+     */
+    public static class QueryStats {
+        private final String name;
+        private final long[] histogram = new long[BUCKET_BOUNDS_MS.length + 1];
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+        private long slowCount;
+        private String lastSql;
+
+        private QueryStats(String name) {
+            this.name = name;
+        }
+
+        private synchronized void record(String sql, long nanos, boolean slow) {
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+            if (slow) {
+                slowCount++;
+            }
+            if (sql != null) {
+                lastSql = sql;
+            }
+            long ms = TimeUnit.NANOSECONDS.toMillis(nanos);
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS_MS.length && ms >= BUCKET_BOUNDS_MS[bucket]) {
+                bucket++;
+            }
+            histogram[bucket]++;
+        }
+
+        private synchronized QueryStats copy() {
+            QueryStats c = new QueryStats(name);
+            System.arraycopy(histogram, 0, c.histogram, 0, histogram.length);
+            c.count = count;
+            c.totalNanos = totalNanos;
+            c.maxNanos = maxNanos;
+            c.slowCount = slowCount;
+            c.lastSql = lastSql;
+            return c;
+        }
+
+        public String getName() { return name; }
+        public long getCount() { return count; }
+        public long getTotalNanos() { return totalNanos; }
+        public long getMaxMs() { return TimeUnit.NANOSECONDS.toMillis(maxNanos); }
+        public long getSlowCount() { return slowCount; }
+        public String getLastSql() { return lastSql; }
+        public double getAverageMs() { return count == 0 ? 0 : totalNanos / 1_000_000.0 / count; }
+
+        /** Upper bound of the bucket holding the 95th percentile, e.g. "50ms" or ">1000ms". */
+        public String getP95Label() {
+            long threshold = (long) Math.ceil(count * 0.95);
+            long seen = 0;
+            for (int i = 0; i < histogram.length; i++) {
+                seen += histogram[i];
+                if (seen >= threshold && seen > 0) {
+                    return i < BUCKET_BOUNDS_MS.length ? BUCKET_BOUNDS_MS[i] + "ms"
+                            : ">" + BUCKET_BOUNDS_MS[BUCKET_BOUNDS_MS.length - 1] + "ms";
+                }
+            }
+            return "-";
+        }
+
+        /** Counts per bucket, e.g. "<1:12 <5:3 <10:0 ... >=1000:0". */
+        public String getHistogramLabel() {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < histogram.length; i++) {
+                if (i > 0) {
+                    sb.append(' ');
+                }
+                sb.append(i < BUCKET_BOUNDS_MS.length ? "<" + BUCKET_BOUNDS_MS[i]
+                        : ">=" + BUCKET_BOUNDS_MS[BUCKET_BOUNDS_MS.length - 1]).append(':').append(histogram[i]);
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Hibernate's statistics for one HQL query.
+     */
+    public static class HqlStats {
+        private final String hql;
+        private final long count;
+        private final long rows;
+        private final long averageMs;
+        private final long maxMs;
+
+        private HqlStats(String hql, long count, long rows, long averageMs, long maxMs) {
+            this.hql = hql;
+            this.count = count;
+            this.rows = rows;
+            this.averageMs = averageMs;
+            this.maxMs = maxMs;
+        }
+
+        public String getHql() { return hql; }
+        public long getCount() { return count; }
+        public long getRows() { return rows; }
+        public long getAverageMs() { return averageMs; }
+        public long getMaxMs() { return maxMs; }
+    }
+}
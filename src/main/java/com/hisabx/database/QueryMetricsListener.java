@@ -0,0 +1,108 @@
+package com.hisabx.database;
+
+import org.hibernate.BaseSessionEventListener;
+
+/**
+ * Per-session Hibernate listener feeding {@link QueryMetrics}.
+ * A statement is timed from execution until the session moves on (next statement, flush,
+ * commit or close), so the time includes stepping through and mapping the rows - with SQLite
+ * most of the work happens while the result set is read, not when it is executed.
+ * Transactions are timed from connection acquisition (or the previous commit) to completion.
+ * The same window marks the statement as executing in {@link ActiveQueryTracker}.
+ */
+public class QueryMetricsListener extends BaseSessionEventListener {
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+
+    private final boolean active = QueryMetrics.isEnabled();
+    private String currentName;
+    private String currentSql;
+    private ActiveQueryTracker.ActiveQuery executing;
+    private long statementStarted;
+    private long transactionStarted;
+
+    public QueryMetricsListener() {
+        if (active) {
+            QueryMetrics.getInstance().sessionOpened();
+        }
+    }
+
+    @Override
+    public void jdbcConnectionAcquisitionEnd() {
+        if (active && transactionStarted == 0) {
+            transactionStarted = System.nanoTime();
+        }
+    }
+
+    @Override
+    public void jdbcPrepareStatementStart() {
+        finishStatement();
+    }
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        finishStatement();
+        executing = ActiveQueryTracker.hibernateExecutionStarted();
+        if (!active) {
+            return;
+        }
+        currentSql = executing.getSql();
+        currentName = findCaller();
+        statementStarted = System.nanoTime();
+        if (transactionStarted == 0) {
+            transactionStarted = statementStarted;
+        }
+    }
+
+    @Override
+    public void flushStart() {
+        finishStatement();
+    }
+
+    @Override
+    public void transactionCompletion(boolean successful) {
+        finishStatement();
+        if (active && transactionStarted != 0) {
+            QueryMetrics.getInstance().transactionCompleted(System.nanoTime() - transactionStarted, successful);
+            transactionStarted = 0;
+        }
+    }
+
+    @Override
+    public void jdbcConnectionReleaseStart() {
+        finishStatement();
+    }
+
+    @Override
+    public void end() {
+        finishStatement();
+        if (active) {
+            QueryMetrics.getInstance().sessionClosed();
+        }
+    }
+
+    private void finishStatement() {
+        ActiveQueryTracker.executionFinished(executing);
+        executing = null;
+        if (statementStarted == 0) {
+            return;
+        }
+        long elapsed = System.nanoTime() - statementStarted;
+        statementStarted = 0;
+        QueryMetrics.getInstance().record(currentName, currentSql, elapsed);
+    }
+
+    /** First application frame outside the instrumentation, as SimpleClass.method. */
+    private static String findCaller() {
+        return STACK_WALKER.walk(frames -> frames
+                .filter(f -> f.getClassName().startsWith("com.hisabx.")
+                        && !f.getClassName().startsWith(QueryMetrics.class.getName())
+                        && !f.getClassName().equals(ActiveQueryTracker.class.getName()))
+                .findFirst()
+                .map(f -> {
+                    String cls = f.getClassName();
+                    cls = cls.substring(Math.max(cls.lastIndexOf('.'), cls.lastIndexOf('$')) + 1);
+                    return cls + "." + f.getMethodName();
+                })
+                .orElse("hibernate"));
+    }
+}
@@ -0,0 +1,305 @@
+package com.hisabx.database;
+
+import com.hisabx.util.AppConfigStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sqlite.SQLiteConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * قاعدة بيانات التقارير - read path for reports and exports, separate from the Hibernate sessions
+ * used by the sales counter.
+ *
+ * Connections are opened read-only with {@code query_only}, come from a small pool of their own
+ * and get a bounded page cache. Each {@link #read} runs in one read transaction, so every query
+ * of a report sees the same snapshot. Optionally the pool reads a local replica
+ * (hisabx_report.db) refreshed every few minutes with {@code VACUUM INTO}; reports then hold no
+ * WAL readers on the live file at all.
+ */
+public final class ReportingDatabase {
+    private static final Logger logger = LoggerFactory.getLogger(ReportingDatabase.class);
+
+    private static final String POOL_SIZE_KEY = "reporting_pool_size";
+    private static final String CACHE_KB_KEY = "reporting_cache_kb";
+    private static final String REPLICA_MINUTES_KEY = "reporting_replica_minutes";
+    private static final int DEFAULT_POOL_SIZE = 2;
+    private static final int DEFAULT_CACHE_KB = 4096;
+    private static final long REPLICA_RETRY_SECONDS = 30;
+
+    private static final File MAIN_FILE = new File("hisabx.db");
+    private static final File REPLICA_FILE = new File("hisabx_report.db");
+    private static final File REPLICA_TEMP_FILE = new File("hisabx_report.db.tmp");
+
+    private static ReportingDatabase instance;
+
+    private final int poolSize;
+    private final int cacheKb;
+    private final long replicaMinutes;
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private int borrowed;
+    private int generation;
+    private volatile boolean useReplica;
+    private ScheduledExecutorService replicaWorker;
+
+    /**
+     * A unit of report work run on one snapshot.
+     */
+    @FunctionalInterface
+    public interface ReportWork<T> {
+        T run(Connection conn) throws SQLException;
+    }
+
+    /**
+     * Report work over the main tables and the archives a date range reaches.
+     */
+    @FunctionalInterface
+    public interface ArchiveReportWork<T> {
+        T run(Connection conn, List<Integer> archiveYears) throws SQLException;
+    }
+
+    private static final class PooledConnection {
+        private final Connection connection;
+        private final int generation;
+
+        private PooledConnection(Connection connection, int generation) {
+            this.connection = connection;
+            this.generation = generation;
+        }
+    }
+
+    private ReportingDatabase() {
+        Properties props = new AppConfigStore().load();
+        poolSize = Math.max(1, parseInt(props.getProperty(POOL_SIZE_KEY), DEFAULT_POOL_SIZE));
+        cacheKb = Math.max(256, parseInt(props.getProperty(CACHE_KB_KEY), DEFAULT_CACHE_KB));
+        replicaMinutes = Math.max(0, parseInt(props.getProperty(REPLICA_MINUTES_KEY), 0));
+        permits = new Semaphore(poolSize, true);
+    }
+
+    public static synchronized ReportingDatabase getInstance() {
+        if (instance == null) {
+            instance = new ReportingDatabase();
+        }
+        return instance;
+    }
+
+    /**
+     * Start the replica refresh when it is configured ({@code reporting_replica_minutes} > 0).
+     * Until the first copy exists reports read the live database.
+     */
+    public synchronized void start() {
+        if (replicaMinutes <= 0 || replicaWorker != null) {
+            return;
+        }
+        replicaWorker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Reporting-Replica");
+            t.setDaemon(true);
+            return t;
+        });
+        replicaWorker.schedule(this::refreshReplica, 0, TimeUnit.SECONDS);
+        logger.info("Reporting replica enabled, refreshed every {} min", replicaMinutes);
+    }
+
+    /**
+     * Run report work on a pooled read-only connection inside one read transaction.
+     */
+    public <T> T read(ReportWork<T> work) throws SQLException {
+        return read(List.of(), work);
+    }
+
+    /**
+     * Like {@link #read(ReportWork)} with the archives of the given fiscal years attached first
+     * (SQLite cannot attach inside a transaction); they are detached before the connection
+     * goes back to the pool.
+     */
+    public <T> T read(Collection<Integer> archiveYears, ReportWork<T> work) throws SQLException {
+        return execute(conn -> archiveYears, (conn, years) -> work.run(conn));
+    }
+
+    /**
+     * Run report work with the archives overlapping [fromMillis, toMillis) attached; a null bound
+     * is open. The archive registry is read from the same database the report reads.
+     */
+    public <T> T readWithArchives(Long fromMillis, Long toMillis, ArchiveReportWork<T> work) throws SQLException {
+        return execute(conn -> FiscalArchives.yearsOverlapping(conn, fromMillis, toMillis), work);
+    }
+
+    private <T> T execute(ReportWork<Collection<Integer>> archiveYears, ArchiveReportWork<T> work)
+            throws SQLException {
+        PooledConnection pooled = borrow();
+        Connection conn = pooled.connection;
+        boolean healthy = false;
+        List<Integer> attached = List.of();
+        try {
+            attached = FiscalArchives.attach(conn, archiveYears.run(conn));
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM sqlite_master")) {
+                // The first read starts the transaction's snapshot; everything after sees it
+                rs.next();
+            }
+            T result = work.run(conn, attached);
+            conn.commit();
+            healthy = true;
+            return result;
+        } finally {
+            healthy = release(conn, attached) && healthy;
+            giveBack(pooled, healthy);
+        }
+    }
+
+    /** Whether reports currently read the replica instead of the live database. */
+    public boolean isUsingReplica() {
+        return useReplica;
+    }
+
+    private PooledConnection borrow() throws SQLException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a reporting connection", e);
+        }
+        try {
+            int current;
+            boolean replica;
+            synchronized (this) {
+                borrowed++;
+                while (!idle.isEmpty()) {
+                    PooledConnection pooled = idle.pop();
+                    if (pooled.generation == generation) {
+                        return pooled;
+                    }
+                    closeQuietly(pooled.connection);
+                }
+                current = generation;
+                replica = useReplica;
+            }
+            return new PooledConnection(open(replica ? REPLICA_FILE : MAIN_FILE), current);
+        } catch (SQLException | RuntimeException e) {
+            synchronized (this) {
+                borrowed--;
+            }
+            permits.release();
+            throw e;
+        }
+    }
+
+    private static boolean release(Connection conn, List<Integer> attached) {
+        try {
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+            try (Statement stmt = conn.createStatement()) {
+                for (int year : attached) {
+                    stmt.execute("DETACH DATABASE " + FiscalArchives.schemaFor(year));
+                }
+            }
+            return true;
+        } catch (SQLException e) {
+            logger.warn("Failed to reset reporting connection", e);
+            return false;
+        }
+    }
+
+    private void giveBack(PooledConnection pooled, boolean healthy) {
+        synchronized (this) {
+            borrowed--;
+            if (healthy && pooled.generation == generation && idle.size() < poolSize) {
+                idle.push(pooled);
+            } else {
+                closeQuietly(pooled.connection);
+            }
+        }
+        permits.release();
+    }
+
+    private Connection open(File file) throws SQLException {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setReadOnly(true);
+        config.setBusyTimeout(5000);
+        Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file.getPath(), config.toProperties());
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA query_only = 1");
+            // Negative cache_size is in KiB: the memory budget per reporting connection
+            stmt.execute("PRAGMA cache_size = -" + cacheKb);
+            stmt.execute("PRAGMA mmap_size = 0");
+        } catch (SQLException e) {
+            closeQuietly(conn);
+            throw e;
+        }
+        return ActiveQueryTracker.track(conn);
+    }
+
+    /**
+     * Copy the live database into a temp file and swap it in once no report is running; pooled
+     * connections of the old copy are closed as they come back.
+     */
+    private void refreshReplica() {
+        long delaySeconds = TimeUnit.MINUTES.toSeconds(replicaMinutes);
+        try {
+            if (!REPLICA_TEMP_FILE.exists()) {
+                long started = System.nanoTime();
+                try (Connection conn = DatabaseManager.openConnection();
+                     Statement stmt = conn.createStatement()) {
+                    stmt.execute("VACUUM INTO '" + REPLICA_TEMP_FILE.getPath().replace("'", "''") + "'");
+                }
+                logger.debug("Reporting replica copied in {} ms", (System.nanoTime() - started) / 1_000_000);
+            }
+            synchronized (this) {
+                if (borrowed > 0) {
+                    delaySeconds = REPLICA_RETRY_SECONDS;
+                } else {
+                    idle.forEach(p -> closeQuietly(p.connection));
+                    idle.clear();
+                    Files.move(REPLICA_TEMP_FILE.toPath(), REPLICA_FILE.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    generation++;
+                    useReplica = true;
+                }
+            }
+        } catch (SQLException | IOException e) {
+            logger.warn("Failed to refresh reporting replica", e);
+            REPLICA_TEMP_FILE.delete();
+        } finally {
+            replicaWorker.schedule(this::refreshReplica, delaySeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            logger.debug("Failed to close reporting connection", e);
+        }
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid reporting setting: {}", value);
+            }
+        }
+        return defaultValue;
+    }
+}
@@ -8,13 +8,18 @@ import com.hisabx.model.SaleItem;
 import com.hisabx.model.Receipt;
 import com.hisabx.model.SaleReturn;
 import com.hisabx.model.ReturnItem;
+import com.hisabx.model.StockLocation;
+import com.hisabx.model.dto.CustomerExposure;
 import org.hibernate.Session;
 import org.hibernate.Transaction;
 import org.hibernate.query.Query;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -143,6 +148,82 @@ public class Repository<T> {
                 throw new RuntimeException("Failed to find customers by name", e);
             }
         }
+
+        /**
+         * Customers owing us (negative balance) in the given currency, largest debt first.
+         * Served by the partial balance indexes.
+         */
+        public List<Customer> findDebtors(String currency) {
+            String field = isUsd(currency) ? "balanceUsd" : "balanceIqd";
+            return listByBalance("FROM Customer WHERE " + field + " < 0 ORDER BY " + field);
+        }
+
+        /** Customers we owe (positive balance) in the given currency, largest credit first. */
+        public List<Customer> findCreditors(String currency) {
+            String field = isUsd(currency) ? "balanceUsd" : "balanceIqd";
+            return listByBalance("FROM Customer WHERE " + field + " > 0 ORDER BY " + field + " DESC");
+        }
+
+        /** Customers owing us in either currency. */
+        public List<Customer> findDebtorsAnyCurrency() {
+            return listByBalance("FROM Customer WHERE balanceIqd < 0 OR balanceUsd < 0");
+        }
+
+        /** Customers we owe in either currency. */
+        public List<Customer> findCreditorsAnyCurrency() {
+            return listByBalance("FROM Customer WHERE balanceIqd > 0 OR balanceUsd > 0");
+        }
+
+        private List<Customer> listByBalance(String hql) {
+            try (Session session = DatabaseManager.getSessionFactory().openSession()) {
+                return session.createQuery(hql, Customer.class).list();
+            } catch (Exception e) {
+                logger.error("Failed to query customers by balance", e);
+                throw new RuntimeException("Failed to query customers by balance", e);
+            }
+        }
+
+        /** One page of creditors in a currency, largest credit first. */
+        public List<CustomerExposure> findCreditorPage(String currency, int offset, int limit) {
+            String column = isUsd(currency) ? "balance_usd" : "balance_iqd";
+            String sql = "SELECT id, customer_code, name, phone_number, " + column + " FROM customers WHERE "
+                    + column + " > 0 ORDER BY " + column + " DESC, id LIMIT ? OFFSET ?";
+            try (Session session = DatabaseManager.getSessionFactory().openSession()) {
+                return session.doReturningWork(conn -> {
+                    try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                        ps.setInt(1, limit);
+                        ps.setInt(2, offset);
+                        List<CustomerExposure> rows = new ArrayList<>();
+                        try (ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) {
+                                rows.add(new CustomerExposure(rs.getLong(1), rs.getString(2), rs.getString(3),
+                                        rs.getString(4), currency, rs.getDouble(5), 0, 0, 0, 0));
+                            }
+                        }
+                        return rows;
+                    }
+                });
+            } catch (Exception e) {
+                logger.error("Failed to load creditors for {}", currency, e);
+                throw new RuntimeException("Failed to load creditors", e);
+            }
+        }
+
+        /** Number of customers owing us (debtors) or owed by us (creditors) in a currency. */
+        public long countByBalanceSign(String currency, boolean debtors) {
+            String field = isUsd(currency) ? "balanceUsd" : "balanceIqd";
+            try (Session session = DatabaseManager.getSessionFactory().openSession()) {
+                return session.createQuery("SELECT COUNT(*) FROM Customer WHERE " + field
+                        + (debtors ? " < 0" : " > 0"), Long.class).uniqueResult();
+            } catch (Exception e) {
+                logger.error("Failed to count customers by balance", e);
+                throw new RuntimeException("Failed to count customers by balance", e);
+            }
+        }
+
+        private static boolean isUsd(String currency) {
+            return "دولار".equals(currency) || "USD".equalsIgnoreCase(currency);
+        }
     }
 
     public static class SaleItemRepository extends Repository<SaleItem> {
@@ -152,6 +233,10 @@ public class Repository<T> {
     }
     
     public static class ProductRepository extends Repository<Product> {
+        /** Products in the category bound to :category or any category under it. */
+        private static final String CATEGORY_SUBTREE = "categoryId IN (SELECT cc.descendantId FROM CategoryClosure cc, "
+                + "Category c WHERE cc.ancestorId = c.id AND c.name = :category)";
+
         public ProductRepository() {
             super(Product.class);
         }
@@ -180,10 +265,13 @@ public class Repository<T> {
             }
         }
         
+        /**
+         * Products of a category and of every category under it.
+         */
         public List<Product> findByCategory(String category) {
             try (Session session = DatabaseManager.getSessionFactory().openSession()) {
                 Query<Product> query = session.createQuery(
-                    "FROM Product WHERE category = :category", Product.class);
+                    "FROM Product WHERE " + CATEGORY_SUBTREE, Product.class);
                 query.setParameter("category", category);
                 return query.list();
             } catch (Exception e) {
@@ -194,9 +282,12 @@ public class Repository<T> {
         
         public List<Product> findLowStock() {
             try (Session session = DatabaseManager.getSessionFactory().openSession()) {
-                Query<Product> query = session.createQuery(
-                    "FROM Product WHERE quantityInStock <= minimumStock AND isActive = true", Product.class);
-                return query.list();
+                // Native so the condition matches the idx_products_reorder expression index
+                return session.createNativeQuery(
+                    "SELECT p.*, (SELECT c.name FROM categories c WHERE c.id = p.category_id) AS category"
+                        + " FROM products p WHERE is_active = 1 AND " + DatabaseManager.REORDER_GAP + " <= 0"
+                        + " ORDER BY " + DatabaseManager.REORDER_GAP, Product.class)
+                    .list();
             } catch (Exception e) {
                 logger.error("Failed to find low stock products", e);
                 throw new RuntimeException("Failed to find low stock products", e);
@@ -214,6 +305,42 @@ public class Repository<T> {
                 return Optional.empty();
             }
         }
+
+        /**
+         * Active products whose name, code or barcode contains the text, optionally limited to a
+         * category and its subcategories, ordered by name and capped at limit.
+         */
+        public List<Product> search(String text, String category, int limit) {
+            String q = text == null ? "" : text.trim().toLowerCase();
+            try (Session session = DatabaseManager.getSessionFactory().openSession()) {
+                Query<Product> query = session.createQuery(
+                    "FROM Product WHERE isActive = true" + (category != null ? " AND " + CATEGORY_SUBTREE : "")
+                        + " AND (:q = '' OR lower(name) LIKE :pattern OR lower(productCode) LIKE :pattern "
+                        + "OR lower(barcode) LIKE :pattern) ORDER BY name", Product.class);
+                if (category != null) {
+                    query.setParameter("category", category);
+                }
+                query.setParameter("q", q);
+                query.setParameter("pattern", "%" + q + "%");
+                query.setMaxResults(limit);
+                return query.list();
+            } catch (Exception e) {
+                logger.error("Failed to search products: {}", text, e);
+                throw new RuntimeException("Failed to search products", e);
+            }
+        }
+
+        public List<String> findActiveCategoryNames() {
+            try (Session session = DatabaseManager.getSessionFactory().openSession()) {
+                Query<String> query = session.createQuery(
+                    "SELECT c.name FROM Category c WHERE EXISTS (SELECT 1 FROM Product p "
+                        + "WHERE p.categoryId = c.id AND p.isActive = true) ORDER BY c.name", String.class);
+                return query.list();
+            } catch (Exception e) {
+                logger.error("Failed to load product categories", e);
+                throw new RuntimeException("Failed to load product categories", e);
+            }
+        }
     }
     
     public static class SaleRepository extends Repository<Sale> {
@@ -225,7 +352,9 @@ public class Repository<T> {
             try (Session session = DatabaseManager.getSessionFactory().openSession()) {
                 Query<Long> query = session.createQuery("SELECT COALESCE(MAX(id), 0) FROM Sale", Long.class);
                 Long maxId = query.uniqueResult();
-                long next = (maxId == null ? 0L : maxId) + 1L;
+                // Archived sales no longer count towards MAX(id), so continue after them
+                long max = Math.max(maxId == null ? 0L : maxId, FiscalArchives.maxArchivedNumber("max_sale_id"));
+                long next = max + 1L;
                 return next;
             } catch (Exception e) {
                 logger.error("Failed to generate next sale code", e);
@@ -483,6 +612,7 @@ public class Repository<T> {
                         }
                     }
                 }
+                max = Math.max(max, FiscalArchives.maxArchivedNumber("max_receipt_number"));
                 return max + 1L;
             } catch (Exception e) {
                 logger.error("Failed to generate next receipt number", e);
@@ -532,6 +662,36 @@ public class Repository<T> {
         }
     }
 
+    public static class StockLocationRepository extends Repository<StockLocation> {
+        public StockLocationRepository() {
+            super(StockLocation.class);
+        }
+
+        public Optional<StockLocation> findByName(String name) {
+            try (Session session = DatabaseManager.getSessionFactory().openSession()) {
+                Query<StockLocation> query = session.createQuery(
+                    "FROM StockLocation WHERE name = :name", StockLocation.class);
+                query.setParameter("name", name);
+                return query.uniqueResultOptional();
+            } catch (Exception e) {
+                logger.error("Failed to find stock location by name: {}", name, e);
+                return Optional.empty();
+            }
+        }
+
+        /** Active locations, the default one first. */
+        public List<StockLocation> findActive() {
+            try (Session session = DatabaseManager.getSessionFactory().openSession()) {
+                return session.createQuery(
+                    "FROM StockLocation WHERE isActive = true ORDER BY isDefault DESC, name", StockLocation.class)
+                    .list();
+            } catch (Exception e) {
+                logger.error("Failed to find stock locations", e);
+                throw new RuntimeException("Failed to find stock locations", e);
+            }
+        }
+    }
+
     public static class SaleReturnRepository extends Repository<SaleReturn> {
         public SaleReturnRepository() {
             super(SaleReturn.class);
@@ -558,6 +718,7 @@ public class Repository<T> {
                         } catch (NumberFormatException ignored) {}
                     }
                 }
+                max = Math.max(max, FiscalArchives.maxArchivedNumber("max_return_code"));
                 return String.valueOf(max + 1L);
             } catch (Exception e) {
                 logger.error("Failed to generate return code", e);
@@ -0,0 +1,56 @@
+package com.hisabx.database;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Conversions for date columns read with plain JDBC.
+ * Hibernate stores LocalDateTime values as epoch milliseconds, while column defaults
+ * (CURRENT_TIMESTAMP) produce text, so both forms are accepted.
+ */
+public final class SqliteDates {
+    private static final DateTimeFormatter TEXT_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private SqliteDates() {}
+
+    /**
+     * SQL expression converting a date column to epoch milliseconds whichever form it is stored in.
+     */
+    public static String epochMillis(String column) {
+        return "(CASE WHEN typeof(" + column + ") = 'integer' THEN " + column
+                + " ELSE CAST(strftime('%s', " + column + ") AS INTEGER) * 1000 END)";
+    }
+
+    public static long toMillis(LocalDateTime value) {
+        return Timestamp.valueOf(value).getTime();
+    }
+
+    public static long startOfDayMillis(LocalDate date) {
+        return toMillis(date.atStartOfDay());
+    }
+
+    public static LocalDateTime toLocalDateTime(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Number number) {
+            return new Timestamp(number.longValue()).toLocalDateTime();
+        }
+        String text = value.toString().trim().replace('T', ' ');
+        if (text.isEmpty()) {
+            return null;
+        }
+        if (text.chars().allMatch(Character::isDigit)) {
+            return new Timestamp(Long.parseLong(text)).toLocalDateTime();
+        }
+        if (text.length() == 10) {
+            return LocalDate.parse(text).atStartOfDay();
+        }
+        if (text.length() == 16) {
+            text = text + ":00";
+        }
+        return LocalDateTime.parse(text.length() > 19 ? text.substring(0, 19) : text, TEXT_FORMAT);
+    }
+}
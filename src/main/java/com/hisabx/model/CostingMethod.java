@@ -0,0 +1,33 @@
+package com.hisabx.model;
+
+/**
+ * طريقة تقييم المخزون - how sold stock is costed. Set with {@code inventory_costing_method} in
+ * app_config.properties; the method in effect is kept in inventory_valuation and stock values
+ * are recomputed when it changes.
+ */
+public enum CostingMethod {
+    AVERAGE("المتوسط المرجح"),
+    FIFO("الوارد أولاً يصرف أولاً");
+
+    private final String arabicName;
+
+    CostingMethod(String arabicName) {
+        this.arabicName = arabicName;
+    }
+
+    public String getArabicName() {
+        return arabicName;
+    }
+
+    /** The configured method, AVERAGE when missing or unknown. */
+    public static CostingMethod fromConfig(String value) {
+        if (value != null) {
+            for (CostingMethod method : values()) {
+                if (method.name().equalsIgnoreCase(value.trim())) {
+                    return method;
+                }
+            }
+        }
+        return AVERAGE;
+    }
+}
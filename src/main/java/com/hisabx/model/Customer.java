@@ -65,6 +65,16 @@ public class Customer {
         this.balanceUsd = 0.0;
     }
 
+    /**
+     * Stand-in carrying only the id, for linking a document to a customer picked from the
+     * customer directory; the service saving the document loads the customer itself.
+     */
+    public static Customer reference(Long id) {
+        Customer customer = new Customer();
+        customer.setId(id);
+        return customer;
+    }
+
     // Getters and Setters
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
@@ -20,7 +20,12 @@ public class Product {
     @Column
     private String description;
     
-    @Column(name = "category")
+    @Column(name = "category_id")
+    private Long categoryId;
+
+    // Name of the linked category, read through the join so a rename is a single row update;
+    // setCategory only names the category for InventoryService to link on save
+    @org.hibernate.annotations.Formula("(SELECT c.name FROM categories c WHERE c.id = category_id)")
     private String category;
     
     @Column(name = "unit_price")
@@ -31,12 +36,29 @@ public class Product {
     
     @Column(name = "quantity_in_stock")
     private Double quantityInStock;
+
+    // Maintained by InventoryCosting with the stock journal, never written through the entity
+    @Column(name = "average_cost", insertable = false, updatable = false)
+    private Double averageCost;
+
+    @Column(name = "stock_value", insertable = false, updatable = false)
+    private Double stockValue;
     
     @Column(name = "minimum_stock")
     private Double minimumStock;
     
     @Column(name = "maximum_stock")
     private Double maximumStock;
+
+    // Computed nightly by ReorderEngine from sales history, never written through the entity
+    @Column(name = "daily_demand", insertable = false, updatable = false)
+    private Double dailyDemand;
+
+    @Column(name = "reorder_point", insertable = false, updatable = false)
+    private Double reorderPoint;
+
+    @Column(name = "reorder_up_to", insertable = false, updatable = false)
+    private Double reorderUpTo;
     
     @Column(name = "unit_of_measure")
     private String unitOfMeasure;
@@ -79,6 +101,9 @@ public class Product {
     
     public String getCategory() { return category; }
     public void setCategory(String category) { this.category = category; }
+
+    public Long getCategoryId() { return categoryId; }
+    public void setCategoryId(Long categoryId) { this.categoryId = categoryId; }
     
     public Double getUnitPrice() { return unitPrice; }
     public void setUnitPrice(Double unitPrice) { this.unitPrice = unitPrice; }
@@ -89,12 +114,19 @@ public class Product {
     public Double getQuantityInStock() { return quantityInStock; }
     public void setQuantityInStock(Double quantityInStock) { this.quantityInStock = quantityInStock; }
     
+    public Double getAverageCost() { return averageCost; }
+    public Double getStockValue() { return stockValue; }
+    
     public Double getMinimumStock() { return minimumStock; }
     public void setMinimumStock(Double minimumStock) { this.minimumStock = minimumStock; }
     
     public Double getMaximumStock() { return maximumStock; }
     public void setMaximumStock(Double maximumStock) { this.maximumStock = maximumStock; }
     
+    public Double getDailyDemand() { return dailyDemand; }
+    public Double getReorderPoint() { return reorderPoint; }
+    public Double getReorderUpTo() { return reorderUpTo; }
+    
     public String getUnitOfMeasure() { return unitOfMeasure; }
     public void setUnitOfMeasure(String unitOfMeasure) { this.unitOfMeasure = unitOfMeasure; }
     
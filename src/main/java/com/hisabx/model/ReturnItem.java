@@ -36,6 +36,10 @@ public class ReturnItem {
     @Column(name = "condition_status")
     private String conditionStatus; // GOOD, DAMAGED, DEFECTIVE
 
+    // Cost put back into stock; zero when the goods were not restocked
+    @Column(name = "cost_amount")
+    private Double costAmount;
+
     public ReturnItem() {
         this.conditionStatus = "GOOD";
     }
@@ -67,4 +71,7 @@ public class ReturnItem {
     
     public String getConditionStatus() { return conditionStatus; }
     public void setConditionStatus(String conditionStatus) { this.conditionStatus = conditionStatus; }
+    
+    public Double getCostAmount() { return costAmount; }
+    public void setCostAmount(Double costAmount) { this.costAmount = costAmount; }
 }
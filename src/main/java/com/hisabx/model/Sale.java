@@ -26,6 +26,10 @@ public class Sale {
     
     @Column(name = "project_location")
     private String projectLocation;
+
+    // Stock location the goods left from; deletes and returns put them back there
+    @Column(name = "location_id")
+    private Long locationId;
     
     @Column(name = "total_amount", nullable = false)
     private Double totalAmount;
@@ -95,6 +99,9 @@ public class Sale {
     
     public String getProjectLocation() { return projectLocation; }
     public void setProjectLocation(String projectLocation) { this.projectLocation = projectLocation; }
+
+    public Long getLocationId() { return locationId; }
+    public void setLocationId(Long locationId) { this.locationId = locationId; }
     
     public Double getTotalAmount() { return totalAmount; }
     public void setTotalAmount(Double totalAmount) { this.totalAmount = totalAmount; }
@@ -32,6 +32,10 @@ public class SaleItem {
     @Column(name = "discount_amount")
     private Double discountAmount;
 
+    // تكلفة البضاعة المباعة - cost of the line at the time of sale
+    @Column(name = "cost_amount")
+    private Double costAmount;
+
     public SaleItem() {
         this.discountPercentage = 0.0;
         this.discountAmount = 0.0;
@@ -61,4 +65,7 @@ public class SaleItem {
     
     public Double getDiscountAmount() { return discountAmount; }
     public void setDiscountAmount(Double discountAmount) { this.discountAmount = discountAmount; }
+    
+    public Double getCostAmount() { return costAmount; }
+    public void setCostAmount(Double costAmount) { this.costAmount = costAmount; }
 }
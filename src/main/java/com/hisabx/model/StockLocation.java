@@ -0,0 +1,59 @@
+package com.hisabx.model;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * موقع مخزون - the shop floor or a back warehouse. Stock per location is kept in location_stock
+ * from the stock journal; exactly one location is the default for documents without one.
+ */
+@Entity
+@Table(name = "stock_locations")
+public class StockLocation {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, unique = true)
+    private String name;
+
+    @Column(name = "is_default", nullable = false)
+    private Boolean isDefault;
+
+    @Column(name = "is_active", nullable = false)
+    private Boolean isActive;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    public StockLocation() {
+        this.createdAt = LocalDateTime.now();
+        this.isDefault = false;
+        this.isActive = true;
+    }
+
+    public StockLocation(String name) {
+        this();
+        this.name = name;
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public Boolean getIsDefault() { return isDefault; }
+    public void setIsDefault(Boolean isDefault) { this.isDefault = isDefault; }
+
+    public Boolean getIsActive() { return isActive; }
+    public void setIsActive(Boolean isActive) { this.isActive = isActive; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,101 @@
+package com.hisabx.model;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * حركة مخزون - one append-only line of the stock journal. Quantity is signed: positive adds to
+ * stock, negative takes from it. Written in the same transaction as the change to
+ * products.quantity_in_stock. Cost amount carries the same sign and is the change to the
+ * product's stock value.
+ */
+@Entity
+@Table(name = "stock_movements")
+public class StockMovement {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(name = "movement_date", nullable = false)
+    private LocalDateTime movementDate;
+
+    @Column(name = "quantity", nullable = false)
+    private Double quantity;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "movement_type", nullable = false)
+    private StockMovementType movementType;
+
+    @Column(name = "source_id")
+    private Long sourceId;
+
+    @Column(name = "reference")
+    private String reference;
+
+    @Column(name = "created_by")
+    private String createdBy;
+
+    @Column(name = "notes")
+    private String notes;
+
+    // Null for the default location
+    @Column(name = "location_id")
+    private Long locationId;
+
+    @Column(name = "unit_cost")
+    private Double unitCost;
+
+    @Column(name = "cost_amount")
+    private Double costAmount;
+
+    public StockMovement() {
+        this.movementDate = LocalDateTime.now();
+    }
+
+    public StockMovement(StockMovementType movementType, Long sourceId, String reference) {
+        this();
+        this.movementType = movementType;
+        this.sourceId = sourceId;
+        this.reference = reference;
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getProductId() { return productId; }
+    public void setProductId(Long productId) { this.productId = productId; }
+
+    public LocalDateTime getMovementDate() { return movementDate; }
+    public void setMovementDate(LocalDateTime movementDate) { this.movementDate = movementDate; }
+
+    public Double getQuantity() { return quantity; }
+    public void setQuantity(Double quantity) { this.quantity = quantity; }
+
+    public StockMovementType getMovementType() { return movementType; }
+    public void setMovementType(StockMovementType movementType) { this.movementType = movementType; }
+
+    public Long getLocationId() { return locationId; }
+    public void setLocationId(Long locationId) { this.locationId = locationId; }
+
+    public Long getSourceId() { return sourceId; }
+    public void setSourceId(Long sourceId) { this.sourceId = sourceId; }
+
+    public String getReference() { return reference; }
+    public void setReference(String reference) { this.reference = reference; }
+
+    public String getCreatedBy() { return createdBy; }
+    public void setCreatedBy(String createdBy) { this.createdBy = createdBy; }
+
+    public String getNotes() { return notes; }
+    public void setNotes(String notes) { this.notes = notes; }
+
+    /** Cost of one unit; set by the caller for receipts with a known cost, otherwise by costing. */
+    public Double getUnitCost() { return unitCost; }
+    public void setUnitCost(Double unitCost) { this.unitCost = unitCost; }
+
+    public Double getCostAmount() { return costAmount; }
+    public void setCostAmount(Double costAmount) { this.costAmount = costAmount; }
+}
@@ -0,0 +1,26 @@
+package com.hisabx.model;
+
+/**
+ * نوع حركة المخزون - the document behind a stock movement. The movement's reference holds the
+ * document number and source_id its row, when the row exists at the time of the movement.
+ */
+public enum StockMovementType {
+    OPENING("رصيد افتتاحي"),        // products.id - stock present before the journal began
+    SALE("فاتورة مبيع"),            // sales - sale_code, recorded before the sale row
+    SALE_DELETED("حذف فاتورة"),      // sales.id - stock restored when a sale is deleted
+    SALE_RETURN("مرتجع مبيعات"),     // sale_returns - return_code, recorded before the return row
+    PURCHASE("مشتريات"),            // vouchers.id
+    ADJUSTMENT("تعديل يدوي"),        // manual additions and product edits
+    STOCKTAKE("جرد"),               // stocktakes.id - approved count differences
+    TRANSFER("تحويل مخزني");         // stock_transfers.id - out of one location, into another
+
+    private final String arabicName;
+
+    StockMovementType(String arabicName) {
+        this.arabicName = arabicName;
+    }
+
+    public String getArabicName() {
+        return arabicName;
+    }
+}
@@ -40,6 +40,9 @@ public class Voucher {
 
     @Column(name = "project_name")
     private String projectName; // اسم المشروع (اختياري)
+
+    @Column(name = "location_id")
+    private Long locationId; // موقع استلام المشتريات (الافتراضي إن لم يحدد)
     
     @Column(name = "amount", nullable = false)
     private Double amount;
@@ -146,6 +149,9 @@ public class Voucher {
 
     public String getProjectName() { return projectName; }
     public void setProjectName(String projectName) { this.projectName = projectName; }
+
+    public Long getLocationId() { return locationId; }
+    public void setLocationId(Long locationId) { this.locationId = locationId; }
     
     public Double getAmount() { return amount; }
     public void setAmount(Double amount) { this.amount = amount; }
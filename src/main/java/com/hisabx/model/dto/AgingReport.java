@@ -0,0 +1,23 @@
+package com.hisabx.model.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Whole-book receivables aging: one line per debtor and currency plus per-currency totals.
+ */
+public class AgingReport {
+    private final LocalDate asOf;
+    private final List<CustomerExposure> lines;
+    private final List<AgingSummary> summaries;
+
+    public AgingReport(LocalDate asOf, List<CustomerExposure> lines, List<AgingSummary> summaries) {
+        this.asOf = asOf;
+        this.lines = lines;
+        this.summaries = summaries;
+    }
+
+    public LocalDate getAsOf() { return asOf; }
+    public List<CustomerExposure> getLines() { return lines; }
+    public List<AgingSummary> getSummaries() { return summaries; }
+}
@@ -0,0 +1,33 @@
+package com.hisabx.model.dto;
+
+/**
+ * Receivables aging totals for one currency across all debtors.
+ */
+public class AgingSummary {
+    private final String currency;
+    private final long debtorCount;
+    private final double total;
+    private final double age0To30;
+    private final double age31To60;
+    private final double age61To90;
+    private final double age90Plus;
+
+    public AgingSummary(String currency, long debtorCount, double total, double age0To30, double age31To60,
+            double age61To90, double age90Plus) {
+        this.currency = currency;
+        this.debtorCount = debtorCount;
+        this.total = total;
+        this.age0To30 = age0To30;
+        this.age31To60 = age31To60;
+        this.age61To90 = age61To90;
+        this.age90Plus = age90Plus;
+    }
+
+    public String getCurrency() { return currency; }
+    public long getDebtorCount() { return debtorCount; }
+    public double getTotal() { return total; }
+    public double getAge0To30() { return age0To30; }
+    public double getAge31To60() { return age31To60; }
+    public double getAge61To90() { return age61To90; }
+    public double getAge90Plus() { return age90Plus; }
+}
@@ -0,0 +1,43 @@
+package com.hisabx.model.dto;
+
+/**
+ * A debtor or creditor line: how much is owed in one currency and, for debtors,
+ * how that amount ages. Buckets are by sale date, oldest debt settled first.
+ */
+public class CustomerExposure {
+    private final Long customerId;
+    private final String customerCode;
+    private final String customerName;
+    private final String phoneNumber;
+    private final String currency;
+    private final double amount; // always positive
+    private final double age0To30;
+    private final double age31To60;
+    private final double age61To90;
+    private final double age90Plus; // includes debt not covered by sales (opening balances)
+
+    public CustomerExposure(Long customerId, String customerCode, String customerName, String phoneNumber,
+            String currency, double amount, double age0To30, double age31To60, double age61To90, double age90Plus) {
+        this.customerId = customerId;
+        this.customerCode = customerCode;
+        this.customerName = customerName;
+        this.phoneNumber = phoneNumber;
+        this.currency = currency;
+        this.amount = amount;
+        this.age0To30 = age0To30;
+        this.age31To60 = age31To60;
+        this.age61To90 = age61To90;
+        this.age90Plus = age90Plus;
+    }
+
+    public Long getCustomerId() { return customerId; }
+    public String getCustomerCode() { return customerCode; }
+    public String getCustomerName() { return customerName; }
+    public String getPhoneNumber() { return phoneNumber; }
+    public String getCurrency() { return currency; }
+    public double getAmount() { return amount; }
+    public double getAge0To30() { return age0To30; }
+    public double getAge31To60() { return age31To60; }
+    public double getAge61To90() { return age61To90; }
+    public double getAge90Plus() { return age90Plus; }
+}
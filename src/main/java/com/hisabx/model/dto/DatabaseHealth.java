@@ -0,0 +1,54 @@
+package com.hisabx.model.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Size and maintenance state of the SQLite file as reported by the maintenance scheduler.
+ */
+public class DatabaseHealth {
+    private final long pageSize;
+    private final long pageCount;
+    private final long freelistCount;
+    private final long walBytes;
+    private final String autoVacuum;
+    private final LocalDateTime lastOptimize;
+    private final LocalDateTime lastCheckpoint;
+    private final LocalDateTime lastVacuum;
+    private final long reclaimedPages;
+    private final LocalDateTime lastQuickCheck;
+    private final String quickCheckResult;
+
+    public DatabaseHealth(long pageSize, long pageCount, long freelistCount, long walBytes, String autoVacuum,
+            LocalDateTime lastOptimize, LocalDateTime lastCheckpoint, LocalDateTime lastVacuum, long reclaimedPages,
+            LocalDateTime lastQuickCheck, String quickCheckResult) {
+        this.pageSize = pageSize;
+        this.pageCount = pageCount;
+        this.freelistCount = freelistCount;
+        this.walBytes = walBytes;
+        this.autoVacuum = autoVacuum;
+        this.lastOptimize = lastOptimize;
+        this.lastCheckpoint = lastCheckpoint;
+        this.lastVacuum = lastVacuum;
+        this.reclaimedPages = reclaimedPages;
+        this.lastQuickCheck = lastQuickCheck;
+        this.quickCheckResult = quickCheckResult;
+    }
+
+    public long getPageSize() { return pageSize; }
+    public long getPageCount() { return pageCount; }
+    public long getFreelistCount() { return freelistCount; }
+    public long getWalBytes() { return walBytes; }
+    public String getAutoVacuum() { return autoVacuum; }
+    public LocalDateTime getLastOptimize() { return lastOptimize; }
+    public LocalDateTime getLastCheckpoint() { return lastCheckpoint; }
+    public LocalDateTime getLastVacuum() { return lastVacuum; }
+    public long getReclaimedPages() { return reclaimedPages; }
+    public LocalDateTime getLastQuickCheck() { return lastQuickCheck; }
+    public String getQuickCheckResult() { return quickCheckResult; }
+
+    public long getFileBytes() { return pageSize * pageCount; }
+
+    public double getFreeRatio() {
+        return pageCount == 0 ? 0 : (double) freelistCount / pageCount;
+    }
+}
@@ -0,0 +1,35 @@
+package com.hisabx.model.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * An archived fiscal year and the number of documents moved into its archive database.
+ */
+public class FiscalArchive {
+    private final int fiscalYear;
+    private final String fileName;
+    private final long salesCount;
+    private final long vouchersCount;
+    private final long returnsCount;
+    private final LocalDateTime archivedAt;
+    private final String archivedBy;
+
+    public FiscalArchive(int fiscalYear, String fileName, long salesCount, long vouchersCount, long returnsCount,
+            LocalDateTime archivedAt, String archivedBy) {
+        this.fiscalYear = fiscalYear;
+        this.fileName = fileName;
+        this.salesCount = salesCount;
+        this.vouchersCount = vouchersCount;
+        this.returnsCount = returnsCount;
+        this.archivedAt = archivedAt;
+        this.archivedBy = archivedBy;
+    }
+
+    public int getFiscalYear() { return fiscalYear; }
+    public String getFileName() { return fileName; }
+    public long getSalesCount() { return salesCount; }
+    public long getVouchersCount() { return vouchersCount; }
+    public long getReturnsCount() { return returnsCount; }
+    public LocalDateTime getArchivedAt() { return archivedAt; }
+    public String getArchivedBy() { return archivedBy; }
+}
@@ -0,0 +1,32 @@
+package com.hisabx.model.dto;
+
+/**
+ * مجمل الربح - net sales and their cost for one product, customer or period in one currency.
+ * Returns are already deducted from both.
+ */
+public class GrossProfitLine {
+    private final String key;
+    private final String label;
+    private final String currency;
+    private final double revenue;
+    private final double cost;
+
+    public GrossProfitLine(String key, String label, String currency, double revenue, double cost) {
+        this.key = key;
+        this.label = label;
+        this.currency = currency;
+        this.revenue = revenue;
+        this.cost = cost;
+    }
+
+    public String getKey() { return key; }
+    public String getLabel() { return label; }
+    public String getCurrency() { return currency; }
+    public double getRevenue() { return revenue; }
+    public double getCost() { return cost; }
+    public double getProfit() { return revenue - cost; }
+
+    public double getMarginPercent() {
+        return Math.abs(revenue) < 1e-9 ? 0 : getProfit() / revenue * 100;
+    }
+}
@@ -0,0 +1,38 @@
+package com.hisabx.model.dto;
+
+import java.io.File;
+
+/**
+ * Outcome of a bulk import: rows added, rows that updated existing records, and rows
+ * rejected into the reject file.
+ */
+public class ImportResult {
+    private final long rowsRead;
+    private final long inserted;
+    private final long updated;
+    private final long rejected;
+    private final File rejectFile;
+    private final boolean cancelled;
+    private final long elapsedMillis;
+
+    public ImportResult(long rowsRead, long inserted, long updated, long rejected, File rejectFile,
+            boolean cancelled, long elapsedMillis) {
+        this.rowsRead = rowsRead;
+        this.inserted = inserted;
+        this.updated = updated;
+        this.rejected = rejected;
+        this.rejectFile = rejectFile;
+        this.cancelled = cancelled;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getRowsRead() { return rowsRead; }
+    public long getInserted() { return inserted; }
+    public long getUpdated() { return updated; }
+    public long getRejected() { return rejected; }
+    /** Null when no row was rejected. */
+    public File getRejectFile() { return rejectFile; }
+    /** True when the import was stopped; batches committed before that are kept. */
+    public boolean isCancelled() { return cancelled; }
+    public long getElapsedMillis() { return elapsedMillis; }
+}
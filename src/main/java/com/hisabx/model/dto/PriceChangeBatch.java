@@ -0,0 +1,36 @@
+package com.hisabx.model.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * A bulk price change as recorded for undo.
+ */
+public class PriceChangeBatch {
+    private final Long id;
+    private final LocalDateTime createdAt;
+    private final String createdBy;
+    private final String field;
+    private final String description;
+    private final int rowCount;
+    private final LocalDateTime undoneAt;
+
+    public PriceChangeBatch(Long id, LocalDateTime createdAt, String createdBy, String field, String description,
+            int rowCount, LocalDateTime undoneAt) {
+        this.id = id;
+        this.createdAt = createdAt;
+        this.createdBy = createdBy;
+        this.field = field;
+        this.description = description;
+        this.rowCount = rowCount;
+        this.undoneAt = undoneAt;
+    }
+
+    public Long getId() { return id; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public String getCreatedBy() { return createdBy; }
+    public String getField() { return field; }
+    public String getDescription() { return description; }
+    public int getRowCount() { return rowCount; }
+    public LocalDateTime getUndoneAt() { return undoneAt; }
+    public boolean isUndone() { return undoneAt != null; }
+}
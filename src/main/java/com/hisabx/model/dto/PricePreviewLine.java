@@ -0,0 +1,33 @@
+package com.hisabx.model.dto;
+
+/**
+ * One product in a bulk price change preview, with its current and proposed value.
+ */
+public class PricePreviewLine {
+    private final Long productId;
+    private final String productCode;
+    private final String name;
+    private final String category;
+    private final Double costPrice;
+    private final Double oldValue;
+    private final Double newValue;
+
+    public PricePreviewLine(Long productId, String productCode, String name, String category, Double costPrice,
+            Double oldValue, Double newValue) {
+        this.productId = productId;
+        this.productCode = productCode;
+        this.name = name;
+        this.category = category;
+        this.costPrice = costPrice;
+        this.oldValue = oldValue;
+        this.newValue = newValue;
+    }
+
+    public Long getProductId() { return productId; }
+    public String getProductCode() { return productCode; }
+    public String getName() { return name; }
+    public String getCategory() { return category; }
+    public Double getCostPrice() { return costPrice; }
+    public Double getOldValue() { return oldValue; }
+    public Double getNewValue() { return newValue; }
+}
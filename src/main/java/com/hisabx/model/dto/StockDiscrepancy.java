@@ -0,0 +1,28 @@
+package com.hisabx.model.dto;
+
+/**
+ * A product whose quantity_in_stock differs from the balance of its stock journal.
+ */
+public class StockDiscrepancy {
+    private final long productId;
+    private final String productCode;
+    private final String productName;
+    private final double stock;
+    private final double journalBalance;
+
+    public StockDiscrepancy(long productId, String productCode, String productName, double stock,
+            double journalBalance) {
+        this.productId = productId;
+        this.productCode = productCode;
+        this.productName = productName;
+        this.stock = stock;
+        this.journalBalance = journalBalance;
+    }
+
+    public long getProductId() { return productId; }
+    public String getProductCode() { return productCode; }
+    public String getProductName() { return productName; }
+    public double getStock() { return stock; }
+    public double getJournalBalance() { return journalBalance; }
+    public double getDifference() { return stock - journalBalance; }
+}
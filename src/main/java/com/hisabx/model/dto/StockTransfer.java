@@ -0,0 +1,35 @@
+package com.hisabx.model.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * A stock transfer (تحويل مخزني) between two locations, as listed in the transfer history.
+ */
+public class StockTransfer {
+    private final Long id;
+    private final LocalDateTime transferDate;
+    private final String fromLocation;
+    private final String toLocation;
+    private final String createdBy;
+    private final String notes;
+    private final int itemCount;
+
+    public StockTransfer(Long id, LocalDateTime transferDate, String fromLocation, String toLocation,
+            String createdBy, String notes, int itemCount) {
+        this.id = id;
+        this.transferDate = transferDate;
+        this.fromLocation = fromLocation;
+        this.toLocation = toLocation;
+        this.createdBy = createdBy;
+        this.notes = notes;
+        this.itemCount = itemCount;
+    }
+
+    public Long getId() { return id; }
+    public LocalDateTime getTransferDate() { return transferDate; }
+    public String getFromLocation() { return fromLocation; }
+    public String getToLocation() { return toLocation; }
+    public String getCreatedBy() { return createdBy; }
+    public String getNotes() { return notes; }
+    public int getItemCount() { return itemCount; }
+}
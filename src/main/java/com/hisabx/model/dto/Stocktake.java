@@ -0,0 +1,68 @@
+package com.hisabx.model.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * A stocktake session (جرد) and, once closed, its outcome.
+ */
+public class Stocktake {
+    public static final String OPEN = "OPEN";
+    public static final String POSTED = "POSTED";
+    public static final String CANCELLED = "CANCELLED";
+
+    private final Long id;
+    private final LocalDateTime startedAt;
+    private final String startedBy;
+    private final String category;
+    private final Long locationId;
+    private final String locationName;
+    private final String notes;
+    private final String status;
+    private final int productCount;
+    private final LocalDateTime closedAt;
+    private final String closedBy;
+    private final int adjustedCount;
+    private final double varianceValue;
+
+    public Stocktake(Long id, LocalDateTime startedAt, String startedBy, String category, Long locationId,
+            String locationName, String notes, String status, int productCount, LocalDateTime closedAt,
+            String closedBy, int adjustedCount, double varianceValue) {
+        this.id = id;
+        this.startedAt = startedAt;
+        this.startedBy = startedBy;
+        this.category = category;
+        this.locationId = locationId;
+        this.locationName = locationName;
+        this.notes = notes;
+        this.status = status;
+        this.productCount = productCount;
+        this.closedAt = closedAt;
+        this.closedBy = closedBy;
+        this.adjustedCount = adjustedCount;
+        this.varianceValue = varianceValue;
+    }
+
+    public Long getId() { return id; }
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public String getStartedBy() { return startedBy; }
+    public String getCategory() { return category; }
+    public Long getLocationId() { return locationId; }
+    public String getLocationName() { return locationName; }
+    public String getNotes() { return notes; }
+    public String getStatus() { return status; }
+    public int getProductCount() { return productCount; }
+    public LocalDateTime getClosedAt() { return closedAt; }
+    public String getClosedBy() { return closedBy; }
+    public int getAdjustedCount() { return adjustedCount; }
+    public double getVarianceValue() { return varianceValue; }
+    public boolean isOpen() { return OPEN.equals(status); }
+
+    public String getStatusArabic() {
+        return switch (status) {
+            case OPEN -> "مفتوح";
+            case POSTED -> "مُرحّل";
+            case CANCELLED -> "ملغى";
+            default -> status;
+        };
+    }
+}
@@ -0,0 +1,50 @@
+package com.hisabx.model.dto;
+
+/**
+ * One product of a stocktake: the stock frozen at the start against the sum of all counters.
+ * Products nobody counted have no counted quantity; approving them posts them as zero.
+ */
+public class StocktakeLine {
+    private final Long productId;
+    private final String productCode;
+    private final String name;
+    private final String barcode;
+    private final double frozenQty;
+    private final Double countedQty;
+    private final int counters;
+    private final Double unitCost;
+    private boolean approved;
+
+    public StocktakeLine(Long productId, String productCode, String name, String barcode, double frozenQty,
+            Double countedQty, int counters, Double unitCost) {
+        this.productId = productId;
+        this.productCode = productCode;
+        this.name = name;
+        this.barcode = barcode;
+        this.frozenQty = frozenQty;
+        this.countedQty = countedQty;
+        this.counters = counters;
+        this.unitCost = unitCost;
+    }
+
+    public Long getProductId() { return productId; }
+    public String getProductCode() { return productCode; }
+    public String getName() { return name; }
+    public String getBarcode() { return barcode; }
+    public double getFrozenQty() { return frozenQty; }
+    public Double getCountedQty() { return countedQty; }
+    public int getCounters() { return counters; }
+    public Double getUnitCost() { return unitCost; }
+    public boolean isCounted() { return countedQty != null; }
+
+    public double getVariance() {
+        return (countedQty != null ? countedQty : 0.0) - frozenQty;
+    }
+
+    public double getVarianceValue() {
+        return getVariance() * (unitCost != null ? unitCost : 0.0);
+    }
+
+    public boolean isApproved() { return approved; }
+    public void setApproved(boolean approved) { this.approved = approved; }
+}
@@ -0,0 +1,263 @@
+package com.hisabx.service;
+
+import com.hisabx.database.DatabaseManager;
+import com.hisabx.database.SqliteDates;
+import com.hisabx.model.Installment;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * التنبيهات - low-stock products and installments due soon, read from the alerts table.
+ *
+ * Triggers add and remove alert rows as products cross their reorder level and installments
+ * are created or paid, so nothing here scans products or installments. Which installments are
+ * due "soon" moves with the date: once a day (and when the reminder window changes) the window
+ * in alert_state is moved on and installment alerts are resynchronised. The counts are kept in
+ * memory, re-read on a background thread after data changes - a burst of events, such as the
+ * StockChanged of every line of a sale, causes one read - and published as
+ * {@link DomainEvent.AlertsChanged} when they differ.
+ */
+public final class AlertService {
+    private static final Logger logger = LoggerFactory.getLogger(AlertService.class);
+
+    public static final String LOW_STOCK = "LOW_STOCK";
+    public static final String INSTALLMENT = "INSTALLMENT";
+    public static final int DEFAULT_REMINDER_DAYS = 3;
+
+    private static final long CHECK_INTERVAL_MINUTES = 30;
+    private static final long COALESCE_DELAY_MS = 250;
+
+    private static AlertService instance;
+
+    private final ScheduledExecutorService worker;
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+    private boolean started;
+    private volatile Summary summary;
+
+    private AlertService() {
+        worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Alerts");
+            t.setDaemon(true);
+            return t;
+        });
+        DomainEventBus bus = DomainEventBus.getInstance();
+        bus.subscribe(DomainEvent.StockChanged.class, e -> scheduleRefresh());
+        bus.subscribe(DomainEvent.ProductChanged.class, e -> scheduleRefresh());
+        bus.subscribe(DomainEvent.VoucherSaved.class, e -> scheduleRefresh());
+        bus.subscribe(DomainEvent.VoucherCancelled.class, e -> scheduleRefresh());
+        bus.subscribe(DomainEvent.BulkDataChanged.class, e -> {
+            if (e.isProducts()) {
+                scheduleRefresh();
+            }
+        });
+    }
+
+    public static synchronized AlertService getInstance() {
+        if (instance == null) {
+            instance = new AlertService();
+        }
+        return instance;
+    }
+
+    /**
+     * Alert counts; installments due today or earlier are overdue, later ones upcoming.
+     */
+    public static final class Summary {
+        private final int lowStock;
+        private final int overdueInstallments;
+        private final int upcomingInstallments;
+
+        Summary(int lowStock, int overdueInstallments, int upcomingInstallments) {
+            this.lowStock = lowStock;
+            this.overdueInstallments = overdueInstallments;
+            this.upcomingInstallments = upcomingInstallments;
+        }
+
+        public int getLowStock() { return lowStock; }
+        public int getOverdueInstallments() { return overdueInstallments; }
+        public int getUpcomingInstallments() { return upcomingInstallments; }
+
+        public boolean hasInstallments() {
+            return overdueInstallments + upcomingInstallments > 0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Summary other && lowStock == other.lowStock
+                    && overdueInstallments == other.overdueInstallments
+                    && upcomingInstallments == other.upcomingInstallments;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(lowStock, overdueInstallments, upcomingInstallments);
+        }
+    }
+
+    /**
+     * Move the installment window on at start if today's run is missing, then again after each
+     * midnight while the application stays open.
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        worker.scheduleWithFixedDelay(this::rollOverIfDue, 0, CHECK_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    public Summary getSummary() {
+        Summary current = summary;
+        return current != null ? current : refreshSummary();
+    }
+
+    /**
+     * Alert on installments due within this many days; the window is moved at once when it
+     * differs from the stored one.
+     */
+    public void setInstallmentReminderDays(int days) {
+        int stored = readState()[0];
+        if (stored != days) {
+            rollOver(days);
+        }
+    }
+
+    /**
+     * Installments with an alert, earliest due first, with their vouchers and customers.
+     */
+    public List<Installment> getInstallmentAlerts() {
+        try (Session session = DatabaseManager.getSessionFactory().openSession()) {
+            return session.createNativeQuery("SELECT i.* FROM alerts a JOIN installments i ON i.id = a.ref_id"
+                            + " WHERE a.kind = '" + INSTALLMENT + "' ORDER BY a.due_at, i.id", Installment.class)
+                    .list();
+        } catch (RuntimeException e) {
+            logger.error("Failed to load installment alerts", e);
+            throw new RuntimeException("تعذر تحميل تنبيهات الأقساط", e);
+        }
+    }
+
+    /**
+     * Set the installment window to end {@code days} after today and bring the installment
+     * alerts in line with it.
+     */
+    public synchronized void rollOver(int days) {
+        int window = Math.max(0, days);
+        LocalDate today = LocalDate.now();
+        long horizon = SqliteDates.startOfDayMillis(today.plusDays(window + 1L)) - 1;
+        String due = SqliteDates.epochMillis("due_date");
+        try (Connection conn = DatabaseManager.openConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement ps = conn.prepareStatement("UPDATE alert_state SET installment_days = ?,"
+                        + " installment_horizon = ?, rolled_over_day = ? WHERE id = 1")) {
+                    ps.setInt(1, window);
+                    ps.setLong(2, horizon);
+                    ps.setLong(3, today.toEpochDay());
+                    ps.executeUpdate();
+                }
+                try (PreparedStatement ps = conn.prepareStatement("DELETE FROM alerts WHERE kind = '" + INSTALLMENT
+                        + "' AND (due_at > ? OR ref_id NOT IN (SELECT id FROM installments WHERE COALESCE(is_paid, 0) = 0))")) {
+                    ps.setLong(1, horizon);
+                    ps.executeUpdate();
+                }
+                int added;
+                try (PreparedStatement ps = conn.prepareStatement("INSERT OR IGNORE INTO alerts (kind, ref_id, due_at, created_at)"
+                        + " SELECT '" + INSTALLMENT + "', id, " + due + ", ? FROM installments"
+                        + " WHERE COALESCE(is_paid, 0) = 0 AND " + due + " <= ?")) {
+                    ps.setLong(1, System.currentTimeMillis());
+                    ps.setLong(2, horizon);
+                    added = ps.executeUpdate();
+                }
+                conn.commit();
+                logger.info("Installment alerts rolled over to {} days after {} ({} added)", window, today, added);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to roll over installment alerts", e);
+            throw new RuntimeException("تعذر تحديث تنبيهات الأقساط", e);
+        }
+        refreshSummary();
+    }
+
+    private void rollOverIfDue() {
+        try {
+            int[] state = readState();
+            if (state[1] != LocalDate.now().toEpochDay()) {
+                rollOver(state[0]);
+            } else {
+                // Overdue and upcoming are split by today's date
+                refreshSummary();
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Alert roll-over failed", e);
+        }
+    }
+
+    /** Reminder days and the epoch day of the last roll-over (-1 when never rolled over). */
+    private int[] readState() {
+        try (Connection conn = DatabaseManager.openConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "SELECT installment_days, rolled_over_day FROM alert_state WHERE id = 1");
+             ResultSet rs = ps.executeQuery()) {
+            if (rs.next() && rs.getObject(2) != null) {
+                return new int[]{rs.getInt(1), rs.getInt(2)};
+            }
+            return new int[]{DEFAULT_REMINDER_DAYS, -1};
+        } catch (SQLException e) {
+            logger.error("Failed to read alert state", e);
+            throw new RuntimeException("تعذر قراءة حالة التنبيهات", e);
+        }
+    }
+
+    /** Re-read the counts shortly; events arriving before the read share it. */
+    private void scheduleRefresh() {
+        if (refreshScheduled.compareAndSet(false, true)) {
+            worker.schedule(() -> {
+                refreshScheduled.set(false);
+                refreshSummary();
+            }, COALESCE_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private Summary refreshSummary() {
+        long tomorrow = SqliteDates.startOfDayMillis(LocalDate.now().plusDays(1));
+        Summary fresh;
+        // Read the live database: the reporting replica can lag the change that triggered this
+        try (Connection conn = DatabaseManager.openConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT"
+                     + " COALESCE(SUM(kind = '" + LOW_STOCK + "'), 0),"
+                     + " COALESCE(SUM(kind = '" + INSTALLMENT + "' AND due_at < ?), 0),"
+                     + " COALESCE(SUM(kind = '" + INSTALLMENT + "' AND due_at >= ?), 0) FROM alerts")) {
+            ps.setLong(1, tomorrow);
+            ps.setLong(2, tomorrow);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                fresh = new Summary(rs.getInt(1), rs.getInt(2), rs.getInt(3));
+            }
+        } catch (SQLException e) {
+            logger.warn("Failed to count alerts", e);
+            return summary != null ? summary : new Summary(0, 0, 0);
+        }
+        Summary previous = summary;
+        summary = fresh;
+        if (previous != null && !previous.equals(fresh)) {
+            DomainEventBus.getInstance().publish(new DomainEvent.AlertsChanged(fresh));
+        }
+        return fresh;
+    }
+}
@@ -0,0 +1,437 @@
+package com.hisabx.service;
+
+import com.hisabx.database.DatabaseManager;
+import com.hisabx.database.ReportingDatabase;
+import com.hisabx.database.SqliteDates;
+import com.hisabx.model.VoucherType;
+import com.hisabx.model.dto.PriceChangeBatch;
+import com.hisabx.model.dto.PricePreviewLine;
+import com.hisabx.util.SessionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * تعديل الأسعار الجماعي - reprices a scope of products with one rule.
+ *
+ * The new value is a SQL expression over the product row, so the paged preview and the change
+ * agree; both read the live database, and applying re-counts the products in its own
+ * transaction and refuses when the count no longer matches the preview. Applying writes the old and new value of every affected product into a snapshot
+ * batch and updates products from it in one set-based statement, all in one transaction;
+ * undo restores the old values of products that were not edited again since.
+ */
+public class BulkPriceService {
+    private static final Logger logger = LoggerFactory.getLogger(BulkPriceService.class);
+
+    /** Smallest change counted as a change; smaller differences are rounding noise. */
+    private static final double MIN_CHANGE = 0.000001;
+
+    public enum Field {
+        PRICE("سعر البيع", "unit_price"),
+        COST("سعر التكلفة", "cost_price");
+
+        private final String arabicName;
+        private final String column;
+
+        Field(String arabicName, String column) {
+            this.arabicName = arabicName;
+            this.column = column;
+        }
+
+        public String getArabicName() { return arabicName; }
+    }
+
+    public enum RuleType {
+        PERCENT("نسبة مئوية"),
+        DELTA("مبلغ ثابت"),
+        MARGIN("هامش فوق التكلفة");
+
+        private final String arabicName;
+
+        RuleType(String arabicName) {
+            this.arabicName = arabicName;
+        }
+
+        public String getArabicName() { return arabicName; }
+    }
+
+    /**
+     * How the new value is computed: a percentage or fixed change of the current value, or a
+     * margin percentage over the cost price; rounded to a multiple of {@code roundTo} when it
+     * is above zero. Results below zero become zero.
+     */
+    public static final class Rule {
+        private final RuleType type;
+        private final double value;
+        private final double roundTo;
+
+        public Rule(RuleType type, double value, double roundTo) {
+            this.type = type;
+            this.value = value;
+            this.roundTo = roundTo;
+        }
+
+        public RuleType getType() { return type; }
+        public double getValue() { return value; }
+        public double getRoundTo() { return roundTo; }
+    }
+
+    /**
+     * Which products a change applies to; only active products are repriced.
+     */
+    public static final class Scope {
+        public enum Kind { CATEGORY, SEARCH, SUPPLIER }
+
+        private final Kind kind;
+        private final String text;
+        private final String category;
+        private final Long supplierId;
+        private final String label;
+
+        private Scope(Kind kind, String text, String category, Long supplierId, String label) {
+            this.kind = kind;
+            this.text = text;
+            this.category = category;
+            this.supplierId = supplierId;
+            this.label = label;
+        }
+
+        /** A category with all its sub-categories. */
+        public static Scope category(String name) {
+            return new Scope(Kind.CATEGORY, null, name, null, "الفئة: " + name);
+        }
+
+        /** The products the inventory search shows for a text and optional category. */
+        public static Scope search(String text, String category) {
+            String q = text == null ? "" : text.trim();
+            return new Scope(Kind.SEARCH, q, category, null,
+                    "البحث: " + (q.isEmpty() ? "الكل" : q) + (category != null ? " / " + category : ""));
+        }
+
+        /** Products bought on purchase vouchers of a supplier. */
+        public static Scope supplier(Long customerId, String supplierName) {
+            return new Scope(Kind.SUPPLIER, null, null, customerId, "المورد: " + supplierName);
+        }
+
+        public String getLabel() { return label; }
+    }
+
+    /** Number of products the change would modify. */
+    public long count(Scope scope, Field field, Rule rule) {
+        Sql candidates = candidates(scope, field, rule);
+        try (Connection conn = DatabaseManager.openConnection();
+             PreparedStatement ps = candidates.prepare(conn, "SELECT COUNT(*) FROM (", ")");
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0L;
+        } catch (SQLException e) {
+            logger.error("Failed to count bulk price change", e);
+            throw new RuntimeException("فشل في معاينة تعديل الأسعار", e);
+        }
+    }
+
+    /** One page of the products the change would modify, by name. */
+    public List<PricePreviewLine> preview(Scope scope, Field field, Rule rule, int offset, int limit) {
+        Sql candidates = candidates(scope, field, rule);
+        List<PricePreviewLine> lines = new ArrayList<>();
+        try (Connection conn = DatabaseManager.openConnection();
+             PreparedStatement ps = candidates.prepare(conn, "SELECT * FROM (",
+                     ") ORDER BY name, id LIMIT " + Math.max(1, limit) + " OFFSET " + Math.max(0, offset));
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                lines.add(new PricePreviewLine(rs.getLong("id"), rs.getString("product_code"),
+                        rs.getString("name"), rs.getString("category"), nullableDouble(rs, "cost_price"),
+                        nullableDouble(rs, "old_value"), nullableDouble(rs, "new_value")));
+            }
+            return lines;
+        } catch (SQLException e) {
+            logger.error("Failed to preview bulk price change", e);
+            throw new RuntimeException("فشل في معاينة تعديل الأسعار", e);
+        }
+    }
+
+    /**
+     * Apply the change in one transaction. {@code previewCount} is the count the user confirmed;
+     * when products were edited since and the change would now touch a different number of
+     * them, nothing is written and an IllegalArgumentException asks for a new preview.
+     *
+     * @return the recorded batch, or empty when no product changes
+     */
+    public Optional<PriceChangeBatch> apply(Scope scope, Field field, Rule rule, long previewCount) {
+        Sql candidates = candidates(scope, field, rule);
+        String description = describe(scope, field, rule);
+        LocalDateTime now = LocalDateTime.now();
+        long nowMillis = SqliteDates.toMillis(now);
+        String user = SessionManager.getInstance().getCurrentUsername();
+        long started = System.nanoTime();
+        int rows;
+        long batchId;
+        try (Connection conn = DatabaseManager.openConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement ps = conn.prepareStatement("INSERT INTO price_change_batches"
+                        + " (created_at, created_by, field, description) VALUES (?, ?, ?, ?)",
+                        Statement.RETURN_GENERATED_KEYS)) {
+                    ps.setLong(1, nowMillis);
+                    ps.setString(2, user);
+                    ps.setString(3, field.name());
+                    ps.setString(4, description);
+                    ps.executeUpdate();
+                    try (ResultSet keys = ps.getGeneratedKeys()) {
+                        keys.next();
+                        batchId = keys.getLong(1);
+                    }
+                }
+                try (PreparedStatement ps = candidates.prepare(conn, "INSERT INTO price_change_items"
+                        + " (batch_id, product_id, old_value, new_value) SELECT " + batchId
+                        + ", id, old_value, new_value FROM (", ")")) {
+                    rows = ps.executeUpdate();
+                }
+                if (rows != previewCount) {
+                    throw new IllegalArgumentException("تغير عدد المنتجات المشمولة منذ المعاينة (" + rows
+                            + " بدلاً من " + previewCount + "). أعد المعاينة قبل التطبيق");
+                }
+                if (rows == 0) {
+                    conn.rollback();
+                    return Optional.empty();
+                }
+                try (PreparedStatement ps = conn.prepareStatement("UPDATE products SET " + field.column
+                        + " = i.new_value, updated_at = ? FROM price_change_items i"
+                        + " WHERE i.batch_id = ? AND i.product_id = products.id")) {
+                    ps.setLong(1, nowMillis);
+                    ps.setLong(2, batchId);
+                    ps.executeUpdate();
+                }
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "UPDATE price_change_batches SET row_count = ? WHERE id = ?")) {
+                    ps.setInt(1, rows);
+                    ps.setLong(2, batchId);
+                    ps.executeUpdate();
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to apply bulk price change: {}", description, e);
+            throw new RuntimeException("فشل في تعديل الأسعار", e);
+        }
+        logger.info("Bulk price change {} applied to {} products in {} ms: {}", batchId, rows,
+                (System.nanoTime() - started) / 1_000_000, description);
+        DomainEventBus.getInstance().publish(new DomainEvent.BulkDataChanged(true, false));
+        return Optional.of(new PriceChangeBatch(batchId, now, user, field.name(), description, rows, null));
+    }
+
+    /**
+     * Put back the values a batch replaced. Products edited again after the batch keep their
+     * newer value.
+     *
+     * @return the number of products restored
+     */
+    public int undo(long batchId) {
+        long nowMillis = SqliteDates.toMillis(LocalDateTime.now());
+        int restored;
+        try (Connection conn = DatabaseManager.openConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                String column;
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "SELECT field FROM price_change_batches WHERE id = ? AND undone_at IS NULL")) {
+                    ps.setLong(1, batchId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (!rs.next()) {
+                            throw new IllegalArgumentException("التعديل غير موجود أو تم التراجع عنه مسبقاً");
+                        }
+                        column = Field.valueOf(rs.getString(1)).column;
+                    }
+                }
+                try (PreparedStatement ps = conn.prepareStatement("UPDATE products SET " + column
+                        + " = i.old_value, updated_at = ? FROM price_change_items i"
+                        + " WHERE i.batch_id = ? AND i.product_id = products.id AND products." + column + " IS i.new_value")) {
+                    ps.setLong(1, nowMillis);
+                    ps.setLong(2, batchId);
+                    restored = ps.executeUpdate();
+                }
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "UPDATE price_change_batches SET undone_at = ? WHERE id = ?")) {
+                    ps.setLong(1, nowMillis);
+                    ps.setLong(2, batchId);
+                    ps.executeUpdate();
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to undo bulk price change {}", batchId, e);
+            throw new RuntimeException("فشل في التراجع عن تعديل الأسعار", e);
+        }
+        logger.info("Bulk price change {} undone, {} products restored", batchId, restored);
+        DomainEventBus.getInstance().publish(new DomainEvent.BulkDataChanged(true, false));
+        return restored;
+    }
+
+    /** Latest bulk changes, newest first. */
+    public List<PriceChangeBatch> getRecentBatches(int limit) {
+        try {
+            return ReportingDatabase.getInstance().read(conn -> {
+                List<PriceChangeBatch> batches = new ArrayList<>();
+                try (PreparedStatement ps = conn.prepareStatement("SELECT id, created_at, created_by, field,"
+                        + " description, row_count, undone_at FROM price_change_batches ORDER BY id DESC LIMIT ?")) {
+                    ps.setInt(1, limit);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            batches.add(new PriceChangeBatch(rs.getLong(1), SqliteDates.toLocalDateTime(rs.getObject(2)),
+                                    rs.getString(3), rs.getString(4), rs.getString(5), rs.getInt(6),
+                                    SqliteDates.toLocalDateTime(rs.getObject(7))));
+                        }
+                    }
+                }
+                return batches;
+            });
+        } catch (SQLException e) {
+            logger.error("Failed to load bulk price changes", e);
+            throw new RuntimeException("فشل في تحميل سجل تعديل الأسعار", e);
+        }
+    }
+
+    /** Customers that supplied goods on purchase vouchers, by name. */
+    public List<CustomerDirectory.Entry> getSuppliers() {
+        try {
+            List<Long> ids = ReportingDatabase.getInstance().read(conn -> {
+                List<Long> found = new ArrayList<>();
+                try (PreparedStatement ps = conn.prepareStatement("SELECT DISTINCT customer_id FROM vouchers"
+                        + " WHERE voucher_type = ? AND customer_id IS NOT NULL AND COALESCE(is_cancelled, 0) = 0")) {
+                    ps.setString(1, VoucherType.PURCHASE.name());
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            found.add(rs.getLong(1));
+                        }
+                    }
+                }
+                return found;
+            });
+            CustomerDirectory directory = CustomerDirectory.getInstance();
+            return directory.all().stream().filter(e -> ids.contains(e.getId())).toList();
+        } catch (SQLException e) {
+            logger.error("Failed to load suppliers", e);
+            throw new RuntimeException("فشل في تحميل الموردين", e);
+        }
+    }
+
+    /**
+     * Active products in scope whose value changes, with columns id, product_code, name,
+     * category, cost_price, old_value and new_value.
+     */
+    private static Sql candidates(Scope scope, Field field, Rule rule) {
+        if (rule.type == RuleType.MARGIN && field != Field.PRICE) {
+            throw new IllegalArgumentException("الهامش فوق التكلفة يطبق على سعر البيع فقط");
+        }
+        if (rule.type != RuleType.DELTA && rule.value <= -100) {
+            throw new IllegalArgumentException("النسبة يجب أن تكون أكبر من -100%");
+        }
+        if (rule.roundTo < 0) {
+            throw new IllegalArgumentException("قيمة التقريب لا يمكن أن تكون سالبة");
+        }
+        Sql sql = new Sql();
+        String current = "COALESCE(p." + field.column + ", 0)";
+        String computed = switch (rule.type) {
+            case PERCENT -> current + " * (1 + ? / 100.0)";
+            case DELTA -> current + " + ?";
+            case MARGIN -> "COALESCE(p.cost_price, 0) * (1 + ? / 100.0)";
+        };
+        sql.params.add(rule.value);
+        String newValue = "MAX(0, " + computed + ")";
+        if (rule.roundTo > 0) {
+            newValue = "ROUND(" + newValue + " / ?) * ?";
+            sql.params.add(rule.roundTo);
+            sql.params.add(rule.roundTo);
+        }
+        sql.text.append("SELECT id, product_code, name, category, cost_price, old_value, new_value FROM (")
+                .append("SELECT p.id, p.product_code, p.name, c.name AS category, p.cost_price, p.").append(field.column)
+                .append(" AS old_value, ").append(newValue).append(" AS new_value")
+                .append(" FROM products p LEFT JOIN categories c ON c.id = p.category_id WHERE p.is_active = 1 AND ");
+        appendScope(sql, scope);
+        sql.text.append(") WHERE old_value IS NULL OR ABS(new_value - old_value) > ").append(MIN_CHANGE);
+        return sql;
+    }
+
+    private static void appendScope(Sql sql, Scope scope) {
+        switch (scope.kind) {
+            case CATEGORY -> {
+                if (scope.category == null || scope.category.isBlank()) {
+                    throw new IllegalArgumentException("اختر الفئة");
+                }
+                sql.text.append("p.category_id IN (").append(DatabaseManager.CATEGORY_SUBTREE).append(")");
+                sql.params.add(scope.category);
+            }
+            case SEARCH -> {
+                // Same match as the inventory search
+                String q = scope.text.toLowerCase();
+                sql.text.append("(? = '' OR lower(p.name) LIKE ? OR lower(p.product_code) LIKE ? OR lower(p.barcode) LIKE ?)");
+                sql.params.add(q);
+                sql.params.add("%" + q + "%");
+                sql.params.add("%" + q + "%");
+                sql.params.add("%" + q + "%");
+                if (scope.category != null) {
+                    sql.text.append(" AND p.category_id IN (").append(DatabaseManager.CATEGORY_SUBTREE).append(")");
+                    sql.params.add(scope.category);
+                }
+            }
+            case SUPPLIER -> {
+                if (scope.supplierId == null) {
+                    throw new IllegalArgumentException("اختر المورد");
+                }
+                sql.text.append("p.id IN (SELECT vi.product_id FROM voucher_items vi"
+                        + " JOIN vouchers v ON v.id = vi.voucher_id"
+                        + " WHERE v.voucher_type = ? AND v.customer_id = ? AND COALESCE(v.is_cancelled, 0) = 0)");
+                sql.params.add(VoucherType.PURCHASE.name());
+                sql.params.add(scope.supplierId);
+            }
+        }
+    }
+
+    private static String describe(Scope scope, Field field, Rule rule) {
+        String change = switch (rule.type) {
+            case PERCENT -> (rule.value >= 0 ? "+" : "") + plain(rule.value) + "%";
+            case DELTA -> (rule.value >= 0 ? "+" : "") + plain(rule.value);
+            case MARGIN -> "= التكلفة + " + plain(rule.value) + "%";
+        };
+        return field.arabicName + " " + change + (rule.roundTo > 0 ? " (تقريب " + plain(rule.roundTo) + ")" : "")
+                + " - " + scope.label;
+    }
+
+    private static String plain(double value) {
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+
+    private static Double nullableDouble(ResultSet rs, String column) throws SQLException {
+        double value = rs.getDouble(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    /** SQL text with its positional parameters. */
+    private static final class Sql {
+        private final StringBuilder text = new StringBuilder();
+        private final List<Object> params = new ArrayList<>();
+
+        PreparedStatement prepare(Connection conn, String prefix, String suffix) throws SQLException {
+            PreparedStatement ps = conn.prepareStatement(prefix + text + suffix);
+            for (int i = 0; i < params.size(); i++) {
+                ps.setObject(i + 1, params.get(i));
+            }
+            return ps;
+        }
+    }
+}
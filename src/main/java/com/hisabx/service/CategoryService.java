@@ -1,66 +1,189 @@
 package com.hisabx.service;
 
+import com.hisabx.database.DatabaseManager;
+import com.hisabx.database.ReportingDatabase;
 import com.hisabx.database.Repository.CategoryRepository;
 import com.hisabx.model.Category;
+import org.hibernate.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 public class CategoryService {
     private static final Logger logger = LoggerFactory.getLogger(CategoryService.class);
+
+    // Every product form and filter lists the categories; they change rarely, so the list is
+    // kept until a category is saved or deleted here or products are imported
+    private static volatile List<Category> cachedCategories;
+
+    static {
+        DomainEventBus.getInstance().subscribe(DomainEvent.BulkDataChanged.class, e -> {
+            if (e.isProducts()) {
+                invalidate();
+            }
+        });
+    }
+
     private final CategoryRepository categoryRepository;
-    
+
     public CategoryService() {
         this.categoryRepository = new CategoryRepository();
     }
-    
+
     public Category createCategory(Category category) {
         logger.info("Creating new category: {}", category.getName());
         validateCategory(category);
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        invalidate();
+        return saved;
     }
-    
+
+    /**
+     * Saves a rename or a move to another parent. Products are linked by id, so neither
+     * touches them; a move re-links the whole subtree in the category tree.
+     */
     public Category updateCategory(Category category) {
         logger.info("Updating category: {}", category.getId());
         validateCategory(category);
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        invalidate();
+        // Product lists show the category name and filter by subtree
+        DomainEventBus.getInstance().publish(new DomainEvent.BulkDataChanged(true, false));
+        return saved;
     }
-    
+
     public Optional<Category> getCategoryById(Long id) {
         return categoryRepository.findById(id);
     }
-    
+
     public Optional<Category> getCategoryByName(String name) {
         return categoryRepository.findByName(name);
     }
-    
+
     public List<Category> getAllCategories() {
-        return categoryRepository.findAll();
+        List<Category> categories = cachedCategories;
+        if (categories == null) {
+            categories = categoryRepository.findAll().stream()
+                    .sorted(Comparator.comparing(Category::getName))
+                    .toList();
+            cachedCategories = categories;
+        }
+        return categories;
     }
-    
+
     public List<Category> getActiveCategories() {
-        return categoryRepository.findAll().stream()
+        return getAllCategories().stream()
                 .filter(Category::getIsActive)
                 .toList();
     }
-    
+
+    /**
+     * Ids of the named category and every category under it; empty when there is no such category.
+     */
+    public Set<Long> getSubtreeIds(String name) {
+        try {
+            return ReportingDatabase.getInstance().read(conn -> {
+                Set<Long> ids = new HashSet<>();
+                try (PreparedStatement ps = conn.prepareStatement(DatabaseManager.CATEGORY_SUBTREE)) {
+                    ps.setString(1, name);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            ids.add(rs.getLong(1));
+                        }
+                    }
+                }
+                return ids;
+            });
+        } catch (SQLException e) {
+            logger.error("Failed to load category subtree: {}", name, e);
+            throw new RuntimeException("تعذر تحميل الفئات الفرعية", e);
+        }
+    }
+
+    /**
+     * Product count per category id, either of the category itself or including every
+     * category under it, in one grouped query.
+     */
+    public Map<Long, Long> getProductCounts(boolean withSubcategories) {
+        String sql = withSubcategories
+                ? "SELECT cc.ancestor_id, COUNT(*) FROM category_closure cc"
+                        + " JOIN products p ON p.category_id = cc.descendant_id GROUP BY cc.ancestor_id"
+                : "SELECT category_id, COUNT(*) FROM products WHERE category_id IS NOT NULL GROUP BY category_id";
+        try {
+            return ReportingDatabase.getInstance().read(conn -> {
+                Map<Long, Long> counts = new HashMap<>();
+                try (PreparedStatement ps = conn.prepareStatement(sql);
+                     ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        counts.put(rs.getLong(1), rs.getLong(2));
+                    }
+                }
+                return counts;
+            });
+        } catch (SQLException e) {
+            logger.error("Failed to count products per category", e);
+            throw new RuntimeException("تعذر حساب عدد المنتجات في الفئات", e);
+        }
+    }
+
+    /**
+     * Deletes a category; its subcategories move up to its parent and its products are left
+     * without a category (done by the category tree triggers).
+     */
     public void deleteCategory(Long id) {
         logger.info("Deleting category: {}", id);
         categoryRepository.deleteById(id);
+        invalidate();
+        DomainEventBus.getInstance().publish(new DomainEvent.BulkDataChanged(true, false));
     }
-    
+
     public void deleteCategory(Category category) {
         logger.info("Deleting category: {}", category.getId());
         categoryRepository.delete(category);
+        invalidate();
+        DomainEventBus.getInstance().publish(new DomainEvent.BulkDataChanged(true, false));
+    }
+
+    /**
+     * Id of the category a product is saved under, creating it when the name is new. Runs in
+     * the caller's transaction so product and category are saved together.
+     */
+    static Long resolveCategoryId(Session session, String name) {
+        if (name == null || name.isBlank()) {
+            return null;
+        }
+        String trimmed = name.trim();
+        Long id = session.createQuery("SELECT c.id FROM Category c WHERE c.name = :name", Long.class)
+                .setParameter("name", trimmed)
+                .uniqueResult();
+        if (id == null) {
+            Category category = new Category(trimmed);
+            session.save(category);
+            id = category.getId();
+            invalidate();
+        }
+        return id;
     }
-    
+
+    private static void invalidate() {
+        cachedCategories = null;
+    }
+
     private void validateCategory(Category category) {
         if (category.getName() == null || category.getName().trim().isEmpty()) {
             throw new IllegalArgumentException("اسم الفئة مطلوب");
         }
-        
+
         // Check for duplicate name (for new categories)
         if (category.getId() == null) {
             Optional<Category> existing = categoryRepository.findByName(category.getName());
@@ -73,6 +196,29 @@ public class CategoryService {
             if (existing.isPresent() && !existing.get().getId().equals(category.getId())) {
                 throw new IllegalArgumentException("اسم الفئة مستخدم بالفعل");
             }
+            // A category cannot move under itself or one of its own subcategories
+            if (category.getParentId() != null && isWithin(category.getParentId(), category.getId())) {
+                throw new IllegalArgumentException("لا يمكن نقل الفئة إلى داخل نفسها أو إحدى فئاتها الفرعية");
+            }
+        }
+    }
+
+    /** Whether a category is the given ancestor or lies anywhere under it. */
+    private boolean isWithin(Long categoryId, Long ancestorId) {
+        try {
+            return ReportingDatabase.getInstance().read(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "SELECT 1 FROM category_closure WHERE ancestor_id = ? AND descendant_id = ?")) {
+                    ps.setLong(1, ancestorId);
+                    ps.setLong(2, categoryId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        return rs.next();
+                    }
+                }
+            });
+        } catch (SQLException e) {
+            logger.error("Failed to check category tree for {}", categoryId, e);
+            throw new RuntimeException("تعذر التحقق من شجرة الفئات", e);
         }
     }
 }
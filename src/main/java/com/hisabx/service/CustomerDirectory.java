@@ -0,0 +1,284 @@
+package com.hisabx.service;
+
+import com.hisabx.database.DatabaseManager;
+import com.hisabx.model.Customer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * دليل العملاء المشترك - فهرس مضغوط وثابت للعملاء في الذاكرة.
+ * Loaded once with a single projection query and kept current from customer, sale, voucher
+ * and return events, so pickers and lists search it instead of loading Customer entities.
+ * Readers always see a complete immutable snapshot; writers swap in a new one.
+ */
+public final class CustomerDirectory {
+    private static final Logger logger = LoggerFactory.getLogger(CustomerDirectory.class);
+    private static CustomerDirectory instance;
+
+    private static final String SELECT_COLUMNS =
+            "SELECT id, customer_code, name, phone_number, address, project_location, "
+                    + "balance_iqd, balance_usd, current_balance FROM customers";
+
+    private static final Comparator<Entry> BY_NAME = Comparator
+            .comparing((Entry e) -> e.getName() != null ? e.getName() : "", Collator.getInstance(new Locale("ar")))
+            .thenComparing(Entry::getId);
+
+    private volatile Snapshot snapshot;
+
+    private CustomerDirectory() {
+        DomainEventBus bus = DomainEventBus.getInstance();
+        bus.subscribe(DomainEvent.CustomerUpdated.class, e -> {
+            if (e.isDeleted()) {
+                remove(e.getCustomerId());
+            } else {
+                reload(e.getCustomerId());
+            }
+        });
+        bus.subscribe(DomainEvent.SaleCreated.class, e -> reload(e.getCustomerId()));
+        bus.subscribe(DomainEvent.SaleUpdated.class, e -> reload(e.getCustomerId()));
+        bus.subscribe(DomainEvent.SaleDeleted.class, e -> reload(e.getCustomerId()));
+        bus.subscribe(DomainEvent.VoucherSaved.class, e -> reload(e.getCustomerId()));
+        bus.subscribe(DomainEvent.VoucherCancelled.class, e -> reload(e.getCustomerId()));
+        bus.subscribe(DomainEvent.ReturnChanged.class, e -> reload(customerIdForSale(e.getSaleId())));
+        bus.subscribe(DomainEvent.BulkDataChanged.class, e -> {
+            if (e.isCustomers()) {
+                invalidate();
+            }
+        });
+    }
+
+    public static synchronized CustomerDirectory getInstance() {
+        if (instance == null) {
+            instance = new CustomerDirectory();
+        }
+        return instance;
+    }
+
+    /**
+     * Immutable summary of one customer.
+     */
+    public static final class Entry {
+        private final Long id;
+        private final String code;
+        private final String name;
+        private final String phone;
+        private final String address;
+        private final String projectLocation;
+        private final List<String> projectLocations;
+        private final double balanceIqd;
+        private final double balanceUsd;
+        private final double currentBalance;
+        private final String searchKey;
+
+        private Entry(ResultSet rs) throws SQLException {
+            this.id = rs.getLong(1);
+            this.code = rs.getString(2);
+            this.name = rs.getString(3);
+            this.phone = rs.getString(4);
+            this.address = rs.getString(5);
+            this.projectLocation = rs.getString(6);
+            this.balanceIqd = rs.getDouble(7);
+            this.balanceUsd = rs.getDouble(8);
+            this.currentBalance = rs.getDouble(9);
+            this.projectLocations = projectLocation == null ? List.of()
+                    : Arrays.stream(projectLocation.split("\\R"))
+                            .map(String::trim)
+                            .filter(s -> !s.isEmpty())
+                            .distinct()
+                            .toList();
+            this.searchKey = ((name != null ? name : "") + "\n" + (code != null ? code : "") + "\n"
+                    + (phone != null ? phone : "")).toLowerCase();
+        }
+
+        public Long getId() { return id; }
+        public String getCode() { return code; }
+        public String getName() { return name; }
+        public String getPhone() { return phone; }
+        public String getAddress() { return address; }
+        public List<String> getProjectLocations() { return projectLocations; }
+        public double getBalanceIqd() { return balanceIqd; }
+        public double getBalanceUsd() { return balanceUsd; }
+
+        public boolean matches(String lowerCaseText) {
+            return lowerCaseText.isEmpty() || searchKey.contains(lowerCaseText);
+        }
+
+        /**
+         * Detached Customer carrying the indexed fields only; load the entity by id before
+         * editing or saving it.
+         */
+        public Customer toCustomer() {
+            Customer customer = new Customer();
+            customer.setId(id);
+            customer.setCustomerCode(code);
+            customer.setName(name);
+            customer.setPhoneNumber(phone);
+            customer.setAddress(address);
+            customer.setProjectLocation(projectLocation);
+            customer.setBalanceIqd(balanceIqd);
+            customer.setBalanceUsd(balanceUsd);
+            customer.setCurrentBalance(currentBalance);
+            return customer;
+        }
+    }
+
+    private static final class Snapshot {
+        final Map<Long, Entry> byId;
+        final Map<String, Entry> byCode;
+        final List<Entry> sorted;
+
+        /** @param list entries already ordered by {@link #BY_NAME} */
+        Snapshot(List<Entry> list) {
+            Map<Long, Entry> ids = new HashMap<>();
+            Map<String, Entry> codes = new HashMap<>();
+            for (Entry e : list) {
+                ids.put(e.getId(), e);
+                if (e.getCode() != null) {
+                    codes.put(e.getCode(), e);
+                }
+            }
+            this.byId = Collections.unmodifiableMap(ids);
+            this.byCode = Collections.unmodifiableMap(codes);
+            this.sorted = Collections.unmodifiableList(list);
+        }
+    }
+
+    /** All customers ordered by name. */
+    public List<Entry> all() {
+        return snapshot().sorted;
+    }
+
+    public int size() {
+        return snapshot().sorted.size();
+    }
+
+    public Optional<Entry> get(Long id) {
+        return id == null ? Optional.empty() : Optional.ofNullable(snapshot().byId.get(id));
+    }
+
+    public Optional<Entry> findByCode(String code) {
+        return code == null ? Optional.empty() : Optional.ofNullable(snapshot().byCode.get(code.trim()));
+    }
+
+    /**
+     * Customers whose name, code or phone contains the text, ordered by name and capped at limit.
+     */
+    public List<Entry> search(String text, int limit) {
+        String q = text == null ? "" : text.trim().toLowerCase();
+        List<Entry> result = new ArrayList<>(Math.min(limit, 64));
+        for (Entry e : snapshot().sorted) {
+            if (e.matches(q)) {
+                result.add(e);
+                if (result.size() >= limit) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Drop the index; the next read reloads it. */
+    public synchronized void invalidate() {
+        snapshot = null;
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                snapshot = new Snapshot(loadAll());
+            }
+            return snapshot;
+        }
+    }
+
+    private List<Entry> loadAll() {
+        long started = System.nanoTime();
+        List<Entry> entries = new ArrayList<>();
+        try (Connection conn = DatabaseManager.openConnection();
+             PreparedStatement ps = conn.prepareStatement(SELECT_COLUMNS);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                entries.add(new Entry(rs));
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to load customer directory", e);
+            throw new RuntimeException("فشل في تحميل قائمة العملاء", e);
+        }
+        entries.sort(BY_NAME);
+        logger.info("Customer directory loaded: {} customers in {} ms", entries.size(),
+                (System.nanoTime() - started) / 1_000_000);
+        return entries;
+    }
+
+    private synchronized void reload(Long customerId) {
+        if (customerId == null || snapshot == null) {
+            return;
+        }
+        Entry fresh = null;
+        try (Connection conn = DatabaseManager.openConnection();
+             PreparedStatement ps = conn.prepareStatement(SELECT_COLUMNS + " WHERE id = ?")) {
+            ps.setLong(1, customerId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    fresh = new Entry(rs);
+                }
+            }
+        } catch (SQLException e) {
+            logger.warn("Failed to refresh customer {} in directory; reloading on next read", customerId, e);
+            snapshot = null;
+            return;
+        }
+        List<Entry> entries = new ArrayList<>(snapshot.sorted);
+        entries.removeIf(entry -> entry.getId().equals(customerId));
+        if (fresh != null) {
+            int pos = Collections.binarySearch(entries, fresh, BY_NAME);
+            entries.add(pos < 0 ? -pos - 1 : pos, fresh);
+        }
+        snapshot = new Snapshot(entries);
+    }
+
+    private synchronized void remove(Long customerId) {
+        if (customerId == null || snapshot == null) {
+            return;
+        }
+        List<Entry> entries = new ArrayList<>(snapshot.sorted);
+        if (entries.removeIf(entry -> entry.getId().equals(customerId))) {
+            snapshot = new Snapshot(entries);
+        }
+    }
+
+    private Long customerIdForSale(Long saleId) {
+        if (saleId == null) {
+            return null;
+        }
+        try (Connection conn = DatabaseManager.openConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT customer_id FROM sales WHERE id = ?")) {
+            ps.setLong(1, saleId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : null;
+            }
+        } catch (SQLException e) {
+            logger.warn("Failed to resolve customer of sale {}", saleId, e);
+            return null;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.hisabx.database.Repository.CustomerRepository;
 import com.hisabx.database.Repository.CustomerPaymentRepository;
 import com.hisabx.model.Customer;
 import com.hisabx.model.CustomerPayment;
+import com.hisabx.model.dto.CustomerExposure;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,7 +30,9 @@ public class CustomerService {
         // Validate customer data
         validateCustomer(customer);
         
-        return customerRepository.save(customer);
+        Customer saved = customerRepository.save(customer);
+        DomainEventBus.getInstance().publish(new DomainEvent.CustomerUpdated(saved.getId(), false));
+        return saved;
     }
     
     public Customer updateCustomer(Customer customer) {
@@ -38,7 +41,9 @@ public class CustomerService {
         // Validate customer data
         validateCustomer(customer);
         
-        return customerRepository.save(customer);
+        Customer saved = customerRepository.save(customer);
+        DomainEventBus.getInstance().publish(new DomainEvent.CustomerUpdated(saved.getId(), false));
+        return saved;
     }
     
     public Optional<Customer> getCustomerById(Long id) {
@@ -60,11 +65,13 @@ public class CustomerService {
     public void deleteCustomer(Long id) {
         logger.info("Deleting customer: {}", id);
         customerRepository.deleteById(id);
+        DomainEventBus.getInstance().publish(new DomainEvent.CustomerUpdated(id, true));
     }
     
     public void deleteCustomer(Customer customer) {
         logger.info("Deleting customer: {}", customer.getId());
         customerRepository.delete(customer);
+        DomainEventBus.getInstance().publish(new DomainEvent.CustomerUpdated(customer.getId(), true));
     }
     
     private String generateCustomerCode() {
@@ -113,7 +120,9 @@ public class CustomerService {
             customer.setCurrentBalance(customer.getCurrentBalance() + amount);
             // Also update IQD balance for backward compatibility (sales are in IQD)
             customer.setBalanceIqd(customer.getBalanceIqd() + amount);
-            return customerRepository.save(customer);
+            Customer saved = customerRepository.save(customer);
+            DomainEventBus.getInstance().publish(new DomainEvent.CustomerUpdated(customerId, false));
+            return saved;
         }
         throw new IllegalArgumentException("العميل غير موجود");
     }
@@ -129,45 +138,42 @@ public class CustomerService {
                 // Also update legacy current_balance for IQD
                 customer.setCurrentBalance(customer.getCurrentBalance() + amount);
             }
-            return customerRepository.save(customer);
+            Customer saved = customerRepository.save(customer);
+            DomainEventBus.getInstance().publish(new DomainEvent.CustomerUpdated(customerId, false));
+            return saved;
         }
         throw new IllegalArgumentException("العميل غير موجود");
     }
     
     public List<Customer> getCustomersWithDebt() {
-        return customerRepository.findAll().stream()
-                .filter(customer -> customer.getBalanceIqd() < 0 || customer.getBalanceUsd() < 0)
-                .toList();
+        return customerRepository.findDebtorsAnyCurrency();
     }
     
     public List<Customer> getCustomersWithCredit() {
-        return customerRepository.findAll().stream()
-                .filter(customer -> customer.getBalanceIqd() > 0 || customer.getBalanceUsd() > 0)
-                .toList();
+        return customerRepository.findCreditorsAnyCurrency();
     }
     
     public List<Customer> getCustomersWithDebtByCurrency(String currency) {
-        return customerRepository.findAll().stream()
-                .filter(customer -> {
-                    if ("دولار".equals(currency) || "USD".equalsIgnoreCase(currency)) {
-                        return customer.getBalanceUsd() < 0;
-                    } else {
-                        return customer.getBalanceIqd() < 0;
-                    }
-                })
-                .toList();
+        return customerRepository.findDebtors(currency);
     }
     
     public List<Customer> getCustomersWithCreditByCurrency(String currency) {
-        return customerRepository.findAll().stream()
-                .filter(customer -> {
-                    if ("دولار".equals(currency) || "USD".equalsIgnoreCase(currency)) {
-                        return customer.getBalanceUsd() > 0;
-                    } else {
-                        return customer.getBalanceIqd() > 0;
-                    }
-                })
-                .toList();
+        return customerRepository.findCreditors(currency);
+    }
+
+    /**
+     * صفحة من الدائنين بعملة معينة، الأكبر رصيداً أولاً
+     */
+    public List<CustomerExposure> getCreditorsPage(String currency, int offset, int limit) {
+        return customerRepository.findCreditorPage(currency, offset, limit);
+    }
+
+    public long countDebtors(String currency) {
+        return customerRepository.countByBalanceSign(currency, true);
+    }
+
+    public long countCreditors(String currency) {
+        return customerRepository.countByBalanceSign(currency, false);
     }
     
     public CustomerPayment payToCustomer(Long customerId, Double amount, String paymentMethod, String notes, String processedBy) {
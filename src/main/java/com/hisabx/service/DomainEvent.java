@@ -0,0 +1,161 @@
+package com.hisabx.service;
+
+import java.time.LocalDateTime;
+
+/**
+ * Base class for data change events published on the {@link DomainEventBus}
+ * after a service operation has been committed.
+ */
+public abstract class DomainEvent {
+    private final LocalDateTime occurredAt = LocalDateTime.now();
+
+    public LocalDateTime getOccurredAt() { return occurredAt; }
+
+    /** A sale was saved. */
+    public static class SaleCreated extends DomainEvent {
+        private final Long saleId;
+        private final Long customerId;
+
+        public SaleCreated(Long saleId, Long customerId) {
+            this.saleId = saleId;
+            this.customerId = customerId;
+        }
+
+        public Long getSaleId() { return saleId; }
+        public Long getCustomerId() { return customerId; }
+    }
+
+    /** An existing sale changed (payment status, paid amount). */
+    public static class SaleUpdated extends DomainEvent {
+        private final Long saleId;
+        private final Long customerId;
+
+        public SaleUpdated(Long saleId, Long customerId) {
+            this.saleId = saleId;
+            this.customerId = customerId;
+        }
+
+        public Long getSaleId() { return saleId; }
+        public Long getCustomerId() { return customerId; }
+    }
+
+    /** A sale was deleted. */
+    public static class SaleDeleted extends DomainEvent {
+        private final Long saleId;
+        private final Long customerId;
+
+        public SaleDeleted(Long saleId, Long customerId) {
+            this.saleId = saleId;
+            this.customerId = customerId;
+        }
+
+        public Long getSaleId() { return saleId; }
+        public Long getCustomerId() { return customerId; }
+    }
+
+    /** The stock quantity of a product changed. */
+    public static class StockChanged extends DomainEvent {
+        private final Long productId;
+
+        public StockChanged(Long productId) {
+            this.productId = productId;
+        }
+
+        public Long getProductId() { return productId; }
+    }
+
+    /** A product was created, edited or deleted. */
+    public static class ProductChanged extends DomainEvent {
+        private final Long productId;
+        private final boolean deleted;
+
+        public ProductChanged(Long productId, boolean deleted) {
+            this.productId = productId;
+            this.deleted = deleted;
+        }
+
+        public Long getProductId() { return productId; }
+        public boolean isDeleted() { return deleted; }
+    }
+
+    /** A customer was created, edited or deleted, or its balance changed. */
+    public static class CustomerUpdated extends DomainEvent {
+        private final Long customerId;
+        private final boolean deleted;
+
+        public CustomerUpdated(Long customerId, boolean deleted) {
+            this.customerId = customerId;
+            this.deleted = deleted;
+        }
+
+        public Long getCustomerId() { return customerId; }
+        public boolean isDeleted() { return deleted; }
+    }
+
+    /** A voucher (receipt, payment, purchase) was saved or an installment was paid. */
+    public static class VoucherSaved extends DomainEvent {
+        private final Long voucherId;
+        private final Long customerId;
+
+        public VoucherSaved(Long voucherId, Long customerId) {
+            this.voucherId = voucherId;
+            this.customerId = customerId;
+        }
+
+        public Long getVoucherId() { return voucherId; }
+        public Long getCustomerId() { return customerId; }
+    }
+
+    /** A voucher was cancelled. */
+    public static class VoucherCancelled extends DomainEvent {
+        private final Long voucherId;
+        private final Long customerId;
+
+        public VoucherCancelled(Long voucherId, Long customerId) {
+            this.voucherId = voucherId;
+            this.customerId = customerId;
+        }
+
+        public Long getVoucherId() { return voucherId; }
+        public Long getCustomerId() { return customerId; }
+    }
+
+    /** A sale return was created, changed or deleted. */
+    public static class ReturnChanged extends DomainEvent {
+        private final Long returnId;
+        private final Long saleId;
+
+        public ReturnChanged(Long returnId, Long saleId) {
+            this.returnId = returnId;
+            this.saleId = saleId;
+        }
+
+        public Long getReturnId() { return returnId; }
+        public Long getSaleId() { return saleId; }
+    }
+
+    /** Many products or customers changed at once (import, repricing); listeners reload instead of patching rows. */
+    public static class BulkDataChanged extends DomainEvent {
+        private final boolean products;
+        private final boolean customers;
+
+        public BulkDataChanged(boolean products, boolean customers) {
+            this.products = products;
+            this.customers = customers;
+        }
+
+        public boolean isProducts() { return products; }
+        public boolean isCustomers() { return customers; }
+    }
+
+    /** The low-stock or installment alert counts changed. */
+    public static class AlertsChanged extends DomainEvent {
+        private final AlertService.Summary summary;
+
+        public AlertsChanged(AlertService.Summary summary) {
+            this.summary = summary;
+        }
+
+        public AlertService.Summary getSummary() { return summary; }
+    }
+}
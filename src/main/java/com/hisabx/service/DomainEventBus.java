@@ -0,0 +1,183 @@
+package com.hisabx.service;
+
+import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
+import javafx.scene.Node;
+import javafx.stage.Window;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * In-process bus for data change events.
+ * Services publish a {@link DomainEvent} after their changes are committed; screens and
+ * caches subscribe and update only the rows and totals affected instead of reloading everything.
+ */
+public class DomainEventBus {
+    private static final Logger logger = LoggerFactory.getLogger(DomainEventBus.class);
+
+    private static DomainEventBus instance;
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    private DomainEventBus() {
+    }
+
+    public static synchronized DomainEventBus getInstance() {
+        if (instance == null) {
+            instance = new DomainEventBus();
+        }
+        return instance;
+    }
+
+    /**
+     * Deliver an event to all matching subscribers. Direct subscribers run on the calling
+     * thread; FX subscribers receive it with the other events of the same burst.
+     */
+    public void publish(DomainEvent event) {
+        if (event == null) {
+            return;
+        }
+        logger.debug("Publishing {}", event.getClass().getSimpleName());
+        for (Subscription subscription : subscriptions) {
+            if (subscription.accepts(event)) {
+                subscription.deliver(event);
+            }
+        }
+    }
+
+    /**
+     * Receive matching events synchronously on the publishing thread.
+     */
+    public <E extends DomainEvent> Subscription subscribe(Class<E> type, Consumer<? super E> handler) {
+        Subscription subscription = new Subscription(List.of(type), events -> {
+            for (DomainEvent event : events) {
+                handler.accept(type.cast(event));
+            }
+        }, false);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    /**
+     * Receive matching events on the FX thread. Events published in a burst (for example the
+     * stock, balance and sale events of one invoice) are delivered together in one call.
+     * An empty list of types receives every event.
+     */
+    public Subscription subscribeOnFx(Consumer<List<DomainEvent>> handler,
+            List<Class<? extends DomainEvent>> types) {
+        Subscription subscription = new Subscription(List.copyOf(types), handler, true);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    /**
+     * Like {@link #subscribeOnFx}, but only while the node is shown in a window, so a screen
+     * stops receiving events once its tab or layout is closed and does not leak through the bus.
+     */
+    public void subscribeWhileShowing(Node node, Consumer<List<DomainEvent>> handler,
+            List<Class<? extends DomainEvent>> types) {
+        Subscription[] current = new Subscription[1];
+        Runnable update = () -> {
+            boolean showing = node.getScene() != null && node.getScene().getWindow() != null;
+            if (showing && current[0] == null) {
+                current[0] = subscribeOnFx(handler, types);
+            } else if (!showing && current[0] != null) {
+                current[0].cancel();
+                current[0] = null;
+            }
+        };
+        ChangeListener<Window> windowListener = (obs, oldWindow, newWindow) -> update.run();
+        node.sceneProperty().addListener((obs, oldScene, newScene) -> {
+            if (oldScene != null) {
+                oldScene.windowProperty().removeListener(windowListener);
+            }
+            if (newScene != null) {
+                newScene.windowProperty().addListener(windowListener);
+            }
+            update.run();
+        });
+        if (node.getScene() != null) {
+            node.getScene().windowProperty().addListener(windowListener);
+        }
+        update.run();
+    }
+
+    /**
+     * Handle for one subscriber; call {@link #cancel()} to stop receiving events.
+     */
+    public class Subscription {
+        private final List<Class<? extends DomainEvent>> types;
+        private final Consumer<List<DomainEvent>> handler;
+        private final boolean onFxThread;
+        private final List<DomainEvent> pending = new ArrayList<>();
+        private boolean flushScheduled;
+
+        private Subscription(List<Class<? extends DomainEvent>> types, Consumer<List<DomainEvent>> handler,
+                boolean onFxThread) {
+            this.types = types;
+            this.handler = handler;
+            this.onFxThread = onFxThread;
+        }
+
+        public void cancel() {
+            subscriptions.remove(this);
+        }
+
+        private boolean accepts(DomainEvent event) {
+            if (types.isEmpty()) {
+                return true;
+            }
+            for (Class<? extends DomainEvent> type : types) {
+                if (type.isInstance(event)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void deliver(DomainEvent event) {
+            if (!onFxThread) {
+                invoke(List.of(event));
+                return;
+            }
+            synchronized (pending) {
+                pending.add(event);
+                if (flushScheduled) {
+                    return;
+                }
+                flushScheduled = true;
+            }
+            try {
+                Platform.runLater(this::flush);
+            } catch (IllegalStateException e) {
+                // FX toolkit not running (background tools); deliver directly
+                flush();
+            }
+        }
+
+        private void flush() {
+            List<DomainEvent> batch;
+            synchronized (pending) {
+                batch = new ArrayList<>(pending);
+                pending.clear();
+                flushScheduled = false;
+            }
+            if (!batch.isEmpty() && subscriptions.contains(this)) {
+                invoke(batch);
+            }
+        }
+
+        private void invoke(List<DomainEvent> events) {
+            try {
+                handler.accept(events);
+            } catch (Exception e) {
+                logger.error("Domain event subscriber failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,477 @@
+package com.hisabx.service;
+
+import com.hisabx.database.DatabaseManager;
+import com.hisabx.database.FiscalArchives;
+import com.hisabx.database.SqliteDates;
+import com.hisabx.model.dto.FiscalArchive;
+import com.hisabx.model.dto.StatementItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * أرشفة السنوات المالية - moves the closed documents of a fiscal (calendar) year out of hisabx.db
+ * into archive/hisabx_YYYY.db and keeps their net effect per customer as carry-forward rows.
+ * Documents still in use stay in the main database: sales with open receivable items or with
+ * returns in a later year, and vouchers that belong to an installment plan.
+ * Statements and the sales report attach an archive only when their date range reaches it.
+ */
+public final class FiscalArchiveService {
+    private static final Logger logger = LoggerFactory.getLogger(FiscalArchiveService.class);
+    private static FiscalArchiveService instance;
+
+    private static final Pattern CREATE_TABLE = Pattern.compile(
+            "^\\s*CREATE\\s+TABLE\\s+(?:IF\\s+NOT\\s+EXISTS\\s+)?(?:\"[^\"]+\"|`[^`]+`|\\[[^\\]]+\\]|\\w+)",
+            Pattern.CASE_INSENSITIVE);
+
+    /** Rows of each document table that belong to the selected documents. */
+    private static final Map<String, String> SELECTION = Map.of(
+            "sales", "id IN (SELECT id FROM temp.archive_sales)",
+            "sale_items", "sale_id IN (SELECT id FROM temp.archive_sales)",
+            "receipts", "sale_id IN (SELECT id FROM temp.archive_sales)",
+            "sale_returns", "id IN (SELECT id FROM temp.archive_returns)",
+            "return_items", "return_id IN (SELECT id FROM temp.archive_returns)",
+            "vouchers", "id IN (SELECT id FROM temp.archive_vouchers)",
+            "voucher_items", "voucher_id IN (SELECT id FROM temp.archive_vouchers)");
+
+    /** Indexes the archive readers need; the archive is read-only so these are all it gets. */
+    private static final String[] ARCHIVE_INDEXES = {
+            "CREATE INDEX IF NOT EXISTS arc.idx_sales_customer_currency_date ON sales(customer_id, currency, sale_date)",
+            "CREATE INDEX IF NOT EXISTS arc.idx_sales_date ON sales(sale_date)",
+            "CREATE INDEX IF NOT EXISTS arc.idx_sale_items_sale ON sale_items(sale_id)",
+            "CREATE INDEX IF NOT EXISTS arc.idx_returns_customer ON sale_returns(customer_id)",
+            "CREATE INDEX IF NOT EXISTS arc.idx_vouchers_customer_active_date ON vouchers(customer_id, is_cancelled, voucher_date)"
+    };
+
+    /**
+     * Documents of the archives in a statement's range, and the carry-forward balance of the
+     * archived years before it.
+     */
+    public static class ArchivedStatement {
+        private final List<StatementItem> items;
+        private final double carryForward;
+
+        private ArchivedStatement(List<StatementItem> items, double carryForward) {
+            this.items = items;
+            this.carryForward = carryForward;
+        }
+
+        public List<StatementItem> getItems() { return items; }
+        public double getCarryForward() { return carryForward; }
+    }
+
+    private FiscalArchiveService() {
+    }
+
+    public static synchronized FiscalArchiveService getInstance() {
+        if (instance == null) {
+            instance = new FiscalArchiveService();
+        }
+        return instance;
+    }
+
+    /**
+     * Move the closed documents of a past year into its archive database. Running it again for
+     * the same year moves documents that were still in use the first time.
+     *
+     * @return the year with the number of documents moved by this run
+     */
+    public synchronized FiscalArchive archiveYear(int year, String archivedBy) {
+        if (year >= LocalDate.now().getYear()) {
+            throw new RuntimeException("لا يمكن أرشفة سنة مالية غير مغلقة");
+        }
+        long started = System.nanoTime();
+        long periodStart = SqliteDates.startOfDayMillis(LocalDate.of(year, 1, 1));
+        long periodEnd = SqliteDates.startOfDayMillis(LocalDate.of(year + 1, 1, 1));
+        File file = FiscalArchives.fileFor(year);
+        file.getParentFile().mkdirs();
+
+        try (Connection conn = DatabaseManager.openConnection();
+             Statement stmt = conn.createStatement()) {
+            selectDocuments(stmt, periodStart, periodEnd);
+            long sales = count(stmt, "temp.archive_sales");
+            long vouchers = count(stmt, "temp.archive_vouchers");
+            long returns = count(stmt, "temp.archive_returns");
+            if (sales + vouchers == 0) {
+                throw new RuntimeException("لا توجد مستندات قابلة للأرشفة في سنة " + year);
+            }
+
+            stmt.execute("ATTACH DATABASE '" + file.getAbsolutePath().replace("'", "''") + "' AS arc");
+            try {
+                // The archive is written and committed first; only then are the rows removed
+                // from the main database, so a failure never loses documents
+                conn.setAutoCommit(false);
+                try {
+                    copyToArchive(conn, stmt);
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }
+                try {
+                    removeFromMain(conn, stmt, year, file.getName(), periodStart, periodEnd,
+                            sales, vouchers, returns, archivedBy);
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    undoArchiveCopy(conn, stmt);
+                    throw e;
+                }
+            } finally {
+                conn.setAutoCommit(true);
+                stmt.execute("DETACH DATABASE arc");
+            }
+
+            // Give the freed pages back so the main file actually shrinks; the documents are
+            // already moved, so a busy database only postpones this
+            try {
+                stmt.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+                stmt.execute("VACUUM");
+            } catch (SQLException e) {
+                logger.warn("VACUUM after archiving fiscal year {} failed", year, e);
+            }
+            logger.info("Fiscal year {} archived to {}: {} sales, {} vouchers, {} returns in {} ms", year,
+                    file.getName(), sales, vouchers, returns, (System.nanoTime() - started) / 1_000_000);
+            return new FiscalArchive(year, file.getName(), sales, vouchers, returns, LocalDateTime.now(), archivedBy);
+        } catch (SQLException e) {
+            logger.error("Failed to archive fiscal year {}", year, e);
+            throw new RuntimeException("فشل في أرشفة السنة المالية " + year, e);
+        }
+    }
+
+    /** Archived years, newest first, with the documents each holds. */
+    public List<FiscalArchive> getArchives() {
+        List<FiscalArchive> archives = new ArrayList<>();
+        try (Connection conn = DatabaseManager.openConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT fiscal_year, file_name, sales_count, vouchers_count,"
+                     + " returns_count, archived_at, archived_by FROM fiscal_archives ORDER BY fiscal_year DESC")) {
+            while (rs.next()) {
+                archives.add(new FiscalArchive(rs.getInt(1), rs.getString(2), rs.getLong(3), rs.getLong(4),
+                        rs.getLong(5), SqliteDates.toLocalDateTime(rs.getObject(6)), rs.getString(7)));
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to load fiscal archives", e);
+            throw new RuntimeException("فشل في تحميل الأرشيف", e);
+        }
+        return archives;
+    }
+
+    /** Past years that still have sales or vouchers in the main database, newest first. */
+    public List<Integer> getArchivableYears() {
+        String saleYear = "CAST(strftime('%Y', " + SqliteDates.epochMillis("sale_date") + " / 1000, 'unixepoch', 'localtime') AS INTEGER)";
+        String voucherYear = "CAST(strftime('%Y', " + SqliteDates.epochMillis("voucher_date") + " / 1000, 'unixepoch', 'localtime') AS INTEGER)";
+        long currentYearStart = SqliteDates.startOfDayMillis(LocalDate.now().withDayOfYear(1));
+        String sql = "SELECT DISTINCT " + saleYear + " FROM sales WHERE " + SqliteDates.epochMillis("sale_date") + " < ?"
+                + " UNION SELECT DISTINCT " + voucherYear + " FROM vouchers WHERE " + SqliteDates.epochMillis("voucher_date") + " < ?"
+                + " ORDER BY 1 DESC";
+        List<Integer> years = new ArrayList<>();
+        try (Connection conn = DatabaseManager.openConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, currentYearStart);
+            ps.setLong(2, currentYearStart);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if (rs.getObject(1) != null) {
+                        years.add(rs.getInt(1));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to list archivable years", e);
+            throw new RuntimeException("فشل في تحميل السنوات المالية", e);
+        }
+        return years;
+    }
+
+    /**
+     * Statement lines from the archives overlapping [from, to] and the carry-forward of the
+     * archived years that end before {@code from}. Archived years after {@code to} are skipped:
+     * they only change balances past the end of the statement. The registry and carry-forward
+     * are read from the live database, like the current documents they are merged with; a
+     * reporting replica taken before an archive run would miss the moved documents.
+     */
+    public ArchivedStatement loadStatement(Long customerId, String projectLocation, String currency,
+            LocalDateTime from, LocalDateTime to) {
+        Long fromMillis = from != null ? SqliteDates.toMillis(from) : null;
+        Long toMillis = to != null ? SqliteDates.toMillis(to) + 1 : null;
+        boolean byProject = projectLocation != null && !projectLocation.isEmpty();
+        try (Connection conn = DatabaseManager.openConnection()) {
+            List<Integer> years = FiscalArchives.attachOverlapping(conn, fromMillis, toMillis);
+            conn.setAutoCommit(false);
+            try {
+                return readStatement(conn, years, customerId, byProject ? projectLocation : null, currency,
+                        fromMillis);
+            } finally {
+                conn.rollback();
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to read archived statement for customer {}", customerId, e);
+            throw new RuntimeException("فشل في قراءة الأرشيف", e);
+        }
+    }
+
+    private static ArchivedStatement readStatement(Connection conn, List<Integer> years, Long customerId,
+            String projectLocation, String currency, Long fromMillis) throws SQLException {
+        boolean byProject = projectLocation != null;
+        double carryForward = fromMillis != null
+                ? carryForward(conn, customerId, projectLocation, currency, fromMillis)
+                : 0.0;
+        if (years.isEmpty()) {
+            return new ArchivedStatement(List.of(), carryForward);
+        }
+
+        String project = byProject ? " AND %s = ?" : "";
+        String template = "SELECT 'SALE', s.sale_date, s.sale_code, s.notes, s.final_amount, 0"
+                + " FROM {db}.sales s WHERE s.customer_id = ? AND s.currency = ? AND s.final_amount > 0"
+                + project.replace("%s", "s.project_location")
+                + " UNION ALL SELECT v.voucher_type, v.voucher_date, v.voucher_number, v.description,"
+                + " CASE WHEN v.voucher_type = 'RECEIPT' THEN 0 ELSE v.amount END,"
+                + " CASE WHEN v.voucher_type = 'RECEIPT' THEN v.amount ELSE 0 END"
+                + " FROM {db}.vouchers v WHERE v.customer_id = ? AND v.currency = ?"
+                + " AND COALESCE(v.is_cancelled, 0) = 0 AND v.voucher_type IN ('RECEIPT', 'PAYMENT', 'PURCHASE')"
+                + project.replace("%s", "v.project_name")
+                + " UNION ALL SELECT 'RETURN', r.return_date, r.return_code, r.return_reason, 0, r.total_return_amount"
+                + " FROM {db}.sale_returns r JOIN {db}.sales s ON s.id = r.sale_id"
+                + " WHERE r.customer_id = ? AND s.currency = ?"
+                + project.replace("%s", "s.project_location");
+        List<StatementItem> items = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(FiscalArchives.unionOfArchives(template, years))) {
+            int i = 1;
+            for (int n = 0; n < years.size() * 3; n++) {
+                ps.setLong(i++, customerId);
+                ps.setString(i++, currency);
+                if (byProject) {
+                    ps.setString(i++, projectLocation);
+                }
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    items.add(new StatementItem(SqliteDates.toLocalDateTime(rs.getObject(2)),
+                            statementType(rs.getString(1)), rs.getString(3), rs.getString(4),
+                            rs.getDouble(5), rs.getDouble(6), currency, null));
+                }
+            }
+        }
+        return new ArchivedStatement(items, carryForward);
+    }
+
+    /** Years whose archive a date range reaches; empty when nothing is archived. */
+    public List<Integer> getArchivedYears(LocalDate from, LocalDate to) {
+        try (Connection conn = DatabaseManager.openConnection()) {
+            return FiscalArchives.yearsOverlapping(conn,
+                    from != null ? SqliteDates.startOfDayMillis(from) : null,
+                    to != null ? SqliteDates.startOfDayMillis(to.plusDays(1)) : null);
+        } catch (SQLException e) {
+            logger.error("Failed to read fiscal archives", e);
+            throw new RuntimeException("فشل في قراءة الأرشيف", e);
+        }
+    }
+
+    private static String statementType(String kind) {
+        switch (kind) {
+            case "SALE": return "فاتورة مبيع";
+            case "RECEIPT": return "سند قبض";
+            case "PAYMENT": return "سند الدفع";
+            case "PURCHASE": return "مشتريات";
+            default: return "مرتجع مبيعات";
+        }
+    }
+
+    private static double carryForward(Connection conn, Long customerId, String projectLocation, String currency,
+            long beforeMillis) throws SQLException {
+        String sql = "SELECT COALESCE(SUM(amount), 0) FROM archive_carry_forward"
+                + " WHERE customer_id = ? AND currency = ?"
+                + (projectLocation != null ? " AND project_location = ?" : "")
+                + " AND fiscal_year IN (SELECT fiscal_year FROM fiscal_archives WHERE period_end <= ?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int i = 1;
+            ps.setLong(i++, customerId);
+            ps.setString(i++, currency);
+            if (projectLocation != null) {
+                ps.setString(i++, projectLocation);
+            }
+            ps.setLong(i, beforeMillis);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getDouble(1) : 0.0;
+            }
+        }
+    }
+
+    /**
+     * Temp tables of the ids to archive. Sales still allocated as open receivables, or returned
+     * after the year, stay; returns go with their sale; installment vouchers stay with their plan.
+     */
+    private static void selectDocuments(Statement stmt, long periodStart, long periodEnd) throws SQLException {
+        String saleDate = SqliteDates.epochMillis("s.sale_date");
+        String returnDate = SqliteDates.epochMillis("r.return_date");
+        String voucherDate = SqliteDates.epochMillis("v.voucher_date");
+        stmt.execute("DROP TABLE IF EXISTS temp.archive_sales");
+        stmt.execute("DROP TABLE IF EXISTS temp.archive_returns");
+        stmt.execute("DROP TABLE IF EXISTS temp.archive_vouchers");
+        stmt.execute("CREATE TEMP TABLE archive_sales AS SELECT s.id FROM main.sales s"
+                + " WHERE " + saleDate + " >= " + periodStart + " AND " + saleDate + " < " + periodEnd
+                + " AND s.id NOT IN (SELECT sale_id FROM main.receivable_open_items WHERE sale_id IS NOT NULL)"
+                + " AND NOT EXISTS (SELECT 1 FROM main.sale_returns r WHERE r.sale_id = s.id"
+                + " AND " + returnDate + " >= " + periodEnd + ")");
+        stmt.execute("CREATE TEMP TABLE archive_returns AS SELECT id FROM main.sale_returns"
+                + " WHERE sale_id IN (SELECT id FROM temp.archive_sales)");
+        stmt.execute("CREATE TEMP TABLE archive_vouchers AS SELECT v.id FROM main.vouchers v"
+                + " WHERE " + voucherDate + " >= " + periodStart + " AND " + voucherDate + " < " + periodEnd
+                + " AND COALESCE(v.is_installment, 0) = 0 AND v.parent_voucher_id IS NULL"
+                + " AND NOT EXISTS (SELECT 1 FROM main.vouchers c WHERE c.parent_voucher_id = v.id)"
+                + " AND NOT EXISTS (SELECT 1 FROM main.installments i"
+                + " WHERE i.parent_voucher_id = v.id OR i.payment_voucher_id = v.id)");
+    }
+
+    private static long count(Statement stmt, String table) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            return rs.next() ? rs.getLong(1) : 0L;
+        }
+    }
+
+    private static void copyToArchive(Connection conn, Statement stmt) throws SQLException {
+        for (String table : FiscalArchives.TABLES) {
+            List<String> columns = ensureArchiveTable(conn, stmt, table);
+            String list = String.join(", ", columns);
+            stmt.executeUpdate("INSERT OR REPLACE INTO arc." + table + " (" + list + ") SELECT " + list
+                    + " FROM main." + table + " WHERE " + SELECTION.get(table));
+        }
+        for (String ddl : ARCHIVE_INDEXES) {
+            stmt.execute(ddl);
+        }
+    }
+
+    private static void undoArchiveCopy(Connection conn, Statement stmt) {
+        try {
+            for (String table : FiscalArchives.TABLES) {
+                stmt.executeUpdate("DELETE FROM arc." + table + " WHERE " + SELECTION.get(table));
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            logger.error("Failed to remove copied rows from the archive after a failed archive run", e);
+        }
+    }
+
+    /**
+     * Create the table in the archive with the main database's definition, or add the columns
+     * the main table gained since the archive was created.
+     *
+     * @return the main table's columns
+     */
+    private static List<String> ensureArchiveTable(Connection conn, Statement stmt, String table) throws SQLException {
+        String ddl;
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT sql FROM main.sqlite_master WHERE type = 'table' AND name = ?")) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("Missing table " + table);
+                }
+                ddl = rs.getString(1);
+            }
+        }
+        stmt.execute(CREATE_TABLE.matcher(ddl).replaceFirst("CREATE TABLE IF NOT EXISTS arc." + table));
+
+        Map<String, String> mainColumns = columns(stmt, "main", table);
+        Set<String> archiveColumns = columns(stmt, "arc", table).keySet();
+        for (Map.Entry<String, String> column : mainColumns.entrySet()) {
+            if (!archiveColumns.contains(column.getKey())) {
+                stmt.execute("ALTER TABLE arc." + table + " ADD COLUMN " + column.getKey() + " " + column.getValue());
+            }
+        }
+        return new ArrayList<>(mainColumns.keySet());
+    }
+
+    private static Map<String, String> columns(Statement stmt, String schema, String table) throws SQLException {
+        Map<String, String> columns = new LinkedHashMap<>();
+        try (ResultSet rs = stmt.executeQuery("PRAGMA " + schema + ".table_info(" + table + ")")) {
+            while (rs.next()) {
+                columns.put(rs.getString("name"), rs.getString("type"));
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Record the carry-forward and the registry row from the selected documents, then delete them.
+     */
+    private static void removeFromMain(Connection conn, Statement stmt, int year, String fileName, long periodStart,
+            long periodEnd, long sales, long vouchers, long returns, String archivedBy) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO main.archive_carry_forward (fiscal_year, customer_id, currency, project_location, amount)"
+                + " SELECT ?, customer_id, currency, project, SUM(amount) FROM ("
+                + " SELECT customer_id, currency, COALESCE(project_location, '') AS project, final_amount AS amount"
+                + " FROM main.sales WHERE id IN (SELECT id FROM temp.archive_sales)"
+                + " AND final_amount > 0 AND currency IS NOT NULL"
+                + " UNION ALL SELECT customer_id, currency, COALESCE(project_name, ''),"
+                + " CASE WHEN voucher_type = 'RECEIPT' THEN -amount ELSE amount END"
+                + " FROM main.vouchers WHERE id IN (SELECT id FROM temp.archive_vouchers) AND customer_id IS NOT NULL"
+                + " AND COALESCE(is_cancelled, 0) = 0 AND voucher_type IN ('RECEIPT', 'PAYMENT', 'PURCHASE')"
+                + " UNION ALL SELECT r.customer_id, s.currency, COALESCE(s.project_location, ''), -r.total_return_amount"
+                + " FROM main.sale_returns r JOIN main.sales s ON s.id = r.sale_id"
+                + " WHERE r.id IN (SELECT id FROM temp.archive_returns) AND s.currency IS NOT NULL"
+                + ") WHERE 1 GROUP BY customer_id, currency, project"
+                + " ON CONFLICT (customer_id, currency, project_location, fiscal_year)"
+                + " DO UPDATE SET amount = amount + excluded.amount")) {
+            ps.setInt(1, year);
+            ps.executeUpdate();
+        }
+
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO main.fiscal_archives (fiscal_year, file_name, period_start, period_end, sales_count,"
+                + " vouchers_count, returns_count, max_sale_id, max_voucher_number, max_receipt_number,"
+                + " max_return_code, archived_at, archived_by)"
+                + " SELECT ?, ?, ?, ?, ?, ?, ?,"
+                + " (SELECT COALESCE(MAX(id), 0) FROM temp.archive_sales),"
+                + " (SELECT COALESCE(MAX(CAST(REPLACE(REPLACE(voucher_number, 'RV', ''), 'PV', '') AS INTEGER)), 0)"
+                + " FROM main.vouchers WHERE id IN (SELECT id FROM temp.archive_vouchers)),"
+                + " (SELECT COALESCE(MAX(CAST(receipt_number AS INTEGER)), 0)"
+                + " FROM main.receipts WHERE sale_id IN (SELECT id FROM temp.archive_sales)),"
+                + " (SELECT COALESCE(MAX(CAST(REPLACE(return_code, 'RET-', '') AS INTEGER)), 0)"
+                + " FROM main.sale_returns WHERE id IN (SELECT id FROM temp.archive_returns)),"
+                + " ?, ? WHERE 1"
+                + " ON CONFLICT (fiscal_year) DO UPDATE SET"
+                + " sales_count = sales_count + excluded.sales_count,"
+                + " vouchers_count = vouchers_count + excluded.vouchers_count,"
+                + " returns_count = returns_count + excluded.returns_count,"
+                + " max_sale_id = MAX(max_sale_id, excluded.max_sale_id),"
+                + " max_voucher_number = MAX(max_voucher_number, excluded.max_voucher_number),"
+                + " max_receipt_number = MAX(max_receipt_number, excluded.max_receipt_number),"
+                + " max_return_code = MAX(max_return_code, excluded.max_return_code),"
+                + " archived_at = excluded.archived_at, archived_by = excluded.archived_by")) {
+            int i = 1;
+            ps.setInt(i++, year);
+            ps.setString(i++, fileName);
+            ps.setLong(i++, periodStart);
+            ps.setLong(i++, periodEnd);
+            ps.setLong(i++, sales);
+            ps.setLong(i++, vouchers);
+            ps.setLong(i++, returns);
+            ps.setLong(i++, System.currentTimeMillis());
+            ps.setString(i, archivedBy);
+            ps.executeUpdate();
+        }
+
+        List<String> children = new ArrayList<>(FiscalArchives.TABLES);
+        Collections.reverse(children);
+        for (String table : children) {
+            stmt.executeUpdate("DELETE FROM main." + table + " WHERE " + SELECTION.get(table));
+        }
+    }
+}
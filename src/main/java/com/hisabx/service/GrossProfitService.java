@@ -0,0 +1,128 @@
+package com.hisabx.service;
+
+import com.hisabx.database.FiscalArchives;
+import com.hisabx.database.ReportingDatabase;
+import com.hisabx.database.SqliteDates;
+import com.hisabx.model.dto.GrossProfitLine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Gross profit from the cost each sale and return line stored when it was written: a grouped
+ * sum over sale_items / return_items through their covering indexes, including archived years.
+ * Sale-level discounts are spread over the lines of the sale.
+ */
+public class GrossProfitService {
+    private static final Logger logger = LoggerFactory.getLogger(GrossProfitService.class);
+
+    public enum Grouping { PRODUCT, CUSTOMER, DAY, MONTH }
+
+    /**
+     * Profit of sales and returns dated within [from, to], one line per group and currency,
+     * most profitable first (periods in date order).
+     */
+    public List<GrossProfitLine> getGrossProfit(Grouping grouping, LocalDateTime from, LocalDateTime to) {
+        long fromMillis = SqliteDates.toMillis(from);
+        long toMillis = SqliteDates.toMillis(to) + 1;
+        try {
+            return ReportingDatabase.getInstance().readWithArchives(fromMillis, toMillis,
+                    (conn, years) -> readProfit(conn, years, grouping, fromMillis, toMillis));
+        } catch (SQLException e) {
+            logger.error("Failed to load gross profit", e);
+            throw new RuntimeException("فشل في حساب مجمل الربح", e);
+        }
+    }
+
+    private static List<GrossProfitLine> readProfit(Connection conn, List<Integer> years, Grouping grouping,
+            long fromMillis, long toMillis) throws SQLException {
+        String saleDate = SqliteDates.epochMillis("s.sale_date");
+        String returnDate = SqliteDates.epochMillis("r.return_date");
+        String sales = "SELECT " + groupKey(grouping, "si.product_id", "s.customer_id", saleDate) + " AS k,"
+                + " s.currency AS currency,"
+                + " SUM(si.total_price * CASE WHEN s.total_amount > 0 THEN s.final_amount / s.total_amount ELSE 1 END) AS revenue,"
+                + " SUM(COALESCE({cost}, 0)) AS cost"
+                + " FROM {db}.sales s JOIN {db}.sale_items si ON si.sale_id = s.id"
+                + " WHERE " + saleDate + " >= ? AND " + saleDate + " < ? GROUP BY 1, 2";
+        String returns = "SELECT " + groupKey(grouping, "ri.product_id", "r.customer_id", returnDate) + " AS k,"
+                + " COALESCE(s.currency, 'دينار') AS currency,"
+                + " -SUM(ri.total_price) AS revenue, -SUM(COALESCE({cost}, 0)) AS cost"
+                + " FROM {db}.sale_returns r JOIN {db}.return_items ri ON ri.return_id = r.id"
+                + " LEFT JOIN {db}.sales s ON s.id = r.sale_id"
+                + " WHERE COALESCE(r.return_status, '') <> 'CANCELLED'"
+                + " AND " + returnDate + " >= ? AND " + returnDate + " < ? GROUP BY 1, 2";
+
+        String label = switch (grouping) {
+            case PRODUCT -> "(SELECT p.name FROM main.products p WHERE p.id = t.k)";
+            case CUSTOMER -> "(SELECT c.name FROM main.customers c WHERE c.id = t.k)";
+            default -> "t.k";
+        };
+        String order = grouping == Grouping.DAY || grouping == Grouping.MONTH
+                ? "t.k, t.currency" : "SUM(t.revenue) - SUM(t.cost) DESC";
+        String sql = "SELECT t.k, " + label + ", t.currency, SUM(t.revenue), SUM(t.cost) FROM ("
+                + union(conn, sales, "sale_items", "si", years) + " UNION ALL "
+                + union(conn, returns, "return_items", "ri", years)
+                + ") t GROUP BY t.k, t.currency ORDER BY " + order;
+
+        List<GrossProfitLine> lines = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int i = 1;
+            for (int n = 0; n < 2 * (years.size() + 1); n++) {
+                ps.setLong(i++, fromMillis);
+                ps.setLong(i++, toMillis);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String key = rs.getString(1);
+                    String name = rs.getString(2);
+                    lines.add(new GrossProfitLine(key, name != null ? name : "غير معروف", rs.getString(3),
+                            rs.getDouble(4), rs.getDouble(5)));
+                }
+            }
+        }
+        return lines;
+    }
+
+    private static String groupKey(Grouping grouping, String productColumn, String customerColumn, String dateMillis) {
+        return switch (grouping) {
+            case PRODUCT -> productColumn;
+            case CUSTOMER -> customerColumn;
+            case DAY -> "strftime('%Y-%m-%d', " + dateMillis + " / 1000, 'unixepoch', 'localtime')";
+            case MONTH -> "strftime('%Y-%m', " + dateMillis + " / 1000, 'unixepoch', 'localtime')";
+        };
+    }
+
+    /**
+     * Like {@link FiscalArchives#unionAll}, but archives written before line costs existed have
+     * no cost_amount column; their lines count at zero cost.
+     */
+    private static String union(Connection conn, String template, String table, String alias, List<Integer> years)
+            throws SQLException {
+        StringBuilder sql = new StringBuilder(template.replace("{db}", "main").replace("{cost}", alias + ".cost_amount"));
+        for (int year : years) {
+            String schema = FiscalArchives.schemaFor(year);
+            String cost = hasCostColumn(conn, schema, table) ? alias + ".cost_amount" : "NULL";
+            sql.append(" UNION ALL ").append(template.replace("{db}", schema).replace("{cost}", cost));
+        }
+        return sql.toString();
+    }
+
+    private static boolean hasCostColumn(Connection conn, String schema, String table) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("PRAGMA " + schema + ".table_info(" + table + ")");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                if ("cost_amount".equalsIgnoreCase(rs.getString("name"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,126 @@
+package com.hisabx.service;
+
+import com.hisabx.database.SqliteDates;
+import com.hisabx.model.CostingMethod;
+import com.hisabx.model.Product;
+import com.hisabx.model.SaleItem;
+import com.hisabx.model.StockMovement;
+import org.hibernate.Session;
+import org.hibernate.query.NativeQuery;
+
+import java.util.List;
+
+/**
+ * تكلفة المخزون - values each stock movement as it is journaled, inside the same transaction.
+ *
+ * A receipt adds a cost layer and moves the product's weighted average cost; an issue takes
+ * from the oldest layers and is costed either at the average or from those layers, following
+ * the method recorded in inventory_valuation. Layers are kept under both methods so the method
+ * can be switched. The resulting value lands in products.stock_value, and triggers carry it to
+ * the valuation total.
+ */
+final class InventoryCosting {
+    private static final double EPSILON = 1e-9;
+
+    private InventoryCosting() {}
+
+    /**
+     * Cost a movement that was just saved; {@code delta} has already been applied to the
+     * product's stock, possibly not yet flushed. Sets the movement's unit cost and cost amount.
+     */
+    static void apply(Session session, Product product, double delta, StockMovement movement) {
+        Long productId = product.getId();
+        // average_cost is only written here, so the row holds its latest value
+        Object[] row = (Object[]) session.createNativeQuery(
+                "SELECT p.average_cost, (SELECT costing_method FROM inventory_valuation WHERE id = 1)"
+                        + " FROM products p WHERE p.id = :productId")
+                .setParameter("productId", productId)
+                .uniqueResult();
+        double after = product.getQuantityInStock() != null ? product.getQuantityInStock() : 0.0;
+        double before = after - delta;
+        double costPrice = product.getCostPrice() != null ? product.getCostPrice() : 0.0;
+        double average = row[0] != null ? ((Number) row[0]).doubleValue() : costPrice;
+        CostingMethod method = CostingMethod.fromConfig((String) row[1]);
+
+        double costAmount;
+        if (delta > 0) {
+            // Receipts without a document cost (opening stock, manual additions) come in at the average
+            double unitCost = movement.getUnitCost() != null ? movement.getUnitCost()
+                    : average > EPSILON ? average : costPrice;
+            costAmount = delta * unitCost;
+            double base = Math.max(before, 0);
+            average = (base * average + costAmount) / (base + delta);
+            session.createNativeQuery("INSERT INTO cost_layers (product_id, movement_id, layer_date, unit_cost, quantity, remaining)"
+                            + " VALUES (:productId, :movementId, :layerDate, :unitCost, :quantity, :quantity)")
+                    .setParameter("productId", productId)
+                    .setParameter("movementId", movement.getId())
+                    .setParameter("layerDate", SqliteDates.toMillis(movement.getMovementDate()))
+                    .setParameter("unitCost", unitCost)
+                    .setParameter("quantity", delta)
+                    .executeUpdate();
+            movement.setUnitCost(unitCost);
+        } else {
+            double quantity = -delta;
+            double layerCost = consumeLayers(session, productId, quantity, average);
+            costAmount = -(method == CostingMethod.FIFO ? layerCost : quantity * average);
+            movement.setUnitCost(-costAmount / quantity);
+        }
+        movement.setCostAmount(costAmount);
+
+        NativeQuery<?> update;
+        if (method == CostingMethod.FIFO) {
+            update = session.createNativeQuery("UPDATE products SET average_cost = :average,"
+                            + " stock_value = COALESCE(stock_value, 0) + :costAmount WHERE id = :productId")
+                    .setParameter("costAmount", costAmount);
+        } else {
+            // Recomputed rather than accumulated, so rounding never drifts
+            update = session.createNativeQuery("UPDATE products SET average_cost = :average,"
+                            + " stock_value = :stockValue WHERE id = :productId")
+                    .setParameter("stockValue", Math.max(after, 0) * average);
+        }
+        update.setParameter("average", average)
+                .setParameter("productId", productId)
+                .executeUpdate();
+    }
+
+    /**
+     * Unit cost a sale line was sold at, for putting its goods back into stock; null when the
+     * line has no recorded cost.
+     */
+    static Double unitCostOf(SaleItem item) {
+        if (item == null || item.getCostAmount() == null || item.getQuantity() == null || item.getQuantity() <= 0) {
+            return null;
+        }
+        return item.getCostAmount() / item.getQuantity();
+    }
+
+    /**
+     * Take {@code quantity} from the oldest open layers.
+     *
+     * @return the cost of the layers taken; any part not covered by layers (stock sold into
+     *         the negative) is costed at {@code fallbackCost}
+     */
+    @SuppressWarnings("unchecked")
+    private static double consumeLayers(Session session, Long productId, double quantity, double fallbackCost) {
+        List<Object[]> layers = session.createNativeQuery(
+                "SELECT id, unit_cost, remaining FROM cost_layers WHERE product_id = :productId AND remaining > 0 ORDER BY id")
+                .setParameter("productId", productId)
+                .list();
+        double left = quantity;
+        double cost = 0.0;
+        for (Object[] layer : layers) {
+            if (left <= EPSILON) {
+                break;
+            }
+            double remaining = ((Number) layer[2]).doubleValue();
+            double taken = Math.min(left, remaining);
+            cost += taken * ((Number) layer[1]).doubleValue();
+            left -= taken;
+            session.createNativeQuery("UPDATE cost_layers SET remaining = :remaining WHERE id = :id")
+                    .setParameter("remaining", remaining - taken > EPSILON ? remaining - taken : 0.0)
+                    .setParameter("id", ((Number) layer[0]).longValue())
+                    .executeUpdate();
+        }
+        return cost + Math.max(left, 0) * fallbackCost;
+    }
+}
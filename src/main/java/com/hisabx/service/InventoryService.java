@@ -1,23 +1,41 @@
 package com.hisabx.service;
 
+import com.hisabx.database.DatabaseManager;
+import com.hisabx.database.ReportingDatabase;
 import com.hisabx.database.Repository.ProductRepository;
+import com.hisabx.database.SqliteDates;
 import com.hisabx.model.Category;
 import com.hisabx.model.Product;
+import com.hisabx.model.StockMovement;
+import com.hisabx.model.StockMovementType;
+import com.hisabx.model.dto.StockDiscrepancy;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.hibernate.query.Query;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
 
 public class InventoryService {
     private static final Logger logger = LoggerFactory.getLogger(InventoryService.class);
     private final ProductRepository productRepository;
     private final CategoryService categoryService;
+    private final StockLocationService locationService;
     
     public InventoryService() {
         this.productRepository = new ProductRepository();
         this.categoryService = new CategoryService();
+        this.locationService = new StockLocationService();
     }
     
     public Product createProduct(Product product) {
@@ -31,7 +49,15 @@ public class InventoryService {
         // Validate product data
         validateProduct(product);
         
-        return productRepository.save(product);
+        Product saved = inTransaction(session -> {
+            product.setCategoryId(CategoryService.resolveCategoryId(session, product.getCategory()));
+            session.saveOrUpdate(product);
+            StockJournal.record(session, product.getId(), stockOf(product),
+                    new StockMovement(StockMovementType.OPENING, product.getId(), product.getProductCode()));
+            return product;
+        });
+        DomainEventBus.getInstance().publish(new DomainEvent.ProductChanged(saved.getId(), false));
+        return saved;
     }
     
     public Product updateProduct(Product product) {
@@ -40,7 +66,23 @@ public class InventoryService {
         // Validate product data
         validateProduct(product);
         
-        return productRepository.save(product);
+        Product saved = inTransaction(session -> {
+            // Stock typed into the product card is journaled as an adjustment
+            Double stored = session.createQuery(
+                    "SELECT p.quantityInStock FROM Product p WHERE p.id = :id", Double.class)
+                    .setParameter("id", product.getId())
+                    .uniqueResult();
+            product.setCategoryId(CategoryService.resolveCategoryId(session, product.getCategory()));
+            session.saveOrUpdate(product);
+            StockMovement movement = new StockMovement(StockMovementType.ADJUSTMENT, product.getId(),
+                    product.getProductCode());
+            movement.setNotes("تعديل بطاقة المنتج");
+            StockJournal.recordTotal(session, product.getId(), stockOf(product) - (stored != null ? stored : 0.0),
+                    movement);
+            return product;
+        });
+        DomainEventBus.getInstance().publish(new DomainEvent.ProductChanged(saved.getId(), false));
+        return saved;
     }
     
     public Optional<Product> getProductById(Long id) {
@@ -68,6 +110,32 @@ public class InventoryService {
     public List<Product> searchProductsByName(String name) {
         return productRepository.findByNameContaining(name);
     }
+
+    public List<Product> searchProducts(String text, String category, int limit) {
+        return productRepository.search(text, category, limit);
+    }
+
+    /**
+     * Exact lookup used by scanners and code entry: barcode first, then product code. Only
+     * active products are returned from either.
+     */
+    public Optional<Product> findProductByCodeOrBarcode(String value) {
+        if (value == null || value.isBlank()) {
+            return Optional.empty();
+        }
+        String trimmed = value.trim();
+        Optional<Product> byBarcode = productRepository.findByBarcode(trimmed)
+                .filter(p -> Boolean.TRUE.equals(p.getIsActive()));
+        if (byBarcode.isPresent()) {
+            return byBarcode;
+        }
+        return productRepository.findByProductCode(trimmed)
+                .filter(p -> Boolean.TRUE.equals(p.getIsActive()));
+    }
+
+    public List<String> getProductCategories() {
+        return productRepository.findActiveCategoryNames();
+    }
     
     public List<Product> getProductsByCategory(String category) {
         return productRepository.findByCategory(category);
@@ -80,53 +148,197 @@ public class InventoryService {
     public void deleteProduct(Long id) {
         logger.info("Deleting product: {}", id);
         productRepository.deleteById(id);
+        DomainEventBus.getInstance().publish(new DomainEvent.ProductChanged(id, true));
     }
     
     public void deleteProduct(Product product) {
         logger.info("Deleting product: {}", product.getId());
         productRepository.delete(product);
+        DomainEventBus.getInstance().publish(new DomainEvent.ProductChanged(product.getId(), true));
     }
     
+    /**
+     * Manual stock addition, journaled as an adjustment.
+     */
     public Product addStock(Long productId, Double quantity) {
+        return addStock(productId, quantity, new StockMovement(StockMovementType.ADJUSTMENT, null, null));
+    }
+
+    public Product addStock(Long productId, Double quantity, StockMovement movement) {
         if (quantity <= 0) {
             throw new IllegalArgumentException("الكمية يجب أن تكون أكبر من صفر");
         }
         
-        Optional<Product> productOpt = productRepository.findById(productId);
-        if (productOpt.isPresent()) {
-            Product product = productOpt.get();
-            product.setQuantityInStock(product.getQuantityInStock() + quantity);
-            logger.info("Added {} units to product: {}", quantity, product.getName());
-            return productRepository.save(product);
-        }
-        throw new IllegalArgumentException("المنتج غير موجود");
+        Product saved = inTransaction(session -> StockJournal.apply(session, productId, quantity, movement));
+        logger.info("Added {} units to product: {}", quantity, saved.getName());
+        DomainEventBus.getInstance().publish(new DomainEvent.StockChanged(productId));
+        return saved;
     }
     
-    public Product removeStock(Long productId, Double quantity) {
+    public Product removeStock(Long productId, Double quantity, StockMovement movement) {
         if (quantity <= 0) {
             throw new IllegalArgumentException("الكمية يجب أن تكون أكبر من صفر");
         }
         
-        Optional<Product> productOpt = productRepository.findById(productId);
-        if (productOpt.isPresent()) {
-            Product product = productOpt.get();
-            
-            if (product.getQuantityInStock() < quantity) {
-                throw new IllegalArgumentException("الكمية المطلوبة غير متوفرة في المخزون");
+        Product saved = inTransaction(session -> removeStock(session, productId, quantity, movement));
+        logger.info("Removed {} units from product: {}", quantity, saved.getName());
+        DomainEventBus.getInstance().publish(new DomainEvent.StockChanged(productId));
+        return saved;
+    }
+
+    /**
+     * Take stock from the movement's location (the default one when it has none) inside the
+     * caller's transaction; the caller publishes StockChanged after committing.
+     */
+    static Product removeStock(Session session, Long productId, double quantity, StockMovement movement) {
+        Product product = session.get(Product.class, productId);
+        if (product == null) {
+            throw new IllegalArgumentException("المنتج غير موجود");
+        }
+        if (StockJournal.locationStock(session, productId, movement.getLocationId()) < quantity) {
+            throw new IllegalArgumentException("الكمية المطلوبة غير متوفرة في المخزون");
+        }
+        return StockJournal.apply(session, productId, -quantity, movement);
+    }
+
+    /**
+     * Stock of a product as it was at the given time: the last checkpoint before it plus the
+     * journal lines after that checkpoint.
+     */
+    public double getStockAt(Long productId, LocalDateTime at) {
+        long atMillis = SqliteDates.toMillis(at);
+        String movementDate = SqliteDates.epochMillis("movement_date");
+        try {
+            return ReportingDatabase.getInstance().read(conn -> {
+                long checkpointId = 0;
+                double balance = 0.0;
+                try (PreparedStatement ps = conn.prepareStatement("SELECT movement_id, quantity FROM stock_checkpoints"
+                        + " WHERE product_id = ? AND checkpoint_date <= ? ORDER BY movement_id DESC LIMIT 1")) {
+                    ps.setLong(1, productId);
+                    ps.setLong(2, atMillis);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (rs.next()) {
+                            checkpointId = rs.getLong(1);
+                            balance = rs.getDouble(2);
+                        }
+                    }
+                }
+                try (PreparedStatement ps = conn.prepareStatement("SELECT COALESCE(SUM(quantity), 0) FROM stock_movements"
+                        + " WHERE product_id = ? AND id > ? AND " + movementDate + " <= ?")) {
+                    ps.setLong(1, productId);
+                    ps.setLong(2, checkpointId);
+                    ps.setLong(3, atMillis);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        return balance + (rs.next() ? rs.getDouble(1) : 0.0);
+                    }
+                }
+            });
+        } catch (SQLException e) {
+            logger.error("Failed to read stock of product {} at {}", productId, at, e);
+            throw new RuntimeException("فشل في حساب المخزون التاريخي", e);
+        }
+    }
+
+    /**
+     * Journal lines of a product within [from, to], oldest first; a null bound is open.
+     */
+    public List<StockMovement> getStockMovements(Long productId, LocalDateTime from, LocalDateTime to) {
+        try (Session session = DatabaseManager.getSessionFactory().openSession()) {
+            Query<StockMovement> query = session.createQuery("FROM StockMovement m WHERE m.productId = :productId"
+                    + (from != null ? " AND m.movementDate >= :from" : "")
+                    + (to != null ? " AND m.movementDate <= :to" : "")
+                    + " ORDER BY m.id", StockMovement.class);
+            query.setParameter("productId", productId);
+            if (from != null) {
+                query.setParameter("from", from);
+            }
+            if (to != null) {
+                query.setParameter("to", to);
+            }
+            return query.list();
+        }
+    }
+
+    /**
+     * Compare every product's quantity_in_stock with the balance of its journal (last checkpoint
+     * plus the lines after it) and log the products that differ.
+     */
+    public List<StockDiscrepancy> reconcileStock() {
+        String sql = "SELECT p.id, p.product_code, p.name, COALESCE(p.quantity_in_stock, 0) AS stock,"
+                + " COALESCE(c.quantity, 0) + COALESCE((SELECT SUM(m.quantity) FROM stock_movements m"
+                + "   WHERE m.product_id = p.id AND m.id > COALESCE(c.movement_id, 0)), 0) AS journal"
+                + " FROM products p LEFT JOIN stock_checkpoints c ON c.product_id = p.id"
+                + "   AND c.movement_id = (SELECT MAX(movement_id) FROM stock_checkpoints WHERE product_id = p.id)"
+                + " WHERE ABS(stock - journal) > 0.000001 ORDER BY p.name";
+        List<StockDiscrepancy> discrepancies = new ArrayList<>();
+        try {
+            ReportingDatabase.getInstance().read(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql);
+                     ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        discrepancies.add(new StockDiscrepancy(rs.getLong(1), rs.getString(2), rs.getString(3),
+                                rs.getDouble(4), rs.getDouble(5)));
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            logger.error("Failed to reconcile stock journal", e);
+            throw new RuntimeException("فشل في مطابقة المخزون", e);
+        }
+        if (discrepancies.isEmpty()) {
+            logger.info("Stock journal matches quantity_in_stock for all products");
+        } else {
+            discrepancies.forEach(d -> logger.warn("Stock of {} ({}) is {} but its journal gives {}",
+                    d.getProductCode(), d.getProductName(), d.getStock(), d.getJournalBalance()));
+        }
+        return discrepancies;
+    }
+
+    private static double stockOf(Product product) {
+        return product.getQuantityInStock() != null ? product.getQuantityInStock() : 0.0;
+    }
+
+    private static <T> T inTransaction(Function<Session, T> work) {
+        try (Session session = DatabaseManager.getSessionFactory().openSession()) {
+            Transaction transaction = session.beginTransaction();
+            try {
+                T result = work.apply(session);
+                transaction.commit();
+                return result;
+            } catch (RuntimeException e) {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+                throw e;
             }
-            
-            product.setQuantityInStock(product.getQuantityInStock() - quantity);
-            logger.info("Removed {} units from product: {}", quantity, product.getName());
-            return productRepository.save(product);
         }
-        throw new IllegalArgumentException("المنتج غير موجود");
     }
     
     public boolean isStockAvailable(Long productId, Double requiredQuantity) {
-        Optional<Product> productOpt = productRepository.findById(productId);
-        return productOpt.isPresent() && 
-               productOpt.get().getQuantityInStock() >= requiredQuantity &&
-               productOpt.get().getIsActive();
+        return isStockAvailable(productId, null, requiredQuantity);
+    }
+
+    /**
+     * Whether an active product has the quantity at a location (the default location when
+     * null), read with a single primary-key lookup of location_stock. Sales check stock just
+     * before posting, so this reads the live database rather than the reporting replica.
+     */
+    public boolean isStockAvailable(Long productId, Long locationId, Double requiredQuantity) {
+        Long location = locationId != null ? locationId : locationService.getDefaultLocation().getId();
+        try (Connection conn = DatabaseManager.openConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT s.quantity FROM location_stock s"
+                     + " JOIN products p ON p.id = s.product_id"
+                     + " WHERE s.product_id = ? AND s.location_id = ? AND p.is_active = 1")) {
+            ps.setLong(1, productId);
+            ps.setLong(2, location);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getDouble(1) >= requiredQuantity;
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to check stock of product {} at location {}", productId, location, e);
+            throw new RuntimeException("تعذر التحقق من توفر المخزون", e);
+        }
     }
     
     private String generateProductCode() {
@@ -172,25 +384,19 @@ public class InventoryService {
     }
     
     public List<Product> getProductsNeedingRestock() {
-        return productRepository.findAll().stream()
-                .filter(product -> Boolean.TRUE.equals(product.getIsActive()))
-                .filter(product -> {
-                    double qty = product.getQuantityInStock() == null ? 0 : product.getQuantityInStock();
-                    double min = product.getMinimumStock() == null ? 0 : product.getMinimumStock();
-                    return qty <= min;
-                })
-                .toList();
+        return productRepository.findLowStock();
     }
     
+    /**
+     * Value of all stock under the costing method in effect, read from the total that the
+     * stock journal keeps up to date.
+     */
     public double getTotalInventoryValue() {
-        return productRepository.findAll().stream()
-                .filter(p -> Boolean.TRUE.equals(p.getIsActive()))
-                .mapToDouble(product -> {
-                    double qty = product.getQuantityInStock() == null ? 0 : product.getQuantityInStock();
-                    double cost = product.getCostPrice() == null ? 0.0 : product.getCostPrice();
-                    return qty * cost;
-                })
-                .sum();
+        try (Session session = DatabaseManager.getSessionFactory().openSession()) {
+            Number total = (Number) session.createNativeQuery(
+                    "SELECT total_value FROM inventory_valuation WHERE id = 1").uniqueResult();
+            return total != null ? total.doubleValue() : 0.0;
+        }
     }
     
     public double getTotalStockCount() {
@@ -2,6 +2,9 @@ package com.hisabx.service;
 
 import com.hisabx.model.Customer;
 import com.hisabx.model.Product;
+import com.hisabx.model.dto.AgingReport;
+import com.hisabx.model.dto.AgingSummary;
+import com.hisabx.model.dto.CustomerExposure;
 import com.itextpdf.text.*;
 import com.itextpdf.text.pdf.*;
 import org.slf4j.Logger;
@@ -237,8 +240,8 @@ public class PrintService {
                 table.addCell(qtyCell);
                 table.addCell(createBodyCell(String.valueOf(minStock != null ? minStock : 0.0), bodyFont, Element.ALIGN_CENTER));
                 
-                if (qty != null && product.getCostPrice() != null) {
-                    totalValue += qty * product.getCostPrice();
+                if (product.getStockValue() != null) {
+                    totalValue += product.getStockValue();
                 }
                 totalStock += qty != null ? qty : 0;
                 
@@ -271,6 +274,125 @@ public class PrintService {
         }
     }
     
+    public File generateReceivablesAgingPdf(AgingReport report) {
+        try {
+            File dir = new File("reports");
+            if (!dir.exists()) {
+                dir.mkdirs();
+            }
+            
+            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+            String fileName = "receivables_aging_" + timestamp + ".pdf";
+            File outputFile = new File(dir, fileName);
+            
+            return generateReceivablesAgingPdf(report, outputFile);
+            
+        } catch (Exception e) {
+            logger.error("Failed to generate receivables aging PDF", e);
+            throw new RuntimeException("فشل في إنشاء تقرير أعمار الذمم", e);
+        }
+    }
+
+    public File generateReceivablesAgingPdf(AgingReport report, File outputFile) {
+        try {
+            if (outputFile == null) {
+                throw new IllegalArgumentException("مسار الملف غير صحيح");
+            }
+
+            File parent = outputFile.getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+
+            Document document = new Document(PageSize.A4.rotate(), 30, 30, 30 + BANNER_HEIGHT, 30);
+            PdfWriter writer = PdfWriter.getInstance(document, new FileOutputStream(outputFile));
+            document.open();
+            
+            BaseFont baseFont = loadArabicBaseFont();
+            Font titleFont = new Font(baseFont, 18, Font.BOLD);
+            Font headerFont = new Font(baseFont, 11, Font.BOLD);
+            Font bodyFont = new Font(baseFont, 10, Font.NORMAL);
+            Font smallFont = new Font(baseFont, 9, Font.NORMAL);
+            
+            addBanner(writer, document);
+            addCenteredRtlText(document, "تقرير أعمار الذمم", titleFont);
+            addCenteredRtlText(document,
+                    "حتى تاريخ: " + report.getAsOf().format(DateTimeFormatter.ofPattern("yyyy-MM-dd")),
+                    smallFont, 15f);
+            
+            PdfPTable table = new PdfPTable(10);
+            table.setWidthPercentage(100);
+            table.setHeaderRows(1);
+            table.setRunDirection(PdfWriter.RUN_DIRECTION_RTL);
+            table.setWidths(new float[]{0.4f, 0.7f, 1.6f, 1.0f, 0.5f, 1.0f, 0.9f, 0.9f, 0.9f, 0.9f});
+            
+            addTableHeader(table, "ت", headerFont);
+            addTableHeader(table, "الكود", headerFont);
+            addTableHeader(table, "الاسم", headerFont);
+            addTableHeader(table, "الهاتف", headerFont);
+            addTableHeader(table, "العملة", headerFont);
+            addTableHeader(table, "الإجمالي", headerFont);
+            addTableHeader(table, "0-30 يوم", headerFont);
+            addTableHeader(table, "31-60 يوم", headerFont);
+            addTableHeader(table, "61-90 يوم", headerFont);
+            addTableHeader(table, "أكثر من 90", headerFont);
+            
+            int rowNum = 1;
+            for (CustomerExposure line : report.getLines()) {
+                table.addCell(createBodyCell(String.valueOf(rowNum), bodyFont, Element.ALIGN_CENTER));
+                table.addCell(createBodyCell(line.getCustomerCode(), bodyFont, Element.ALIGN_CENTER));
+                table.addCell(createBodyCell(line.getCustomerName(), bodyFont, Element.ALIGN_RIGHT));
+                table.addCell(createBodyCell(line.getPhoneNumber(), bodyFont, Element.ALIGN_CENTER));
+                table.addCell(createBodyCell(currencySymbol(line.getCurrency()), bodyFont, Element.ALIGN_CENTER));
+                table.addCell(createBodyCell(DECIMAL_FORMAT.format(line.getAmount()), headerFont, Element.ALIGN_CENTER));
+                table.addCell(createBodyCell(DECIMAL_FORMAT.format(line.getAge0To30()), bodyFont, Element.ALIGN_CENTER));
+                table.addCell(createBodyCell(DECIMAL_FORMAT.format(line.getAge31To60()), bodyFont, Element.ALIGN_CENTER));
+                table.addCell(createBodyCell(DECIMAL_FORMAT.format(line.getAge61To90()), bodyFont, Element.ALIGN_CENTER));
+                
+                PdfPCell oldestCell = createBodyCell(DECIMAL_FORMAT.format(line.getAge90Plus()), bodyFont, Element.ALIGN_CENTER);
+                if (line.getAge90Plus() > 0) {
+                    oldestCell.setBackgroundColor(new BaseColor(254, 226, 226));
+                }
+                table.addCell(oldestCell);
+                
+                rowNum++;
+            }
+            
+            document.add(table);
+            
+            for (AgingSummary summary : report.getSummaries()) {
+                String symbol = " " + currencySymbol(summary.getCurrency());
+                document.add(new Paragraph(" ", bodyFont));
+                PdfPTable summaryTable = new PdfPTable(2);
+                summaryTable.setWidthPercentage(40);
+                summaryTable.setHorizontalAlignment(Element.ALIGN_RIGHT);
+                summaryTable.setRunDirection(PdfWriter.RUN_DIRECTION_RTL);
+                
+                addSummaryRow(summaryTable, "عدد المدينين:", String.valueOf(summary.getDebtorCount()), headerFont, bodyFont);
+                addSummaryRow(summaryTable, "إجمالي الذمم:", DECIMAL_FORMAT.format(summary.getTotal()) + symbol, headerFont, bodyFont);
+                addSummaryRow(summaryTable, "0-30 يوم:", DECIMAL_FORMAT.format(summary.getAge0To30()) + symbol, headerFont, bodyFont);
+                addSummaryRow(summaryTable, "31-60 يوم:", DECIMAL_FORMAT.format(summary.getAge31To60()) + symbol, headerFont, bodyFont);
+                addSummaryRow(summaryTable, "61-90 يوم:", DECIMAL_FORMAT.format(summary.getAge61To90()) + symbol, headerFont, bodyFont);
+                addSummaryRow(summaryTable, "أكثر من 90 يوم:", DECIMAL_FORMAT.format(summary.getAge90Plus()) + symbol, headerFont, bodyFont);
+                
+                document.add(summaryTable);
+            }
+            addUnifiedFooter(document, headerFont, smallFont);
+            
+            document.close();
+            logger.info("Receivables aging PDF generated: {}", outputFile.getAbsolutePath());
+            return outputFile;
+            
+        } catch (Exception e) {
+            logger.error("Failed to generate receivables aging PDF", e);
+            throw new RuntimeException("فشل في إنشاء تقرير أعمار الذمم", e);
+        }
+    }
+    
+    private static String currencySymbol(String currency) {
+        return "دولار".equals(currency) || "USD".equalsIgnoreCase(currency) ? "$" : "د.ع";
+    }
+    
     private BaseFont loadArabicBaseFont() throws DocumentException, java.io.IOException {
         String[] fontCandidates = new String[]{
             "C:\\Windows\\Fonts\\arial.ttf",
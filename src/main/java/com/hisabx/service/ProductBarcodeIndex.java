@@ -0,0 +1,264 @@
+package com.hisabx.service;
+
+import com.hisabx.database.DatabaseManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * فهرس الباركود - active products by barcode and product code, in memory.
+ * Scanned codes are resolved here without a query, so a burst of scans never waits on the
+ * database. Loaded once with a single projection query and kept current from product events on
+ * a background thread: a changed product is patched into the maps in place, and bulk changes
+ * build a new snapshot that replaces the old one when it is complete. Scans meanwhile read the
+ * previous state.
+ */
+public final class ProductBarcodeIndex {
+    private static final Logger logger = LoggerFactory.getLogger(ProductBarcodeIndex.class);
+    private static ProductBarcodeIndex instance;
+
+    private static final String SELECT_COLUMNS =
+            "SELECT id, product_code, barcode, name, unit_price, unit_of_measure FROM products WHERE is_active = 1";
+
+    private final ExecutorService worker;
+    private volatile Snapshot snapshot;
+
+    private ProductBarcodeIndex() {
+        worker = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "Barcode-Index");
+            t.setDaemon(true);
+            return t;
+        });
+        DomainEventBus bus = DomainEventBus.getInstance();
+        bus.subscribe(DomainEvent.ProductChanged.class, e -> {
+            Long productId = e.getProductId();
+            boolean deleted = e.isDeleted();
+            worker.execute(() -> update(productId, deleted));
+        });
+        // Imports, price changes and stocktakes touch many products at once
+        bus.subscribe(DomainEvent.BulkDataChanged.class, e -> {
+            if (e.isProducts()) {
+                worker.execute(this::rebuild);
+            }
+        });
+    }
+
+    public static synchronized ProductBarcodeIndex getInstance() {
+        if (instance == null) {
+            instance = new ProductBarcodeIndex();
+        }
+        return instance;
+    }
+
+    /**
+     * Immutable summary of one product, enough to add it to a sale.
+     */
+    public static final class Entry {
+        private final Long id;
+        private final String code;
+        private final String barcode;
+        private final String name;
+        private final double unitPrice;
+        private final String unitOfMeasure;
+
+        private Entry(ResultSet rs) throws SQLException {
+            this.id = rs.getLong(1);
+            this.code = rs.getString(2);
+            this.barcode = rs.getString(3);
+            this.name = rs.getString(4);
+            this.unitPrice = rs.getDouble(5);
+            this.unitOfMeasure = rs.getString(6);
+        }
+
+        public Long getId() { return id; }
+        public String getCode() { return code; }
+        public String getBarcode() { return barcode; }
+        public String getName() { return name; }
+        public double getUnitPrice() { return unitPrice; }
+        public String getUnitOfMeasure() { return unitOfMeasure; }
+    }
+
+    /**
+     * Lookup maps, read by any thread and changed only on the index thread.
+     */
+    private static final class Snapshot {
+        final Map<Long, Entry> byId;
+        final Map<String, Entry> byCode;
+
+        Snapshot(List<Entry> list) {
+            byId = new ConcurrentHashMap<>(list.size() * 2);
+            byCode = new ConcurrentHashMap<>(list.size() * 4);
+            for (Entry e : list) {
+                byId.put(e.getId(), e);
+            }
+            // Barcodes first: a product code equal to another product's barcode does not shadow it
+            for (Entry e : list) {
+                claim(e.getBarcode(), e, true);
+            }
+            for (Entry e : list) {
+                claim(e.getCode(), e, false);
+            }
+        }
+
+        /**
+         * Replace one product's entry. The new keys are added before the old ones are dropped,
+         * so a scan of an unchanged code never misses.
+         */
+        void patch(Entry old, Entry fresh) {
+            if (fresh != null) {
+                byId.put(fresh.getId(), fresh);
+                claim(fresh.getBarcode(), fresh, true);
+                claim(fresh.getCode(), fresh, false);
+            } else if (old != null) {
+                byId.remove(old.getId());
+            }
+            if (old != null) {
+                // Only keys still pointing at the old entry; those taken over by fresh are kept
+                release(old.getBarcode(), old);
+                release(old.getCode(), old);
+            }
+        }
+
+        private void claim(String code, Entry e, boolean barcode) {
+            String key = normalize(code);
+            if (key == null) {
+                return;
+            }
+            Entry current = byCode.get(key);
+            // Same product, a free key, or a product code giving way to a barcode
+            if (current == null || current.getId().equals(e.getId())
+                    || (barcode && !key.equals(normalize(current.getBarcode())))) {
+                byCode.put(key, e);
+            }
+        }
+
+        /**
+         * Drop a key of a replaced entry, handing it to another product that has it as its
+         * barcode or else as its product code (one the old barcode was shadowing).
+         */
+        private void release(String code, Entry old) {
+            String key = normalize(code);
+            if (key == null || byCode.get(key) != old) {
+                return;
+            }
+            Entry successor = null;
+            for (Entry e : byId.values()) {
+                if (key.equals(normalize(e.getBarcode()))) {
+                    successor = e;
+                    break;
+                }
+                if (successor == null && key.equals(normalize(e.getCode()))) {
+                    successor = e;
+                }
+            }
+            if (successor != null) {
+                byCode.replace(key, old, successor);
+            } else {
+                byCode.remove(key, old);
+            }
+        }
+
+        private static String normalize(String code) {
+            return code != null && !code.isBlank() ? code.trim() : null;
+        }
+    }
+
+    /** The active product with this barcode, or else with this product code. */
+    public Optional<Entry> find(String code) {
+        if (code == null || code.isBlank()) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(snapshot().byCode.get(code.trim()));
+    }
+
+    public int size() {
+        return snapshot().byId.size();
+    }
+
+    /** Load the index ahead of the first scan. */
+    public void warmUp() {
+        snapshot();
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                snapshot = new Snapshot(loadAll());
+            }
+            return snapshot;
+        }
+    }
+
+    private List<Entry> loadAll() {
+        long started = System.nanoTime();
+        List<Entry> entries = new ArrayList<>();
+        try (Connection conn = DatabaseManager.openConnection();
+             PreparedStatement ps = conn.prepareStatement(SELECT_COLUMNS);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                entries.add(new Entry(rs));
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to load barcode index", e);
+            throw new RuntimeException("فشل في تحميل فهرس الباركود", e);
+        }
+        logger.info("Barcode index loaded: {} products in {} ms", entries.size(),
+                (System.nanoTime() - started) / 1_000_000);
+        return entries;
+    }
+
+    /** Build a fresh snapshot off the reading threads and swap it in; nothing to do before first use. */
+    private void rebuild() {
+        if (snapshot == null) {
+            return;
+        }
+        try {
+            Snapshot fresh = new Snapshot(loadAll());
+            synchronized (this) {
+                snapshot = fresh;
+            }
+        } catch (RuntimeException e) {
+            // Keep serving the previous snapshot; the next bulk change or restart reloads it
+            logger.warn("Barcode index not rebuilt", e);
+        }
+    }
+
+    private void update(Long productId, boolean deleted) {
+        Snapshot current = snapshot;
+        if (productId == null || current == null) {
+            return;
+        }
+        Entry fresh = null;
+        if (!deleted) {
+            try (Connection conn = DatabaseManager.openConnection();
+                 PreparedStatement ps = conn.prepareStatement(SELECT_COLUMNS + " AND id = ?")) {
+                ps.setLong(1, productId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        fresh = new Entry(rs);
+                    }
+                }
+            } catch (SQLException e) {
+                logger.warn("Failed to refresh product {} in barcode index; rebuilding it", productId, e);
+                rebuild();
+                return;
+            }
+        }
+        current.patch(current.byId.get(productId), fresh);
+    }
+}
@@ -0,0 +1,345 @@
+package com.hisabx.service;
+
+import com.hisabx.database.DatabaseManager;
+import com.hisabx.database.ReportingDatabase;
+import com.hisabx.database.SqliteDates;
+import com.hisabx.model.dto.AgingReport;
+import com.hisabx.model.dto.AgingSummary;
+import com.hisabx.model.dto.CustomerExposure;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * أعمار الذمم - maintains the receivable open items table and builds the aging report from it.
+ * Payments are allocated FIFO against a customer's unpaid sales in each currency, so what stays
+ * open is the newest invoices whose unpaid amounts add up to the customer's debt; any debt not
+ * backed by a sale (opening balances) is kept as an undated item and ages as 90+ days.
+ * Sale, voucher, return and customer events rebuild only the affected customer's items, on a
+ * background thread; events arriving together for the same customer cause one rebuild.
+ */
+public final class ReceivablesAgingService {
+    private static final Logger logger = LoggerFactory.getLogger(ReceivablesAgingService.class);
+    private static ReceivablesAgingService instance;
+
+    public static final String IQD = "IQD";
+    public static final String USD = "USD";
+
+    // A sale publishes SaleCreated and CustomerUpdated back to back; both land in one rebuild
+    private static final long COALESCE_DELAY_MS = 250;
+
+    // 0-30, 31-60 and 61-90 day buckets of open items aliased o; bound by bindCutoffs
+    private static final String RECENT_BUCKETS =
+            " COALESCE(SUM(CASE WHEN o.item_date >= ? THEN o.open_amount END), 0),"
+            + " COALESCE(SUM(CASE WHEN o.item_date >= ? AND o.item_date < ? THEN o.open_amount END), 0),"
+            + " COALESCE(SUM(CASE WHEN o.item_date >= ? AND o.item_date < ? THEN o.open_amount END), 0)";
+
+    private final ScheduledExecutorService worker;
+    private final Set<Long> pendingCustomers = new LinkedHashSet<>();
+
+    private ReceivablesAgingService() {
+        worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Receivables-Aging");
+            t.setDaemon(true);
+            return t;
+        });
+        DomainEventBus bus = DomainEventBus.getInstance();
+        bus.subscribe(DomainEvent.CustomerUpdated.class, e -> scheduleRebuild(e.getCustomerId()));
+        bus.subscribe(DomainEvent.SaleCreated.class, e -> scheduleRebuild(e.getCustomerId()));
+        bus.subscribe(DomainEvent.SaleUpdated.class, e -> scheduleRebuild(e.getCustomerId()));
+        bus.subscribe(DomainEvent.SaleDeleted.class, e -> scheduleRebuild(e.getCustomerId()));
+        bus.subscribe(DomainEvent.VoucherSaved.class, e -> scheduleRebuild(e.getCustomerId()));
+        bus.subscribe(DomainEvent.VoucherCancelled.class, e -> scheduleRebuild(e.getCustomerId()));
+        bus.subscribe(DomainEvent.ReturnChanged.class,
+                e -> worker.execute(() -> scheduleRebuild(customerIdForSale(e.getSaleId()))));
+    }
+
+    public static synchronized ReceivablesAgingService getInstance() {
+        if (instance == null) {
+            instance = new ReceivablesAgingService();
+        }
+        return instance;
+    }
+
+    /**
+     * Rebuild the open items of one customer, or of every customer when null.
+     *
+     * @return the number of open items written
+     */
+    public synchronized int rebuild(Long customerId) {
+        long started = System.nanoTime();
+        try (Connection conn = DatabaseManager.openConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement ps = conn.prepareStatement(customerId == null
+                        ? "DELETE FROM receivable_open_items"
+                        : "DELETE FROM receivable_open_items WHERE customer_id = ?")) {
+                    if (customerId != null) {
+                        ps.setLong(1, customerId);
+                    }
+                    ps.executeUpdate();
+                }
+                int written = insertOpenItems(conn, IQD, customerId) + insertOpenItems(conn, USD, customerId);
+                conn.commit();
+                if (customerId == null) {
+                    logger.info("Receivable open items rebuilt: {} items in {} ms", written,
+                            (System.nanoTime() - started) / 1_000_000);
+                }
+                return written;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to rebuild receivable open items for customer {}", customerId, e);
+            throw new RuntimeException("فشل في تحديث أعمار الذمم", e);
+        }
+    }
+
+    /**
+     * Aging of every debtor in both currencies, largest debt first, with per-currency totals
+     * accumulated from the same result set.
+     */
+    public AgingReport getAgingReport() {
+        LocalDate today = LocalDate.now();
+        String sql = "SELECT o.customer_id, c.customer_code, c.name, c.phone_number, o.currency,"
+                + " SUM(o.open_amount) AS total," + RECENT_BUCKETS + ","
+                + " COALESCE(SUM(CASE WHEN o.item_date IS NULL OR o.item_date < ? THEN o.open_amount END), 0)"
+                + " FROM receivable_open_items o JOIN customers c ON c.id = o.customer_id"
+                + " GROUP BY o.currency, o.customer_id"
+                + " ORDER BY o.currency, total DESC, o.customer_id";
+
+        List<CustomerExposure> lines = new ArrayList<>();
+        Map<String, double[]> totals = new LinkedHashMap<>();
+        try {
+            ReportingDatabase.getInstance().read(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    int i = bindCutoffs(ps, 1, today);
+                    ps.setLong(i, SqliteDates.startOfDayMillis(today.minusDays(90)));
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            CustomerExposure line = new CustomerExposure(rs.getLong(1), rs.getString(2), rs.getString(3),
+                                    rs.getString(4), rs.getString(5), rs.getDouble(6), rs.getDouble(7), rs.getDouble(8),
+                                    rs.getDouble(9), rs.getDouble(10));
+                            lines.add(line);
+                            double[] sum = totals.computeIfAbsent(line.getCurrency(), k -> new double[6]);
+                            sum[0]++;
+                            sum[1] += line.getAmount();
+                            sum[2] += line.getAge0To30();
+                            sum[3] += line.getAge31To60();
+                            sum[4] += line.getAge61To90();
+                            sum[5] += line.getAge90Plus();
+                        }
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            logger.error("Failed to build receivables aging report", e);
+            throw new RuntimeException("فشل في إنشاء تقرير أعمار الذمم", e);
+        }
+
+        List<AgingSummary> summaries = new ArrayList<>();
+        totals.forEach((currency, sum) -> summaries.add(
+                new AgingSummary(currency, (long) sum[0], sum[1], sum[2], sum[3], sum[4], sum[5])));
+        return new AgingReport(today, lines, summaries);
+    }
+
+    /**
+     * One page of debtors in a currency, largest debt first. The debt is the customer's current
+     * balance, so customers whose open items are still being rebuilt are listed too; whatever
+     * the dated items do not cover counts as 90+ days.
+     */
+    public List<CustomerExposure> getDebtorsPage(String currency, int offset, int limit) {
+        String sql = debtorAgingSql(currency) + " ORDER BY debt DESC, id";
+        try (Connection conn = DatabaseManager.openConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            bindDebtorAging(ps, currency, limit, offset);
+            List<CustomerExposure> rows = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new CustomerExposure(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4),
+                            currency, rs.getDouble(5), rs.getDouble(6), rs.getDouble(7), rs.getDouble(8),
+                            rs.getDouble(9)));
+                }
+            }
+            return rows;
+        } catch (SQLException e) {
+            logger.error("Failed to load debtor aging for {}", currency, e);
+            throw new RuntimeException("فشل في تحميل أعمار الذمم", e);
+        }
+    }
+
+    /**
+     * Aging totals across every debtor in a currency, on the same basis as {@link #getDebtorsPage}.
+     */
+    public AgingSummary getAgingSummary(String currency) {
+        String sql = "SELECT COUNT(*), COALESCE(SUM(debt), 0), COALESCE(SUM(age_0_30), 0),"
+                + " COALESCE(SUM(age_31_60), 0), COALESCE(SUM(age_61_90), 0), COALESCE(SUM(age_90_plus), 0)"
+                + " FROM (" + debtorAgingSql(currency) + ")";
+        try (Connection conn = DatabaseManager.openConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            bindDebtorAging(ps, currency, -1, 0);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return new AgingSummary(currency, rs.getLong(1), rs.getDouble(2), rs.getDouble(3),
+                        rs.getDouble(4), rs.getDouble(5), rs.getDouble(6));
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to summarize debtor aging for {}", currency, e);
+            throw new RuntimeException("فشل في تحميل أعمار الذمم", e);
+        }
+    }
+
+    private static String debtorAgingSql(String currency) {
+        String column = isUsd(currency) ? "balance_usd" : "balance_iqd";
+        return "WITH debtors AS ("
+                + " SELECT id, -" + column + " AS debt FROM customers WHERE " + column + " < 0"
+                + " ORDER BY " + column + ", id LIMIT ? OFFSET ?"
+                + "), aged (id, customer_code, name, phone_number, debt, age_0_30, age_31_60, age_61_90,"
+                + " age_90_plus) AS ("
+                + " SELECT c.id, c.customer_code, c.name, c.phone_number, d.debt," + RECENT_BUCKETS + ","
+                + " d.debt - COALESCE(SUM(CASE WHEN o.item_date >= ? THEN o.open_amount END), 0)"
+                + " FROM debtors d JOIN customers c ON c.id = d.id"
+                + " LEFT JOIN receivable_open_items o ON o.customer_id = d.id AND o.currency = ?"
+                + " GROUP BY d.id, d.debt, c.id, c.customer_code, c.name, c.phone_number"
+                + ")"
+                + " SELECT * FROM aged";
+    }
+
+    /** Binds the debtor page (limit -1 for all), the bucket cut-offs and the open item currency. */
+    private static void bindDebtorAging(PreparedStatement ps, String currency, int limit, int offset)
+            throws SQLException {
+        LocalDate today = LocalDate.now();
+        ps.setInt(1, limit);
+        ps.setInt(2, offset);
+        int i = bindCutoffs(ps, 3, today);
+        ps.setLong(i++, SqliteDates.startOfDayMillis(today.minusDays(90)));
+        ps.setString(i, isUsd(currency) ? USD : IQD);
+    }
+
+    /** Binds the {@link #RECENT_BUCKETS} cut-offs from index i and returns the next index. */
+    private static int bindCutoffs(PreparedStatement ps, int i, LocalDate today) throws SQLException {
+        long cut30 = SqliteDates.startOfDayMillis(today.minusDays(30));
+        long cut60 = SqliteDates.startOfDayMillis(today.minusDays(60));
+        long cut90 = SqliteDates.startOfDayMillis(today.minusDays(90));
+        ps.setLong(i++, cut30);
+        ps.setLong(i++, cut60);
+        ps.setLong(i++, cut30);
+        ps.setLong(i++, cut90);
+        ps.setLong(i++, cut60);
+        return i;
+    }
+
+    private static boolean isUsd(String currency) {
+        return "دولار".equals(currency) || USD.equalsIgnoreCase(currency);
+    }
+
+    /**
+     * The customer's debt is matched against unpaid sales newest first: payments settle the
+     * oldest invoices, so the newest ones (up to the debt) are what remains open.
+     */
+    private int insertOpenItems(Connection conn, String currency, Long customerId) throws SQLException {
+        boolean usd = isUsd(currency);
+        String column = usd ? "balance_usd" : "balance_iqd";
+        String saleCurrency = usd
+                ? "(s.currency = 'دولار' OR upper(s.currency) = 'USD')"
+                : "NOT (COALESCE(s.currency, '') = 'دولار' OR upper(COALESCE(s.currency, '')) = 'USD')";
+        String unpaid = "(COALESCE(s.final_amount, 0) - COALESCE(s.paid_amount, 0))";
+        String saleMs = SqliteDates.epochMillis("s.sale_date");
+        String sql = "WITH debtors AS ("
+                + " SELECT id, -" + column + " AS debt FROM customers WHERE " + column + " < 0"
+                + (customerId != null ? " AND id = ?" : "")
+                + "), ranked AS ("
+                + " SELECT s.customer_id, s.id AS sale_id, d.debt, " + saleMs + " AS sale_ms, " + unpaid + " AS amount,"
+                + " SUM(" + unpaid + ") OVER (PARTITION BY s.customer_id ORDER BY " + saleMs + " DESC, s.id DESC) AS running"
+                + " FROM sales s JOIN debtors d ON d.id = s.customer_id"
+                + " WHERE " + saleCurrency + " AND " + unpaid + " > 0"
+                + "), allocated AS ("
+                + " SELECT customer_id, sale_id, sale_ms, amount, MIN(amount, debt - (running - amount)) AS open_amount"
+                + " FROM ranked WHERE running - amount < debt"
+                + ")"
+                + " INSERT INTO receivable_open_items"
+                + " (customer_id, currency, sale_id, item_date, original_amount, open_amount)"
+                + " SELECT customer_id, ?, sale_id, sale_ms, amount, open_amount FROM allocated"
+                + " UNION ALL"
+                + " SELECT d.id, ?, NULL, NULL, d.debt - COALESCE(SUM(a.open_amount), 0),"
+                + " d.debt - COALESCE(SUM(a.open_amount), 0)"
+                + " FROM debtors d LEFT JOIN allocated a ON a.customer_id = d.id"
+                + " GROUP BY d.id, d.debt HAVING d.debt - COALESCE(SUM(a.open_amount), 0) > 0.005";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int i = 1;
+            if (customerId != null) {
+                ps.setLong(i++, customerId);
+            }
+            ps.setString(i++, currency);
+            ps.setString(i, currency);
+            return ps.executeUpdate();
+        }
+    }
+
+    private void scheduleRebuild(Long customerId) {
+        if (customerId == null) {
+            return;
+        }
+        boolean first;
+        synchronized (pendingCustomers) {
+            first = pendingCustomers.isEmpty();
+            pendingCustomers.add(customerId);
+        }
+        if (first) {
+            worker.schedule(this::rebuildPending, COALESCE_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void rebuildPending() {
+        while (true) {
+            Long customerId;
+            synchronized (pendingCustomers) {
+                Iterator<Long> it = pendingCustomers.iterator();
+                if (!it.hasNext()) {
+                    return;
+                }
+                customerId = it.next();
+                it.remove();
+            }
+            try {
+                rebuild(customerId);
+            } catch (RuntimeException e) {
+                // The next full rebuild at startup repairs the customer's items
+                logger.warn("Receivable open items of customer {} not updated", customerId, e);
+            }
+        }
+    }
+
+    private Long customerIdForSale(Long saleId) {
+        if (saleId == null) {
+            return null;
+        }
+        try (Connection conn = DatabaseManager.openConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT customer_id FROM sales WHERE id = ?")) {
+            ps.setLong(1, saleId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : null;
+            }
+        } catch (SQLException e) {
+            logger.warn("Failed to resolve customer of sale {}", saleId, e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package com.hisabx.service;
+
+import com.hisabx.database.DatabaseManager;
+import com.hisabx.database.FiscalArchives;
+import com.hisabx.database.ReportingDatabase;
+import com.hisabx.database.SqliteDates;
+import com.hisabx.model.Product;
+import com.hisabx.util.AppConfigStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * محرك إعادة الطلب - derives each product's reorder point and order-up-to level from how fast it
+ * sells, so the low-stock list follows real demand instead of a hand-typed minimum.
+ *
+ * Once a day the daily quantities sold over the last {@code reorder_window_days} are loaded into
+ * one flat array; mean and standard deviation of daily demand are computed per product in
+ * parallel batches:
+ * <pre>
+ *   reorder point = demand × lead time + safety factor × σ × √lead time
+ *   order up to   = reorder point + demand × cover days   (capped at maximum_stock)
+ * </pre>
+ * Only products sold since the last run, or still carrying a demand rate, are recomputed.
+ * Results are stored on the product; the low-stock list compares stock with the larger of
+ * minimum_stock and reorder_point through an expression index. The day of the last run is kept
+ * in reorder_state so restarts on the same day do not repeat it.
+ */
+public final class ReorderEngine {
+    private static final Logger logger = LoggerFactory.getLogger(ReorderEngine.class);
+
+    private static final String WINDOW_DAYS_KEY = "reorder_window_days";
+    private static final String LEAD_TIME_DAYS_KEY = "reorder_lead_time_days";
+    private static final String COVER_DAYS_KEY = "reorder_cover_days";
+    private static final String SAFETY_FACTOR_KEY = "reorder_safety_factor";
+    private static final int DEFAULT_WINDOW_DAYS = 90;
+    private static final int DEFAULT_LEAD_TIME_DAYS = 7;
+    private static final int DEFAULT_COVER_DAYS = 30;
+    private static final double DEFAULT_SAFETY_FACTOR = 1.65; // ~95% of lead times without a stock-out
+
+    // New products are judged on at least two weeks, not on their first day of sales
+    private static final int MIN_HISTORY_DAYS = 14;
+    private static final int BATCH_SIZE = 256;
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final long FIRST_RUN_DELAY_SECONDS = 90;
+    private static final long CHECK_INTERVAL_MINUTES = 30;
+
+    private static ReorderEngine instance;
+
+    private final int windowDays;
+    private final int leadTimeDays;
+    private final int coverDays;
+    private final double safetyFactor;
+    private ScheduledExecutorService worker;
+    private volatile long lastRunDay = -1;
+
+    private ReorderEngine() {
+        Properties props = new AppConfigStore().load();
+        windowDays = Math.max(MIN_HISTORY_DAYS, parseInt(props.getProperty(WINDOW_DAYS_KEY), DEFAULT_WINDOW_DAYS));
+        leadTimeDays = Math.max(1, parseInt(props.getProperty(LEAD_TIME_DAYS_KEY), DEFAULT_LEAD_TIME_DAYS));
+        coverDays = Math.max(0, parseInt(props.getProperty(COVER_DAYS_KEY), DEFAULT_COVER_DAYS));
+        safetyFactor = Math.max(0, parseDouble(props.getProperty(SAFETY_FACTOR_KEY), DEFAULT_SAFETY_FACTOR));
+    }
+
+    public static synchronized ReorderEngine getInstance() {
+        if (instance == null) {
+            instance = new ReorderEngine();
+        }
+        return instance;
+    }
+
+    /**
+     * Refresh shortly after start if today's run is missing, then again after each midnight
+     * while the application stays open.
+     */
+    public synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+        worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Reorder-Engine");
+            t.setDaemon(true);
+            return t;
+        });
+        worker.scheduleWithFixedDelay(this::refreshIfDue, FIRST_RUN_DELAY_SECONDS,
+                TimeUnit.MINUTES.toSeconds(CHECK_INTERVAL_MINUTES), TimeUnit.SECONDS);
+    }
+
+    private void refreshIfDue() {
+        try {
+            if (lastRunDay < 0) {
+                lastRunDay = readLastRunDay();
+            }
+            if (lastRunDay != LocalDate.now().toEpochDay()) {
+                refresh(false);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Reorder refresh failed", e);
+        }
+    }
+
+    /**
+     * Recompute reorder levels; {@code full} recomputes every active product instead of only
+     * those whose demand may have changed.
+     *
+     * @return the number of products updated
+     */
+    public synchronized int refresh(boolean full) {
+        long started = System.nanoTime();
+        long today = SqliteDates.startOfDayMillis(LocalDate.now());
+        long windowStart = today - windowDays * DAY_MILLIS;
+        try {
+            long lastRun = full ? 0L : lastRunMillis();
+            ProductBatch batch = ReportingDatabase.getInstance().readWithArchives(windowStart, today,
+                    (conn, years) -> loadDemand(conn, years, lastRun, windowStart, today));
+            if (batch.size() > 0) {
+                int batches = (batch.size() + BATCH_SIZE - 1) / BATCH_SIZE;
+                IntStream.range(0, batches).parallel().forEach(b -> {
+                    int end = Math.min(batch.size(), (b + 1) * BATCH_SIZE);
+                    for (int i = b * BATCH_SIZE; i < end; i++) {
+                        compute(batch, i);
+                    }
+                });
+                store(batch);
+                DomainEventBus.getInstance().publish(new DomainEvent.BulkDataChanged(true, false));
+            }
+            lastRunDay = LocalDate.now().toEpochDay();
+            saveLastRunDay(lastRunDay);
+            logger.info("Reorder levels of {} products refreshed in {} ms", batch.size(),
+                    (System.nanoTime() - started) / 1_000_000);
+            return batch.size();
+        } catch (SQLException e) {
+            logger.error("Failed to refresh reorder levels", e);
+            throw new RuntimeException("فشل في حساب حدود إعادة الطلب", e);
+        }
+    }
+
+    /**
+     * Level at which the product should be reordered: the larger of the typed minimum and the
+     * computed reorder point.
+     */
+    public static double reorderLevelOf(Product product) {
+        double minimum = product.getMinimumStock() != null ? product.getMinimumStock() : 0.0;
+        double computed = product.getReorderPoint() != null ? product.getReorderPoint() : 0.0;
+        return Math.max(minimum, computed);
+    }
+
+    /**
+     * Quantity to order now to bring the product back to its order-up-to level.
+     */
+    public static double suggestedQuantityOf(Product product) {
+        double stock = product.getQuantityInStock() != null ? product.getQuantityInStock() : 0.0;
+        double upTo = product.getReorderUpTo() != null ? product.getReorderUpTo() : 0.0;
+        return Math.max(0, Math.max(upTo, reorderLevelOf(product)) - stock);
+    }
+
+    private static long readLastRunDay() {
+        try (Connection conn = DatabaseManager.openConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT last_run_day FROM reorder_state WHERE id = 1")) {
+            return rs.next() ? rs.getLong(1) : -1L;
+        } catch (SQLException e) {
+            logger.warn("Failed to read last reorder refresh day", e);
+            return -1L;
+        }
+    }
+
+    private static void saveLastRunDay(long day) throws SQLException {
+        try (Connection conn = DatabaseManager.openConnection();
+             PreparedStatement ps = conn.prepareStatement("INSERT INTO reorder_state (id, last_run_day) VALUES (1, ?)"
+                     + " ON CONFLICT (id) DO UPDATE SET last_run_day = excluded.last_run_day")) {
+            ps.setLong(1, day);
+            ps.executeUpdate();
+        }
+    }
+
+    private static long lastRunMillis() throws SQLException {
+        try (Connection conn = DatabaseManager.openConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(reorder_updated_at), 0) FROM products")) {
+            return rs.next() ? rs.getLong(1) : 0L;
+        }
+    }
+
+    /**
+     * Products to recompute, with the quantity each sold per day of the window. A product
+     * without sales since the last run and without a demand rate keeps its (empty) levels.
+     */
+    private ProductBatch loadDemand(Connection conn, List<Integer> years, long lastRun,
+            long windowStart, long windowEnd) throws SQLException {
+        String saleDate = SqliteDates.epochMillis("s.sale_date");
+        String candidates = "SELECT p.id, " + SqliteDates.epochMillis("p.created_at") + ", p.maximum_stock"
+                + " FROM main.products p WHERE p.is_active = 1";
+        if (lastRun > 0) {
+            candidates += " AND (COALESCE(p.daily_demand, 0) > 0 OR p.reorder_updated_at IS NULL OR p.id IN ("
+                    + "SELECT si.product_id FROM main.sales s JOIN main.sale_items si ON si.sale_id = s.id"
+                    + " WHERE " + saleDate + " >= " + lastRun + "))";
+        }
+        ProductBatch batch = new ProductBatch();
+        try (PreparedStatement ps = conn.prepareStatement(candidates + " ORDER BY p.id");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                batch.add(rs.getLong(1), rs.getLong(2), rs.getObject(3) != null ? rs.getDouble(3) : 0.0);
+            }
+        }
+        batch.allocate(windowDays);
+        if (batch.size() == 0) {
+            return batch;
+        }
+
+        String sql = FiscalArchives.unionAll("SELECT si.product_id, (" + saleDate + " - ?) / " + DAY_MILLIS + ","
+                + " SUM(si.quantity) FROM {db}.sales s JOIN {db}.sale_items si ON si.sale_id = s.id"
+                + " WHERE " + saleDate + " >= ? AND " + saleDate + " < ? GROUP BY 1, 2", years);
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int p = 1;
+            for (int n = 0; n <= years.size(); n++) {
+                ps.setLong(p++, windowStart);
+                ps.setLong(p++, windowStart);
+                ps.setLong(p++, windowEnd);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    int index = Arrays.binarySearch(batch.ids, 0, batch.size(), rs.getLong(1));
+                    int day = rs.getInt(2);
+                    if (index >= 0 && day >= 0 && day < windowDays) {
+                        batch.demand[index * windowDays + day] += rs.getDouble(3);
+                    }
+                }
+            }
+        }
+        batch.windowEnd = windowEnd;
+        return batch;
+    }
+
+    private void compute(ProductBatch batch, int i) {
+        // Days the product could have sold: the window, or since it was created
+        long age = (batch.windowEnd - batch.createdAt[i]) / DAY_MILLIS;
+        int days = (int) Math.max(MIN_HISTORY_DAYS, Math.min(windowDays, batch.createdAt[i] > 0 ? age : windowDays));
+        int from = i * windowDays + windowDays - days;
+        int to = (i + 1) * windowDays;
+
+        double sum = 0;
+        for (int d = from; d < to; d++) {
+            sum += batch.demand[d];
+        }
+        double mean = sum / days;
+        double squares = 0;
+        for (int d = from; d < to; d++) {
+            double diff = batch.demand[d] - mean;
+            squares += diff * diff;
+        }
+        double sigma = Math.sqrt(squares / (days - 1));
+
+        double reorderPoint = roundUp(mean * leadTimeDays + safetyFactor * sigma * Math.sqrt(leadTimeDays));
+        double upTo = roundUp(reorderPoint + mean * coverDays);
+        if (batch.maximumStock[i] > 0) {
+            upTo = Math.max(reorderPoint, Math.min(upTo, batch.maximumStock[i]));
+        }
+        batch.rate[i] = mean;
+        batch.reorderPoint[i] = reorderPoint;
+        batch.upTo[i] = upTo;
+    }
+
+    private static double roundUp(double quantity) {
+        return Math.ceil(quantity - 1e-9);
+    }
+
+    private static void store(ProductBatch batch) throws SQLException {
+        long now = System.currentTimeMillis();
+        try (Connection conn = DatabaseManager.openConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement("UPDATE products SET daily_demand = ?, reorder_point = ?,"
+                    + " reorder_up_to = ?, reorder_updated_at = ? WHERE id = ?")) {
+                for (int i = 0; i < batch.size(); i++) {
+                    ps.setDouble(1, batch.rate[i]);
+                    ps.setDouble(2, batch.reorderPoint[i]);
+                    ps.setDouble(3, batch.upTo[i]);
+                    ps.setLong(4, now);
+                    ps.setLong(5, batch.ids[i]);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Column-wise state of one refresh: product i owns demand[i * window .. (i + 1) * window),
+     * one slot per day, oldest first.
+     */
+    private static final class ProductBatch {
+        private long[] ids = new long[64];
+        private long[] createdAt = new long[64];
+        private double[] maximumStock = new double[64];
+        private int size;
+        private long windowEnd;
+        private double[] demand;
+        private double[] rate;
+        private double[] reorderPoint;
+        private double[] upTo;
+
+        void add(long id, long created, double maximum) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                createdAt = Arrays.copyOf(createdAt, size * 2);
+                maximumStock = Arrays.copyOf(maximumStock, size * 2);
+            }
+            ids[size] = id;
+            createdAt[size] = created;
+            maximumStock[size] = maximum;
+            size++;
+        }
+
+        void allocate(int windowDays) {
+            demand = new double[size * windowDays];
+            rate = new double[size];
+            reorderPoint = new double[size];
+            upTo = new double[size];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid reorder setting: {}", value);
+            }
+        }
+        return defaultValue;
+    }
+
+    private static double parseDouble(String value, double defaultValue) {
+        if (value != null) {
+            try {
+                return Double.parseDouble(value.trim());
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid reorder setting: {}", value);
+            }
+        }
+        return defaultValue;
+    }
+}
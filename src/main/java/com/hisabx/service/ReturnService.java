@@ -58,9 +58,15 @@ public class ReturnService {
                 totalReturnAmount += item.getTotalPrice();
                 returnItems.add(item);
 
-                // Update inventory - add returned items back to stock
+                // Update inventory - add returned items back to stock at the cost they were sold at
                 if ("GOOD".equals(item.getConditionStatus())) {
-                    inventoryService.addStock(item.getProduct().getId(), item.getQuantity());
+                    StockMovement movement = new StockMovement(StockMovementType.SALE_RETURN, null, saleReturn.getReturnCode());
+                    movement.setLocationId(sale.getLocationId());
+                    movement.setUnitCost(InventoryCosting.unitCostOf(item.getOriginalSaleItem()));
+                    inventoryService.addStock(item.getProduct().getId(), item.getQuantity(), movement);
+                    item.setCostAmount(movement.getCostAmount());
+                } else {
+                    item.setCostAmount(0.0);
                 }
             }
 
@@ -69,6 +75,7 @@ public class ReturnService {
 
             SaleReturn savedReturn = returnRepository.save(saleReturn);
             logger.info("Created return: {} with amount: {}", savedReturn.getReturnCode(), totalReturnAmount);
+            DomainEventBus.getInstance().publish(new DomainEvent.ReturnChanged(savedReturn.getId(), sale.getId()));
             return savedReturn;
         } catch (Exception e) {
             logger.error("Failed to create return", e);
@@ -102,6 +109,7 @@ public class ReturnService {
             saleReturn.setReturnStatus(status);
             saleReturn.setUpdatedAt(LocalDateTime.now());
             returnRepository.save(saleReturn);
+            DomainEventBus.getInstance().publish(new DomainEvent.ReturnChanged(returnId, saleReturn.getSale() != null ? saleReturn.getSale().getId() : null));
         }
     }
 
@@ -109,6 +117,7 @@ public class ReturnService {
         SaleReturn saleReturn = returnRepository.findById(returnId).orElse(null);
         if (saleReturn != null) {
             returnRepository.delete(saleReturn);
+            DomainEventBus.getInstance().publish(new DomainEvent.ReturnChanged(returnId, saleReturn.getSale() != null ? saleReturn.getSale().getId() : null));
         }
     }
 
@@ -4,13 +4,26 @@ import com.hisabx.database.Repository.SaleRepository;
 import com.hisabx.database.Repository.CustomerRepository;
 import com.hisabx.database.Repository.ProductRepository;
 import com.hisabx.database.Repository.SaleItemRepository;
+import com.hisabx.database.DatabaseManager;
+import com.hisabx.database.FiscalArchives;
+import com.hisabx.database.ReportingDatabase;
+import com.hisabx.database.SqliteDates;
 import com.hisabx.model.*;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public class SalesService {
@@ -31,96 +44,129 @@ public class SalesService {
         this.customerService = new CustomerService();
     }
     
+    /**
+     * Save a sale, take its lines out of stock and post the balance to the customer in one
+     * transaction: a line without stock, or any other failure, leaves no stock moved. Every
+     * stock movement carries the sale id.
+     */
     public Sale createSale(SaleRequest saleRequest) {
         logger.info("Creating new sale for customer: {}", saleRequest.getCustomerId());
-        
-        // Validate customer exists
-        Optional<Customer> customerOpt = customerRepository.findById(saleRequest.getCustomerId());
-        if (customerOpt.isEmpty()) {
-            throw new IllegalArgumentException("العميل غير موجود");
-        }
-        
-        Customer customer = customerOpt.get();
-        
-        // Create sale
+
+        String saleCode = generateSaleCode();
+        Long locationId = saleRequest.getLocationId() != null
+                ? saleRequest.getLocationId() : new StockLocationService().getDefaultLocation().getId();
         Sale sale = new Sale();
-        sale.setSaleCode(generateSaleCode());
-        sale.setCustomer(customer);
-        sale.setProjectLocation(saleRequest.getProjectLocation());
-        sale.setPaymentMethod(saleRequest.getPaymentMethod());
-        sale.setCurrency(saleRequest.getCurrency() != null ? saleRequest.getCurrency() : "دينار");
-        sale.setNotes(saleRequest.getNotes());
-        sale.setCreatedBy(saleRequest.getCreatedBy());
-        
         List<SaleItem> saleItems = new ArrayList<>();
-        double totalAmount = 0.0;
-        
-        // Process sale items
-        for (SaleItemRequest itemRequest : saleRequest.getItems()) {
-            Optional<Product> productOpt = productRepository.findById(itemRequest.getProductId());
-            if (productOpt.isEmpty()) {
-                throw new IllegalArgumentException("المنتج غير موجود: " + itemRequest.getProductId());
-            }
-            
-            Product product = productOpt.get();
-            
-            // Check stock availability
-            if (!inventoryService.isStockAvailable(product.getId(), itemRequest.getQuantity())) {
-                throw new IllegalArgumentException("الكمية غير متوفرة للمنتج: " + product.getName());
+        try (Session session = DatabaseManager.getSessionFactory().openSession()) {
+            Transaction transaction = session.beginTransaction();
+            try {
+                // Validate customer exists
+                Customer customer = session.get(Customer.class, saleRequest.getCustomerId());
+                if (customer == null) {
+                    throw new IllegalArgumentException("العميل غير موجود");
+                }
+
+                // Create sale
+                sale.setSaleCode(saleCode);
+                sale.setCustomer(customer);
+                sale.setProjectLocation(saleRequest.getProjectLocation());
+                sale.setPaymentMethod(saleRequest.getPaymentMethod());
+                sale.setCurrency(saleRequest.getCurrency() != null ? saleRequest.getCurrency() : "دينار");
+                sale.setNotes(saleRequest.getNotes());
+                sale.setCreatedBy(saleRequest.getCreatedBy());
+                sale.setLocationId(locationId);
+
+                double totalAmount = 0.0;
+
+                // Price the sale items
+                for (SaleItemRequest itemRequest : saleRequest.getItems()) {
+                    Product product = session.get(Product.class, itemRequest.getProductId());
+                    if (product == null) {
+                        throw new IllegalArgumentException("المنتج غير موجود: " + itemRequest.getProductId());
+                    }
+                    if (!Boolean.TRUE.equals(product.getIsActive())) {
+                        throw new IllegalArgumentException("الكمية غير متوفرة للمنتج: " + product.getName());
+                    }
+
+                    // Create sale item
+                    SaleItem saleItem = new SaleItem();
+                    saleItem.setSale(sale);
+                    saleItem.setProduct(product);
+                    saleItem.setQuantity(itemRequest.getQuantity());
+
+                    // Use price from request, fallback to product price if null (though it should be provided)
+                    double unitPrice = itemRequest.getUnitPrice() != null ? itemRequest.getUnitPrice() : product.getUnitPrice();
+                    saleItem.setUnitPrice(unitPrice);
+
+                    saleItem.setDiscountPercentage(itemRequest.getDiscountPercentage());
+
+                    // Calculate total price with discount
+                    double itemTotal = unitPrice * itemRequest.getQuantity();
+                    double discountAmount = itemTotal * (itemRequest.getDiscountPercentage() / 100.0);
+                    saleItem.setDiscountAmount(discountAmount);
+                    saleItem.setTotalPrice(itemTotal - discountAmount);
+
+                    saleItems.add(saleItem);
+                    totalAmount += saleItem.getTotalPrice();
+                }
+
+                // Set sale totals (no tax)
+                sale.setTotalAmount(totalAmount);
+                sale.setDiscountAmount(saleRequest.getAdditionalDiscount() != null ? saleRequest.getAdditionalDiscount() : 0.0);
+                sale.setTaxAmount(0.0);
+                sale.setFinalAmount(totalAmount - sale.getDiscountAmount());
+
+                double paidAmount = saleRequest.getPaidAmount() != null ? saleRequest.getPaidAmount() : 0.0;
+                sale.setPaidAmount(paidAmount);
+                sale.setPaymentStatus(paidAmount + 1e-9 >= sale.getFinalAmount() ? "PAID" : "PENDING");
+
+                // Saved first so the stock movements can point at it
+                session.save(sale);
+
+                // Update inventory; the line keeps the cost the stock went out at
+                for (SaleItem saleItem : saleItems) {
+                    Product product = saleItem.getProduct();
+                    StockMovement movement = new StockMovement(StockMovementType.SALE, sale.getId(), sale.getSaleCode());
+                    movement.setLocationId(locationId);
+                    try {
+                        InventoryService.removeStock(session, product.getId(), saleItem.getQuantity(), movement);
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException("الكمية غير متوفرة للمنتج: " + product.getName(), e);
+                    }
+                    saleItem.setCostAmount(-movement.getCostAmount());
+                    session.save(saleItem);
+                }
+
+                // Update customer balance by the difference (credit/debt)
+                // current_balance > 0 => credit for customer (we owe), < 0 => debt on customer
+                double balanceChange = paidAmount - sale.getFinalAmount();
+                if ("دولار".equals(sale.getCurrency()) || "USD".equalsIgnoreCase(sale.getCurrency())) {
+                    customer.setBalanceUsd(customer.getBalanceUsd() + balanceChange);
+                } else {
+                    customer.setBalanceIqd(customer.getBalanceIqd() + balanceChange);
+                    // Also update legacy current_balance for IQD
+                    customer.setCurrentBalance(customer.getCurrentBalance() + balanceChange);
+                }
+
+                transaction.commit();
+            } catch (RuntimeException e) {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+                if (e instanceof IllegalArgumentException) {
+                    throw e;
+                }
+                logger.error("Failed to create sale {}", saleCode, e);
+                throw new RuntimeException("فشل في حفظ الفاتورة: " + e.getMessage(), e);
             }
-            
-            // Create sale item
-            SaleItem saleItem = new SaleItem();
-            saleItem.setSale(sale);
-            saleItem.setProduct(product);
-            saleItem.setQuantity(itemRequest.getQuantity());
-            
-            // Use price from request, fallback to product price if null (though it should be provided)
-            double unitPrice = itemRequest.getUnitPrice() != null ? itemRequest.getUnitPrice() : product.getUnitPrice();
-            saleItem.setUnitPrice(unitPrice);
-            
-            saleItem.setDiscountPercentage(itemRequest.getDiscountPercentage());
-            
-            // Calculate total price with discount
-            double itemTotal = unitPrice * itemRequest.getQuantity();
-            double discountAmount = itemTotal * (itemRequest.getDiscountPercentage() / 100.0);
-            saleItem.setDiscountAmount(discountAmount);
-            saleItem.setTotalPrice(itemTotal - discountAmount);
-            
-            saleItems.add(saleItem);
-            totalAmount += saleItem.getTotalPrice();
-            
-            // Update inventory
-            inventoryService.removeStock(product.getId(), itemRequest.getQuantity());
         }
-        
-        // Set sale totals (no tax)
-        sale.setTotalAmount(totalAmount);
-        sale.setDiscountAmount(saleRequest.getAdditionalDiscount() != null ? saleRequest.getAdditionalDiscount() : 0.0);
-        sale.setTaxAmount(0.0);
-        sale.setFinalAmount(totalAmount - sale.getDiscountAmount());
-
-        double paidAmount = saleRequest.getPaidAmount() != null ? saleRequest.getPaidAmount() : 0.0;
-        sale.setPaidAmount(paidAmount);
-        sale.setPaymentStatus(paidAmount + 1e-9 >= sale.getFinalAmount() ? "PAID" : "PENDING");
-        
-        // Save sale and items
-        Sale savedSale = saleRepository.save(sale);
-        saleItems.forEach(item -> {
-            item.setSale(savedSale);
-            saleItemRepository.save(item);
-        });
 
-        // Update customer balance by the difference (credit/debt)
-        // current_balance > 0 => credit for customer (we owe), < 0 => debt on customer
-        customerService.updateCustomerBalanceByCurrency(
-            customer.getId(),
-            paidAmount - sale.getFinalAmount(),
-            sale.getCurrency()
-        );
-        
-        logger.info("Sale created successfully: {}", savedSale.getSaleCode());
-        return savedSale;
+        logger.info("Sale created successfully: {}", sale.getSaleCode());
+        DomainEventBus bus = DomainEventBus.getInstance();
+        saleItems.forEach(item -> bus.publish(new DomainEvent.StockChanged(item.getProduct().getId())));
+        bus.publish(new DomainEvent.CustomerUpdated(sale.getCustomer().getId(), false));
+        bus.publish(new DomainEvent.SaleCreated(sale.getId(), sale.getCustomer().getId()));
+        return sale;
     }
     
     public Optional<Sale> getSaleById(Long id) {
@@ -136,6 +182,104 @@ public class SalesService {
         return saleRepository.findAllWithCustomer();
     }
     
+    /**
+     * Sales dated within [from, to], including those in archived fiscal years; archived sales
+     * are read-only copies.
+     */
+    public List<Sale> getSalesBetween(LocalDateTime from, LocalDateTime to) {
+        long fromMillis = SqliteDates.toMillis(from);
+        long toMillis = SqliteDates.toMillis(to) + 1;
+        try {
+            return ReportingDatabase.getInstance().readWithArchives(fromMillis, toMillis,
+                    (conn, years) -> readSales(conn, years, fromMillis, toMillis));
+        } catch (SQLException e) {
+            logger.error("Failed to load sales report", e);
+            throw new RuntimeException("فشل في تحميل تقرير المبيعات", e);
+        }
+    }
+
+    /**
+     * Detached Sale objects with their lines, customer and product names - enough for reports,
+     * not for editing.
+     */
+    private static List<Sale> readSales(Connection conn, List<Integer> years, long fromMillis, long toMillis)
+            throws SQLException {
+        String saleDate = SqliteDates.epochMillis("s.sale_date");
+        Map<String, Sale> sales = new LinkedHashMap<>();
+        String saleSql = FiscalArchives.unionAll("SELECT '{db}', s.id, s.sale_code, s.sale_date, s.currency,"
+                + " s.project_location, s.total_amount, s.discount_amount, s.final_amount, s.paid_amount,"
+                + " s.payment_method, s.payment_status, s.notes, s.customer_id, c.name"
+                + " FROM {db}.sales s LEFT JOIN main.customers c ON c.id = s.customer_id"
+                + " WHERE " + saleDate + " >= ? AND " + saleDate + " < ?", years);
+        try (PreparedStatement ps = conn.prepareStatement(saleSql)) {
+            bindRange(ps, years.size() + 1, fromMillis, toMillis);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Sale sale = new Sale();
+                    sale.setId(rs.getLong(2));
+                    sale.setSaleCode(rs.getString(3));
+                    sale.setSaleDate(SqliteDates.toLocalDateTime(rs.getObject(4)));
+                    sale.setCurrency(rs.getString(5));
+                    sale.setProjectLocation(rs.getString(6));
+                    sale.setTotalAmount(rs.getDouble(7));
+                    sale.setDiscountAmount(rs.getDouble(8));
+                    sale.setFinalAmount(rs.getDouble(9));
+                    sale.setPaidAmount(rs.getDouble(10));
+                    sale.setPaymentMethod(rs.getString(11));
+                    sale.setPaymentStatus(rs.getString(12));
+                    sale.setNotes(rs.getString(13));
+                    Customer customer = new Customer();
+                    customer.setId(rs.getLong(14));
+                    customer.setName(rs.getString(15));
+                    sale.setCustomer(customer);
+                    sale.setSaleItems(new ArrayList<>());
+                    sales.put(rs.getString(1) + ":" + sale.getId(), sale);
+                }
+            }
+        }
+
+        String itemSql = FiscalArchives.unionAll("SELECT '{db}', si.sale_id, si.quantity, si.unit_price,"
+                + " si.total_price, si.discount_amount, si.product_id, p.name"
+                + " FROM {db}.sale_items si JOIN {db}.sales s ON s.id = si.sale_id"
+                + " LEFT JOIN main.products p ON p.id = si.product_id"
+                + " WHERE " + saleDate + " >= ? AND " + saleDate + " < ?", years);
+        try (PreparedStatement ps = conn.prepareStatement(itemSql)) {
+            bindRange(ps, years.size() + 1, fromMillis, toMillis);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Sale sale = sales.get(rs.getString(1) + ":" + rs.getLong(2));
+                    if (sale == null) {
+                        continue;
+                    }
+                    SaleItem item = new SaleItem();
+                    item.setSale(sale);
+                    item.setQuantity(rs.getDouble(3));
+                    item.setUnitPrice(rs.getDouble(4));
+                    item.setTotalPrice(rs.getDouble(5));
+                    item.setDiscountAmount(rs.getDouble(6));
+                    if (rs.getString(8) != null) {
+                        Product product = new Product();
+                        product.setId(rs.getLong(7));
+                        product.setName(rs.getString(8));
+                        item.setProduct(product);
+                    }
+                    sale.getSaleItems().add(item);
+                }
+            }
+        }
+        List<Sale> result = new ArrayList<>(sales.values());
+        result.sort(Comparator.comparing(Sale::getSaleDate, Comparator.nullsLast(Comparator.reverseOrder())));
+        return result;
+    }
+
+    private static void bindRange(PreparedStatement ps, int parts, long fromMillis, long toMillis) throws SQLException {
+        int i = 1;
+        for (int n = 0; n < parts; n++) {
+            ps.setLong(i++, fromMillis);
+            ps.setLong(i++, toMillis);
+        }
+    }
+
     public List<Sale> getSalesByCustomerId(Long customerId) {
         return saleRepository.findByCustomerId(customerId);
     }
@@ -156,9 +300,12 @@ public class SalesService {
         if (saleOpt.isPresent()) {
             Sale sale = saleOpt.get();
             
-            // Restore inventory
+            // Restore inventory at the cost it was sold at
             for (SaleItem item : sale.getSaleItems()) {
-                inventoryService.addStock(item.getProduct().getId(), item.getQuantity());
+                StockMovement movement = new StockMovement(StockMovementType.SALE_DELETED, sale.getId(), sale.getSaleCode());
+                movement.setLocationId(sale.getLocationId());
+                movement.setUnitCost(InventoryCosting.unitCostOf(item));
+                inventoryService.addStock(item.getProduct().getId(), item.getQuantity(), movement);
             }
             
             // Revert customer balance effect of this sale
@@ -171,6 +318,7 @@ public class SalesService {
             
             saleRepository.delete(sale);
             logger.info("Sale deleted: {}", id);
+            DomainEventBus.getInstance().publish(new DomainEvent.SaleDeleted(id, sale.getCustomer().getId()));
         }
     }
     
@@ -190,7 +338,9 @@ public class SalesService {
                 sale.setPaidAmount(sale.getFinalAmount());
             }
             
-            return saleRepository.save(sale);
+            Sale saved = saleRepository.save(sale);
+            DomainEventBus.getInstance().publish(new DomainEvent.SaleUpdated(saleId, sale.getCustomer().getId()));
+            return saved;
         }
         throw new IllegalArgumentException("البيع غير موجود");
     }
@@ -224,6 +374,7 @@ public class SalesService {
     public static class SaleRequest {
         private Long customerId;
         private String projectLocation;
+        private Long locationId;
         private String paymentMethod;
         private String currency;
         private String notes;
@@ -238,6 +389,10 @@ public class SalesService {
 
         public String getProjectLocation() { return projectLocation; }
         public void setProjectLocation(String projectLocation) { this.projectLocation = projectLocation; }
+
+        /** Stock location the goods leave from; the default location when null. */
+        public Long getLocationId() { return locationId; }
+        public void setLocationId(Long locationId) { this.locationId = locationId; }
         
         public String getPaymentMethod() { return paymentMethod; }
         public void setPaymentMethod(String paymentMethod) { this.paymentMethod = paymentMethod; }
@@ -1,5 +1,6 @@
 package com.hisabx.service;
 
+import com.hisabx.database.QueryMetrics;
 import com.hisabx.model.*;
 import com.hisabx.model.dto.StatementItem;
 import org.slf4j.Logger;
@@ -19,12 +20,14 @@ public class StatementService {
     private final VoucherService voucherService;
     private final ReturnService returnService;
     private final CustomerService customerService;
+    private final FiscalArchiveService archiveService;
 
     public StatementService() {
         this.salesService = new SalesService();
         this.voucherService = new VoucherService();
         this.returnService = new ReturnService();
         this.customerService = new CustomerService();
+        this.archiveService = FiscalArchiveService.getInstance();
     }
 
     /**
@@ -48,6 +51,12 @@ public class StatementService {
      */
     public List<StatementItem> getStatement(Long customerId, String projectLocation, String currency,
             LocalDateTime from, LocalDateTime to) {
+        return QueryMetrics.time("StatementService.getStatement",
+                () -> buildStatement(customerId, projectLocation, currency, from, to));
+    }
+
+    private List<StatementItem> buildStatement(Long customerId, String projectLocation, String currency,
+            LocalDateTime from, LocalDateTime to) {
         List<StatementItem> items = new ArrayList<>();
 
         if (currency == null || currency.isEmpty()) {
@@ -149,11 +158,17 @@ public class StatementService {
                     ret));
         }
 
+        // Archived years: documents inside the range are read from their archives, earlier
+        // years only contribute their carry-forward balance
+        FiscalArchiveService.ArchivedStatement archived =
+                archiveService.loadStatement(customerId, projectLocation, currency, from, to);
+        items.addAll(archived.getItems());
+
         // Sort by Date
         items.sort(Comparator.comparing(StatementItem::getDate));
 
         // Calculate Running Balance
-        double balance = 0.0;
+        double balance = archived.getCarryForward();
         List<StatementItem> allItemsWithBalance = new ArrayList<>();
 
         for (StatementItem item : items) {
@@ -172,7 +187,7 @@ public class StatementService {
 
         // If start date is provided, add Opening Balance row
         if (from != null) {
-            double openingBal = 0.0;
+            double openingBal = archived.getCarryForward();
             // Find the balance right before 'from' date
             for (StatementItem item : allItemsWithBalance) {
                 if (item.getDate().isBefore(from)) {
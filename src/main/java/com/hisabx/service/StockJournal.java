@@ -0,0 +1,169 @@
+package com.hisabx.service;
+
+import com.hisabx.database.SqliteDates;
+import com.hisabx.model.Product;
+import com.hisabx.model.StockMovement;
+import com.hisabx.util.SessionManager;
+import org.hibernate.Session;
+import org.hibernate.query.Query;
+
+import java.util.List;
+
+/**
+ * دفتر حركات المخزون - every change to products.quantity_in_stock goes through here, inside the
+ * caller's transaction, so the stock and its journal line commit or roll back together.
+ *
+ * Every {@link #CHECKPOINT_INTERVAL} movements of a product a checkpoint stores the journal
+ * balance up to that movement; stock at any date is then the last checkpoint before it plus
+ * at most that many movements.
+ *
+ * Each movement is also costed by {@link InventoryCosting}, keeping cost layers, the average
+ * cost and the stock value of the product in the same transaction. A movement belongs to a
+ * stock location (the default one when it has none); a database trigger adds it to that
+ * location's stock.
+ */
+public final class StockJournal {
+    public static final int CHECKPOINT_INTERVAL = 100;
+
+    static final String DEFAULT_LOCATION = "(SELECT id FROM stock_locations WHERE is_default = 1)";
+
+    private StockJournal() {}
+
+    /**
+     * Change a product's stock by {@code delta} and journal it.
+     *
+     * @return the updated product, attached to the session
+     */
+    public static Product apply(Session session, Long productId, double delta, StockMovement movement) {
+        Product product = session.get(Product.class, productId);
+        if (product == null) {
+            throw new IllegalArgumentException("المنتج غير موجود");
+        }
+        double current = product.getQuantityInStock() == null ? 0.0 : product.getQuantityInStock();
+        product.setQuantityInStock(current + delta);
+        session.saveOrUpdate(product);
+        record(session, productId, delta, movement);
+        return product;
+    }
+
+    /**
+     * Journal a change the caller already made to the product's stock.
+     */
+    public static void record(Session session, Long productId, double delta, StockMovement movement) {
+        if (Math.abs(delta) < 1e-9) {
+            return;
+        }
+        Product product = session.get(Product.class, productId);
+        movement.setProductId(productId);
+        movement.setQuantity(delta);
+        if (movement.getCreatedBy() == null) {
+            movement.setCreatedBy(SessionManager.getInstance().getCurrentUsername());
+        }
+        session.save(movement);
+        InventoryCosting.apply(session, product, delta, movement);
+        checkpointIfDue(session, productId, movement);
+    }
+
+    /**
+     * Journal a change the caller already made to the product's total stock, for callers that do
+     * not choose a location (the product card). Stock added goes to the default location. Stock
+     * taken comes from the default location first and then from the locations holding the most,
+     * one movement each, so no location goes below zero while the total still covers it.
+     */
+    public static void recordTotal(Session session, Long productId, double delta, StockMovement movement) {
+        if (delta >= 0 || movement.getLocationId() != null) {
+            record(session, productId, delta, movement);
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        List<Object[]> held = session.createNativeQuery("SELECT location_id, quantity FROM location_stock"
+                        + " WHERE product_id = :productId AND quantity > 0"
+                        + " ORDER BY location_id = " + DEFAULT_LOCATION + " DESC, quantity DESC, location_id")
+                .setParameter("productId", productId)
+                .list();
+        double remaining = -delta;
+        StockMovement next = movement;
+        for (Object[] row : held) {
+            double take = Math.min(remaining, ((Number) row[1]).doubleValue());
+            next.setLocationId(((Number) row[0]).longValue());
+            record(session, productId, -take, next);
+            remaining -= take;
+            if (remaining < 1e-9) {
+                return;
+            }
+            next = copyOf(movement);
+        }
+        // More taken than is held anywhere: the rest comes from the default location
+        next.setLocationId(null);
+        record(session, productId, -remaining, next);
+    }
+
+    /**
+     * Move stock between two locations: one movement out of {@code from} and one into {@code to}
+     * with the same reference. The product's total stock and its cost are unchanged, so the
+     * movements carry no cost and skip costing.
+     */
+    static void transfer(Session session, Long productId, double quantity, Long from, Long to, StockMovement template) {
+        for (int side = 0; side < 2; side++) {
+            StockMovement movement = copyOf(template);
+            movement.setProductId(productId);
+            movement.setLocationId(side == 0 ? from : to);
+            movement.setQuantity(side == 0 ? -quantity : quantity);
+            movement.setUnitCost(0.0);
+            movement.setCostAmount(0.0);
+            session.save(movement);
+            checkpointIfDue(session, productId, movement);
+        }
+    }
+
+    /**
+     * Stock of a product at a location (the default location when null): one primary-key lookup.
+     */
+    public static double locationStock(Session session, Long productId, Long locationId) {
+        Query<?> query = session.createNativeQuery("SELECT quantity FROM location_stock WHERE product_id = :productId"
+                        + " AND location_id = " + (locationId != null ? ":locationId" : DEFAULT_LOCATION))
+                .setParameter("productId", productId);
+        if (locationId != null) {
+            query.setParameter("locationId", locationId);
+        }
+        Number quantity = (Number) query.uniqueResult();
+        return quantity != null ? quantity.doubleValue() : 0.0;
+    }
+
+    private static StockMovement copyOf(StockMovement template) {
+        StockMovement movement = new StockMovement(template.getMovementType(), template.getSourceId(),
+                template.getReference());
+        movement.setMovementDate(template.getMovementDate());
+        movement.setCreatedBy(template.getCreatedBy() != null
+                ? template.getCreatedBy() : SessionManager.getInstance().getCurrentUsername());
+        movement.setNotes(template.getNotes());
+        return movement;
+    }
+
+    private static void checkpointIfDue(Session session, Long productId, StockMovement movement) {
+        Object[] last = (Object[]) session.createNativeQuery(
+                "SELECT movement_id, quantity FROM stock_checkpoints WHERE product_id = :productId"
+                        + " ORDER BY movement_id DESC LIMIT 1")
+                .setParameter("productId", productId)
+                .uniqueResult();
+        long lastMovementId = last != null ? ((Number) last[0]).longValue() : 0L;
+        double lastBalance = last != null ? ((Number) last[1]).doubleValue() : 0.0;
+        Object[] since = (Object[]) session.createNativeQuery(
+                "SELECT COUNT(*), COALESCE(SUM(quantity), 0) FROM stock_movements"
+                        + " WHERE product_id = :productId AND id > :lastMovementId")
+                .setParameter("productId", productId)
+                .setParameter("lastMovementId", lastMovementId)
+                .uniqueResult();
+        if (((Number) since[0]).longValue() < CHECKPOINT_INTERVAL) {
+            return;
+        }
+        double balance = lastBalance + ((Number) since[1]).doubleValue();
+        session.createNativeQuery("INSERT INTO stock_checkpoints (product_id, movement_id, checkpoint_date, quantity)"
+                        + " VALUES (:productId, :movementId, :checkpointDate, :quantity)")
+                .setParameter("productId", productId)
+                .setParameter("movementId", movement.getId())
+                .setParameter("checkpointDate", SqliteDates.toMillis(movement.getMovementDate()))
+                .setParameter("quantity", balance)
+                .executeUpdate();
+    }
+}
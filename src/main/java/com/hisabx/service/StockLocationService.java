@@ -0,0 +1,234 @@
+package com.hisabx.service;
+
+import com.hisabx.database.DatabaseManager;
+import com.hisabx.database.ReportingDatabase;
+import com.hisabx.database.Repository.StockLocationRepository;
+import com.hisabx.database.SqliteDates;
+import com.hisabx.model.StockLocation;
+import com.hisabx.model.StockMovement;
+import com.hisabx.model.StockMovementType;
+import com.hisabx.model.dto.StockTransfer;
+import com.hisabx.util.SessionManager;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * المخازن - stock per location and transfers between locations.
+ *
+ * Every stock movement belongs to a location and a trigger adds it to location_stock, so the
+ * stock at a location is read with one primary-key lookup and never summed from the journal.
+ * products.quantity_in_stock remains the total over all locations. A transfer journals the
+ * same quantity out of one location and into another, leaving the total and its cost as they are.
+ */
+public class StockLocationService {
+    private static final Logger logger = LoggerFactory.getLogger(StockLocationService.class);
+    private static final double EPSILON = 0.000001;
+
+    // Forms ask for the locations on every open; kept until one is added or renamed here
+    private static volatile List<StockLocation> cachedLocations;
+
+    private final StockLocationRepository locationRepository;
+
+    public StockLocationService() {
+        this.locationRepository = new StockLocationRepository();
+    }
+
+    /** Active locations, the default one first. */
+    public List<StockLocation> getLocations() {
+        List<StockLocation> locations = cachedLocations;
+        if (locations == null) {
+            locations = List.copyOf(locationRepository.findActive());
+            cachedLocations = locations;
+        }
+        return locations;
+    }
+
+    public StockLocation getDefaultLocation() {
+        return getLocations().stream()
+                .filter(l -> Boolean.TRUE.equals(l.getIsDefault()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("لا يوجد موقع مخزون افتراضي"));
+    }
+
+    /** Whether documents need a location chosen: only once there is more than one. */
+    public boolean hasMultipleLocations() {
+        return getLocations().size() > 1;
+    }
+
+    public StockLocation createLocation(String name) {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("اسم الموقع مطلوب");
+        }
+        String trimmed = name.trim();
+        if (locationRepository.findByName(trimmed).isPresent()) {
+            throw new IllegalArgumentException("اسم الموقع مستخدم بالفعل");
+        }
+        StockLocation saved = locationRepository.save(new StockLocation(trimmed));
+        cachedLocations = null;
+        logger.info("Stock location created: {}", trimmed);
+        return saved;
+    }
+
+    public StockLocation renameLocation(StockLocation location, String name) {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("اسم الموقع مطلوب");
+        }
+        String trimmed = name.trim();
+        locationRepository.findByName(trimmed)
+                .filter(existing -> !existing.getId().equals(location.getId()))
+                .ifPresent(existing -> {
+                    throw new IllegalArgumentException("اسم الموقع مستخدم بالفعل");
+                });
+        location.setName(trimmed);
+        StockLocation saved = locationRepository.save(location);
+        cachedLocations = null;
+        return saved;
+    }
+
+    /**
+     * Stock of a product at a location (the default location when null), read from the live
+     * database so a transfer is checked against the balance it will post to.
+     */
+    public double getStock(Long productId, Long locationId) {
+        try (Session session = DatabaseManager.getSessionFactory().openSession()) {
+            return StockJournal.locationStock(session, productId, locationId);
+        } catch (RuntimeException e) {
+            logger.error("Failed to read stock of product {} at location {}", productId, locationId, e);
+            throw new RuntimeException("تعذر قراءة مخزون الموقع", e);
+        }
+    }
+
+    /**
+     * Stock of a product at every location holding or owing some, by location name.
+     */
+    public Map<String, Double> getStockByLocation(Long productId) {
+        try {
+            return ReportingDatabase.getInstance().read(conn -> {
+                Map<String, Double> stock = new LinkedHashMap<>();
+                try (PreparedStatement ps = conn.prepareStatement("SELECT l.name, s.quantity FROM location_stock s"
+                        + " JOIN stock_locations l ON l.id = s.location_id WHERE s.product_id = ?"
+                        + " AND ABS(s.quantity) > " + EPSILON + " ORDER BY l.is_default DESC, l.name")) {
+                    ps.setLong(1, productId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            stock.put(rs.getString(1), rs.getDouble(2));
+                        }
+                    }
+                }
+                return stock;
+            });
+        } catch (SQLException e) {
+            logger.error("Failed to read location stock of product {}", productId, e);
+            throw new RuntimeException("تعذر قراءة مخزون المواقع", e);
+        }
+    }
+
+    /**
+     * Move quantities of products from one location to another in one transaction. Every line
+     * must be covered by the stock at the source location.
+     *
+     * @param quantities quantity per product id
+     * @return the transfer id
+     */
+    public long transfer(Long fromLocationId, Long toLocationId, Map<Long, Double> quantities, String notes) {
+        if (fromLocationId == null || toLocationId == null) {
+            throw new IllegalArgumentException("اختر موقع المصدر وموقع الوجهة");
+        }
+        if (fromLocationId.equals(toLocationId)) {
+            throw new IllegalArgumentException("موقع المصدر والوجهة متطابقان");
+        }
+        if (quantities == null || quantities.isEmpty()) {
+            throw new IllegalArgumentException("أضف منتجاً واحداً على الأقل");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        String user = SessionManager.getInstance().getCurrentUsername();
+        long transferId;
+        try (Session session = DatabaseManager.getSessionFactory().openSession()) {
+            Transaction tx = session.beginTransaction();
+            try {
+                session.createNativeQuery("INSERT INTO stock_transfers (transfer_date, from_location_id, to_location_id,"
+                                + " created_by, notes, item_count) VALUES (:date, :from, :to, :user, :notes, :count)")
+                        .setParameter("date", SqliteDates.toMillis(now))
+                        .setParameter("from", fromLocationId)
+                        .setParameter("to", toLocationId)
+                        .setParameter("user", user)
+                        .setParameter("notes", notes == null || notes.isBlank() ? "" : notes.trim())
+                        .setParameter("count", quantities.size())
+                        .executeUpdate();
+                transferId = ((Number) session.createNativeQuery("SELECT last_insert_rowid()").uniqueResult()).longValue();
+                StockMovement template = new StockMovement(StockMovementType.TRANSFER, transferId, "تحويل " + transferId);
+                template.setMovementDate(now);
+                template.setCreatedBy(user);
+                for (Map.Entry<Long, Double> line : quantities.entrySet()) {
+                    Long productId = line.getKey();
+                    double quantity = line.getValue() != null ? line.getValue() : 0.0;
+                    if (quantity <= EPSILON) {
+                        throw new IllegalArgumentException("الكمية يجب أن تكون أكبر من صفر");
+                    }
+                    if (StockJournal.locationStock(session, productId, fromLocationId) + EPSILON < quantity) {
+                        Object name = session.createNativeQuery("SELECT name FROM products WHERE id = :id")
+                                .setParameter("id", productId)
+                                .uniqueResult();
+                        throw new IllegalArgumentException("الكمية غير متوفرة في موقع المصدر للمنتج: " + name);
+                    }
+                    session.createNativeQuery("INSERT INTO stock_transfer_items (transfer_id, product_id, quantity)"
+                                    + " VALUES (:transferId, :productId, :quantity)")
+                            .setParameter("transferId", transferId)
+                            .setParameter("productId", productId)
+                            .setParameter("quantity", quantity)
+                            .executeUpdate();
+                    StockJournal.transfer(session, productId, quantity, fromLocationId, toLocationId, template);
+                }
+                tx.commit();
+            } catch (RuntimeException e) {
+                if (tx.isActive()) {
+                    tx.rollback();
+                }
+                if (e instanceof IllegalArgumentException) {
+                    throw e;
+                }
+                logger.error("Failed to transfer stock from {} to {}", fromLocationId, toLocationId, e);
+                throw new RuntimeException("فشل في تنفيذ التحويل", e);
+            }
+        }
+        logger.info("Stock transfer {} from {} to {}: {} products", transferId, fromLocationId, toLocationId,
+                quantities.size());
+        quantities.keySet().forEach(id -> DomainEventBus.getInstance().publish(new DomainEvent.StockChanged(id)));
+        return transferId;
+    }
+
+    public List<StockTransfer> getRecentTransfers(int limit) {
+        try {
+            return ReportingDatabase.getInstance().read(conn -> {
+                List<StockTransfer> transfers = new ArrayList<>();
+                try (PreparedStatement ps = conn.prepareStatement("SELECT t.id, t.transfer_date, f.name, d.name,"
+                        + " t.created_by, t.notes, t.item_count FROM stock_transfers t"
+                        + " LEFT JOIN stock_locations f ON f.id = t.from_location_id"
+                        + " LEFT JOIN stock_locations d ON d.id = t.to_location_id ORDER BY t.id DESC LIMIT ?")) {
+                    ps.setInt(1, limit);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            transfers.add(new StockTransfer(rs.getLong(1), SqliteDates.toLocalDateTime(rs.getObject(2)),
+                                    rs.getString(3), rs.getString(4), rs.getString(5), rs.getString(6), rs.getInt(7)));
+                        }
+                    }
+                }
+                return transfers;
+            });
+        } catch (SQLException e) {
+            logger.error("Failed to load stock transfers", e);
+            throw new RuntimeException("تعذر تحميل التحويلات", e);
+        }
+    }
+}
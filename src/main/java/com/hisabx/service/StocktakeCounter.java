@@ -0,0 +1,196 @@
+package com.hisabx.service;
+
+import java.util.Arrays;
+
+/**
+ * عدّاد الجرد - one counter's tally for a stocktake, held in primitive arrays so a scan costs a
+ * hash probe and an array increment, at whatever rate the scanner types.
+ *
+ * Each product of the stocktake owns a slot; barcodes and product codes map to slots through an
+ * open-addressing table built once when counting starts. Changed slots are remembered until
+ * {@link StocktakeService#saveCounts} writes them; a save stores the slot's whole count, so a
+ * failed save can simply be retried.
+ */
+public final class StocktakeCounter {
+    private final long stocktakeId;
+    private final String counter;
+    private final long[] productIds;
+    private final String[] productCodes;
+    private final String[] names;
+    private final double[] counts;
+
+    // Open addressing, linear probing; keys[i] == null marks a free bucket
+    private final String[] keys;
+    private final int[] slots;
+    private final int mask;
+
+    private final boolean[] dirty;
+    private int[] dirtySlots = new int[64];
+    private int dirtyCount;
+    private long scans;
+    private long unknownScans;
+
+    // Held for a whole save, so two saves cannot write the same slot out of order
+    final Object saveLock = new Object();
+
+    StocktakeCounter(long stocktakeId, String counter, long[] productIds, String[] productCodes, String[] barcodes,
+            String[] names) {
+        this.stocktakeId = stocktakeId;
+        this.counter = counter;
+        this.productIds = productIds;
+        this.productCodes = productCodes;
+        this.names = names;
+        this.counts = new double[productIds.length];
+        this.dirty = new boolean[productIds.length];
+
+        int capacity = Integer.highestOneBit(Math.max(16, productIds.length * 4) - 1) << 1;
+        this.keys = new String[capacity];
+        this.slots = new int[capacity];
+        this.mask = capacity - 1;
+        // Barcodes first: a product code equal to another product's barcode does not shadow it
+        for (int i = 0; i < productIds.length; i++) {
+            put(barcodes[i], i);
+        }
+        for (int i = 0; i < productIds.length; i++) {
+            put(productCodes[i], i);
+        }
+    }
+
+    public long getStocktakeId() { return stocktakeId; }
+    public String getCounter() { return counter; }
+    public int size() { return productIds.length; }
+
+    /**
+     * Add {@code quantity} to the product with this barcode or product code.
+     *
+     * @return the product's slot, or -1 when the code is not part of the stocktake
+     */
+    public synchronized int scan(String code, double quantity) {
+        int slot = slotOf(code);
+        if (slot < 0) {
+            unknownScans++;
+            return -1;
+        }
+        scans++;
+        counts[slot] += quantity;
+        markDirty(slot);
+        return slot;
+    }
+
+    /** Replace the product's count, e.g. after a recount. */
+    public synchronized void setCount(int slot, double quantity) {
+        counts[slot] = quantity;
+        markDirty(slot);
+    }
+
+    public int slotOf(String code) {
+        if (code == null) {
+            return -1;
+        }
+        String key = code.trim();
+        if (key.isEmpty()) {
+            return -1;
+        }
+        for (int i = bucket(key); keys[i] != null; i = (i + 1) & mask) {
+            if (keys[i].equals(key)) {
+                return slots[i];
+            }
+        }
+        return -1;
+    }
+
+    public synchronized double countOf(int slot) { return counts[slot]; }
+    public long productIdOf(int slot) { return productIds[slot]; }
+    public String productCodeOf(int slot) { return productCodes[slot]; }
+    public String nameOf(int slot) { return names[slot]; }
+    public synchronized long getScans() { return scans; }
+    public synchronized long getUnknownScans() { return unknownScans; }
+    public synchronized int getPendingCount() { return dirtyCount; }
+
+    public synchronized int getCountedProducts() {
+        int counted = 0;
+        for (double count : counts) {
+            if (count != 0) {
+                counted++;
+            }
+        }
+        return counted;
+    }
+
+    /** Load a count saved earlier, without marking it for saving. */
+    synchronized void restore(long productId, double quantity) {
+        int slot = Arrays.binarySearch(productIds, productId);
+        if (slot >= 0) {
+            counts[slot] = quantity;
+        }
+    }
+
+    /** Take the changed slots for saving, with their counts at this moment. */
+    synchronized Pending drain() {
+        Pending pending = new Pending(dirtyCount);
+        for (int i = 0; i < dirtyCount; i++) {
+            int slot = dirtySlots[i];
+            pending.slots[i] = slot;
+            pending.productIds[i] = productIds[slot];
+            pending.quantities[i] = counts[slot];
+            dirty[slot] = false;
+        }
+        dirtyCount = 0;
+        return pending;
+    }
+
+    /** Mark slots of a failed save as changed again. */
+    synchronized void requeue(Pending pending) {
+        for (int slot : pending.slots) {
+            markDirty(slot);
+        }
+    }
+
+    private void markDirty(int slot) {
+        if (dirty[slot]) {
+            return;
+        }
+        dirty[slot] = true;
+        if (dirtyCount == dirtySlots.length) {
+            dirtySlots = Arrays.copyOf(dirtySlots, dirtyCount * 2);
+        }
+        dirtySlots[dirtyCount++] = slot;
+    }
+
+    private void put(String code, int slot) {
+        if (code == null || code.isBlank()) {
+            return;
+        }
+        String key = code.trim();
+        int i = bucket(key);
+        while (keys[i] != null) {
+            if (keys[i].equals(key)) {
+                return; // the first product with this code keeps it
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        slots[i] = slot;
+    }
+
+    private int bucket(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    static final class Pending {
+        final int[] slots;
+        final long[] productIds;
+        final double[] quantities;
+
+        Pending(int size) {
+            slots = new int[size];
+            productIds = new long[size];
+            quantities = new double[size];
+        }
+
+        int size() {
+            return slots.length;
+        }
+    }
+}
@@ -0,0 +1,465 @@
+package com.hisabx.service;
+
+import com.hisabx.database.DatabaseManager;
+import com.hisabx.database.ReportingDatabase;
+import com.hisabx.database.SqliteDates;
+import com.hisabx.model.StockMovement;
+import com.hisabx.model.StockMovementType;
+import com.hisabx.model.dto.Stocktake;
+import com.hisabx.model.dto.StocktakeLine;
+import com.hisabx.util.SessionManager;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * الجرد - physical stock count.
+ *
+ * A stocktake counts one stock location. Starting it freezes the stock at that location of every
+ * active product in scope. Counters then
+ * scan into a {@link StocktakeCounter} each, saved per counter, so several people can count
+ * different shelves (or the same shelf twice) and their partial counts add up. The variance of a
+ * product is the sum of all counters minus its frozen stock; posting applies the approved
+ * variances to the current stock at the same location, so sales made while counting and stock
+ * held elsewhere are kept, and writes the variance report, all in one transaction.
+ */
+public class StocktakeService {
+    private static final Logger logger = LoggerFactory.getLogger(StocktakeService.class);
+
+    // Products adjusted between session flushes while posting
+    private static final int POST_FLUSH_SIZE = 50;
+    private static final double EPSILON = 0.000001;
+
+    // Counted quantity is null for products no counter scanned
+    private static final String LINES_SQL = "SELECT s.product_id, p.product_code, p.name, p.barcode, s.frozen_qty,"
+            + " SUM(c.quantity), COUNT(c.product_id), s.unit_cost"
+            + " FROM stocktake_snapshot s JOIN products p ON p.id = s.product_id"
+            + " LEFT JOIN stocktake_counts c ON c.stocktake_id = s.stocktake_id AND c.product_id = s.product_id"
+            + " WHERE s.stocktake_id = ? GROUP BY s.product_id ORDER BY p.name, p.id";
+
+    private static final String STOCKTAKE_COLUMNS = "id, started_at, started_by, category, location_id,"
+            + " (SELECT l.name FROM stock_locations l WHERE l.id = stocktakes.location_id), notes, status,"
+            + " product_count, closed_at, closed_by, adjusted_count, variance_value";
+
+    /**
+     * Start a stocktake of all active products, or of a category with its sub-categories, at one
+     * location (the default location when null). Only one stocktake can be open at a time.
+     */
+    public Stocktake start(String category, Long locationId, String notes) {
+        LocalDateTime now = LocalDateTime.now();
+        String user = SessionManager.getInstance().getCurrentUsername();
+        long id;
+        long location;
+        String locationName;
+        int products;
+        try (Connection conn = DatabaseManager.openConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (Statement st = conn.createStatement();
+                     ResultSet rs = st.executeQuery("SELECT id FROM stocktakes WHERE status = '" + Stocktake.OPEN + "'")) {
+                    if (rs.next()) {
+                        throw new IllegalArgumentException("يوجد جرد مفتوح بالفعل (رقم " + rs.getLong(1) + ")");
+                    }
+                }
+                try (PreparedStatement ps = conn.prepareStatement("SELECT id, name FROM stock_locations WHERE "
+                        + (locationId != null ? "id = ?" : "is_default = 1"))) {
+                    if (locationId != null) {
+                        ps.setLong(1, locationId);
+                    }
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (!rs.next()) {
+                            throw new IllegalArgumentException("موقع المخزون غير موجود");
+                        }
+                        location = rs.getLong(1);
+                        locationName = rs.getString(2);
+                    }
+                }
+                try (PreparedStatement ps = conn.prepareStatement("INSERT INTO stocktakes"
+                        + " (started_at, started_by, category, location_id, notes, status) VALUES (?, ?, ?, ?, ?, ?)",
+                        Statement.RETURN_GENERATED_KEYS)) {
+                    ps.setLong(1, SqliteDates.toMillis(now));
+                    ps.setString(2, user);
+                    ps.setString(3, category);
+                    ps.setLong(4, location);
+                    ps.setString(5, notes);
+                    ps.setString(6, Stocktake.OPEN);
+                    ps.executeUpdate();
+                    try (ResultSet keys = ps.getGeneratedKeys()) {
+                        keys.next();
+                        id = keys.getLong(1);
+                    }
+                }
+                // Products with no stock row at the location are frozen at zero
+                String sql = "INSERT INTO stocktake_snapshot (stocktake_id, product_id, frozen_qty, unit_cost)"
+                        + " SELECT ?, p.id, COALESCE(ls.quantity, 0), COALESCE(p.average_cost, p.cost_price)"
+                        + " FROM products p LEFT JOIN location_stock ls ON ls.product_id = p.id AND ls.location_id = ?"
+                        + " WHERE p.is_active = 1";
+                if (category != null) {
+                    sql += " AND p.category_id IN (" + DatabaseManager.CATEGORY_SUBTREE + ")";
+                }
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setLong(1, id);
+                    ps.setLong(2, location);
+                    if (category != null) {
+                        ps.setString(3, category);
+                    }
+                    products = ps.executeUpdate();
+                }
+                if (products == 0) {
+                    throw new IllegalArgumentException("لا توجد منتجات فعالة ضمن نطاق الجرد");
+                }
+                try (PreparedStatement ps = conn.prepareStatement("UPDATE stocktakes SET product_count = ? WHERE id = ?")) {
+                    ps.setInt(1, products);
+                    ps.setLong(2, id);
+                    ps.executeUpdate();
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to start stocktake", e);
+            throw new RuntimeException("فشل في بدء الجرد", e);
+        }
+        logger.info("Stocktake {} started by {} at {} with {} products", id, user, locationName, products);
+        return new Stocktake(id, now, user, category, location, locationName, notes, Stocktake.OPEN, products,
+                null, null, 0, 0);
+    }
+
+    public Optional<Stocktake> getOpenStocktake() {
+        List<Stocktake> open = query("SELECT " + STOCKTAKE_COLUMNS + " FROM stocktakes WHERE status = ?"
+                + " ORDER BY id DESC LIMIT 1", Stocktake.OPEN);
+        return open.stream().findFirst();
+    }
+
+    /** Latest stocktakes, newest first. */
+    public List<Stocktake> getRecentStocktakes(int limit) {
+        return query("SELECT " + STOCKTAKE_COLUMNS + " FROM stocktakes ORDER BY id DESC LIMIT ?", limit);
+    }
+
+    /**
+     * Start or resume counting under a counter name. The same name continues the counts it
+     * saved before; different names count separately and add up at reconciliation.
+     */
+    public StocktakeCounter openCounter(long stocktakeId, String counter) {
+        if (counter == null || counter.isBlank()) {
+            throw new IllegalArgumentException("اسم العدّاد مطلوب");
+        }
+        String name = counter.trim();
+        try {
+            return readLive(conn -> {
+                requireOpen(conn, stocktakeId);
+                int size;
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "SELECT COUNT(*) FROM stocktake_snapshot WHERE stocktake_id = ?")) {
+                    ps.setLong(1, stocktakeId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        size = rs.next() ? rs.getInt(1) : 0;
+                    }
+                }
+                long[] ids = new long[size];
+                String[] codes = new String[size];
+                String[] barcodes = new String[size];
+                String[] names = new String[size];
+                int i = 0;
+                // Ordered by product id so the counter can find slots by binary search
+                try (PreparedStatement ps = conn.prepareStatement("SELECT s.product_id, p.product_code, p.barcode, p.name"
+                        + " FROM stocktake_snapshot s JOIN products p ON p.id = s.product_id"
+                        + " WHERE s.stocktake_id = ? ORDER BY s.product_id")) {
+                    ps.setLong(1, stocktakeId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next() && i < size) {
+                            ids[i] = rs.getLong(1);
+                            codes[i] = rs.getString(2);
+                            barcodes[i] = rs.getString(3);
+                            names[i] = rs.getString(4);
+                            i++;
+                        }
+                    }
+                }
+                StocktakeCounter tally = new StocktakeCounter(stocktakeId, name, ids, codes, barcodes, names);
+                try (PreparedStatement ps = conn.prepareStatement("SELECT product_id, quantity FROM stocktake_counts"
+                        + " WHERE stocktake_id = ? AND counter = ?")) {
+                    ps.setLong(1, stocktakeId);
+                    ps.setString(2, name);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            tally.restore(rs.getLong(1), rs.getDouble(2));
+                        }
+                    }
+                }
+                return tally;
+            });
+        } catch (SQLException e) {
+            logger.error("Failed to open stocktake counter {} for stocktake {}", name, stocktakeId, e);
+            throw new RuntimeException("فشل في تحميل منتجات الجرد", e);
+        }
+    }
+
+    /**
+     * Write the counts changed since the last save.
+     *
+     * @return the number of products saved
+     */
+    public int saveCounts(StocktakeCounter counter) {
+        synchronized (counter.saveLock) {
+            StocktakeCounter.Pending pending = counter.drain();
+            if (pending.size() == 0) {
+                return 0;
+            }
+            long nowMillis = SqliteDates.toMillis(LocalDateTime.now());
+            try (Connection conn = DatabaseManager.openConnection()) {
+                conn.setAutoCommit(false);
+                try {
+                    requireOpen(conn, counter.getStocktakeId());
+                    try (PreparedStatement ps = conn.prepareStatement("INSERT INTO stocktake_counts"
+                            + " (stocktake_id, counter, product_id, quantity, updated_at) VALUES (?, ?, ?, ?, ?)"
+                            + " ON CONFLICT (stocktake_id, counter, product_id)"
+                            + " DO UPDATE SET quantity = excluded.quantity, updated_at = excluded.updated_at")) {
+                        for (int i = 0; i < pending.size(); i++) {
+                            ps.setLong(1, counter.getStocktakeId());
+                            ps.setString(2, counter.getCounter());
+                            ps.setLong(3, pending.productIds[i]);
+                            ps.setDouble(4, pending.quantities[i]);
+                            ps.setLong(5, nowMillis);
+                            ps.addBatch();
+                        }
+                        ps.executeBatch();
+                    }
+                    conn.commit();
+                } catch (SQLException | RuntimeException e) {
+                    conn.rollback();
+                    throw e;
+                }
+            } catch (SQLException | RuntimeException e) {
+                counter.requeue(pending);
+                if (e instanceof IllegalArgumentException) {
+                    throw (IllegalArgumentException) e;
+                }
+                logger.error("Failed to save stocktake counts of {}", counter.getCounter(), e);
+                throw new RuntimeException("فشل في حفظ العد", e);
+            }
+            return pending.size();
+        }
+    }
+
+    /** Frozen stock against the sum of all counters, for every product of the stocktake. */
+    public List<StocktakeLine> reconcile(long stocktakeId) {
+        try {
+            return readLive(conn -> {
+                List<StocktakeLine> lines = new ArrayList<>();
+                try (PreparedStatement ps = conn.prepareStatement(LINES_SQL)) {
+                    ps.setLong(1, stocktakeId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            double counted = rs.getDouble(6);
+                            Double countedQty = rs.wasNull() ? null : counted;
+                            double cost = rs.getDouble(8);
+                            Double unitCost = rs.wasNull() ? null : cost;
+                            lines.add(new StocktakeLine(rs.getLong(1), rs.getString(2), rs.getString(3),
+                                    rs.getString(4), rs.getDouble(5), countedQty, rs.getInt(7), unitCost));
+                        }
+                    }
+                }
+                return lines;
+            });
+        } catch (SQLException e) {
+            logger.error("Failed to reconcile stocktake {}", stocktakeId, e);
+            throw new RuntimeException("فشل في مطابقة الجرد", e);
+        }
+    }
+
+    /**
+     * Post the approved variances and close the stocktake. Every counted product, and every
+     * approved one, goes into the variance report; only approved ones change the stock.
+     *
+     * @return the closed stocktake
+     */
+    public Stocktake post(long stocktakeId, Collection<Long> approvedProductIds) {
+        Set<Long> approved = new HashSet<>(approvedProductIds);
+        String user = SessionManager.getInstance().getCurrentUsername();
+        LocalDateTime now = LocalDateTime.now();
+        long started = System.nanoTime();
+        int adjusted = 0;
+        double varianceValue = 0;
+        try (Session session = DatabaseManager.getSessionFactory().openSession()) {
+            Transaction tx = session.beginTransaction();
+            try {
+                Object[] stocktake = (Object[]) session.createNativeQuery(
+                                "SELECT status, location_id FROM stocktakes WHERE id = :id")
+                        .setParameter("id", stocktakeId)
+                        .uniqueResult();
+                if (stocktake == null || !Stocktake.OPEN.equals(stocktake[0])) {
+                    throw new IllegalArgumentException("الجرد غير موجود أو تم إغلاقه");
+                }
+                // Stocktakes started before locations were recorded counted the default location
+                Long locationId = stocktake[1] != null ? ((Number) stocktake[1]).longValue() : null;
+                // Read inside the transaction so counts saved after the last reconcile are included
+                List<Object[]> rows = session.doReturningWork(conn -> {
+                    List<Object[]> lines = new ArrayList<>();
+                    try (PreparedStatement ps = conn.prepareStatement(LINES_SQL)) {
+                        ps.setLong(1, stocktakeId);
+                        try (ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) {
+                                lines.add(new Object[]{rs.getLong(1), rs.getDouble(5), rs.getObject(6), rs.getObject(8)});
+                            }
+                        }
+                    }
+                    return lines;
+                });
+                List<Object[]> report = new ArrayList<>();
+                int sinceFlush = 0;
+                for (Object[] row : rows) {
+                    long productId = (Long) row[0];
+                    boolean counted = row[2] != null;
+                    boolean isApproved = approved.contains(productId);
+                    if (!counted && !isApproved) {
+                        continue;
+                    }
+                    double frozen = (Double) row[1];
+                    double countedQty = counted ? ((Number) row[2]).doubleValue() : 0.0;
+                    Double unitCost = row[3] != null ? ((Number) row[3]).doubleValue() : null;
+                    double variance = countedQty - frozen;
+                    double value = variance * (unitCost != null ? unitCost : 0.0);
+                    Long movementId = null;
+                    if (isApproved && Math.abs(variance) > EPSILON) {
+                        StockMovement movement = new StockMovement(StockMovementType.STOCKTAKE, stocktakeId,
+                                "جرد " + stocktakeId);
+                        movement.setNotes("المعدود " + countedQty + " مقابل " + frozen);
+                        movement.setLocationId(locationId);
+                        StockJournal.apply(session, productId, variance, movement);
+                        movementId = movement.getId();
+                        adjusted++;
+                        varianceValue += value;
+                        if (++sinceFlush >= POST_FLUSH_SIZE) {
+                            session.flush();
+                            session.clear();
+                            sinceFlush = 0;
+                        }
+                    }
+                    report.add(new Object[]{productId, frozen, countedQty, variance, unitCost, value,
+                            isApproved ? 1 : 0, movementId});
+                }
+                session.flush();
+                session.doWork(conn -> {
+                    try (PreparedStatement ps = conn.prepareStatement("INSERT INTO stocktake_variances"
+                            + " (stocktake_id, product_id, frozen_qty, counted_qty, variance, unit_cost, variance_value,"
+                            + " approved, movement_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                        for (Object[] line : report) {
+                            ps.setLong(1, stocktakeId);
+                            for (int i = 0; i < line.length; i++) {
+                                ps.setObject(i + 2, line[i]);
+                            }
+                            ps.addBatch();
+                        }
+                        ps.executeBatch();
+                    }
+                });
+                session.createNativeQuery("UPDATE stocktakes SET status = :status, closed_at = :closedAt,"
+                                + " closed_by = :closedBy, adjusted_count = :adjusted, variance_value = :value WHERE id = :id")
+                        .setParameter("status", Stocktake.POSTED)
+                        .setParameter("closedAt", SqliteDates.toMillis(now))
+                        .setParameter("closedBy", user)
+                        .setParameter("adjusted", adjusted)
+                        .setParameter("value", varianceValue)
+                        .setParameter("id", stocktakeId)
+                        .executeUpdate();
+                tx.commit();
+            } catch (RuntimeException e) {
+                if (tx.isActive()) {
+                    tx.rollback();
+                }
+                if (e instanceof IllegalArgumentException) {
+                    throw e;
+                }
+                logger.error("Failed to post stocktake {}", stocktakeId, e);
+                throw new RuntimeException("فشل في ترحيل الجرد", e);
+            }
+        }
+        logger.info("Stocktake {} posted by {}: {} products adjusted, variance value {}, in {} ms", stocktakeId, user,
+                adjusted, varianceValue, (System.nanoTime() - started) / 1_000_000);
+        DomainEventBus.getInstance().publish(new DomainEvent.BulkDataChanged(true, false));
+        return query("SELECT " + STOCKTAKE_COLUMNS + " FROM stocktakes WHERE id = ?", stocktakeId).get(0);
+    }
+
+    /** Close a stocktake without changing any stock; its counts are kept. */
+    public void cancel(long stocktakeId) {
+        try (Connection conn = DatabaseManager.openConnection();
+             PreparedStatement ps = conn.prepareStatement("UPDATE stocktakes SET status = ?, closed_at = ?,"
+                     + " closed_by = ? WHERE id = ? AND status = ?")) {
+            ps.setString(1, Stocktake.CANCELLED);
+            ps.setLong(2, SqliteDates.toMillis(LocalDateTime.now()));
+            ps.setString(3, SessionManager.getInstance().getCurrentUsername());
+            ps.setLong(4, stocktakeId);
+            ps.setString(5, Stocktake.OPEN);
+            if (ps.executeUpdate() == 0) {
+                throw new IllegalArgumentException("الجرد غير موجود أو تم إغلاقه");
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to cancel stocktake {}", stocktakeId, e);
+            throw new RuntimeException("فشل في إلغاء الجرد", e);
+        }
+        logger.info("Stocktake {} cancelled", stocktakeId);
+    }
+
+    private static void requireOpen(Connection conn, long stocktakeId) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT status FROM stocktakes WHERE id = ?")) {
+            ps.setLong(1, stocktakeId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next() || !Stocktake.OPEN.equals(rs.getString(1))) {
+                    throw new IllegalArgumentException("الجرد غير موجود أو تم إغلاقه");
+                }
+            }
+        }
+    }
+
+    /**
+     * Stocktakes are read back right after they are changed, so they are read from the live
+     * database rather than the reporting replica.
+     */
+    private static <T> T readLive(ReportingDatabase.ReportWork<T> work) throws SQLException {
+        try (Connection conn = DatabaseManager.openConnection()) {
+            return work.run(conn);
+        }
+    }
+
+    private List<Stocktake> query(String sql, Object parameter) {
+        try {
+            return readLive(conn -> {
+                List<Stocktake> stocktakes = new ArrayList<>();
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setObject(1, parameter);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            long location = rs.getLong(5);
+                            Long locationId = rs.wasNull() ? null : location;
+                            stocktakes.add(new Stocktake(rs.getLong(1), SqliteDates.toLocalDateTime(rs.getObject(2)),
+                                    rs.getString(3), rs.getString(4), locationId, rs.getString(6), rs.getString(7),
+                                    rs.getString(8), rs.getInt(9), SqliteDates.toLocalDateTime(rs.getObject(10)),
+                                    rs.getString(11), rs.getInt(12), rs.getDouble(13)));
+                        }
+                    }
+                }
+                return stocktakes;
+            });
+        } catch (SQLException e) {
+            logger.error("Failed to load stocktakes", e);
+            throw new RuntimeException("فشل في تحميل الجرد", e);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.hisabx.service;
 
 import com.hisabx.database.DatabaseManager;
+import com.hisabx.database.FiscalArchives;
 import com.hisabx.model.*;
 import com.itextpdf.text.*;
 import com.itextpdf.text.pdf.BaseFont;
@@ -405,6 +406,8 @@ public class VoucherService {
                     }
                 }
             }
+            // الأرقام المؤرشفة لا تعاد
+            max = Math.max(max, FiscalArchives.maxArchivedNumber("max_voucher_number"));
             return String.valueOf(max + 1L);
         }
     }
@@ -413,117 +416,142 @@ public class VoucherService {
     public Voucher saveVoucher(Voucher voucher) {
         logger.info("Saving voucher: {} - {}", voucher.getVoucherType(), voucher.getVoucherNumber());
         
-        Transaction transaction = null;
         try (Session session = DatabaseManager.getSessionFactory().openSession()) {
-            transaction = session.beginTransaction();
+            Transaction transaction = session.beginTransaction();
+            try {
+                loadCustomerInSession(session, voucher);
             
-            // توليد رقم السند إذا لم يكن موجوداً
-            if (voucher.getVoucherNumber() == null || voucher.getVoucherNumber().isEmpty()) {
-                voucher.setVoucherNumber(generateVoucherNumber(voucher.getVoucherType()));
-            }
+                // توليد رقم السند إذا لم يكن موجوداً
+                if (voucher.getVoucherNumber() == null || voucher.getVoucherNumber().isEmpty()) {
+                    voucher.setVoucherNumber(generateVoucherNumber(voucher.getVoucherType()));
+                }
             
-            // حساب المبلغ الصافي
-            calculateNetAmount(voucher);
+                // حساب المبلغ الصافي
+                calculateNetAmount(voucher);
             
-            // تحويل المبلغ إلى كتابة
-            voucher.setAmountInWords(convertAmountToWords(voucher.getNetAmount(), voucher.getCurrency()));
+                // تحويل المبلغ إلى كتابة
+                voucher.setAmountInWords(convertAmountToWords(voucher.getNetAmount(), voucher.getCurrency()));
             
-            // توليد البيان التلقائي
-            if (voucher.getDescription() == null || voucher.getDescription().isEmpty()) {
-                voucher.setDescription(generateDescription(voucher));
-            }
+                // توليد البيان التلقائي
+                if (voucher.getDescription() == null || voucher.getDescription().isEmpty()) {
+                    voucher.setDescription(generateDescription(voucher));
+                }
             
-            session.saveOrUpdate(voucher);
+                session.saveOrUpdate(voucher);
             
-            // تحديث رصيد العميل (داخل نفس Session/Transaction لتجنب SQLITE_BUSY)
-            if (voucher.getCustomer() != null && voucher.getCustomer().getId() != null) {
-                updateCustomerBalanceInSession(session, voucher);
-            }
+                // تحديث رصيد العميل (داخل نفس Session/Transaction لتجنب SQLITE_BUSY)
+                if (voucher.getCustomer() != null && voucher.getCustomer().getId() != null) {
+                    updateCustomerBalanceInSession(session, voucher);
+                }
 
-            // إضافة المواد للمخزون (داخل نفس Session/Transaction لتجنب SQLITE_BUSY)
-            if ((voucher.getVoucherType() == VoucherType.PAYMENT || voucher.getVoucherType() == VoucherType.PURCHASE) && voucher.getItems() != null) {
-                for (VoucherItem item : voucher.getItems()) {
-                    if (Boolean.TRUE.equals(item.getAddToInventory()) && item.getProduct() != null && item.getProduct().getId() != null) {
-                        addStockInSession(session, item.getProduct().getId(), item.getQuantity());
+                // إضافة المواد للمخزون (داخل نفس Session/Transaction لتجنب SQLITE_BUSY)
+                if ((voucher.getVoucherType() == VoucherType.PAYMENT || voucher.getVoucherType() == VoucherType.PURCHASE) && voucher.getItems() != null) {
+                    for (VoucherItem item : voucher.getItems()) {
+                        if (Boolean.TRUE.equals(item.getAddToInventory()) && item.getProduct() != null && item.getProduct().getId() != null) {
+                            addStockInSession(session, voucher, item);
+                        }
                     }
                 }
-            }
-            
-            transaction.commit();
-            logger.info("Voucher saved successfully: {}", voucher.getVoucherNumber());
-            return voucher;
             
+                transaction.commit();
+                logger.info("Voucher saved successfully: {}", voucher.getVoucherNumber());
+                publishVoucherSaved(voucher);
+                return voucher;
+            } catch (Exception e) {
+                transaction.rollback();
+                throw e;
+            }
         } catch (Exception e) {
-            if (transaction != null) transaction.rollback();
             logger.error("Error saving voucher", e);
             throw new RuntimeException("فشل في حفظ السند: " + e.getMessage(), e);
         }
     }
     
+    // نشر أحداث التغيير بعد حفظ السند
+    private void publishVoucherSaved(Voucher voucher) {
+        DomainEventBus bus = DomainEventBus.getInstance();
+        if ((voucher.getVoucherType() == VoucherType.PAYMENT || voucher.getVoucherType() == VoucherType.PURCHASE) && voucher.getItems() != null) {
+            for (VoucherItem item : voucher.getItems()) {
+                if (Boolean.TRUE.equals(item.getAddToInventory()) && item.getProduct() != null && item.getProduct().getId() != null) {
+                    bus.publish(new DomainEvent.StockChanged(item.getProduct().getId()));
+                }
+            }
+        }
+        Long customerId = voucher.getCustomer() != null ? voucher.getCustomer().getId() : null;
+        if (customerId != null) {
+            bus.publish(new DomainEvent.CustomerUpdated(customerId, false));
+        }
+        bus.publish(new DomainEvent.VoucherSaved(voucher.getId(), customerId));
+    }
+    
     // إنشاء سند بأقساط
     public Voucher saveVoucherWithInstallments(Voucher voucher, int numberOfInstallments, LocalDate firstDueDate) {
         logger.info("Creating voucher with {} installments", numberOfInstallments);
         
-        Transaction transaction = null;
         try (Session session = DatabaseManager.getSessionFactory().openSession()) {
-            transaction = session.beginTransaction();
+            Transaction transaction = session.beginTransaction();
+            try {
+                loadCustomerInSession(session, voucher);
             
-            // توليد رقم السند
-            if (voucher.getVoucherNumber() == null || voucher.getVoucherNumber().isEmpty()) {
-                voucher.setVoucherNumber(generateVoucherNumber(voucher.getVoucherType()));
-            }
+                // توليد رقم السند
+                if (voucher.getVoucherNumber() == null || voucher.getVoucherNumber().isEmpty()) {
+                    voucher.setVoucherNumber(generateVoucherNumber(voucher.getVoucherType()));
+                }
             
-            calculateNetAmount(voucher);
-            voucher.setAmountInWords(convertAmountToWords(voucher.getNetAmount(), voucher.getCurrency()));
+                calculateNetAmount(voucher);
+                voucher.setAmountInWords(convertAmountToWords(voucher.getNetAmount(), voucher.getCurrency()));
             
-            if (voucher.getDescription() == null || voucher.getDescription().isEmpty()) {
-                voucher.setDescription(generateDescription(voucher));
-            }
+                if (voucher.getDescription() == null || voucher.getDescription().isEmpty()) {
+                    voucher.setDescription(generateDescription(voucher));
+                }
             
-            voucher.setIsInstallment(true);
-            voucher.setTotalInstallments(numberOfInstallments);
+                voucher.setIsInstallment(true);
+                voucher.setTotalInstallments(numberOfInstallments);
             
-            session.saveOrUpdate(voucher);
+                session.saveOrUpdate(voucher);
             
-            // إنشاء الأقساط
-            double installmentAmount = voucher.getNetAmount() / numberOfInstallments;
-            LocalDate dueDate = firstDueDate;
+                // إنشاء الأقساط
+                double installmentAmount = voucher.getNetAmount() / numberOfInstallments;
+                LocalDate dueDate = firstDueDate;
             
-            for (int i = 1; i <= numberOfInstallments; i++) {
-                Installment installment = new Installment();
-                installment.setParentVoucher(voucher);
-                installment.setInstallmentNumber(i);
-                installment.setAmount(installmentAmount);
-                installment.setDueDate(dueDate);
-                installment.setIsPaid(false);
+                for (int i = 1; i <= numberOfInstallments; i++) {
+                    Installment installment = new Installment();
+                    installment.setParentVoucher(voucher);
+                    installment.setInstallmentNumber(i);
+                    installment.setAmount(installmentAmount);
+                    installment.setDueDate(dueDate);
+                    installment.setIsPaid(false);
                 
-                session.save(installment);
-                voucher.getInstallments().add(installment);
+                    session.save(installment);
+                    voucher.getInstallments().add(installment);
                 
-                // القسط التالي بعد شهر
-                dueDate = dueDate.plusMonths(1);
-            }
+                    // القسط التالي بعد شهر
+                    dueDate = dueDate.plusMonths(1);
+                }
 
-            // تحديث رصيد العميل (داخل نفس Session/Transaction لتجنب SQLITE_BUSY)
-            if (voucher.getCustomer() != null && voucher.getCustomer().getId() != null) {
-                updateCustomerBalanceInSession(session, voucher);
-            }
+                // تحديث رصيد العميل (داخل نفس Session/Transaction لتجنب SQLITE_BUSY)
+                if (voucher.getCustomer() != null && voucher.getCustomer().getId() != null) {
+                    updateCustomerBalanceInSession(session, voucher);
+                }
 
-            // إضافة المواد للمخزون (داخل نفس Session/Transaction لتجنب SQLITE_BUSY)
-            if ((voucher.getVoucherType() == VoucherType.PAYMENT || voucher.getVoucherType() == VoucherType.PURCHASE) && voucher.getItems() != null) {
-                for (VoucherItem item : voucher.getItems()) {
-                    if (Boolean.TRUE.equals(item.getAddToInventory()) && item.getProduct() != null && item.getProduct().getId() != null) {
-                        addStockInSession(session, item.getProduct().getId(), item.getQuantity());
+                // إضافة المواد للمخزون (داخل نفس Session/Transaction لتجنب SQLITE_BUSY)
+                if ((voucher.getVoucherType() == VoucherType.PAYMENT || voucher.getVoucherType() == VoucherType.PURCHASE) && voucher.getItems() != null) {
+                    for (VoucherItem item : voucher.getItems()) {
+                        if (Boolean.TRUE.equals(item.getAddToInventory()) && item.getProduct() != null && item.getProduct().getId() != null) {
+                            addStockInSession(session, voucher, item);
+                        }
                     }
                 }
-            }
-            
-            transaction.commit();
-            logger.info("Voucher with installments saved: {}", voucher.getVoucherNumber());
-            return voucher;
             
+                transaction.commit();
+                logger.info("Voucher with installments saved: {}", voucher.getVoucherNumber());
+                publishVoucherSaved(voucher);
+                return voucher;
+            } catch (Exception e) {
+                transaction.rollback();
+                throw e;
+            }
         } catch (Exception e) {
-            if (transaction != null) transaction.rollback();
             logger.error("Error saving voucher with installments", e);
             throw new RuntimeException("فشل في حفظ السند بالأقساط: " + e.getMessage(), e);
         }
@@ -552,6 +580,9 @@ public class VoucherService {
             session.update(installment);
             transaction.commit();
             
+            Voucher parent = installment.getParentVoucher();
+            DomainEventBus.getInstance().publish(new DomainEvent.VoucherSaved(parent.getId(),
+                    parent.getCustomer() != null ? parent.getCustomer().getId() : null));
             return installment;
             
         } catch (Exception e) {
@@ -685,6 +716,11 @@ public class VoucherService {
             session.update(voucher);
             transaction.commit();
             
+            Long customerId = voucher.getCustomer() != null ? voucher.getCustomer().getId() : null;
+            if (customerId != null) {
+                DomainEventBus.getInstance().publish(new DomainEvent.CustomerUpdated(customerId, false));
+            }
+            DomainEventBus.getInstance().publish(new DomainEvent.VoucherCancelled(voucherId, customerId));
             return voucher;
             
         } catch (Exception e) {
@@ -827,6 +863,18 @@ public class VoucherService {
         }
     }
 
+    // ربط السند بالعميل كما هو في قاعدة البيانات، لا بنسخة منتقي العملاء وأرصدتها القديمة
+    private void loadCustomerInSession(Session session, Voucher voucher) {
+        if (voucher.getCustomer() == null || voucher.getCustomer().getId() == null) {
+            return;
+        }
+        Customer customer = session.get(Customer.class, voucher.getCustomer().getId());
+        if (customer == null) {
+            throw new IllegalArgumentException("العميل غير موجود");
+        }
+        voucher.setCustomer(customer);
+    }
+
     private void updateCustomerBalanceInSession(Session session, Voucher voucher) {
         if (voucher.getCustomer() == null || voucher.getCustomer().getId() == null) {
             return;
@@ -898,17 +946,17 @@ public class VoucherService {
         session.saveOrUpdate(customer);
     }
 
-    private void addStockInSession(Session session, Long productId, Double quantity) {
+    private void addStockInSession(Session session, Voucher voucher, VoucherItem item) {
+        Double quantity = item.getQuantity();
         if (quantity == null || quantity <= 0) {
             return;
         }
-        Product product = session.get(Product.class, productId);
-        if (product == null) {
-            throw new IllegalArgumentException("المنتج غير موجود");
-        }
-        double current = product.getQuantityInStock() == null ? 0.0 : product.getQuantityInStock();
-        product.setQuantityInStock(current + quantity);
-        session.saveOrUpdate(product);
+        // The purchase price becomes the cost layer of these units
+        StockMovement movement = new StockMovement(StockMovementType.PURCHASE, voucher.getId(), voucher.getVoucherNumber());
+        movement.setCreatedBy(voucher.getCreatedBy());
+        movement.setLocationId(voucher.getLocationId());
+        movement.setUnitCost(item.getUnitPrice());
+        StockJournal.apply(session, item.getProduct().getId(), quantity, movement);
     }
     
     private String generateDescription(Voucher voucher) {
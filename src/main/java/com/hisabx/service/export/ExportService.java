@@ -0,0 +1,278 @@
+package com.hisabx.service.export;
+
+import com.hisabx.database.ReportingDatabase;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.FillPatternType;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.IndexedColors;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Streams export sources to CSV or xlsx files.
+ * Rows are read through a forward-only JDBC cursor and written one at a time; xlsx output
+ * uses a streaming workbook that keeps only a small window of rows in memory, so memory use
+ * does not grow with the table size.
+ */
+public class ExportService {
+    private static final Logger logger = LoggerFactory.getLogger(ExportService.class);
+
+    /** Rows kept in memory by the streaming xlsx writer before flushing to disk. */
+    public static final int XLSX_ROW_WINDOW = 200;
+    private static final int FETCH_SIZE = 500;
+    private static final int PROGRESS_EVERY_ROWS = 500;
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    public enum Format { CSV, XLSX }
+
+    /**
+     * Receives progress updates and is asked whether the export should stop.
+     */
+    public interface Progress {
+        void update(long rowsWritten, long totalRows);
+
+        default boolean isCancelled() {
+            return false;
+        }
+    }
+
+    public static Format formatFor(File file) {
+        return file.getName().toLowerCase().endsWith(".xlsx") ? Format.XLSX : Format.CSV;
+    }
+
+    /**
+     * Export a source to a file. A partially written file is deleted on failure or cancel.
+     *
+     * @return the number of rows written
+     */
+    public long export(ExportSource source, File file, Format format, Progress progress) {
+        long started = System.nanoTime();
+        try {
+            // Count and rows come from the same snapshot, so progress matches what is written
+            long rows = ReportingDatabase.getInstance().read(source.getArchiveYears(), conn -> {
+                long total = countRows(conn, source);
+                try {
+                    return format == Format.XLSX
+                            ? writeXlsx(conn, source, file, total, progress)
+                            : writeCsv(conn, source, file, total, progress);
+                } catch (IOException e) {
+                    throw new SQLException(e);
+                }
+            });
+            logger.info("Exported {} rows of {} to {} in {} ms", rows, source.getName(), file.getName(),
+                    (System.nanoTime() - started) / 1_000_000);
+            return rows;
+        } catch (CancellationException e) {
+            file.delete();
+            logger.info("Export of {} cancelled", source.getName());
+            throw e;
+        } catch (Exception e) {
+            file.delete();
+            logger.error("Failed to export {}", source.getName(), e);
+            throw new RuntimeException("فشل في تصدير البيانات: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Stream a source into a sheet of an existing workbook, starting at the given row,
+     * with a header row. Returns the next free row index.
+     */
+    public int writeToSheet(ExportSource source, Sheet sheet, int startRow, CellStyle headerStyle,
+            CellStyle dateStyle) throws SQLException {
+        return writeToSheet(source, sheet, startRow, headerStyle, dateStyle, null);
+    }
+
+    /**
+     * As above, reporting progress (and checking for cancel) when {@code progress} is given.
+     */
+    public int writeToSheet(ExportSource source, Sheet sheet, int startRow, CellStyle headerStyle,
+            CellStyle dateStyle, Progress progress) throws SQLException {
+        return ReportingDatabase.getInstance().read(source.getArchiveYears(), conn -> {
+            long total = progress != null ? countRows(conn, source) : 0;
+            int[] rowIdx = {startRow};
+            Row header = sheet.createRow(rowIdx[0]++);
+            writeHeader(header, source.getHeaders(), headerStyle);
+            streamRows(conn, source, values -> {
+                Row row = sheet.createRow(rowIdx[0]++);
+                writeCells(row, values, dateStyle);
+            }, total, progress);
+            return rowIdx[0];
+        });
+    }
+
+    private long writeCsv(Connection conn, ExportSource source, File file, long total, Progress progress)
+            throws SQLException, IOException {
+        try (Writer writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            // BOM so Excel opens the UTF-8 file with Arabic text correctly
+            writer.write('\ufeff');
+            writer.write(csvLine(source.getHeaders().toArray()));
+            return streamRows(conn, source, values -> {
+                try {
+                    writer.write(csvLine(values));
+                } catch (IOException e) {
+                    throw new SQLException(e);
+                }
+            }, total, progress);
+        }
+    }
+
+    private long writeXlsx(Connection conn, ExportSource source, File file, long total, Progress progress)
+            throws SQLException, IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(XLSX_ROW_WINDOW);
+        try {
+            workbook.setCompressTempFiles(true);
+            Sheet sheet = workbook.createSheet(source.getName());
+            sheet.setRightToLeft(true);
+            CellStyle headerStyle = createHeaderStyle(workbook);
+            CellStyle dateStyle = createDateStyle(workbook);
+
+            writeHeader(sheet.createRow(0), source.getHeaders(), headerStyle);
+            int[] rowIdx = {1};
+            long rows = streamRows(conn, source, values -> writeCells(sheet.createRow(rowIdx[0]++), values, dateStyle),
+                    total, progress);
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                workbook.write(out);
+            }
+            return rows;
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    private long streamRows(Connection conn, ExportSource source, RowConsumer consumer, long total, Progress progress)
+            throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(source.getSql(),
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(FETCH_SIZE);
+            bindParameters(ps, source.getParameters());
+            long rows = 0;
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(source.getRowMapper().map(rs));
+                    rows++;
+                    if (progress != null && rows % PROGRESS_EVERY_ROWS == 0) {
+                        if (progress.isCancelled()) {
+                            throw new CancellationException();
+                        }
+                        progress.update(rows, total);
+                    }
+                }
+            }
+            if (progress != null) {
+                progress.update(rows, Math.max(rows, total));
+            }
+            return rows;
+        }
+    }
+
+    private long countRows(Connection conn, ExportSource source) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM (" + source.getSql() + ")")) {
+            bindParameters(ps, source.getParameters());
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    private static void bindParameters(PreparedStatement ps, List<Object> parameters) throws SQLException {
+        for (int i = 0; i < parameters.size(); i++) {
+            ps.setObject(i + 1, parameters.get(i));
+        }
+    }
+
+    private static void writeHeader(Row row, List<String> headers, CellStyle style) {
+        for (int c = 0; c < headers.size(); c++) {
+            Cell cell = row.createCell(c);
+            cell.setCellValue(headers.get(c));
+            if (style != null) {
+                cell.setCellStyle(style);
+            }
+        }
+    }
+
+    private static void writeCells(Row row, Object[] values, CellStyle dateStyle) {
+        for (int c = 0; c < values.length; c++) {
+            Object value = values[c];
+            if (value == null) {
+                continue;
+            }
+            Cell cell = row.createCell(c);
+            if (value instanceof Number number) {
+                cell.setCellValue(number.doubleValue());
+            } else if (value instanceof LocalDateTime dateTime) {
+                cell.setCellValue(dateTime);
+                if (dateStyle != null) {
+                    cell.setCellStyle(dateStyle);
+                }
+            } else {
+                cell.setCellValue(value.toString());
+            }
+        }
+    }
+
+    private static String csvLine(Object[] values) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(csvValue(values[i]));
+        }
+        return sb.append('\n').toString();
+    }
+
+    private static String csvValue(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value instanceof LocalDateTime dateTime ? dateTime.format(DATE_FORMAT) : value.toString();
+        if (text.contains(",") || text.contains("\"") || text.contains("\n") || text.contains("\r")) {
+            return "\"" + text.replace("\"", "\"\"") + "\"";
+        }
+        return text;
+    }
+
+    public static CellStyle createHeaderStyle(Workbook workbook) {
+        Font font = workbook.createFont();
+        font.setBold(true);
+        CellStyle style = workbook.createCellStyle();
+        style.setFont(font);
+        style.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
+        style.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+        return style;
+    }
+
+    public static CellStyle createDateStyle(Workbook workbook) {
+        CellStyle style = workbook.createCellStyle();
+        style.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd hh:mm"));
+        return style;
+    }
+
+    @FunctionalInterface
+    private interface RowConsumer {
+        void accept(Object[] values) throws SQLException;
+    }
+}
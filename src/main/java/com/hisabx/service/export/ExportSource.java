@@ -0,0 +1,54 @@
+package com.hisabx.service.export;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * A table that can be exported: column headers, the SQL that reads it and how each
+ * result row maps to cell values. Rows are read through a forward-only cursor, so a
+ * source never holds more than the current row in memory.
+ */
+public class ExportSource {
+    private final String name;
+    private final List<String> headers;
+    private final String sql;
+    private final List<Object> parameters;
+    private final RowMapper rowMapper;
+    private final List<Integer> archiveYears;
+
+    public ExportSource(String name, List<String> headers, String sql, List<Object> parameters, RowMapper rowMapper) {
+        this(name, headers, sql, parameters, rowMapper, List.of());
+    }
+
+    /**
+     * A source whose SQL also reads archived fiscal years; the archives of those years are
+     * attached to the connection before the SQL runs.
+     */
+    public ExportSource(String name, List<String> headers, String sql, List<Object> parameters, RowMapper rowMapper,
+            List<Integer> archiveYears) {
+        this.name = name;
+        this.headers = List.copyOf(headers);
+        this.sql = sql;
+        this.parameters = List.copyOf(parameters);
+        this.rowMapper = rowMapper;
+        this.archiveYears = List.copyOf(archiveYears);
+    }
+
+    /** Short name used for default file names (e.g. "sales"). */
+    public String getName() { return name; }
+    public List<String> getHeaders() { return headers; }
+    public String getSql() { return sql; }
+    public List<Object> getParameters() { return parameters; }
+    public RowMapper getRowMapper() { return rowMapper; }
+    public List<Integer> getArchiveYears() { return archiveYears; }
+
+    /**
+     * Maps the current result row to one value per header. Values may be String, Number,
+     * LocalDateTime or null.
+     */
+    @FunctionalInterface
+    public interface RowMapper {
+        Object[] map(ResultSet rs) throws SQLException;
+    }
+}
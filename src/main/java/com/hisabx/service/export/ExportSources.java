@@ -0,0 +1,154 @@
+package com.hisabx.service.export;
+
+import com.hisabx.database.FiscalArchives;
+import com.hisabx.database.SqliteDates;
+import com.hisabx.service.FiscalArchiveService;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Export sources for the application tables.
+ */
+public final class ExportSources {
+    private ExportSources() {}
+
+    public static ExportSource customers() {
+        return new ExportSource("customers",
+                List.of("الكود", "الاسم", "الهاتف", "العنوان", "موقع المشروع", "الرصيد (دينار)", "الرصيد (دولار)"),
+                "SELECT customer_code, name, phone_number, address, project_location, balance_iqd, balance_usd "
+                        + "FROM customers ORDER BY id",
+                List.of(),
+                rs -> new Object[]{
+                        rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5),
+                        rs.getDouble(6), rs.getDouble(7)
+                });
+    }
+
+    public static ExportSource products() {
+        return new ExportSource("products",
+                List.of("الكود", "الاسم", "الفئة", "الباركود", "السعر", "التكلفة", "الكمية", "الحد الأدنى"),
+                "SELECT p.product_code, p.name, c.name, p.barcode, p.unit_price, p.cost_price, p.quantity_in_stock, "
+                        + "p.minimum_stock FROM products p LEFT JOIN categories c ON c.id = p.category_id ORDER BY p.id",
+                List.of(),
+                rs -> new Object[]{
+                        rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4),
+                        rs.getDouble(5), rs.getDouble(6), rs.getDouble(7), rs.getDouble(8)
+                });
+    }
+
+    public static ExportSource sales() {
+        return sales(null, null);
+    }
+
+    /**
+     * Sales between two dates (inclusive); either bound may be null.
+     */
+    public static ExportSource sales(LocalDate from, LocalDate to) {
+        String saleDate = SqliteDates.epochMillis("s.sale_date");
+        List<Integer> years = archivedYears(from, to);
+        return new ExportSource("sales",
+                List.of("رقم الفاتورة", "العميل", "التاريخ", "العملة", "الإجمالي", "الخصم", "الصافي", "المدفوع",
+                        "طريقة الدفع", "الحالة"),
+                FiscalArchives.unionAll("SELECT s.sale_code, c.name, s.sale_date, s.currency, s.total_amount, "
+                        + "s.discount_amount, s.final_amount, s.paid_amount, s.payment_method, s.payment_status "
+                        + "FROM {db}.sales s LEFT JOIN main.customers c ON c.id = s.customer_id "
+                        + "WHERE " + saleDate + " >= ? AND " + saleDate + " < ?", years)
+                        + (years.isEmpty() ? " ORDER BY s.id" : " ORDER BY 3"),
+                rangeParameters(from, to, years),
+                rs -> new Object[]{
+                        rs.getString(1), rs.getString(2), SqliteDates.toLocalDateTime(rs.getObject(3)),
+                        rs.getString(4), rs.getDouble(5), rs.getDouble(6), rs.getDouble(7), rs.getDouble(8),
+                        rs.getString(9), rs.getString(10)
+                },
+                years);
+    }
+
+    /**
+     * Sale lines between two dates (inclusive); either bound may be null.
+     */
+    public static ExportSource saleItems(LocalDate from, LocalDate to) {
+        String saleDate = SqliteDates.epochMillis("s.sale_date");
+        List<Integer> years = archivedYears(from, to);
+        return new ExportSource("sale_items",
+                List.of("رقم الفاتورة", "التاريخ", "العميل", "كود المنتج", "المنتج", "الكمية", "سعر الوحدة",
+                        "الخصم", "الإجمالي"),
+                FiscalArchives.unionAll("SELECT s.sale_code, s.sale_date, c.name, p.product_code, p.name, "
+                        + "si.quantity, si.unit_price, si.discount_amount, si.total_price "
+                        + "FROM {db}.sale_items si JOIN {db}.sales s ON s.id = si.sale_id "
+                        + "LEFT JOIN main.customers c ON c.id = s.customer_id "
+                        + "LEFT JOIN main.products p ON p.id = si.product_id "
+                        + "WHERE " + saleDate + " >= ? AND " + saleDate + " < ?", years)
+                        + (years.isEmpty() ? " ORDER BY s.id, si.id" : " ORDER BY 2, 1"),
+                rangeParameters(from, to, years),
+                rs -> new Object[]{
+                        rs.getString(1), SqliteDates.toLocalDateTime(rs.getObject(2)), rs.getString(3),
+                        rs.getString(4), rs.getString(5), rs.getDouble(6), rs.getDouble(7), rs.getDouble(8),
+                        rs.getDouble(9)
+                },
+                years);
+    }
+
+    /**
+     * Every voucher, including those of archived fiscal years.
+     */
+    public static ExportSource vouchers() {
+        List<Integer> years = archivedYears(null, null);
+        return new ExportSource("vouchers",
+                List.of("رقم السند", "النوع", "التاريخ", "العميل", "العملة", "المبلغ", "الخصم", "الصافي", "البيان",
+                        "ملغى"),
+                FiscalArchives.unionAll("SELECT v.voucher_number, v.voucher_type, v.voucher_date, c.name, v.currency, "
+                        + "v.amount, v.discount_amount, v.net_amount, v.description, v.is_cancelled "
+                        + "FROM {db}.vouchers v LEFT JOIN main.customers c ON c.id = v.customer_id", years)
+                        + (years.isEmpty() ? " ORDER BY v.id" : " ORDER BY 3, 1"),
+                List.of(),
+                rs -> new Object[]{
+                        rs.getString(1), rs.getString(2), SqliteDates.toLocalDateTime(rs.getObject(3)),
+                        rs.getString(4), rs.getString(5), rs.getDouble(6), rs.getDouble(7), rs.getDouble(8),
+                        rs.getString(9), rs.getBoolean(10) ? "نعم" : "لا"
+                },
+                years);
+    }
+
+    /**
+     * Variance report of a posted stocktake, largest value difference first.
+     */
+    public static ExportSource stocktakeVariances(long stocktakeId) {
+        return new ExportSource("stocktake_" + stocktakeId,
+                List.of("الكود", "المنتج", "الباركود", "الرصيد عند البدء", "المعدود", "الفرق", "تكلفة الوحدة",
+                        "قيمة الفرق", "معتمد"),
+                "SELECT p.product_code, p.name, p.barcode, v.frozen_qty, v.counted_qty, v.variance, v.unit_cost, "
+                        + "v.variance_value, v.approved "
+                        + "FROM stocktake_variances v JOIN products p ON p.id = v.product_id "
+                        + "WHERE v.stocktake_id = ? ORDER BY ABS(v.variance_value) DESC, p.name",
+                List.of(stocktakeId),
+                rs -> new Object[]{
+                        rs.getString(1), rs.getString(2), rs.getString(3), rs.getDouble(4), rs.getDouble(5),
+                        rs.getDouble(6), rs.getDouble(7), rs.getDouble(8), rs.getBoolean(9) ? "نعم" : "لا"
+                });
+    }
+
+    /** Archived fiscal years a date range reaches; their tables are read through UNION ALL. */
+    private static List<Integer> archivedYears(LocalDate from, LocalDate to) {
+        return FiscalArchiveService.getInstance().getArchivedYears(from, to);
+    }
+
+    /** The (lower, upper) bound pair once for the main database and once per archive. */
+    private static List<Object> rangeParameters(LocalDate from, LocalDate to, List<Integer> years) {
+        List<Object> parameters = new ArrayList<>();
+        for (int i = 0; i <= years.size(); i++) {
+            parameters.add(lowerBound(from));
+            parameters.add(upperBound(to));
+        }
+        return parameters;
+    }
+
+    private static long lowerBound(LocalDate from) {
+        return from != null ? SqliteDates.startOfDayMillis(from) : Long.MIN_VALUE;
+    }
+
+    private static long upperBound(LocalDate to) {
+        return to != null ? SqliteDates.startOfDayMillis(to.plusDays(1)) : Long.MAX_VALUE;
+    }
+}
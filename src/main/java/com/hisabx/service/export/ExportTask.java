@@ -0,0 +1,51 @@
+package com.hisabx.service.export;
+
+import javafx.concurrent.Task;
+
+import java.io.File;
+
+/**
+ * Runs an export on a background thread with progress and cancel support.
+ */
+public class ExportTask extends Task<Long> {
+    /**
+     * Writes the file and returns the number of rows written, reporting through the progress.
+     */
+    @FunctionalInterface
+    public interface Work {
+        long write(File file, ExportService.Progress progress) throws Exception;
+    }
+
+    private final Work work;
+    private final File file;
+
+    public ExportTask(ExportSource source, File file) {
+        this(file, (target, progress) ->
+                new ExportService().export(source, target, ExportService.formatFor(target), progress));
+    }
+
+    /** Export with custom work, such as a report workbook with a streamed detail sheet. */
+    public ExportTask(File file, Work work) {
+        this.work = work;
+        this.file = file;
+    }
+
+    public File getFile() { return file; }
+
+    @Override
+    protected Long call() throws Exception {
+        updateMessage("جاري التصدير...");
+        return work.write(file, new ExportService.Progress() {
+            @Override
+            public void update(long rowsWritten, long totalRows) {
+                updateProgress(rowsWritten, Math.max(totalRows, 1));
+                updateMessage("تم تصدير " + rowsWritten + " من " + totalRows + " سجل");
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return ExportTask.this.isCancelled();
+            }
+        });
+    }
+}
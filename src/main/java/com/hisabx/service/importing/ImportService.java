@@ -0,0 +1,804 @@
+package com.hisabx.service.importing;
+
+import com.hisabx.database.DatabaseManager;
+import com.hisabx.database.SqliteDates;
+import com.hisabx.model.Product;
+import com.hisabx.model.StockMovement;
+import com.hisabx.model.StockMovementType;
+import com.hisabx.model.dto.ImportResult;
+import com.hisabx.service.DomainEvent;
+import com.hisabx.service.DomainEventBus;
+import com.hisabx.service.StockJournal;
+import com.hisabx.service.importing.ImportTarget.Field;
+import com.hisabx.util.AppConfigStore;
+import com.hisabx.util.SessionManager;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.regex.Pattern;
+
+/**
+ * استيراد البيانات - bulk import of products, customers and opening stock from CSV or xlsx.
+ *
+ * The file is streamed ({@link RowReader}) and cut into batches of {@code import_batch_size}
+ * rows. Each batch is validated in parallel, checked against in-memory sets of the existing
+ * codes and barcodes, and written in one transaction; rows that fail are copied with their
+ * error into a reject file next to the source file, which can be corrected and imported again.
+ *
+ * Products and customers are matched by code: a known code updates the record (blank cells
+ * keep the stored value), anything else is added. The quantity of a new product is journaled
+ * as its opening stock; stock of existing products is set through the opening stock import,
+ * which journals the difference as an opening movement so costing and checkpoints follow.
+ */
+public class ImportService {
+    private static final Logger logger = LoggerFactory.getLogger(ImportService.class);
+
+    public static final String BATCH_SIZE_KEY = "import_batch_size";
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+    private static final int MIN_BATCH_SIZE = 50;
+    private static final double EPSILON = 1e-9;
+
+    private static final Pattern PHONE_PATTERN = Pattern.compile("^07\\d{9}$");
+    private static final Pattern LOCATION_SEPARATORS = Pattern.compile("\\s*[|;؛]\\s*");
+
+    /**
+     * Receives progress updates and is asked whether the import should stop.
+     */
+    public interface Progress {
+        /**
+         * @param fraction share of the file read so far, or -1 when the size is unknown
+         */
+        void update(long rowsRead, double fraction);
+
+        default boolean isCancelled() {
+            return false;
+        }
+    }
+
+    private final int batchSize;
+
+    public ImportService() {
+        int configured = DEFAULT_BATCH_SIZE;
+        String value = new AppConfigStore().load().getProperty(BATCH_SIZE_KEY);
+        if (value != null) {
+            try {
+                configured = Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid import batch size: {}", value);
+            }
+        }
+        this.batchSize = Math.max(MIN_BATCH_SIZE, configured);
+    }
+
+    /** The reject file written for a source file: {@code <name>_rejects.csv} beside it. */
+    public static File rejectFileFor(File file) {
+        String name = file.getName().replaceFirst("\\.[^.]*$", "");
+        return new File(file.getAbsoluteFile().getParentFile(), name + "_rejects.csv");
+    }
+
+    /**
+     * Import a file. Batches committed before a cancel or a failure are kept.
+     */
+    public ImportResult importFile(ImportTarget target, File file, Progress progress) {
+        long started = System.nanoTime();
+        File rejectFile = rejectFileFor(file);
+        rejectFile.delete();
+        Run run = new Run(target, rejectFile, progress);
+        boolean cancelled = false;
+        try (Connection conn = DatabaseManager.openConnection()) {
+            run.conn = conn;
+            run.loadExisting();
+            conn.setAutoCommit(false);
+            try {
+                RowReader.read(file, run::accept, run::position);
+                run.flush();
+            } catch (CancellationException e) {
+                cancelled = true;
+                logger.info("Import of {} cancelled after {} rows", target, run.rowsRead);
+            }
+        } catch (Exception e) {
+            logger.error("Failed to import {} from {}", target, file.getName(), e);
+            throw new RuntimeException("فشل في استيراد البيانات: " + e.getMessage(), e);
+        } finally {
+            run.closeRejects();
+            run.publish();
+        }
+        long elapsed = (System.nanoTime() - started) / 1_000_000;
+        logger.info("Imported {} from {}: {} rows, {} added, {} updated, {} rejected in {} ms", target,
+                file.getName(), run.rowsRead, run.inserted, run.updated, run.rejected, elapsed);
+        return new ImportResult(run.rowsRead, run.inserted, run.updated, run.rejected,
+                run.rejected > 0 ? rejectFile : null, cancelled, elapsed);
+    }
+
+    /**
+     * One data row with its parsed values; {@code error} is set once the row is rejected.
+     */
+    private static final class Row {
+        final long line;
+        final String[] cells;
+        final String[] values = new String[Field.values().length];
+        Double price;
+        Double cost;
+        Double quantity;
+        Double minimum;
+        Long existingId;
+        String error;
+
+        Row(long line, String[] cells) {
+            this.line = line;
+            this.cells = cells;
+        }
+
+        String get(Field field) {
+            return values[field.ordinal()];
+        }
+
+        void set(Field field, String value) {
+            values[field.ordinal()] = value;
+        }
+    }
+
+    /**
+     * State of a single import: the header, the pending batch, the known codes and the counters.
+     */
+    private final class Run {
+        private final ImportTarget target;
+        private final File rejectFile;
+        private final Progress progress;
+        private final List<Row> batch = new ArrayList<>(batchSize);
+
+        Connection conn;
+        private String[] headers;
+        private int[] columns;
+        private long bytesRead;
+        private long totalBytes;
+
+        // Existing records, kept current as the file is imported
+        private final Map<String, Long> codes = new HashMap<>();
+        private final Map<String, Long> barcodes = new HashMap<>();
+        // Values the current batch replaced in codes and barcodes (null when absent), put back
+        // if it rolls back
+        private final Map<String, Long> batchCodes = new HashMap<>();
+        private final Map<String, Long> batchBarcodes = new HashMap<>();
+        private final Set<String> seenKeys = new HashSet<>();
+        // Category ids by name; names created by the current batch are forgotten if it rolls back
+        private final Map<String, Long> categories = new HashMap<>();
+        private final List<String> batchCategories = new ArrayList<>();
+        private long nextCustomerCode;
+        private long placeholderId;
+
+        private Writer rejects;
+        long rowsRead;
+        long inserted;
+        long updated;
+        long rejected;
+
+        Run(ImportTarget target, File rejectFile, Progress progress) {
+            this.target = target;
+            this.rejectFile = rejectFile;
+            this.progress = progress;
+        }
+
+        void loadExisting() throws SQLException {
+            try (Statement stmt = conn.createStatement()) {
+                if (target == ImportTarget.CUSTOMERS) {
+                    try (ResultSet rs = stmt.executeQuery("SELECT id, customer_code FROM customers")) {
+                        while (rs.next()) {
+                            codes.put(rs.getString(2), rs.getLong(1));
+                        }
+                    }
+                    // Same numbering as CustomerService: the next id
+                    try (ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(id), 0) + 1 FROM customers")) {
+                        nextCustomerCode = rs.next() ? rs.getLong(1) : 1L;
+                    }
+                } else {
+                    try (ResultSet rs = stmt.executeQuery("SELECT id, product_code, barcode FROM products")) {
+                        while (rs.next()) {
+                            long id = rs.getLong(1);
+                            codes.put(rs.getString(2), id);
+                            String barcode = rs.getString(3);
+                            if (barcode != null && !barcode.isBlank()) {
+                                barcodes.putIfAbsent(barcode.trim(), id);
+                            }
+                        }
+                    }
+                    try (ResultSet rs = stmt.executeQuery("SELECT id, name FROM categories")) {
+                        while (rs.next()) {
+                            categories.put(rs.getString(2), rs.getLong(1));
+                        }
+                    }
+                }
+            }
+        }
+
+        void position(long bytes, long total) {
+            bytesRead = bytes;
+            totalBytes = total;
+        }
+
+        void accept(long line, String[] cells) {
+            if (headers == null) {
+                readHeader(cells);
+                return;
+            }
+            if (isBlank(cells)) {
+                return;
+            }
+            rowsRead++;
+            batch.add(new Row(line, cells));
+            if (batch.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        private void readHeader(String[] cells) {
+            headers = cells;
+            columns = target.resolveColumns(cells);
+            List<String> missing = new ArrayList<>();
+            for (Field field : target.getRequired()) {
+                if (columns[field.ordinal()] < 0) {
+                    missing.add(field.getHeader());
+                }
+            }
+            if (target == ImportTarget.OPENING_STOCK
+                    && columns[Field.CODE.ordinal()] < 0 && columns[Field.BARCODE.ordinal()] < 0) {
+                missing.add(Field.CODE.getHeader() + " / " + Field.BARCODE.getHeader());
+            }
+            if (!missing.isEmpty()) {
+                throw new RuntimeException("الملف لا يحتوي على الأعمدة المطلوبة: " + String.join("، ", missing));
+            }
+        }
+
+        void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            if (progress != null && progress.isCancelled()) {
+                throw new CancellationException();
+            }
+            // Validation only reads its own row, so it runs on all cores
+            batch.parallelStream().forEach(this::validate);
+            List<Row> accepted = new ArrayList<>(batch.size());
+            for (Row row : batch) {
+                if (row.error == null) {
+                    resolve(row);
+                }
+                if (row.error == null) {
+                    accepted.add(row);
+                } else {
+                    reject(row);
+                }
+            }
+            write(accepted);
+            batch.clear();
+            if (progress != null) {
+                progress.update(rowsRead, totalBytes > 0 ? Math.min(1.0, (double) bytesRead / totalBytes) : -1);
+            }
+        }
+
+        private void validate(Row row) {
+            for (Field field : target.getFields()) {
+                int column = columns[field.ordinal()];
+                if (column >= 0 && column < row.cells.length) {
+                    String value = row.cells[column].trim();
+                    row.set(field, value.isEmpty() ? null : value);
+                }
+            }
+            try {
+                switch (target) {
+                    case PRODUCTS -> validateProduct(row);
+                    case CUSTOMERS -> validateCustomer(row);
+                    case OPENING_STOCK -> validateOpeningStock(row);
+                }
+            } catch (IllegalArgumentException e) {
+                row.error = e.getMessage();
+            }
+        }
+
+        private void validateProduct(Row row) {
+            if (row.get(Field.NAME) == null) {
+                throw new IllegalArgumentException("اسم المنتج مطلوب");
+            }
+            row.price = parseAmount(row.get(Field.PRICE), "السعر");
+            row.cost = parseAmount(row.get(Field.COST), "التكلفة");
+            row.quantity = parseAmount(row.get(Field.QUANTITY), "الكمية");
+            row.minimum = parseAmount(row.get(Field.MINIMUM), "الحد الأدنى");
+        }
+
+        private void validateCustomer(Row row) {
+            if (row.get(Field.NAME) == null) {
+                throw new IllegalArgumentException("اسم العميل مطلوب");
+            }
+            String phone = row.get(Field.PHONE);
+            if (phone == null) {
+                throw new IllegalArgumentException("رقم الهاتف مطلوب");
+            }
+            phone = normalizeDigits(phone).replaceAll("[\\s-]", "");
+            if (!PHONE_PATTERN.matcher(phone).matches()) {
+                throw new IllegalArgumentException("رقم الهاتف غير صالح (يجب أن يبدأ بـ 07)");
+            }
+            row.set(Field.PHONE, phone);
+            String locations = row.get(Field.PROJECT_LOCATION);
+            if (locations == null) {
+                throw new IllegalArgumentException("مواقع المشاريع مطلوبة (أدخل موقعاً واحداً على الأقل)");
+            }
+            // Several locations in one cell are stored one per line, as the customer form does
+            row.set(Field.PROJECT_LOCATION, LOCATION_SEPARATORS.matcher(locations).replaceAll("\n"));
+        }
+
+        private void validateOpeningStock(Row row) {
+            if (row.get(Field.CODE) == null && row.get(Field.BARCODE) == null) {
+                throw new IllegalArgumentException("كود المنتج أو الباركود مطلوب");
+            }
+            row.quantity = parseAmount(row.get(Field.QUANTITY), "الكمية");
+            if (row.quantity == null) {
+                throw new IllegalArgumentException("الكمية مطلوبة");
+            }
+            row.cost = parseAmount(row.get(Field.COST), "التكلفة");
+        }
+
+        /**
+         * Match the row against existing records and earlier rows of the file.
+         */
+        private void resolve(Row row) {
+            String code = row.get(Field.CODE);
+            String barcode = row.get(Field.BARCODE);
+            if (target == ImportTarget.OPENING_STOCK) {
+                Long id = code != null ? codes.get(code) : barcodes.get(barcode);
+                if (id == null || id < 0) {
+                    row.error = "المنتج غير موجود";
+                } else if (!seenKeys.add(String.valueOf(id))) {
+                    row.error = "المنتج مكرر في الملف";
+                } else {
+                    row.existingId = id;
+                }
+                return;
+            }
+            if (code != null && !seenKeys.add(code)) {
+                row.error = "الكود مكرر في الملف";
+                return;
+            }
+            row.existingId = code != null ? codes.get(code) : null;
+            if (barcode != null) {
+                Long owner = barcodes.get(barcode);
+                if (owner != null && !owner.equals(row.existingId)) {
+                    row.error = "الباركود مستخدم لمنتج آخر";
+                    return;
+                }
+            }
+            if (row.existingId == null) {
+                if (code == null) {
+                    code = target == ImportTarget.CUSTOMERS ? nextCustomerCode() : nextProductCode();
+                    row.set(Field.CODE, code);
+                    seenKeys.add(code);
+                }
+                // New rows get a placeholder id until the batch is written
+                putCode(code, --placeholderId);
+            }
+            if (barcode != null) {
+                putBarcode(barcode, row.existingId != null ? row.existingId : placeholderId);
+            }
+        }
+
+        private void putCode(String code, Long id) {
+            batchCodes.putIfAbsent(code, codes.get(code));
+            codes.put(code, id);
+        }
+
+        private void putBarcode(String barcode, Long id) {
+            batchBarcodes.putIfAbsent(barcode, barcodes.get(barcode));
+            barcodes.put(barcode, id);
+        }
+
+        private static void restore(Map<String, Long> map, Map<String, Long> previous) {
+            previous.forEach((key, value) -> {
+                if (value != null) {
+                    map.put(key, value);
+                } else {
+                    map.remove(key);
+                }
+            });
+            previous.clear();
+        }
+
+        private String nextCustomerCode() {
+            String code;
+            do {
+                code = String.valueOf(nextCustomerCode++);
+            } while (codes.containsKey(code));
+            return code;
+        }
+
+        private String nextProductCode() {
+            String code;
+            do {
+                code = "PROD-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+            } while (codes.containsKey(code));
+            return code;
+        }
+
+        private void write(List<Row> rows) {
+            if (rows.isEmpty()) {
+                return;
+            }
+            try {
+                switch (target) {
+                    case PRODUCTS -> writeProducts(rows);
+                    case CUSTOMERS -> writeCustomers(rows);
+                    case OPENING_STOCK -> writeOpeningStock(rows);
+                }
+                batchCodes.clear();
+                batchBarcodes.clear();
+            } catch (Exception e) {
+                logger.warn("Import batch ending at row {} failed", rows.get(rows.size() - 1).line, e);
+                rollback();
+                for (Row row : rows) {
+                    row.error = "فشل حفظ الدفعة: " + e.getMessage();
+                    reject(row);
+                }
+            }
+        }
+
+        /**
+         * New products are inserted with their opening stock journaled and costed at the cost
+         * price, as {@code InventoryCosting} does for a first receipt: one movement, one cost
+         * layer, the average cost and the stock value (the trigger adds it to the total).
+         */
+        private void writeProducts(List<Row> rows) throws SQLException {
+            long now = SqliteDates.toMillis(LocalDateTime.now());
+            String user = SessionManager.getInstance().getCurrentUsername();
+            long insertedHere = 0;
+            long updatedHere = 0;
+            try (PreparedStatement insert = conn.prepareStatement(
+                    "INSERT INTO products (product_code, name, category_id, unit_price, cost_price, quantity_in_stock,"
+                            + " minimum_stock, unit_of_measure, barcode, is_active, average_cost, created_at, updated_at)"
+                            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, 1, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS);
+                 PreparedStatement update = conn.prepareStatement(
+                    "UPDATE products SET name = COALESCE(?, name), category_id = COALESCE(?, category_id),"
+                            + " unit_price = COALESCE(?, unit_price), cost_price = COALESCE(?, cost_price),"
+                            + " minimum_stock = COALESCE(?, minimum_stock), unit_of_measure = COALESCE(?, unit_of_measure),"
+                            + " barcode = COALESCE(?, barcode), updated_at = ? WHERE id = ?");
+                 PreparedStatement movement = conn.prepareStatement(
+                    "INSERT INTO stock_movements (product_id, movement_date, quantity, movement_type, source_id,"
+                            + " reference, created_by, unit_cost, cost_amount) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                    Statement.RETURN_GENERATED_KEYS);
+                 PreparedStatement layer = conn.prepareStatement(
+                    "INSERT INTO cost_layers (product_id, movement_id, layer_date, unit_cost, quantity, remaining)"
+                            + " VALUES (?, ?, ?, ?, ?, ?)");
+                 PreparedStatement value = conn.prepareStatement("UPDATE products SET stock_value = ? WHERE id = ?");
+                 PreparedStatement category = conn.prepareStatement(
+                    "INSERT INTO categories (name, is_active, created_at, updated_at) VALUES (?, 1, ?, ?)",
+                    Statement.RETURN_GENERATED_KEYS)) {
+                for (Row row : rows) {
+                    Long categoryId = categoryId(category, row.get(Field.CATEGORY), now);
+                    if (row.existingId != null) {
+                        update.setString(1, row.get(Field.NAME));
+                        setLong(update, 2, categoryId);
+                        setDouble(update, 3, row.price);
+                        setDouble(update, 4, row.cost);
+                        setDouble(update, 5, row.minimum);
+                        update.setString(6, row.get(Field.UNIT));
+                        update.setString(7, row.get(Field.BARCODE));
+                        update.setLong(8, now);
+                        update.setLong(9, row.existingId);
+                        update.addBatch();
+                        updatedHere++;
+                        continue;
+                    }
+                    String code = row.get(Field.CODE);
+                    double quantity = row.quantity != null ? row.quantity : 0.0;
+                    double cost = row.cost != null ? row.cost : 0.0;
+                    boolean stocked = quantity > EPSILON;
+                    insert.setString(1, code);
+                    insert.setString(2, row.get(Field.NAME));
+                    setLong(insert, 3, categoryId);
+                    insert.setDouble(4, row.price != null ? row.price : 0.0);
+                    insert.setDouble(5, cost);
+                    insert.setDouble(6, quantity);
+                    insert.setDouble(7, row.minimum != null ? row.minimum : 0.0);
+                    insert.setString(8, row.get(Field.UNIT));
+                    insert.setString(9, row.get(Field.BARCODE));
+                    setDouble(insert, 10, stocked ? cost : null);
+                    insert.setLong(11, now);
+                    insert.setLong(12, now);
+                    insert.executeUpdate();
+                    long id = generatedKey(insert);
+                    putCode(code, id);
+                    if (row.get(Field.BARCODE) != null) {
+                        putBarcode(row.get(Field.BARCODE), id);
+                    }
+                    insertedHere++;
+                    if (!stocked) {
+                        continue;
+                    }
+                    movement.setLong(1, id);
+                    movement.setLong(2, now);
+                    movement.setDouble(3, quantity);
+                    movement.setString(4, StockMovementType.OPENING.name());
+                    movement.setLong(5, id);
+                    movement.setString(6, code);
+                    movement.setString(7, user);
+                    movement.setDouble(8, cost);
+                    movement.setDouble(9, quantity * cost);
+                    movement.executeUpdate();
+                    long movementId = generatedKey(movement);
+                    layer.setLong(1, id);
+                    layer.setLong(2, movementId);
+                    layer.setLong(3, now);
+                    layer.setDouble(4, cost);
+                    layer.setDouble(5, quantity);
+                    layer.setDouble(6, quantity);
+                    layer.addBatch();
+                    value.setDouble(1, quantity * cost);
+                    value.setLong(2, id);
+                    value.addBatch();
+                }
+                update.executeBatch();
+                layer.executeBatch();
+                value.executeBatch();
+            }
+            conn.commit();
+            batchCategories.clear();
+            inserted += insertedHere;
+            updated += updatedHere;
+        }
+
+        /** Id of the named category, created on first use like a product saved from the card. */
+        private Long categoryId(PreparedStatement insert, String name, long now) throws SQLException {
+            if (name == null) {
+                return null;
+            }
+            Long id = categories.get(name);
+            if (id == null) {
+                insert.setString(1, name);
+                insert.setLong(2, now);
+                insert.setLong(3, now);
+                insert.executeUpdate();
+                id = generatedKey(insert);
+                categories.put(name, id);
+                batchCategories.add(name);
+            }
+            return id;
+        }
+
+        private void writeCustomers(List<Row> rows) throws SQLException {
+            long now = SqliteDates.toMillis(LocalDateTime.now());
+            long insertedHere = 0;
+            long updatedHere = 0;
+            try (PreparedStatement insert = conn.prepareStatement(
+                    "INSERT INTO customers (customer_code, name, phone_number, address, project_location,"
+                            + " current_balance, balance_iqd, balance_usd, created_at, updated_at)"
+                            + " VALUES (?, ?, ?, ?, ?, 0, 0, 0, ?, ?)");
+                 PreparedStatement update = conn.prepareStatement(
+                    "UPDATE customers SET name = ?, phone_number = ?, address = COALESCE(?, address),"
+                            + " project_location = ?, updated_at = ? WHERE id = ?")) {
+                for (Row row : rows) {
+                    if (row.existingId != null) {
+                        update.setString(1, row.get(Field.NAME));
+                        update.setString(2, row.get(Field.PHONE));
+                        update.setString(3, row.get(Field.ADDRESS));
+                        update.setString(4, row.get(Field.PROJECT_LOCATION));
+                        update.setLong(5, now);
+                        update.setLong(6, row.existingId);
+                        update.addBatch();
+                        updatedHere++;
+                    } else {
+                        insert.setString(1, row.get(Field.CODE));
+                        insert.setString(2, row.get(Field.NAME));
+                        insert.setString(3, row.get(Field.PHONE));
+                        insert.setString(4, row.get(Field.ADDRESS));
+                        insert.setString(5, row.get(Field.PROJECT_LOCATION));
+                        insert.setLong(6, now);
+                        insert.setLong(7, now);
+                        insert.addBatch();
+                        insertedHere++;
+                    }
+                }
+                insert.executeBatch();
+                update.executeBatch();
+            }
+            conn.commit();
+            inserted += insertedHere;
+            updated += updatedHere;
+        }
+
+        /**
+         * Set each product's stock to the counted quantity through the stock journal, so the
+         * difference is costed and checkpointed like any other movement.
+         */
+        private void writeOpeningStock(List<Row> rows) {
+            try (Session session = DatabaseManager.getSessionFactory().openSession()) {
+                Transaction tx = session.beginTransaction();
+                try {
+                    for (Row row : rows) {
+                        Product product = session.get(Product.class, row.existingId);
+                        double current = product.getQuantityInStock() != null ? product.getQuantityInStock() : 0.0;
+                        double delta = row.quantity - current;
+                        if (Math.abs(delta) > EPSILON) {
+                            StockMovement movement = new StockMovement(StockMovementType.OPENING,
+                                    product.getId(), product.getProductCode());
+                            movement.setNotes("استيراد");
+                            if (delta > 0 && row.cost != null) {
+                                movement.setUnitCost(row.cost);
+                            }
+                            StockJournal.apply(session, product.getId(), delta, movement);
+                        }
+                    }
+                    tx.commit();
+                } catch (RuntimeException e) {
+                    if (tx.isActive()) {
+                        tx.rollback();
+                    }
+                    throw e;
+                }
+            }
+            updated += rows.size();
+        }
+
+        private void rollback() {
+            batchCategories.forEach(categories::remove);
+            batchCategories.clear();
+            // Rows of the batch were never written: their codes and barcodes are free again
+            restore(codes, batchCodes);
+            restore(barcodes, batchBarcodes);
+            try {
+                conn.rollback();
+            } catch (SQLException e) {
+                logger.warn("Failed to roll back import batch", e);
+            }
+        }
+
+        private void reject(Row row) {
+            rejected++;
+            try {
+                if (rejects == null) {
+                    rejects = new BufferedWriter(new OutputStreamWriter(
+                            new FileOutputStream(rejectFile), StandardCharsets.UTF_8));
+                    // BOM so Excel opens the UTF-8 file with Arabic text correctly
+                    rejects.write('﻿');
+                    writeCsvLine(rejects, headers, "السطر", "الخطأ");
+                }
+                // Padded to the header so the line and error columns stay aligned
+                String[] cells = row.cells.length >= headers.length ? row.cells : Arrays.copyOf(row.cells, headers.length);
+                writeCsvLine(rejects, cells, String.valueOf(row.line), row.error);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void closeRejects() {
+            if (rejects != null) {
+                try {
+                    rejects.close();
+                } catch (IOException e) {
+                    logger.warn("Failed to close reject file {}", rejectFile, e);
+                }
+            }
+        }
+
+        void publish() {
+            if (inserted + updated == 0) {
+                return;
+            }
+            boolean customers = target == ImportTarget.CUSTOMERS;
+            DomainEventBus.getInstance().publish(new DomainEvent.BulkDataChanged(!customers, customers));
+            // Many new rows: refresh the planner statistics now rather than at the next maintenance tick
+            DatabaseManager.optimize();
+        }
+    }
+
+    private static Double parseAmount(String text, String label) {
+        if (text == null) {
+            return null;
+        }
+        double value;
+        try {
+            value = Double.parseDouble(normalizeDigits(text).replace(",", "").replace("٬", "").replace('٫', '.'));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(label + " ليس رقماً صالحاً: " + text);
+        }
+        if (value < 0 || Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException(label + " لا يمكن أن يكون سالباً");
+        }
+        return value;
+    }
+
+    /** Arabic-Indic and Persian digits as ASCII digits. */
+    private static String normalizeDigits(String text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '٠' && c <= '٩') {
+                c = (char) ('0' + (c - '٠'));
+            } else if (c >= '۰' && c <= '۹') {
+                c = (char) ('0' + (c - '۰'));
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static boolean isBlank(String[] cells) {
+        for (String cell : cells) {
+            if (cell != null && !cell.isBlank()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void setDouble(PreparedStatement ps, int index, Double value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.REAL);
+        } else {
+            ps.setDouble(index, value);
+        }
+    }
+
+    private static void setLong(PreparedStatement ps, int index, Long value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.INTEGER);
+        } else {
+            ps.setLong(index, value);
+        }
+    }
+
+    private static long generatedKey(PreparedStatement ps) throws SQLException {
+        try (ResultSet keys = ps.getGeneratedKeys()) {
+            if (!keys.next()) {
+                throw new SQLException("No generated key returned");
+            }
+            return keys.getLong(1);
+        }
+    }
+
+    private static void writeCsvLine(Writer writer, String[] cells, String... extra) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (String cell : cells) {
+            sb.append(csvValue(cell)).append(',');
+        }
+        for (int i = 0; i < extra.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(csvValue(extra[i]));
+        }
+        writer.write(sb.append('\n').toString());
+    }
+
+    private static String csvValue(String text) {
+        if (text == null) {
+            return "";
+        }
+        if (text.contains(",") || text.contains("\"") || text.contains("\n") || text.contains("\r")) {
+            return "\"" + text.replace("\"", "\"\"") + "\"";
+        }
+        return text;
+    }
+}
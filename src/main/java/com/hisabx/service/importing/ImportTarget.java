@@ -0,0 +1,86 @@
+package com.hisabx.service.importing;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * What a file is imported into, with the columns it understands. Headers are matched by name
+ * (Arabic headers as written by the export, or English column names), in any order; unknown
+ * columns are ignored.
+ */
+public enum ImportTarget {
+    PRODUCTS("المنتجات",
+            List.of(Field.CODE, Field.NAME, Field.CATEGORY, Field.BARCODE, Field.PRICE, Field.COST,
+                    Field.QUANTITY, Field.MINIMUM, Field.UNIT),
+            EnumSet.of(Field.NAME)),
+    CUSTOMERS("العملاء",
+            List.of(Field.CODE, Field.NAME, Field.PHONE, Field.ADDRESS, Field.PROJECT_LOCATION),
+            EnumSet.of(Field.NAME, Field.PHONE, Field.PROJECT_LOCATION)),
+    OPENING_STOCK("الأرصدة الافتتاحية",
+            List.of(Field.CODE, Field.BARCODE, Field.QUANTITY, Field.COST),
+            EnumSet.of(Field.QUANTITY));
+
+    public enum Field {
+        CODE("الكود", "كود", "الرمز", "code", "product_code", "customer_code"),
+        NAME("الاسم", "اسم", "name"),
+        CATEGORY("الفئة", "category"),
+        BARCODE("الباركود", "barcode"),
+        PRICE("السعر", "سعر البيع", "price", "unit_price"),
+        COST("التكلفة", "سعر التكلفة", "cost", "cost_price", "unit_cost"),
+        QUANTITY("الكمية", "quantity", "qty", "quantity_in_stock"),
+        MINIMUM("الحد الأدنى", "minimum", "minimum_stock"),
+        UNIT("الوحدة", "unit", "unit_of_measure"),
+        PHONE("الهاتف", "رقم الهاتف", "phone", "phone_number"),
+        ADDRESS("العنوان", "address"),
+        PROJECT_LOCATION("موقع المشروع", "مواقع المشاريع", "project_location");
+
+        private final String header;
+        private final List<String> aliases;
+
+        Field(String header, String... aliases) {
+            this.header = header;
+            this.aliases = List.of(aliases);
+        }
+
+        public String getHeader() { return header; }
+
+        boolean matches(String normalizedHeader) {
+            return header.equals(normalizedHeader) || aliases.contains(normalizedHeader);
+        }
+    }
+
+    private final String arabicName;
+    private final List<Field> fields;
+    private final Set<Field> required;
+
+    ImportTarget(String arabicName, List<Field> fields, Set<Field> required) {
+        this.arabicName = arabicName;
+        this.fields = fields;
+        this.required = required;
+    }
+
+    public String getArabicName() { return arabicName; }
+    public List<Field> getFields() { return fields; }
+    public Set<Field> getRequired() { return required; }
+
+    /**
+     * Column index of each field in a header row, by field ordinal; -1 when absent.
+     */
+    int[] resolveColumns(String[] headers) {
+        int[] columns = new int[Field.values().length];
+        Arrays.fill(columns, -1);
+        for (int c = 0; c < headers.length; c++) {
+            String header = headers[c] == null ? "" : headers[c].trim().toLowerCase(Locale.ROOT);
+            for (Field field : fields) {
+                if (columns[field.ordinal()] < 0 && field.matches(header)) {
+                    columns[field.ordinal()] = c;
+                    break;
+                }
+            }
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,40 @@
+package com.hisabx.service.importing;
+
+import com.hisabx.model.dto.ImportResult;
+import javafx.concurrent.Task;
+
+import java.io.File;
+
+/**
+ * Runs an import on a background thread with progress and cancel support.
+ */
+public class ImportTask extends Task<ImportResult> {
+    private final ImportTarget target;
+    private final File file;
+
+    public ImportTask(ImportTarget target, File file) {
+        this.target = target;
+        this.file = file;
+    }
+
+    public ImportTarget getTarget() { return target; }
+    public File getFile() { return file; }
+
+    @Override
+    protected ImportResult call() {
+        updateMessage("جاري الاستيراد...");
+        updateProgress(-1, 1);
+        return new ImportService().importFile(target, file, new ImportService.Progress() {
+            @Override
+            public void update(long rowsRead, double fraction) {
+                updateProgress(fraction, 1);
+                updateMessage("تمت معالجة " + rowsRead + " سطر");
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return ImportTask.this.isCancelled();
+            }
+        });
+    }
+}
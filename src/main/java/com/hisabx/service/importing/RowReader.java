@@ -0,0 +1,302 @@
+package com.hisabx.service.importing;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the rows of a CSV or xlsx file one at a time and hands them to a callback, so a file
+ * of any size is read in constant memory. xlsx sheets are parsed as a SAX event stream over
+ * the first worksheet; CSV is read through a buffered reader with quoted fields, a leading BOM
+ * and a comma, semicolon or tab separator (taken from the header line).
+ */
+final class RowReader {
+    private static final int CSV_BUFFER_CHARS = 64 * 1024;
+
+    private RowReader() {}
+
+    interface RowHandler {
+        /**
+         * @param line   1-based row number in the file (the header is row 1)
+         * @param cells  cell texts, never null; missing cells are empty strings
+         */
+        void row(long line, String[] cells);
+    }
+
+    /** Reports how far through the file the reader is, as bytes read of the total. */
+    interface PositionListener {
+        void position(long bytesRead, long totalBytes);
+    }
+
+    static boolean isXlsx(File file) {
+        return file.getName().toLowerCase().endsWith(".xlsx");
+    }
+
+    static void read(File file, RowHandler handler, PositionListener position) throws Exception {
+        if (isXlsx(file)) {
+            readXlsx(file, handler, position);
+        } else {
+            readCsv(file, handler, position);
+        }
+    }
+
+    private static void readCsv(File file, RowHandler handler, PositionListener position) throws IOException {
+        long total = file.length();
+        try (CountingInputStream in = new CountingInputStream(new FileInputStream(file));
+             Reader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), CSV_BUFFER_CHARS)) {
+            CsvParser parser = new CsvParser(reader);
+            long line = 0;
+            String[] cells;
+            while ((cells = parser.next()) != null) {
+                handler.row(++line, cells);
+                position.position(in.count, total);
+            }
+        }
+    }
+
+    private static void readXlsx(File file, RowHandler handler, PositionListener position) throws Exception {
+        try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                return;
+            }
+            try (InputStream sheet = sheets.next()) {
+                long total = sheets.getSheetPart().getSize();
+                CountingInputStream in = new CountingInputStream(sheet);
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(reader.getStylesTable(), null,
+                        new ReadOnlySharedStringsTable(pkg), new SheetRows(handler, in, total, position),
+                        new PlainNumberFormatter(), false));
+                parser.parse(new InputSource(in));
+            }
+        }
+    }
+
+    /**
+     * Collects the cells of each sheet row; rows without any value are skipped.
+     */
+    private static final class SheetRows implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final RowHandler handler;
+        private final CountingInputStream in;
+        private final long total;
+        private final PositionListener position;
+        private final List<String> cells = new ArrayList<>();
+
+        SheetRows(RowHandler handler, CountingInputStream in, long total, PositionListener position) {
+            this.handler = handler;
+            this.in = in;
+            this.total = total;
+            this.position = position;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            cells.clear();
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (!cells.isEmpty()) {
+                handler.row(rowNum + 1L, cells.toArray(new String[0]));
+                position.position(in.count, total);
+            }
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int column = cellReference != null ? new CellReference(cellReference).getCol() : cells.size();
+            while (cells.size() < column) {
+                cells.add("");
+            }
+            cells.add(formattedValue != null ? formattedValue : "");
+        }
+    }
+
+    /**
+     * Numbers in "General" cells as plain digits, so long barcodes and codes are not turned
+     * into scientific notation; formatted cells (dates, percentages) keep their format.
+     */
+    private static final class PlainNumberFormatter extends DataFormatter {
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString) {
+            if (formatString == null || "General".equalsIgnoreCase(formatString)) {
+                return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+            }
+            return super.formatRawCellContents(value, formatIndex, formatString);
+        }
+    }
+
+    /**
+     * Minimal RFC 4180 reader: quoted fields may contain separators, doubled quotes and line
+     * breaks.
+     */
+    private static final class CsvParser {
+        private final PushbackReader reader;
+        private char separator;
+
+        CsvParser(Reader reader) {
+            this.reader = new PushbackReader(reader);
+        }
+
+        String[] next() throws IOException {
+            if (separator == 0) {
+                String header = readHeaderLine();
+                if (header == null) {
+                    return null;
+                }
+                separator = detectSeparator(header);
+                return parseRecord(new PushbackReader(new StringReader(header)));
+            }
+            int c = reader.read();
+            if (c == -1) {
+                return null;
+            }
+            reader.unread(c);
+            return parseRecord(reader);
+        }
+
+        private String[] parseRecord(PushbackReader in) throws IOException {
+            List<String> cells = new ArrayList<>();
+            StringBuilder cell = new StringBuilder();
+            boolean quoted = false;
+            int c;
+            while ((c = in.read()) != -1) {
+                if (quoted) {
+                    if (c != '"') {
+                        cell.append((char) c);
+                    } else {
+                        int n = in.read();
+                        if (n == '"') {
+                            cell.append('"');
+                        } else {
+                            quoted = false;
+                            if (n != -1) {
+                                in.unread(n);
+                            }
+                        }
+                    }
+                } else if (c == '"' && cell.length() == 0) {
+                    quoted = true;
+                } else if (c == separator) {
+                    cells.add(cell.toString());
+                    cell.setLength(0);
+                } else if (c == '\n') {
+                    break;
+                } else if (c == '\r') {
+                    int n = in.read();
+                    if (n != '\n' && n != -1) {
+                        in.unread(n);
+                    }
+                    break;
+                } else {
+                    cell.append((char) c);
+                }
+            }
+            cells.add(cell.toString());
+            return cells.toArray(new String[0]);
+        }
+
+        /** The raw header record, without the BOM and line break. */
+        private String readHeaderLine() throws IOException {
+            StringBuilder line = new StringBuilder();
+            boolean quoted = false;
+            int c = reader.read();
+            if (c == '\ufeff') {
+                c = reader.read();
+            }
+            if (c == -1) {
+                return null;
+            }
+            while (c != -1) {
+                if (c == '"') {
+                    quoted = !quoted;
+                } else if (!quoted && (c == '\n' || c == '\r')) {
+                    int n = reader.read();
+                    if (!(c == '\r' && n == '\n') && n != -1) {
+                        reader.unread(n);
+                    }
+                    break;
+                }
+                line.append((char) c);
+                c = reader.read();
+            }
+            return line.toString();
+        }
+
+        /** Separator used by the header: comma, or semicolon/tab as saved by some Excel locales. */
+        private static char detectSeparator(String header) {
+            int commas = 0;
+            int semicolons = 0;
+            int tabs = 0;
+            boolean quoted = false;
+            for (int i = 0; i < header.length(); i++) {
+                char c = header.charAt(i);
+                if (c == '"') {
+                    quoted = !quoted;
+                } else if (!quoted) {
+                    commas += c == ',' ? 1 : 0;
+                    semicolons += c == ';' ? 1 : 0;
+                    tabs += c == '\t' ? 1 : 0;
+                }
+            }
+            return tabs > commas && tabs > semicolons ? '\t' : semicolons > commas ? ';' : ',';
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
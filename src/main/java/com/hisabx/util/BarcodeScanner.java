@@ -0,0 +1,281 @@
+package com.hisabx.util;
+
+import javafx.animation.AnimationTimer;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
+import javafx.event.Event;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseEvent;
+import javafx.stage.Window;
+import javafx.util.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * قارئ الباركود - a scanner input channel for a form, separate from its text fields.
+ *
+ * Keyboard-wedge scanners type a code much faster than a person and end it with Enter. Typed
+ * characters under the form are held back briefly: a burst of at least {@code scanner_min_length}
+ * characters, each within {@code scanner_max_key_gap_ms} of the last and followed by Enter, is
+ * taken as a scan; anything slower is handed back to the focused control as ordinary typing.
+ * Any other key pressed meanwhile (Backspace, arrows, shortcuts) first releases the held
+ * characters, so keys reach the control in the order they were typed.
+ * A scanner on a serial port (or a HID device exposed as one) can be read instead by setting
+ * {@code scanner_serial_port}; each line is a code.
+ *
+ * Scans are queued from any thread and handed to the form in batches, once per FX pulse, so a
+ * sustained burst costs one table update per frame and no scan is dropped.
+ */
+public class BarcodeScanner {
+    private static final Logger logger = LoggerFactory.getLogger(BarcodeScanner.class);
+
+    private static final String MAX_KEY_GAP_KEY = "scanner_max_key_gap_ms";
+    private static final String MIN_LENGTH_KEY = "scanner_min_length";
+    private static final String SERIAL_PORT_KEY = "scanner_serial_port";
+    private static final long DEFAULT_MAX_KEY_GAP_MS = 35;
+    private static final int DEFAULT_MIN_LENGTH = 4;
+    private static final int MAX_SCANS_PER_PULSE = 500;
+
+    // The serial port is read by one thread for the whole application and feeds the scanner
+    // of the form last used
+    private static volatile BarcodeScanner current;
+    private static Thread serialReader;
+
+    private final Node root;
+    private final Consumer<List<String>> batchHandler;
+    private final Queue<String> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AnimationTimer drain;
+    private final long maxKeyGapNanos;
+    private final int minLength;
+
+    // FX thread only: the burst being typed and the key events held back for it
+    private final StringBuilder burst = new StringBuilder();
+    private final List<KeyEvent> heldEvents = new ArrayList<>();
+    private final PauseTransition burstTimeout;
+    private long lastKeyAt;
+    private boolean replaying;
+
+    private BarcodeScanner(Node root, Consumer<List<String>> batchHandler, long maxKeyGapMs, int minLength) {
+        this.root = root;
+        this.batchHandler = batchHandler;
+        this.maxKeyGapNanos = maxKeyGapMs * 1_000_000;
+        this.minLength = minLength;
+        this.burstTimeout = new PauseTransition(Duration.millis(maxKeyGapMs));
+        this.burstTimeout.setOnFinished(e -> releaseHeld());
+        this.drain = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                drainPulse();
+            }
+        };
+    }
+
+    /**
+     * Listen for scans under {@code root} while it is showing; {@code batchHandler} receives
+     * the codes scanned since the previous pulse, in order, on the FX thread.
+     */
+    public static BarcodeScanner attach(Node root, Consumer<List<String>> batchHandler) {
+        Properties props = new AppConfigStore().load();
+        BarcodeScanner scanner = new BarcodeScanner(root, batchHandler,
+                readLong(props, MAX_KEY_GAP_KEY, DEFAULT_MAX_KEY_GAP_MS, 5),
+                (int) readLong(props, MIN_LENGTH_KEY, DEFAULT_MIN_LENGTH, 1));
+        root.addEventFilter(KeyEvent.KEY_TYPED, scanner::onKeyTyped);
+        root.addEventFilter(KeyEvent.KEY_PRESSED, scanner::onKeyPressed);
+        root.addEventFilter(MouseEvent.MOUSE_PRESSED, e -> current = scanner);
+        scanner.followShowing();
+        startSerialReader(props.getProperty(SERIAL_PORT_KEY));
+        return scanner;
+    }
+
+    /**
+     * Queue a code as if it had been scanned. Safe from any thread.
+     */
+    public void submit(String code) {
+        if (code == null || code.isBlank()) {
+            return;
+        }
+        queue.add(code.trim());
+        if (draining.compareAndSet(false, true)) {
+            Platform.runLater(drain::start);
+        }
+    }
+
+    private void drainPulse() {
+        List<String> batch = new ArrayList<>();
+        String code;
+        while (batch.size() < MAX_SCANS_PER_PULSE && (code = queue.poll()) != null) {
+            batch.add(code);
+        }
+        if (batch.isEmpty()) {
+            drain.stop();
+            draining.set(false);
+            // A scan queued between the poll and the flag reset would otherwise wait for the next one
+            if (!queue.isEmpty() && draining.compareAndSet(false, true)) {
+                drain.start();
+            }
+            return;
+        }
+        try {
+            batchHandler.accept(batch);
+        } catch (RuntimeException e) {
+            logger.error("Failed to apply {} scanned codes", batch.size(), e);
+        }
+    }
+
+    private void onKeyTyped(KeyEvent e) {
+        if (replaying) {
+            return;
+        }
+        String ch = e.getCharacter();
+        if (ch == null || ch.isEmpty() || Character.isISOControl(ch.charAt(0))
+                || e.isControlDown() || e.isAltDown() || e.isMetaDown()) {
+            return;
+        }
+        current = this;
+        long now = System.nanoTime();
+        if (!heldEvents.isEmpty() && now - lastKeyAt > maxKeyGapNanos) {
+            releaseHeld();
+        }
+        burst.append(ch);
+        heldEvents.add(e.copyFor(e.getSource(), e.getTarget()));
+        lastKeyAt = now;
+        e.consume();
+        burstTimeout.playFromStart();
+    }
+
+    private void onKeyPressed(KeyEvent e) {
+        if (replaying || heldEvents.isEmpty() || e.getCode().isModifierKey()) {
+            return;
+        }
+        if (e.getCode() == KeyCode.ENTER && burst.length() >= minLength
+                && System.nanoTime() - lastKeyAt <= maxKeyGapNanos) {
+            burstTimeout.stop();
+            String code = burst.toString();
+            burst.setLength(0);
+            heldEvents.clear();
+            e.consume();
+            submit(code);
+        } else if (e.getCode() == KeyCode.ENTER || !producesText(e)) {
+            // Typed by hand: the text reaches the field before the Enter, Backspace or
+            // navigation key that follows it
+            releaseHeld();
+        }
+    }
+
+    /** A key press whose character follows as KEY_TYPED and may still belong to a burst. */
+    private static boolean producesText(KeyEvent e) {
+        String text = e.getText();
+        return text != null && !text.isEmpty() && !Character.isISOControl(text.charAt(0))
+                && !e.isControlDown() && !e.isAltDown() && !e.isMetaDown();
+    }
+
+    /** Hand held-back characters to the control they were typed into. */
+    private void releaseHeld() {
+        burstTimeout.stop();
+        if (heldEvents.isEmpty()) {
+            return;
+        }
+        List<KeyEvent> events = new ArrayList<>(heldEvents);
+        heldEvents.clear();
+        burst.setLength(0);
+        replaying = true;
+        try {
+            for (KeyEvent held : events) {
+                Event.fireEvent(held.getTarget(), held);
+            }
+        } finally {
+            replaying = false;
+        }
+    }
+
+    private void followShowing() {
+        Runnable update = () -> {
+            boolean showing = root.getScene() != null && root.getScene().getWindow() != null;
+            if (showing) {
+                current = this;
+            } else {
+                releaseHeld();
+                if (current == this) {
+                    current = null;
+                }
+            }
+        };
+        ChangeListener<Window> windowListener = (obs, oldWindow, newWindow) -> update.run();
+        root.sceneProperty().addListener((obs, oldScene, newScene) -> {
+            if (oldScene != null) {
+                oldScene.windowProperty().removeListener(windowListener);
+            }
+            if (newScene != null) {
+                newScene.windowProperty().addListener(windowListener);
+            }
+            update.run();
+        });
+        Scene scene = root.getScene();
+        if (scene != null) {
+            scene.windowProperty().addListener(windowListener);
+        }
+        update.run();
+    }
+
+    private static synchronized void startSerialReader(String port) {
+        if (serialReader != null || port == null || port.isBlank()) {
+            return;
+        }
+        serialReader = new Thread(() -> readSerial(port.trim()), "Barcode-Serial");
+        serialReader.setDaemon(true);
+        serialReader.start();
+    }
+
+    private static void readSerial(String port) {
+        logger.info("Reading barcode scanner on {}", port);
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(port), StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                BarcodeScanner target = current;
+                if (target != null) {
+                    target.submit(line);
+                } else if (!line.isBlank()) {
+                    logger.debug("Scan with no open form ignored: {}", line);
+                }
+            }
+            logger.warn("Barcode scanner port {} closed", port);
+        } catch (IOException e) {
+            logger.error("Failed to read barcode scanner port {}", port, e);
+        } finally {
+            synchronized (BarcodeScanner.class) {
+                serialReader = null;
+            }
+        }
+    }
+
+    private static long readLong(Properties props, String key, long defaultValue, long min) {
+        String value = props.getProperty(key);
+        if (value != null) {
+            try {
+                return Math.max(min, Long.parseLong(value.trim()));
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid {} value: {}", key, value);
+            }
+        }
+        return defaultValue;
+    }
+}
@@ -0,0 +1,101 @@
+package com.hisabx.util;
+
+import com.hisabx.service.export.ExportSource;
+import com.hisabx.service.export.ExportTask;
+import javafx.geometry.Insets;
+import javafx.geometry.NodeOrientation;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
+import javafx.stage.Modality;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+
+import java.io.File;
+
+/**
+ * نافذة تقدم التصدير - تشغّل التصدير في الخلفية مع إمكانية الإلغاء
+ */
+public final class ExportProgressDialog {
+    private ExportProgressDialog() {}
+
+    /**
+     * Ask for a target file (CSV or xlsx) and export the source to it in the background.
+     */
+    public static void chooseFileAndExport(Window owner, ExportSource source) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("حفظ ملف التصدير");
+        chooser.setInitialFileName(source.getName() + "_export.csv");
+        chooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV Files", "*.csv"),
+                new FileChooser.ExtensionFilter("Excel Files", "*.xlsx"));
+        File file = chooser.showSaveDialog(owner);
+        if (file == null) {
+            return;
+        }
+        // Keep the extension in line with the chosen filter
+        if (chooser.getSelectedExtensionFilter() != null
+                && chooser.getSelectedExtensionFilter().getExtensions().contains("*.xlsx")
+                && !file.getName().toLowerCase().endsWith(".xlsx")) {
+            String name = file.getName().replaceFirst("\\.csv$", "");
+            file = new File(file.getParentFile(), name + ".xlsx");
+        }
+        run(owner, new ExportTask(source, file));
+    }
+
+    public static void run(Window owner, ExportTask task) {
+        Stage stage = new Stage();
+        stage.setTitle("تصدير البيانات");
+        stage.initModality(Modality.WINDOW_MODAL);
+        if (owner != null) {
+            stage.initOwner(owner);
+        }
+
+        Label messageLabel = new Label();
+        messageLabel.textProperty().bind(task.messageProperty());
+        ProgressBar progressBar = new ProgressBar();
+        progressBar.setPrefWidth(320);
+        progressBar.progressProperty().bind(task.progressProperty());
+        Button cancelButton = new Button("إلغاء");
+        cancelButton.setOnAction(e -> task.cancel());
+
+        VBox root = new VBox(12, messageLabel, progressBar, cancelButton);
+        root.setAlignment(Pos.CENTER);
+        root.setPadding(new Insets(20));
+        root.setNodeOrientation(NodeOrientation.RIGHT_TO_LEFT);
+        Scene scene = new Scene(root);
+        com.hisabx.MainApp.applyCurrentFontSize(scene);
+        stage.setScene(scene);
+        stage.setOnCloseRequest(e -> task.cancel());
+
+        task.setOnSucceeded(e -> {
+            stage.close();
+            showAlert(Alert.AlertType.INFORMATION, "تم",
+                    "تم تصدير " + task.getValue() + " سجل بنجاح إلى:\n" + task.getFile().getAbsolutePath());
+        });
+        task.setOnFailed(e -> {
+            stage.close();
+            Throwable error = task.getException();
+            showAlert(Alert.AlertType.ERROR, "خطأ", error != null ? error.getMessage() : "فشل في تصدير البيانات");
+        });
+        task.setOnCancelled(e -> stage.close());
+
+        Thread thread = new Thread(task, "Export-Worker");
+        thread.setDaemon(true);
+        thread.start();
+        stage.show();
+    }
+
+    private static void showAlert(Alert.AlertType type, String title, String message) {
+        Alert alert = new Alert(type);
+        alert.setTitle(title);
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
+}
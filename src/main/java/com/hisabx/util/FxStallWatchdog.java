@@ -0,0 +1,325 @@
+package com.hisabx.util;
+
+import com.hisabx.database.ActiveQueryTracker;
+import javafx.application.Platform;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * مراقب تجمد الواجهة - يكتشف توقف خيط JavaFX عن الاستجابة
+ *
+ * A background thread posts a heartbeat to the FX thread and checks how long it waits.
+ * When the heartbeat is blocked longer than the threshold, the FX thread stack and the
+ * SQL it is executing are captured and logged right away; a stall that lasts is written to
+ * the log file with a fresh stack every few seconds, so a thread that never comes back still
+ * leaves a trace. Finished stalls
+ * are counted per application call site and appended to a rolling file under {@code logs/}.
+ */
+public class FxStallWatchdog {
+    private static final Logger logger = LoggerFactory.getLogger(FxStallWatchdog.class);
+
+    private static final String THRESHOLD_KEY = "fx_stall_threshold_ms";
+    private static final long DEFAULT_THRESHOLD_MS = 250;
+    private static final long SAMPLE_INTERVAL_MS = 50;
+    private static final int STACK_DEPTH = 25;
+    private static final long ONGOING_LOG_INTERVAL_MS = 5000;
+
+    private static final String LOG_FILE = "fx-stalls.log";
+    private static final long MAX_LOG_BYTES = 1024 * 1024;
+    private static final int MAX_LOG_FILES = 3;
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static FxStallWatchdog instance;
+
+    private final Map<String, CallSiteStats> statsBySite = new HashMap<>();
+    private ScheduledExecutorService sampler;
+    private volatile Thread fxThread;
+    private volatile ActiveQueryTracker.Holder fxQueries;
+    private volatile long thresholdMs = DEFAULT_THRESHOLD_MS;
+
+    // Sampler thread state
+    private volatile long heartbeatPostedAt;
+    private volatile boolean heartbeatPending;
+    private StallSample currentStall;
+
+    private FxStallWatchdog() {
+    }
+
+    public static synchronized FxStallWatchdog getInstance() {
+        if (instance == null) {
+            instance = new FxStallWatchdog();
+        }
+        return instance;
+    }
+
+    /**
+     * Start watching. Must be called on the FX thread.
+     */
+    public synchronized void start() {
+        if (sampler != null) {
+            return;
+        }
+        fxThread = Thread.currentThread();
+        fxQueries = ActiveQueryTracker.register();
+        thresholdMs = loadThreshold();
+        sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "FX-Watchdog");
+            t.setDaemon(true);
+            return t;
+        });
+        sampler.scheduleWithFixedDelay(this::sample, SAMPLE_INTERVAL_MS, SAMPLE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        logger.info("FX stall watchdog started (threshold {} ms)", thresholdMs);
+    }
+
+    public long getThresholdMs() {
+        return thresholdMs;
+    }
+
+    public void setThresholdMs(long thresholdMs) {
+        this.thresholdMs = Math.max(50, thresholdMs);
+        AppConfigStore store = new AppConfigStore();
+        Properties props = store.load();
+        props.setProperty(THRESHOLD_KEY, String.valueOf(this.thresholdMs));
+        store.save(props);
+    }
+
+    /**
+     * Stall statistics per call site, worst total blocked time first.
+     */
+    public List<CallSiteStats> getStats() {
+        List<CallSiteStats> copy = new ArrayList<>();
+        synchronized (statsBySite) {
+            statsBySite.values().forEach(s -> copy.add(s.copy()));
+        }
+        copy.sort(Comparator.comparingLong(CallSiteStats::getTotalMs).reversed());
+        return copy;
+    }
+
+    public void resetStats() {
+        synchronized (statsBySite) {
+            statsBySite.clear();
+        }
+    }
+
+    public File getLogFile() {
+        return LogFiles.get(LOG_FILE);
+    }
+
+    private void sample() {
+        try {
+            long now = System.currentTimeMillis();
+            if (!heartbeatPending) {
+                if (currentStall != null) {
+                    finishStall(currentStall);
+                    currentStall = null;
+                }
+                heartbeatPending = true;
+                heartbeatPostedAt = now;
+                Platform.runLater(() -> heartbeatPending = false);
+                return;
+            }
+
+            long blockedMs = now - heartbeatPostedAt;
+            if (blockedMs >= thresholdMs && currentStall == null) {
+                currentStall = captureStall();
+            }
+            if (currentStall != null) {
+                currentStall.durationMs = blockedMs;
+                String sql = executingSql();
+                if (sql != null) {
+                    currentStall.sql = sql;
+                }
+                if (now - currentStall.loggedAt >= ONGOING_LOG_INTERVAL_MS) {
+                    logOngoing(currentStall, now);
+                }
+            }
+        } catch (Exception e) {
+            logger.debug("FX watchdog sample failed", e);
+        }
+    }
+
+    private StallSample captureStall() {
+        Thread thread = fxThread;
+        StackTraceElement[] stack = thread != null ? thread.getStackTrace() : new StackTraceElement[0];
+        StallSample stall = new StallSample();
+        stall.startedAt = LocalDateTime.now();
+        stall.stack = stack;
+        stall.callSite = findCallSite(stack);
+        stall.sql = executingSql();
+        stall.loggedAt = System.currentTimeMillis();
+        logger.warn("FX thread blocked for {} ms so far at {}{}", stall.loggedAt - heartbeatPostedAt,
+                stall.callSite, stall.sql != null ? " running " + stall.sql.replaceAll("\\s+", " ") : "");
+        return stall;
+    }
+
+    private String executingSql() {
+        ActiveQueryTracker.Holder holder = fxQueries;
+        ActiveQueryTracker.ActiveQuery query = holder != null ? holder.getActive() : null;
+        return query != null ? query.getSql() : null;
+    }
+
+    /**
+     * Report a stall that has not ended yet, with a fresh stack of where the FX thread is now.
+     */
+    private void logOngoing(StallSample stall, long now) {
+        Thread thread = fxThread;
+        StackTraceElement[] stack = thread != null ? thread.getStackTrace() : stall.stack;
+        StallSample snapshot = new StallSample();
+        snapshot.startedAt = stall.startedAt;
+        snapshot.stack = stack;
+        snapshot.callSite = findCallSite(stack);
+        snapshot.sql = stall.sql;
+        snapshot.durationMs = now - heartbeatPostedAt;
+        stall.loggedAt = now;
+        logger.warn("FX thread blocked for {} ms so far at {}{}", snapshot.durationMs, snapshot.callSite,
+                snapshot.sql != null ? " running " + snapshot.sql.replaceAll("\\s+", " ") : "");
+        writeToLog(snapshot, true);
+    }
+
+    private void finishStall(StallSample stall) {
+        synchronized (statsBySite) {
+            statsBySite.computeIfAbsent(stall.callSite, CallSiteStats::new).record(stall);
+        }
+        logger.warn("FX thread blocked for {} ms at {}", stall.durationMs, stall.callSite);
+        writeToLog(stall, false);
+    }
+
+    /**
+     * The screen code behind a stall: the first controller frame, else the first application
+     * frame outside the database and service layers, else the first application frame. Stalls
+     * inside shared services are then grouped by the screen action that called them.
+     */
+    private static String findCallSite(StackTraceElement[] stack) {
+        StackTraceElement outsideServices = null;
+        StackTraceElement firstApp = null;
+        for (StackTraceElement frame : stack) {
+            String cls = frame.getClassName();
+            if (!cls.startsWith("com.hisabx.") || cls.startsWith(FxStallWatchdog.class.getName())) {
+                continue;
+            }
+            if (cls.startsWith("com.hisabx.controller.")) {
+                return describe(frame);
+            }
+            if (outsideServices == null && !cls.startsWith("com.hisabx.database.")
+                    && !cls.startsWith("com.hisabx.service.")) {
+                outsideServices = frame;
+            }
+            if (firstApp == null) {
+                firstApp = frame;
+            }
+        }
+        if (outsideServices != null) {
+            return describe(outsideServices);
+        }
+        if (firstApp != null) {
+            return describe(firstApp);
+        }
+        return stack.length > 0 ? stack[0].getClassName() + "." + stack[0].getMethodName() : "unknown";
+    }
+
+    private static String describe(StackTraceElement frame) {
+        String cls = frame.getClassName();
+        return cls.substring(cls.lastIndexOf('.') + 1) + "." + frame.getMethodName() + ":" + frame.getLineNumber();
+    }
+
+    private void writeToLog(StallSample stall, boolean ongoing) {
+        File logFile = getLogFile();
+        LogFiles.rollIfNeeded(logFile, MAX_LOG_BYTES, MAX_LOG_FILES);
+        try (PrintWriter out = new PrintWriter(new FileWriter(logFile, StandardCharsets.UTF_8, true))) {
+            out.println(stall.startedAt.format(TIME_FORMAT) + (ongoing ? " ongoing" : "") + " blocked="
+                    + stall.durationMs + "ms site=" + stall.callSite);
+            if (stall.sql != null) {
+                out.println("  sql: " + stall.sql.replaceAll("\\s+", " "));
+            }
+            for (int i = 0; i < Math.min(STACK_DEPTH, stall.stack.length); i++) {
+                out.println("    at " + stall.stack[i]);
+            }
+            out.println();
+        } catch (IOException e) {
+            logger.warn("Failed to write FX stall log", e);
+        }
+    }
+
+    private static long loadThreshold() {
+        String value = new AppConfigStore().load().getProperty(THRESHOLD_KEY);
+        if (value != null) {
+            try {
+                return Math.max(50, Long.parseLong(value.trim()));
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid {} value: {}", THRESHOLD_KEY, value);
+            }
+        }
+        return DEFAULT_THRESHOLD_MS;
+    }
+
+    private static class StallSample {
+        private LocalDateTime startedAt;
+        private StackTraceElement[] stack;
+        private String callSite;
+        private String sql;
+        private long durationMs;
+        private long loggedAt;
+    }
+
+    /**
+     * Aggregated stalls for one call site.
+     */
+    public static class CallSiteStats {
+        private final String callSite;
+        private long count;
+        private long totalMs;
+        private long maxMs;
+        private String lastSql;
+        private LocalDateTime lastSeen;
+
+        private CallSiteStats(String callSite) {
+            this.callSite = callSite;
+        }
+
+        private void record(StallSample stall) {
+            count++;
+            totalMs += stall.durationMs;
+            maxMs = Math.max(maxMs, stall.durationMs);
+            if (stall.sql != null) {
+                lastSql = stall.sql;
+            }
+            lastSeen = stall.startedAt;
+        }
+
+        private CallSiteStats copy() {
+            CallSiteStats c = new CallSiteStats(callSite);
+            c.count = count;
+            c.totalMs = totalMs;
+            c.maxMs = maxMs;
+            c.lastSql = lastSql;
+            c.lastSeen = lastSeen;
+            return c;
+        }
+
+        public String getCallSite() { return callSite; }
+        public long getCount() { return count; }
+        public long getTotalMs() { return totalMs; }
+        public long getMaxMs() { return maxMs; }
+        public double getAverageMs() { return count == 0 ? 0 : (double) totalMs / count; }
+        public String getLastSql() { return lastSql; }
+        public LocalDateTime getLastSeen() { return lastSeen; }
+    }
+}
@@ -0,0 +1,112 @@
+package com.hisabx.util;
+
+import com.hisabx.model.dto.ImportResult;
+import com.hisabx.service.importing.ImportTarget;
+import com.hisabx.service.importing.ImportTask;
+import javafx.geometry.Insets;
+import javafx.geometry.NodeOrientation;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
+import javafx.stage.Modality;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+
+import java.io.File;
+
+/**
+ * نافذة تقدم الاستيراد - تشغّل الاستيراد في الخلفية مع إمكانية الإلغاء
+ */
+public final class ImportProgressDialog {
+    private ImportProgressDialog() {}
+
+    /**
+     * Ask for a source file (CSV or xlsx) and import it into the target in the background.
+     */
+    public static void chooseFileAndImport(Window owner, ImportTarget target) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("استيراد " + target.getArabicName());
+        chooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV / Excel", "*.csv", "*.xlsx"),
+                new FileChooser.ExtensionFilter("CSV Files", "*.csv"),
+                new FileChooser.ExtensionFilter("Excel Files", "*.xlsx"));
+        File file = chooser.showOpenDialog(owner);
+        if (file == null) {
+            return;
+        }
+        run(owner, new ImportTask(target, file));
+    }
+
+    public static void run(Window owner, ImportTask task) {
+        Stage stage = new Stage();
+        stage.setTitle("استيراد " + task.getTarget().getArabicName());
+        stage.initModality(Modality.WINDOW_MODAL);
+        if (owner != null) {
+            stage.initOwner(owner);
+        }
+
+        Label messageLabel = new Label();
+        messageLabel.textProperty().bind(task.messageProperty());
+        ProgressBar progressBar = new ProgressBar();
+        progressBar.setPrefWidth(320);
+        progressBar.progressProperty().bind(task.progressProperty());
+        Button cancelButton = new Button("إيقاف");
+        cancelButton.setOnAction(e -> task.cancel());
+
+        VBox root = new VBox(12, messageLabel, progressBar, cancelButton);
+        root.setAlignment(Pos.CENTER);
+        root.setPadding(new Insets(20));
+        root.setNodeOrientation(NodeOrientation.RIGHT_TO_LEFT);
+        Scene scene = new Scene(root);
+        com.hisabx.MainApp.applyCurrentFontSize(scene);
+        stage.setScene(scene);
+        stage.setOnCloseRequest(e -> task.cancel());
+
+        task.setOnSucceeded(e -> {
+            stage.close();
+            ImportResult result = task.getValue();
+            showAlert(result.getRejected() > 0 ? Alert.AlertType.WARNING : Alert.AlertType.INFORMATION,
+                    "تم", summary(result));
+        });
+        task.setOnFailed(e -> {
+            stage.close();
+            Throwable error = task.getException();
+            showAlert(Alert.AlertType.ERROR, "خطأ", error != null ? error.getMessage() : "فشل في استيراد البيانات");
+        });
+        task.setOnCancelled(e -> {
+            stage.close();
+            showAlert(Alert.AlertType.INFORMATION, "تم الإيقاف",
+                    "تم إيقاف الاستيراد، وحُفظت الدفعات التي اكتملت قبل الإيقاف.");
+        });
+
+        Thread thread = new Thread(task, "Import-Worker");
+        thread.setDaemon(true);
+        thread.start();
+        stage.show();
+    }
+
+    private static String summary(ImportResult result) {
+        StringBuilder sb = new StringBuilder()
+                .append("الأسطر المقروءة: ").append(result.getRowsRead())
+                .append("\nالمضافة: ").append(result.getInserted())
+                .append("\nالمحدّثة: ").append(result.getUpdated())
+                .append("\nالمرفوضة: ").append(result.getRejected());
+        if (result.getRejectFile() != null) {
+            sb.append("\n\nالأسطر المرفوضة مع سبب الرفض في:\n").append(result.getRejectFile().getAbsolutePath());
+        }
+        return sb.toString();
+    }
+
+    private static void showAlert(Alert.AlertType type, String title, String message) {
+        Alert alert = new Alert(type);
+        alert.setTitle(title);
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
+}
@@ -0,0 +1,41 @@
+package com.hisabx.util;
+
+import java.io.File;
+
+/**
+ * Helpers for the small diagnostic log files kept under {@code logs/}.
+ */
+public final class LogFiles {
+    public static final String LOG_DIR = "logs";
+
+    private LogFiles() {}
+
+    /** A file in the log directory, creating the directory if needed. */
+    public static File get(String name) {
+        File dir = new File(LOG_DIR);
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        return new File(dir, name);
+    }
+
+    /**
+     * Rotate file -> file.1 -> file.2 ... once it reaches maxBytes, keeping maxFiles files in total.
+     */
+    public static void rollIfNeeded(File logFile, long maxBytes, int maxFiles) {
+        if (!logFile.exists() || logFile.length() < maxBytes) {
+            return;
+        }
+        File oldest = new File(logFile.getPath() + "." + (maxFiles - 1));
+        if (oldest.exists()) {
+            oldest.delete();
+        }
+        for (int i = maxFiles - 2; i >= 1; i--) {
+            File from = new File(logFile.getPath() + "." + i);
+            if (from.exists()) {
+                from.renameTo(new File(logFile.getPath() + "." + (i + 1)));
+            }
+        }
+        logFile.renameTo(new File(logFile.getPath() + ".1"));
+    }
+}
@@ -0,0 +1,14 @@
+package com.hisabx.util;
+
+/**
+ * Implemented by tab controllers whose view can be handed out again after its tab
+ * is closed instead of parsing the FXML from scratch.
+ *
+ * <p>{@link #resetView()} is called on a background thread while the view is detached
+ * from any scene. It reads the data the view shows and must not touch controls; it returns
+ * the step, run on the FX thread, that clears per-use state (search text, filters, selection)
+ * and shows that data, leaving the view as if it had just been loaded.</p>
+ */
+public interface ReusableView {
+    Runnable resetView();
+}
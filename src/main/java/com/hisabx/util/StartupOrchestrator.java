@@ -0,0 +1,175 @@
+package com.hisabx.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Runs application startup work as named stages on background threads.
+ * A stage starts as soon as every stage it depends on has finished, so independent
+ * stages (database, license check, warm-up work) run in parallel.
+ * Per-stage and total timings are logged.
+ */
+public class StartupOrchestrator {
+    private static final Logger logger = LoggerFactory.getLogger(StartupOrchestrator.class);
+
+    private final Map<String, StageDef> stages = new LinkedHashMap<>();
+    private final Map<String, CompletableFuture<Object>> futures = new LinkedHashMap<>();
+    private final AtomicInteger completedStages = new AtomicInteger();
+    private BiConsumer<String, Integer> progressListener;
+    private ExecutorService executor;
+
+    /**
+     * Register a required stage. If it fails, every stage depending on it and the
+     * whole startup fail as well.
+     *
+     * @param name      unique stage name (used for dependencies, results and logging)
+     * @param work      the work to run; its return value is available through {@link #getResult(String)}
+     * @param dependsOn names of previously registered stages that must finish first
+     */
+    public StartupOrchestrator stage(String name, Callable<?> work, String... dependsOn) {
+        return addStage(name, work, true, dependsOn);
+    }
+
+    /**
+     * Register an optional stage (warm-up, preloading). A failure is logged and the
+     * stage result becomes null; startup continues.
+     */
+    public StartupOrchestrator optionalStage(String name, Callable<?> work, String... dependsOn) {
+        return addStage(name, work, false, dependsOn);
+    }
+
+    /**
+     * Called from a background thread after each stage finishes with the stage name
+     * and the number of finished stages so far.
+     */
+    public void setProgressListener(BiConsumer<String, Integer> progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    public int getStageCount() {
+        return stages.size();
+    }
+
+    /**
+     * Start all stages. The returned future completes when every stage has finished,
+     * or exceptionally with the first required stage failure.
+     */
+    public synchronized CompletableFuture<Void> start() {
+        if (executor != null) {
+            throw new IllegalStateException("Startup already started");
+        }
+        int threads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        AtomicInteger threadCounter = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "Startup-" + threadCounter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        long startedAt = System.nanoTime();
+        for (StageDef def : stages.values()) {
+            List<CompletableFuture<Object>> deps = new ArrayList<>();
+            for (String dep : def.dependsOn) {
+                deps.add(futures.get(dep));
+            }
+            CompletableFuture<Object> future = CompletableFuture
+                    .allOf(deps.toArray(new CompletableFuture<?>[0]))
+                    .thenApplyAsync(ignored -> runStage(def), executor);
+            futures.put(def.name, future);
+        }
+
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0]))
+                .whenComplete((v, err) -> {
+                    long totalMs = (System.nanoTime() - startedAt) / 1_000_000;
+                    if (err != null) {
+                        logger.error("Startup failed after {} ms", totalMs);
+                    } else {
+                        logger.info("Startup stages finished in {} ms", totalMs);
+                    }
+                    executor.shutdown();
+                });
+    }
+
+    /**
+     * Result of a finished stage, or null if the stage failed, returned null or has not finished.
+     */
+    @SuppressWarnings("unchecked")
+    public <R> R getResult(String name) {
+        CompletableFuture<Object> future = futures.get(name);
+        if (future == null || !future.isDone() || future.isCompletedExceptionally()) {
+            return null;
+        }
+        return (R) future.join();
+    }
+
+    private StartupOrchestrator addStage(String name, Callable<?> work, boolean required, String... dependsOn) {
+        if (name == null || work == null) {
+            throw new IllegalArgumentException("Stage name and work are required");
+        }
+        if (stages.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate startup stage: " + name);
+        }
+        // Dependencies must be registered first; this also rules out cycles
+        for (String dep : dependsOn) {
+            if (!stages.containsKey(dep)) {
+                throw new IllegalArgumentException("Unknown dependency '" + dep + "' for stage " + name);
+            }
+        }
+        stages.put(name, new StageDef(name, work, required, dependsOn));
+        return this;
+    }
+
+    private Object runStage(StageDef def) {
+        long stageStart = System.nanoTime();
+        try {
+            Object result = def.work.call();
+            logger.info("Startup stage '{}' finished in {} ms on {}", def.name,
+                    (System.nanoTime() - stageStart) / 1_000_000, Thread.currentThread().getName());
+            return result;
+        } catch (Exception e) {
+            long elapsedMs = (System.nanoTime() - stageStart) / 1_000_000;
+            if (def.required) {
+                logger.error("Startup stage '{}' failed after {} ms", def.name, elapsedMs, e);
+                throw new CompletionException(e);
+            }
+            logger.warn("Optional startup stage '{}' failed after {} ms", def.name, elapsedMs, e);
+            return null;
+        } finally {
+            int done = completedStages.incrementAndGet();
+            BiConsumer<String, Integer> listener = progressListener;
+            if (listener != null) {
+                try {
+                    listener.accept(def.name, done);
+                } catch (Exception e) {
+                    logger.warn("Startup progress listener failed", e);
+                }
+            }
+        }
+    }
+
+    private static class StageDef {
+        private final String name;
+        private final Callable<?> work;
+        private final boolean required;
+        private final String[] dependsOn;
+
+        private StageDef(String name, Callable<?> work, boolean required, String[] dependsOn) {
+            this.name = name;
+            this.work = work;
+            this.required = required;
+            this.dependsOn = dependsOn;
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package com.hisabx.util;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import javafx.embed.swing.SwingFXUtils;
 import javafx.scene.image.Image;
+import javafx.stage.Screen;
 
 import org.apache.batik.transcoder.TranscoderException;
 import org.apache.batik.transcoder.TranscoderInput;
@@ -10,27 +13,136 @@ import org.apache.batik.transcoder.image.ImageTranscoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.InputStream;
-
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Loads SVG icons as JavaFX images.
+ * Rasterized icons are cached at two levels: an in-memory LRU keyed by
+ * (path, size, output scale) and a PNG cache on disk keyed by the SVG content hash,
+ * so repeated dashboard rebuilds and tab opens do not parse SVG again.
+ */
 public class SvgImageLoader {
 
     private static final Logger logger = LoggerFactory.getLogger(SvgImageLoader.class);
 
+    /** Icon size used by dashboard tiles. */
+    public static final float DASHBOARD_TILE_SIZE = 48;
+    /** Icon size used in tab headers. */
+    public static final float TAB_ICON_SIZE = 20;
+
+    private static final String DISK_CACHE_DIR = "icon_cache";
+    private static final int MEMORY_CACHE_SIZE = 256;
+
+    private static final Map<String, Image> memoryCache = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Image> eldest) {
+            return size() > MEMORY_CACHE_SIZE;
+        }
+    };
+
+    private static volatile double outputScale = 0;
+
     /**
      * Loads an SVG file from the classpath and returns it as a JavaFX Image.
-     * 
+     * The image is rendered at the screen output scale, so callers should size the
+     * ImageView with setFitWidth/setFitHeight.
+     *
      * @param resourcePath The path to the SVG resource (e.g., "/icons/my-icon.svg")
      * @param width        The desired width. If <= 0, the SVG's width is used.
      * @param height       The desired height. If <= 0, the SVG's height is used.
      * @return The JavaFX Image, or null if loading fails.
      */
     public static Image loadSvgImage(String resourcePath, float width, float height) {
+        double scale = getOutputScale();
+        String key = resourcePath + "|" + width + "x" + height + "@" + scale;
+        synchronized (memoryCache) {
+            Image cached = memoryCache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        Image image = loadUncached(resourcePath, scaled(width, scale), scaled(height, scale));
+        if (image != null) {
+            synchronized (memoryCache) {
+                memoryCache.put(key, image);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Loads an SVG file from the classpath and returns it as a JavaFX Image using
+     * default size.
+     */
+    public static Image loadSvgImage(String resourcePath) {
+        return loadSvgImage(resourcePath, -1, -1);
+    }
+
+    /**
+     * Rasterizes every icon listed in /icons/index.json at the given sizes.
+     * Intended to run on a background thread at startup.
+     *
+     * @return the number of icons loaded into the cache
+     */
+    public static int prewarmIcons(float... sizes) {
+        int loaded = 0;
+        try (InputStream in = SvgImageLoader.class.getResourceAsStream("/icons/index.json")) {
+            if (in == null) {
+                logger.warn("Icon index not found, skipping icon prewarm");
+                return 0;
+            }
+            JsonNode index = new ObjectMapper().readTree(in);
+            for (JsonNode entry : index) {
+                String file = entry.path("file").asText("");
+                if (file.isEmpty()) {
+                    continue;
+                }
+                for (float size : sizes) {
+                    if (loadSvgImage("/icons/" + file, size, size) != null) {
+                        loaded++;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to prewarm icon cache", e);
+        }
+        return loaded;
+    }
+
+    public static void clearMemoryCache() {
+        synchronized (memoryCache) {
+            memoryCache.clear();
+        }
+    }
+
+    private static Image loadUncached(String resourcePath, float width, float height) {
         try (InputStream inputStream = SvgImageLoader.class.getResourceAsStream(resourcePath)) {
             if (inputStream == null) {
                 logger.error("SVG resource not found: " + resourcePath);
                 return null;
             }
+            byte[] svgBytes = inputStream.readAllBytes();
+
+            File cacheFile = new File(DISK_CACHE_DIR,
+                    sha256Hex(svgBytes) + "_" + sizeKey(width) + "x" + sizeKey(height) + ".png");
+            if (cacheFile.isFile()) {
+                Image cached = new Image(cacheFile.toURI().toString());
+                if (!cached.isError()) {
+                    return cached;
+                }
+                logger.warn("Discarding unreadable icon cache file: {}", cacheFile.getName());
+            }
 
             BufferedImageTranscoder transcoder = new BufferedImageTranscoder();
 
@@ -42,11 +154,12 @@ public class SvgImageLoader {
                 transcoder.addTranscodingHint(ImageTranscoder.KEY_HEIGHT, height);
             }
 
-            TranscoderInput input = new TranscoderInput(inputStream);
+            TranscoderInput input = new TranscoderInput(new ByteArrayInputStream(svgBytes));
             transcoder.transcode(input, null);
 
             BufferedImage bufferedImage = transcoder.getBufferedImage();
             if (bufferedImage != null) {
+                writeDiskCache(cacheFile, bufferedImage);
                 return SwingFXUtils.toFXImage(bufferedImage, null);
             }
 
@@ -56,12 +169,47 @@ public class SvgImageLoader {
         return null;
     }
 
-    /**
-     * Loads an SVG file from the classpath and returns it as a JavaFX Image using
-     * default size.
-     */
-    public static Image loadSvgImage(String resourcePath) {
-        return loadSvgImage(resourcePath, -1, -1);
+    private static void writeDiskCache(File cacheFile, BufferedImage image) {
+        try {
+            File dir = cacheFile.getParentFile();
+            if (!dir.exists()) {
+                dir.mkdirs();
+            }
+            // Write to a unique temp file first so concurrent loads never see a partial PNG
+            File tmp = Files.createTempFile(dir.toPath(), "icon", ".tmp").toFile();
+            ImageIO.write(image, "png", tmp);
+            Files.move(tmp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (Exception e) {
+            logger.warn("Failed to write icon cache file: {}", cacheFile.getName(), e);
+        }
+    }
+
+    private static double getOutputScale() {
+        if (outputScale <= 0) {
+            try {
+                outputScale = Math.max(1.0, Screen.getPrimary().getOutputScaleX());
+            } catch (Exception e) {
+                outputScale = 1.0;
+            }
+        }
+        return outputScale;
+    }
+
+    private static float scaled(float size, double scale) {
+        return size > 0 ? (float) Math.ceil(size * scale) : size;
+    }
+
+    private static String sha256Hex(byte[] data) throws NoSuchAlgorithmException {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+        StringBuilder sb = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    private static String sizeKey(float size) {
+        return size > 0 ? String.valueOf((int) size) : "auto";
     }
 
     // Internal Transcoder helper
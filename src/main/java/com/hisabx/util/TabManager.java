@@ -1,6 +1,5 @@
 package com.hisabx.util;
 
-import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.control.Tab;
 import javafx.scene.control.TabPane;
@@ -13,7 +12,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.function.Consumer;
@@ -29,6 +27,7 @@ public class TabManager {
     private Tab dashboardTab;
     private MainApp mainApp;
     private final Map<String, Tab> openTabs = new HashMap<>();
+    private final Map<String, ViewFactory.PreparedView> openViews = new HashMap<>();
     private Runnable dashboardRefreshCallback;
 
     private TabManager() {
@@ -47,10 +46,12 @@ public class TabManager {
         this.mainApp = mainApp;
         // Ensure we don't keep stale tabs between sessions / layouts
         this.openTabs.clear();
+        this.openViews.clear();
     }
 
     public void reset() {
         this.openTabs.clear();
+        this.openViews.clear();
         this.tabPane = null;
         this.dashboardTab = null;
         this.mainApp = null;
@@ -92,26 +93,17 @@ public class TabManager {
         }
 
         try {
-            FXMLLoader loader = new FXMLLoader();
-            loader.setLocation(MainApp.class.getResource(fxmlPath));
-            loader.setCharset(StandardCharsets.UTF_8);
-            Parent content = loader.load();
+            long started = System.nanoTime();
+            ViewFactory.PreparedView view = ViewFactory.getInstance().acquire(fxmlPath);
+            Parent content = view.getRoot();
 
-            T controller = loader.getController();
+            T controller = view.getController();
 
             // تهيئة الكنترولر إذا كان هناك initializer
             if (controllerInitializer != null && controller != null) {
                 controllerInitializer.accept(controller);
             }
 
-            // Apply font size scaling to the loaded content
-            if (content instanceof javafx.scene.Parent) {
-                int fontSize = com.hisabx.util.SessionManager.getInstance().getUiFontSize();
-                if (fontSize != 13) {
-                    com.hisabx.MainApp.applyFontSizeRecursive((javafx.scene.Parent) content, fontSize);
-                }
-            }
-
             // إنشاء التبويب
             Tab tab = createTab(tabId, title, iconPath, content);
 
@@ -119,7 +111,9 @@ public class TabManager {
             tabPane.getTabs().add(tab);
             tabPane.getSelectionModel().select(tab);
             openTabs.put(tabId, tab);
+            openViews.put(tabId, view);
 
+            ViewFactory.getInstance().recordOpen(fxmlPath, started, view.isPooled());
             return controller;
 
         } catch (IOException e) {
@@ -149,11 +143,12 @@ public class TabManager {
 
         // Icon
         if (iconPath != null) {
-            javafx.scene.image.Image iconImage = SvgImageLoader.loadSvgImage("/icons/" + iconPath, 20, 20);
+            javafx.scene.image.Image iconImage = SvgImageLoader.loadSvgImage("/icons/" + iconPath,
+                    SvgImageLoader.TAB_ICON_SIZE, SvgImageLoader.TAB_ICON_SIZE);
             if (iconImage != null) {
                 javafx.scene.image.ImageView iconView = new javafx.scene.image.ImageView(iconImage);
-                iconView.setFitWidth(20);
-                iconView.setFitHeight(20);
+                iconView.setFitWidth(SvgImageLoader.TAB_ICON_SIZE);
+                iconView.setFitHeight(SvgImageLoader.TAB_ICON_SIZE);
                 iconView.setPreserveRatio(true);
 
                 // Colorize to white using ColorAdjust
@@ -184,7 +179,7 @@ public class TabManager {
         // عند إغلاق التبويب
         tab.setOnClosed(e -> {
             openTabs.remove(tabId);
-            refreshDashboard();
+            releaseView(tabId, tab);
         });
 
         return tab;
@@ -198,7 +193,19 @@ public class TabManager {
         if (tab != null) {
             tabPane.getTabs().remove(tab);
             openTabs.remove(tabId);
-            refreshDashboard();
+            releaseView(tabId, tab);
+        }
+    }
+
+    /**
+     * إعادة واجهة التبويب المغلق إلى مصنع الواجهات لإعادة استخدامها
+     */
+    private void releaseView(String tabId, Tab tab) {
+        ViewFactory.PreparedView view = openViews.remove(tabId);
+        if (view != null && tab.getContent() == view.getRoot()) {
+            // Detach the content so it can be reset off the FX thread
+            tab.setContent(null);
+            ViewFactory.getInstance().release(view);
         }
     }
 
@@ -208,6 +215,7 @@ public class TabManager {
     public void closeAllTabs() {
         openTabs.values().forEach(tab -> tabPane.getTabs().remove(tab));
         openTabs.clear();
+        openViews.clear();
         tabPane.getSelectionModel().select(dashboardTab);
         refreshDashboard();
     }
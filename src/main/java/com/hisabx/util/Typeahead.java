@@ -0,0 +1,257 @@
+package com.hisabx.util;
+
+import com.hisabx.model.Customer;
+import com.hisabx.model.Product;
+import com.hisabx.service.CustomerDirectory;
+import com.hisabx.service.InventoryService;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.scene.control.ComboBox;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.util.Duration;
+import javafx.util.StringConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Debounced asynchronous typeahead for an editable ComboBox.
+ * Searches run off the FX thread through a {@link SearchProvider}: typing restarts a short
+ * debounce, a newer query cancels the one in flight and stale results are dropped. Results are
+ * capped, so the picker never holds the whole table. Enter (including a barcode scanner's
+ * trailing Enter) runs an exact code/barcode lookup and selects the match directly.
+ */
+public class Typeahead<T> {
+    private static final Logger logger = LoggerFactory.getLogger(Typeahead.class);
+
+    public static final int DEFAULT_MAX_RESULTS = 50;
+    public static final Duration DEFAULT_DEBOUNCE = Duration.millis(200);
+
+    private static final ExecutorService SEARCH_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "Typeahead-Search");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Supplies suggestions for a typeahead. Called on a background thread.
+     */
+    public interface SearchProvider<T> {
+        List<T> search(String text, int limit);
+
+        /** Exact match for a full code or barcode; tried before the contains search. */
+        default Optional<T> findExact(String text) {
+            return Optional.empty();
+        }
+    }
+
+    private final ComboBox<T> combo;
+    private final Function<T, String> labeler;
+    private final SearchProvider<T> provider;
+    private final ObservableList<T> results = FXCollections.observableArrayList();
+    private final PauseTransition debounce = new PauseTransition(DEFAULT_DEBOUNCE);
+    private int maxResults = DEFAULT_MAX_RESULTS;
+    private Future<?> pending;
+    // FX thread only; bumped per query so late results from superseded queries are ignored
+    private long generation;
+    private boolean internalUpdate;
+
+    public Typeahead(ComboBox<T> combo, Function<T, String> labeler, SearchProvider<T> provider) {
+        this.combo = combo;
+        this.labeler = labeler;
+        this.provider = provider;
+
+        combo.setEditable(true);
+        combo.setItems(results);
+        combo.setConverter(new StringConverter<>() {
+            @Override
+            public String toString(T item) {
+                return item != null ? labeler.apply(item) : "";
+            }
+
+            @Override
+            public T fromString(String s) {
+                if (s == null || s.isBlank()) return null;
+                T current = combo.getValue();
+                if (current != null && labeler.apply(current).equals(s)) return current;
+                return results.stream().filter(item -> labeler.apply(item).equals(s)).findFirst()
+                        .orElseGet(() -> results.stream().filter(item -> labeler.apply(item).contains(s.trim()))
+                                .findFirst().orElse(null));
+            }
+        });
+
+        debounce.setOnFinished(e -> runSearch(currentText(), false, true));
+        combo.getEditor().textProperty().addListener((obs, oldText, newText) -> onTextChanged(newText));
+        // Filter on the combo so it runs before the skin commits the editor text on Enter
+        combo.addEventFilter(KeyEvent.KEY_PRESSED, e -> {
+            if (e.getCode() == KeyCode.ENTER) {
+                debounce.stop();
+                runSearch(currentText(), true, true);
+            }
+        });
+
+        runSearch("", false, false);
+    }
+
+    /**
+     * Customer picker searching name, code and phone in the shared {@link CustomerDirectory};
+     * Enter on a full customer code selects it. Picked customers are detached summaries.
+     */
+    public static Typeahead<Customer> forCustomers(ComboBox<Customer> combo, Function<Customer, String> labeler) {
+        CustomerDirectory directory = CustomerDirectory.getInstance();
+        return new Typeahead<>(combo, labeler, new SearchProvider<>() {
+            @Override
+            public List<Customer> search(String text, int limit) {
+                return directory.search(text, limit).stream().map(CustomerDirectory.Entry::toCustomer).toList();
+            }
+
+            @Override
+            public Optional<Customer> findExact(String text) {
+                return directory.findByCode(text).map(CustomerDirectory.Entry::toCustomer);
+            }
+        });
+    }
+
+    /**
+     * Active product picker searching name, code and barcode within the supplied category
+     * (null for all); Enter on a full barcode or product code selects it.
+     */
+    public static Typeahead<Product> forProducts(ComboBox<Product> combo, Function<Product, String> labeler,
+            Supplier<String> category) {
+        InventoryService inventoryService = new InventoryService();
+        return new Typeahead<>(combo, labeler, new SearchProvider<>() {
+            @Override
+            public List<Product> search(String text, int limit) {
+                return inventoryService.searchProducts(text, category.get(), limit);
+            }
+
+            @Override
+            public Optional<Product> findExact(String text) {
+                return inventoryService.findProductByCodeOrBarcode(text);
+            }
+        });
+    }
+
+    public void setMaxResults(int maxResults) {
+        this.maxResults = Math.max(1, maxResults);
+    }
+
+    /** Re-run the current query now, e.g. after data or an external filter changed. */
+    public void refresh() {
+        debounce.stop();
+        runSearch(combo.getValue() != null ? "" : currentText(), false, false);
+    }
+
+    /** Select an item that may not be in the current suggestions. */
+    public void select(T item) {
+        internalUpdate = true;
+        try {
+            if (item != null && !results.contains(item)) {
+                results.add(0, item);
+            }
+            combo.setValue(item);
+        } finally {
+            internalUpdate = false;
+        }
+    }
+
+    public void clear() {
+        internalUpdate = true;
+        try {
+            combo.setValue(null);
+            combo.getEditor().clear();
+        } finally {
+            internalUpdate = false;
+        }
+        refresh();
+    }
+
+    private String currentText() {
+        String text = combo.getEditor().getText();
+        return text == null ? "" : text.trim();
+    }
+
+    private void onTextChanged(String text) {
+        if (internalUpdate) {
+            return;
+        }
+        T value = combo.getValue();
+        if (value != null && labeler.apply(value).equals(text)) {
+            return;
+        }
+        // Picking from the list updates the text before valueProperty fires
+        if (text != null && results.stream().anyMatch(item -> labeler.apply(item).equals(text))) {
+            return;
+        }
+        debounce.playFromStart();
+    }
+
+    private void runSearch(String query, boolean selectExact, boolean showPopup) {
+        long gen = ++generation;
+        if (pending != null) {
+            pending.cancel(true);
+        }
+        int limit = maxResults;
+        pending = SEARCH_EXECUTOR.submit(() -> {
+            try {
+                T exact = query.isEmpty() ? null : provider.findExact(query).orElse(null);
+                List<T> found;
+                if (exact != null && selectExact) {
+                    found = List.of(exact);
+                } else {
+                    found = new ArrayList<>(provider.search(query, limit));
+                    if (exact != null) {
+                        String exactLabel = labeler.apply(exact);
+                        found.removeIf(item -> labeler.apply(item).equals(exactLabel));
+                        found.add(0, exact);
+                    }
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                List<T> matches = found;
+                Platform.runLater(() -> apply(gen, matches, selectExact ? exact : null, showPopup));
+            } catch (Exception e) {
+                logger.warn("Typeahead search failed for '{}'", query, e);
+            }
+        });
+    }
+
+    private void apply(long gen, List<T> found, T exact, boolean showPopup) {
+        if (gen != generation) {
+            return;
+        }
+        pending = null;
+        String text = combo.getEditor().getText();
+        int caret = combo.getEditor().getCaretPosition();
+        internalUpdate = true;
+        try {
+            results.setAll(found);
+            if (exact != null) {
+                combo.setValue(exact);
+            } else if (!Objects.equals(text, combo.getEditor().getText())) {
+                // Replacing the items can reset the editor; keep what the user typed
+                combo.getEditor().setText(text);
+                combo.getEditor().positionCaret(Math.min(caret, text != null ? text.length() : 0));
+            }
+        } finally {
+            internalUpdate = false;
+        }
+        if (exact == null && showPopup && !found.isEmpty() && !combo.isShowing()
+                && (combo.isFocused() || combo.getEditor().isFocused())) {
+            combo.show();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.hisabx.util;
+
+import javafx.collections.ListChangeListener;
+import javafx.event.EventHandler;
+import javafx.scene.input.InputEvent;
+import javafx.stage.Window;
+
+/**
+ * نشاط المستخدم - time of the last keyboard or mouse input in any window of the app, so
+ * background work can wait until the user is away.
+ */
+public final class UserActivity {
+    private static final EventHandler<InputEvent> FILTER = e -> lastInputAt = System.currentTimeMillis();
+
+    private static volatile long lastInputAt = System.currentTimeMillis();
+    private static boolean installed;
+
+    private UserActivity() {}
+
+    /**
+     * Watch input on every open and future window. Must be called on the FX thread.
+     */
+    public static void install() {
+        if (installed) {
+            return;
+        }
+        installed = true;
+        Window.getWindows().forEach(w -> w.addEventFilter(InputEvent.ANY, FILTER));
+        Window.getWindows().addListener((ListChangeListener<Window>) change -> {
+            while (change.next()) {
+                change.getAddedSubList().forEach(w -> w.addEventFilter(InputEvent.ANY, FILTER));
+                change.getRemoved().forEach(w -> w.removeEventFilter(InputEvent.ANY, FILTER));
+            }
+        });
+    }
+
+    /** Milliseconds since the last input event. */
+    public static long getIdleMillis() {
+        return System.currentTimeMillis() - lastInputAt;
+    }
+}
@@ -0,0 +1,399 @@
+package com.hisabx.util;
+
+import com.hisabx.MainApp;
+import com.hisabx.service.DomainEvent;
+import com.hisabx.service.DomainEventBus;
+import javafx.application.Platform;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * مصنع الواجهات - يحمّل ملفات FXML الأكثر استخداماً مسبقاً في الخلفية
+ *
+ * Keeps a small pool of ready (root, controller) pairs per FXML path so opening a tab
+ * does not parse FXML or run the controller's initial data load on the FX thread.
+ * Pooled views expire after {@link #POOL_MAX_AGE_MS} and are rebuilt in the background,
+ * so a view never shows data older than that when it is opened. Views listed in
+ * {@link #STALE_AFTER} are also refreshed after the events that change what they show.
+ */
+public class ViewFactory {
+    private static final Logger logger = LoggerFactory.getLogger(ViewFactory.class);
+
+    /** Views preloaded after login. */
+    public static final List<String> DEFAULT_PRELOAD_VIEWS = List.of(
+            "/views/SaleForm.fxml",
+            "/views/Accounts.fxml",
+            "/views/InventoryList.fxml",
+            "/views/SaleList.fxml",
+            "/views/ReceiptVoucher.fxml");
+
+    private static final int POOL_SIZE_PER_VIEW = 1;
+    private static final long POOL_MAX_AGE_MS = TimeUnit.MINUTES.toMillis(3);
+    private static final long INVALIDATION_DELAY_MS = 2000;
+
+    /**
+     * Events that change the data a view loads while it is built. Views not listed (the
+     * customer pickers follow CustomerDirectory on their own) only expire with age.
+     */
+    private static final Map<String, Predicate<DomainEvent>> STALE_AFTER = Map.of(
+            "/views/SaleForm.fxml", event -> event instanceof DomainEvent.StockChanged
+                    || event instanceof DomainEvent.ProductChanged || isBulkProducts(event),
+            "/views/InventoryList.fxml", event -> event instanceof DomainEvent.StockChanged
+                    || event instanceof DomainEvent.ProductChanged || isBulkProducts(event),
+            "/views/SaleList.fxml", event -> event instanceof DomainEvent.SaleCreated
+                    || event instanceof DomainEvent.SaleUpdated || event instanceof DomainEvent.SaleDeleted);
+
+    private static ViewFactory instance;
+
+    private final Map<String, Deque<PreparedView>> pool = new HashMap<>();
+    private final Set<String> preloadedPaths = new HashSet<>();
+    private final Set<String> backgroundLoadFailed = new HashSet<>();
+    private final Map<String, OpenLatency> latencies = new LinkedHashMap<>();
+    private final ScheduledExecutorService preloader;
+    // Incremented on clear() so views built for a previous user are never pooled again
+    private volatile int generation;
+    private final Set<String> staleViews = new HashSet<>();
+
+    private ViewFactory() {
+        this.preloader = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "View-Preloader");
+            t.setDaemon(true);
+            return t;
+        });
+        preloader.scheduleWithFixedDelay(this::refreshExpiredViews, 1, 1, TimeUnit.MINUTES);
+        DomainEventBus.getInstance().subscribe(DomainEvent.class, this::scheduleInvalidation);
+    }
+
+    public static synchronized ViewFactory getInstance() {
+        if (instance == null) {
+            instance = new ViewFactory();
+        }
+        return instance;
+    }
+
+    /**
+     * Start building the given views in the background. Call after login, because
+     * controllers apply the current user's permissions while initializing.
+     */
+    public void preload(List<String> fxmlPaths) {
+        synchronized (this) {
+            preloadedPaths.addAll(fxmlPaths);
+        }
+        for (String fxmlPath : fxmlPaths) {
+            schedulePreload(fxmlPath);
+        }
+    }
+
+    /**
+     * Take a ready view from the pool, or load it now on the calling (FX) thread.
+     */
+    public PreparedView acquire(String fxmlPath) throws IOException {
+        PreparedView view = null;
+        synchronized (this) {
+            Deque<PreparedView> queue = pool.get(fxmlPath);
+            while (queue != null && !queue.isEmpty() && view == null) {
+                PreparedView candidate = queue.pollFirst();
+                if (!candidate.isExpired()) {
+                    view = candidate;
+                }
+            }
+        }
+
+        if (view == null) {
+            view = load(fxmlPath, false, generation);
+        }
+        applyCurrentFontSize(view);
+
+        if (isPreloaded(fxmlPath)) {
+            schedulePreload(fxmlPath);
+        }
+        return view;
+    }
+
+    /**
+     * Return the view of a closed tab. Views whose controller implements
+     * {@link ReusableView} are reset in the background and pooled again; others are dropped.
+     */
+    public void release(PreparedView view) {
+        if (view == null || !(view.getController() instanceof ReusableView reusable)) {
+            return;
+        }
+        preloader.execute(() -> {
+            if (view.generation != generation) {
+                return;
+            }
+            try {
+                reset(view, reusable.resetView());
+            } catch (Exception e) {
+                logger.warn("Failed to reset view for reuse: {}", view.getFxmlPath(), e);
+            }
+        });
+    }
+
+    /**
+     * Apply a reset read in the background on the FX thread, then pool the view again.
+     */
+    private void reset(PreparedView view, Runnable apply) {
+        Platform.runLater(() -> {
+            try {
+                apply.run();
+                offer(new PreparedView(view.getFxmlPath(), view.getRoot(), view.getController(),
+                        view.getFontSize(), true, view.generation));
+            } catch (Exception e) {
+                logger.warn("Failed to reset view for reuse: {}", view.getFxmlPath(), e);
+                schedulePreload(view.getFxmlPath());
+            }
+        });
+    }
+
+    /**
+     * Record how long it took from the open request until the tab was shown.
+     */
+    public void recordOpen(String fxmlPath, long startedNanos, boolean fromPool) {
+        long elapsedMs = (System.nanoTime() - startedNanos) / 1_000_000;
+        synchronized (latencies) {
+            latencies.computeIfAbsent(fxmlPath, k -> new OpenLatency()).record(elapsedMs, fromPool);
+        }
+        logger.info("Opened view {} in {} ms ({})", fxmlPath, elapsedMs, fromPool ? "pooled" : "loaded");
+    }
+
+    /**
+     * Snapshot of per-view open latency statistics.
+     */
+    public Map<String, OpenLatency> getLatencyStats() {
+        Map<String, OpenLatency> copy = new LinkedHashMap<>();
+        synchronized (latencies) {
+            latencies.forEach((path, stats) -> copy.put(path, stats.copy()));
+        }
+        return Collections.unmodifiableMap(copy);
+    }
+
+    /**
+     * Drop all pooled views (logout or user switch).
+     */
+    public synchronized void clear() {
+        generation++;
+        pool.clear();
+        preloadedPaths.clear();
+    }
+
+    private synchronized boolean isPreloaded(String fxmlPath) {
+        return preloadedPaths.contains(fxmlPath) && !backgroundLoadFailed.contains(fxmlPath);
+    }
+
+    private void schedulePreload(String fxmlPath) {
+        int scheduledGeneration = generation;
+        preloader.execute(() -> {
+            synchronized (this) {
+                Deque<PreparedView> queue = pool.get(fxmlPath);
+                if (scheduledGeneration != generation || backgroundLoadFailed.contains(fxmlPath)
+                        || (queue != null && queue.size() >= POOL_SIZE_PER_VIEW)) {
+                    return;
+                }
+            }
+            try {
+                long started = System.nanoTime();
+                PreparedView view = load(fxmlPath, true, scheduledGeneration);
+                logger.debug("Preloaded view {} in {} ms", fxmlPath, (System.nanoTime() - started) / 1_000_000);
+                offer(view);
+            } catch (Exception e) {
+                // Some views touch FX-thread-only APIs while initializing; keep loading those on demand
+                logger.warn("View {} cannot be preloaded in the background; it will load on demand", fxmlPath, e);
+                synchronized (this) {
+                    backgroundLoadFailed.add(fxmlPath);
+                }
+            }
+        });
+    }
+
+    /**
+     * Pooled views affected by the event were built before the data changed; refresh them
+     * once the burst of change events is over.
+     */
+    private void scheduleInvalidation(DomainEvent event) {
+        synchronized (this) {
+            boolean scheduled = !staleViews.isEmpty();
+            for (String fxmlPath : preloadedPaths) {
+                Predicate<DomainEvent> affects = STALE_AFTER.get(fxmlPath);
+                if (affects != null && affects.test(event)) {
+                    staleViews.add(fxmlPath);
+                }
+            }
+            if (scheduled || staleViews.isEmpty()) {
+                return;
+            }
+        }
+        preloader.schedule(this::refreshStaleViews, INVALIDATION_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reusable views reload their data in place through {@link ReusableView#resetView()};
+     * others are dropped and built again.
+     */
+    private void refreshStaleViews() {
+        List<PreparedView> reusable = new ArrayList<>();
+        List<String> rebuild = new ArrayList<>();
+        synchronized (this) {
+            for (String fxmlPath : staleViews) {
+                Deque<PreparedView> queue = pool.remove(fxmlPath);
+                if (queue == null || queue.isEmpty()) {
+                    continue;
+                }
+                for (PreparedView view : queue) {
+                    if (view.getController() instanceof ReusableView) {
+                        reusable.add(view);
+                    } else {
+                        rebuild.add(fxmlPath);
+                    }
+                }
+            }
+            staleViews.clear();
+        }
+        for (PreparedView view : reusable) {
+            try {
+                reset(view, ((ReusableView) view.getController()).resetView());
+            } catch (Exception e) {
+                logger.warn("Failed to refresh pooled view: {}", view.getFxmlPath(), e);
+                rebuild.add(view.getFxmlPath());
+            }
+        }
+        rebuild.forEach(this::schedulePreload);
+    }
+
+    private static boolean isBulkProducts(DomainEvent event) {
+        return event instanceof DomainEvent.BulkDataChanged bulk && bulk.isProducts();
+    }
+
+    private void refreshExpiredViews() {
+        List<String> expired = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<String, Deque<PreparedView>> entry : pool.entrySet()) {
+                if (entry.getValue().removeIf(PreparedView::isExpired) && preloadedPaths.contains(entry.getKey())) {
+                    expired.add(entry.getKey());
+                }
+            }
+        }
+        expired.forEach(this::schedulePreload);
+    }
+
+    private synchronized void offer(PreparedView view) {
+        // Views built for a previous user are dropped
+        if (view.generation != generation) {
+            return;
+        }
+        Deque<PreparedView> queue = pool.computeIfAbsent(view.getFxmlPath(), k -> new ArrayDeque<>());
+        if (queue.size() < POOL_SIZE_PER_VIEW) {
+            queue.addLast(view);
+        }
+    }
+
+    private PreparedView load(String fxmlPath, boolean pooled, int viewGeneration) throws IOException {
+        FXMLLoader loader = new FXMLLoader();
+        loader.setLocation(MainApp.class.getResource(fxmlPath));
+        loader.setCharset(StandardCharsets.UTF_8);
+        Parent content = loader.load();
+
+        int fontSize = SessionManager.getInstance().getUiFontSize();
+        if (fontSize != 13) {
+            MainApp.applyFontSizeRecursive(content, fontSize);
+        }
+        return new PreparedView(fxmlPath, content, loader.getController(), fontSize, pooled, viewGeneration);
+    }
+
+    private void applyCurrentFontSize(PreparedView view) {
+        int fontSize = SessionManager.getInstance().getUiFontSize();
+        if (fontSize != view.getFontSize()) {
+            MainApp.applyFontSizeRecursive(view.getRoot(), fontSize);
+            view.fontSize = fontSize;
+        }
+    }
+
+    /**
+     * A loaded FXML view and its controller.
+     */
+    public static class PreparedView {
+        private final String fxmlPath;
+        private final Parent root;
+        private final Object controller;
+        private final boolean pooled;
+        private final long createdAt;
+        private final int generation;
+        private int fontSize;
+
+        private PreparedView(String fxmlPath, Parent root, Object controller, int fontSize, boolean pooled,
+                int generation) {
+            this.fxmlPath = fxmlPath;
+            this.root = root;
+            this.controller = controller;
+            this.fontSize = fontSize;
+            this.pooled = pooled;
+            this.generation = generation;
+            this.createdAt = System.currentTimeMillis();
+        }
+
+        public String getFxmlPath() { return fxmlPath; }
+        public Parent getRoot() { return root; }
+        public int getFontSize() { return fontSize; }
+        /** True if the view was built ahead of time rather than on request. */
+        public boolean isPooled() { return pooled; }
+
+        @SuppressWarnings("unchecked")
+        public <T> T getController() { return (T) controller; }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() - createdAt > POOL_MAX_AGE_MS;
+        }
+    }
+
+    /**
+     * Open latency statistics for one view.
+     */
+    public static class OpenLatency {
+        private long count;
+        private long pooledCount;
+        private long totalMs;
+        private long maxMs;
+
+        private void record(long elapsedMs, boolean fromPool) {
+            count++;
+            if (fromPool) {
+                pooledCount++;
+            }
+            totalMs += elapsedMs;
+            maxMs = Math.max(maxMs, elapsedMs);
+        }
+
+        private OpenLatency copy() {
+            OpenLatency c = new OpenLatency();
+            c.count = count;
+            c.pooledCount = pooledCount;
+            c.totalMs = totalMs;
+            c.maxMs = maxMs;
+            return c;
+        }
+
+        public long getCount() { return count; }
+        public long getPooledCount() { return pooledCount; }
+        public long getMaxMs() { return maxMs; }
+        public double getAverageMs() { return count == 0 ? 0 : (double) totalMs / count; }
+    }
+}
@@ -0,0 +1,121 @@
+package com.hisabx.service;
+
+import com.hisabx.database.DatabaseManager;
+import com.hisabx.model.Category;
+import com.hisabx.model.Product;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CategoryTreeTest {
+    private final CategoryService categoryService = new CategoryService();
+
+    @BeforeAll
+    static void openDatabase() {
+        TestDatabase.initialize();
+    }
+
+    @Test
+    void insertLinksEveryAncestorWithItsDepth() throws Exception {
+        Category root = create(null);
+        Category child = create(root);
+        Category grandchild = create(child);
+
+        assertEquals(Map.of(grandchild.getId(), 0, child.getId(), 1, root.getId(), 2), ancestorsOf(grandchild));
+        assertEquals(Set.of(root.getId(), child.getId(), grandchild.getId()),
+                categoryService.getSubtreeIds(root.getName()));
+        assertEquals(Set.of(), categoryService.getSubtreeIds(TestDatabase.uniqueName("missing")));
+    }
+
+    @Test
+    void moveTakesTheWholeSubtree() throws Exception {
+        Category first = create(null);
+        Category second = create(null);
+        Category moved = create(first);
+        Category below = create(moved);
+
+        moved.setParentId(second.getId());
+        categoryService.updateCategory(moved);
+
+        assertEquals(Set.of(first.getId()), categoryService.getSubtreeIds(first.getName()));
+        assertEquals(Set.of(second.getId(), moved.getId(), below.getId()),
+                categoryService.getSubtreeIds(second.getName()));
+        assertEquals(Map.of(below.getId(), 0, moved.getId(), 1, second.getId(), 2), ancestorsOf(below));
+
+        moved.setParentId(null);
+        categoryService.updateCategory(moved);
+
+        assertEquals(Set.of(second.getId()), categoryService.getSubtreeIds(second.getName()));
+        assertEquals(Map.of(below.getId(), 0, moved.getId(), 1), ancestorsOf(below));
+    }
+
+    @Test
+    void moveUnderOwnSubtreeIsRejected() throws Exception {
+        Category root = create(null);
+        Category child = create(root);
+
+        root.setParentId(child.getId());
+        assertThrows(IllegalArgumentException.class, () -> categoryService.updateCategory(root));
+
+        // The trigger guards writes that bypass the service
+        try (Connection conn = DatabaseManager.openConnection();
+             PreparedStatement ps = conn.prepareStatement("UPDATE categories SET parent_id = ? WHERE id = ?")) {
+            ps.setLong(1, child.getId());
+            ps.setLong(2, root.getId());
+            assertThrows(SQLException.class, ps::executeUpdate);
+        }
+        assertEquals(Map.of(child.getId(), 0, root.getId(), 1), ancestorsOf(child));
+    }
+
+    @Test
+    void deleteHandsChildrenAndProductsOn() throws Exception {
+        Category root = create(null);
+        Category middle = create(root);
+        Category leaf = create(middle);
+        InventoryService inventoryService = new InventoryService();
+        Product product = TestDatabase.product(1, 1);
+        product.setCategory(middle.getName());
+        Long productId = inventoryService.createProduct(product).getId();
+
+        categoryService.deleteCategory(middle.getId());
+
+        assertEquals(Map.of(leaf.getId(), 0, root.getId(), 1), ancestorsOf(leaf));
+        assertEquals(Set.of(root.getId(), leaf.getId()), categoryService.getSubtreeIds(root.getName()));
+        assertNull(inventoryService.getProductById(productId).orElseThrow().getCategoryId());
+    }
+
+    private Category create(Category parent) {
+        Category category = new Category(TestDatabase.uniqueName("Cat"));
+        if (parent != null) {
+            category.setParentId(parent.getId());
+        }
+        return categoryService.createCategory(category);
+    }
+
+    /** Closure rows of a category: ancestor id to depth, itself included at depth 0. */
+    private static Map<Long, Integer> ancestorsOf(Category category) throws Exception {
+        Map<Long, Integer> ancestors = new HashMap<>();
+        try (Connection conn = DatabaseManager.openConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "SELECT ancestor_id, depth FROM category_closure WHERE descendant_id = ?")) {
+            ps.setLong(1, category.getId());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ancestors.put(rs.getLong(1), rs.getInt(2));
+                }
+            }
+        }
+        return ancestors;
+    }
+}
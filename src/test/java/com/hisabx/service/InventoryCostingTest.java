@@ -0,0 +1,140 @@
+package com.hisabx.service;
+
+import com.hisabx.database.DatabaseManager;
+import com.hisabx.model.CostingMethod;
+import com.hisabx.model.StockMovement;
+import com.hisabx.model.StockMovementType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class InventoryCostingTest {
+    private final InventoryService inventoryService = new InventoryService();
+    private String storedMethod;
+
+    @BeforeAll
+    static void openDatabase() {
+        TestDatabase.initialize();
+    }
+
+    @AfterEach
+    void restoreMethod() throws Exception {
+        if (storedMethod != null) {
+            setMethod(storedMethod);
+        }
+    }
+
+    @Test
+    void averageCostsIssuesAtTheWeightedAverage() throws Exception {
+        useMethod(CostingMethod.AVERAGE);
+        Long id = receiveTwoLayers();
+
+        StockMovement issue = issue(id, 5);
+
+        assertEquals(-75.0, issue.getCostAmount(), 1e-9);
+        assertEquals(15.0, issue.getUnitCost(), 1e-9);
+        double[] valuation = valuationOf(id);
+        assertEquals(15.0, valuation[0], 1e-9);
+        assertEquals(225.0, valuation[1], 1e-9);
+        // Layers are consumed oldest first under both methods
+        assertLayers(id, 5, 10);
+    }
+
+    @Test
+    void fifoCostsIssuesFromTheOldestLayers() throws Exception {
+        useMethod(CostingMethod.FIFO);
+        Long id = receiveTwoLayers();
+
+        StockMovement issue = issue(id, 15);
+
+        assertEquals(-(10 * 10.0 + 5 * 20.0), issue.getCostAmount(), 1e-9);
+        assertLayers(id, 0, 5);
+        assertEquals(5 * 20.0, valuationOf(id)[1], 1e-9);
+
+        StockMovement rest = issue(id, 5);
+        assertEquals(-100.0, rest.getCostAmount(), 1e-9);
+        assertLayers(id, 0, 0);
+        assertEquals(0.0, valuationOf(id)[1], 1e-9);
+    }
+
+    @Test
+    void receiptWithoutCostComesInAtTheAverage() throws Exception {
+        useMethod(CostingMethod.AVERAGE);
+        Long id = receiveTwoLayers();
+
+        inventoryService.addStock(id, 10.0);
+
+        double[] valuation = valuationOf(id);
+        assertEquals(15.0, valuation[0], 1e-9);
+        assertEquals(30 * 15.0, valuation[1], 1e-9);
+    }
+
+    /** 10 opening units at a cost price of 10, then 10 purchased at 20: average 15. */
+    private Long receiveTwoLayers() {
+        Long id = inventoryService.createProduct(TestDatabase.product(10, 10)).getId();
+        StockMovement purchase = new StockMovement(StockMovementType.PURCHASE, null, null);
+        purchase.setUnitCost(20.0);
+        inventoryService.addStock(id, 10.0, purchase);
+        return id;
+    }
+
+    private StockMovement issue(Long id, double quantity) {
+        StockMovement movement = new StockMovement(StockMovementType.ADJUSTMENT, null, null);
+        inventoryService.removeStock(id, quantity, movement);
+        return movement;
+    }
+
+    private void useMethod(CostingMethod method) throws Exception {
+        try (Connection conn = DatabaseManager.openConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT costing_method FROM inventory_valuation WHERE id = 1");
+             ResultSet rs = ps.executeQuery()) {
+            storedMethod = rs.next() ? rs.getString(1) : CostingMethod.AVERAGE.name();
+        }
+        setMethod(method.name());
+    }
+
+    private static void setMethod(String method) throws Exception {
+        try (Connection conn = DatabaseManager.openConnection();
+             PreparedStatement ps = conn.prepareStatement("UPDATE inventory_valuation SET costing_method = ? WHERE id = 1")) {
+            ps.setString(1, method);
+            ps.executeUpdate();
+        }
+    }
+
+    /** The product's average cost and stock value. */
+    private static double[] valuationOf(Long productId) throws Exception {
+        try (Connection conn = DatabaseManager.openConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT average_cost, stock_value FROM products WHERE id = ?")) {
+            ps.setLong(1, productId);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return new double[]{rs.getDouble(1), rs.getDouble(2)};
+            }
+        }
+    }
+
+    private static void assertLayers(Long productId, double... remaining) throws Exception {
+        List<Double> actual = new ArrayList<>();
+        try (Connection conn = DatabaseManager.openConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT remaining FROM cost_layers WHERE product_id = ? ORDER BY id")) {
+            ps.setLong(1, productId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    actual.add(rs.getDouble(1));
+                }
+            }
+        }
+        assertEquals(remaining.length, actual.size());
+        for (int i = 0; i < remaining.length; i++) {
+            assertEquals(remaining[i], actual.get(i), 1e-9, "layer " + i);
+        }
+    }
+}
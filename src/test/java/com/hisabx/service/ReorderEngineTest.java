@@ -0,0 +1,149 @@
+package com.hisabx.service;
+
+import com.hisabx.database.DatabaseManager;
+import com.hisabx.database.SqliteDates;
+import com.hisabx.model.Customer;
+import com.hisabx.model.Product;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs with the default settings: a 90 day window, 7 days lead time, 30 days cover and a
+ * safety factor of 1.65.
+ */
+class ReorderEngineTest {
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static Long customerId;
+
+    private final InventoryService inventoryService = new InventoryService();
+
+    @BeforeAll
+    static void openDatabase() {
+        TestDatabase.initialize();
+        Customer customer = new Customer();
+        customer.setCustomerCode(TestDatabase.uniqueName("C"));
+        customer.setName(customer.getCustomerCode());
+        customer.setPhoneNumber("07700000000");
+        customer.setProjectLocation("-");
+        customerId = new CustomerService().createCustomer(customer).getId();
+    }
+
+    @Test
+    void steadyDemandNeedsNoSafetyStock() throws Exception {
+        Long steady = established(TestDatabase.product(5, 1));
+        Product cappedProduct = TestDatabase.product(5, 1);
+        cappedProduct.setMaximumStock(30.0);
+        Long capped = established(cappedProduct);
+        for (int day = 1; day <= 90; day++) {
+            sell(steady, day, 2);
+            sell(capped, day, 2);
+        }
+
+        ReorderEngine.getInstance().refresh(true);
+
+        // 2 a day: 2 × 7 lead days, then 2 × 30 cover days on top
+        Product product = inventoryService.getProductById(steady).orElseThrow();
+        assertEquals(2.0, product.getDailyDemand(), 1e-9);
+        assertEquals(14.0, product.getReorderPoint(), 1e-9);
+        assertEquals(74.0, product.getReorderUpTo(), 1e-9);
+        assertEquals(30.0, inventoryService.getProductById(capped).orElseThrow().getReorderUpTo(), 1e-9);
+    }
+
+    @Test
+    void irregularDemandAddsSafetyStock() throws Exception {
+        Long id = established(TestDatabase.product(5, 1));
+        sell(id, 10, 90);
+
+        ReorderEngine.getInstance().refresh(true);
+
+        // Mean 1 a day, σ = √90: 7 + 1.65 × √90 × √7 = 48.41, rounded up
+        Product product = inventoryService.getProductById(id).orElseThrow();
+        assertEquals(1.0, product.getDailyDemand(), 1e-9);
+        assertEquals(49.0, product.getReorderPoint(), 1e-9);
+        assertEquals(79.0, product.getReorderUpTo(), 1e-9);
+    }
+
+    @Test
+    void newProductIsJudgedOnItsMinimumHistory() throws Exception {
+        Long id = inventoryService.createProduct(TestDatabase.product(5, 1)).getId();
+        for (int day = 1; day <= 14; day++) {
+            sell(id, day, 3);
+        }
+
+        ReorderEngine.getInstance().refresh(true);
+
+        // Created today, so averaged over 14 days rather than the 90 day window
+        Product product = inventoryService.getProductById(id).orElseThrow();
+        assertEquals(3.0, product.getDailyDemand(), 1e-9);
+        assertEquals(21.0, product.getReorderPoint(), 1e-9);
+        assertEquals(111.0, product.getReorderUpTo(), 1e-9);
+    }
+
+    @Test
+    void reorderLevelIsTheLargerOfMinimumAndReorderPoint() throws Exception {
+        Product withMinimum = TestDatabase.product(5, 1);
+        withMinimum.setMinimumStock(20.0);
+        Long id = established(withMinimum);
+        for (int day = 1; day <= 90; day++) {
+            sell(id, day, 2);
+        }
+
+        ReorderEngine.getInstance().refresh(true);
+
+        Product product = inventoryService.getProductById(id).orElseThrow();
+        assertEquals(20.0, ReorderEngine.reorderLevelOf(product), 1e-9);
+        assertEquals(74.0 - 5.0, ReorderEngine.suggestedQuantityOf(product), 1e-9);
+
+        Product unplanned = TestDatabase.product(25, 1);
+        unplanned.setMinimumStock(20.0);
+        assertEquals(20.0, ReorderEngine.reorderLevelOf(unplanned), 1e-9);
+        assertEquals(0.0, ReorderEngine.suggestedQuantityOf(unplanned), 1e-9);
+    }
+
+    /** Create the product as if it had existed for longer than the demand window. */
+    private Long established(Product product) throws Exception {
+        Long id = inventoryService.createProduct(product).getId();
+        try (Connection conn = DatabaseManager.openConnection();
+             PreparedStatement ps = conn.prepareStatement("UPDATE products SET created_at = ? WHERE id = ?")) {
+            ps.setLong(1, SqliteDates.startOfDayMillis(LocalDate.now().minusDays(200)));
+            ps.setLong(2, id);
+            ps.executeUpdate();
+        }
+        return id;
+    }
+
+    /** Record a sale of the product at noon, {@code daysAgo} days before today. */
+    private static void sell(Long productId, int daysAgo, int quantity) throws Exception {
+        long saleDate = SqliteDates.startOfDayMillis(LocalDate.now()) - daysAgo * DAY_MILLIS + DAY_MILLIS / 2;
+        try (Connection conn = DatabaseManager.openConnection()) {
+            long saleId;
+            try (PreparedStatement ps = conn.prepareStatement("INSERT INTO sales (sale_code, customer_id, sale_date,"
+                    + " total_amount, final_amount) VALUES (?, ?, ?, 0, 0)", Statement.RETURN_GENERATED_KEYS)) {
+                ps.setString(1, TestDatabase.uniqueName("S"));
+                ps.setLong(2, customerId);
+                ps.setLong(3, saleDate);
+                ps.executeUpdate();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    keys.next();
+                    saleId = keys.getLong(1);
+                }
+            }
+            try (PreparedStatement ps = conn.prepareStatement("INSERT INTO sale_items (sale_id, product_id, quantity,"
+                    + " unit_price, total_price) VALUES (?, ?, ?, 0, 0)")) {
+                ps.setLong(1, saleId);
+                ps.setLong(2, productId);
+                ps.setInt(3, quantity);
+                ps.executeUpdate();
+            }
+        }
+    }
+}
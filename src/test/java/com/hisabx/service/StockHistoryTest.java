@@ -0,0 +1,84 @@
+package com.hisabx.service;
+
+import com.hisabx.database.DatabaseManager;
+import com.hisabx.model.Product;
+import com.hisabx.model.StockMovement;
+import com.hisabx.model.StockMovementType;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StockHistoryTest {
+    private final InventoryService inventoryService = new InventoryService();
+
+    @BeforeAll
+    static void openDatabase() {
+        TestDatabase.initialize();
+    }
+
+    @Test
+    void stockAtReplaysJournalFromLastCheckpoint() throws Exception {
+        LocalDateTime beforeCreation = LocalDateTime.now();
+        Thread.sleep(5);
+        Product product = inventoryService.createProduct(TestDatabase.product(5, 1));
+        Long id = product.getId();
+
+        int movements = StockJournal.CHECKPOINT_INTERVAL + 30;
+        LocalDateTime middle = null;
+        for (int i = 1; i < movements; i++) {
+            inventoryService.addStock(id, 1.0);
+            if (i == StockJournal.CHECKPOINT_INTERVAL + 10) {
+                middle = LocalDateTime.now();
+                Thread.sleep(5);
+            }
+        }
+
+        // The opening stock is the first movement, so the checkpoint holds the balance after it
+        List<double[]> checkpoints = checkpointsOf(id);
+        assertEquals(1, checkpoints.size());
+        assertEquals(5 + StockJournal.CHECKPOINT_INTERVAL - 1, checkpoints.get(0)[1], 1e-9);
+
+        assertEquals(0.0, inventoryService.getStockAt(id, beforeCreation), 1e-9);
+        assertEquals(5 + StockJournal.CHECKPOINT_INTERVAL + 10, inventoryService.getStockAt(id, middle), 1e-9);
+        assertEquals(5 + movements - 1, inventoryService.getStockAt(id, LocalDateTime.now()), 1e-9);
+        assertEquals(inventoryService.getProductById(id).orElseThrow().getQuantityInStock(),
+                inventoryService.getStockAt(id, LocalDateTime.now()), 1e-9);
+    }
+
+    @Test
+    void stockAtIncludesRemovals() throws Exception {
+        Product product = inventoryService.createProduct(TestDatabase.product(10, 1));
+        Long id = product.getId();
+        inventoryService.removeStock(id, 4.0, new StockMovement(StockMovementType.ADJUSTMENT, null, null));
+        LocalDateTime afterRemoval = LocalDateTime.now();
+        Thread.sleep(5);
+        inventoryService.addStock(id, 7.0);
+
+        assertEquals(6.0, inventoryService.getStockAt(id, afterRemoval), 1e-9);
+        assertEquals(13.0, inventoryService.getStockAt(id, LocalDateTime.now()), 1e-9);
+    }
+
+    /** Checkpoints of a product as (movement id, balance), oldest first. */
+    private static List<double[]> checkpointsOf(Long productId) throws Exception {
+        List<double[]> checkpoints = new ArrayList<>();
+        try (Connection conn = DatabaseManager.openConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT movement_id, quantity FROM stock_checkpoints"
+                     + " WHERE product_id = ? ORDER BY movement_id")) {
+            ps.setLong(1, productId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    checkpoints.add(new double[]{rs.getLong(1), rs.getDouble(2)});
+                }
+            }
+        }
+        return checkpoints;
+    }
+}
@@ -0,0 +1,129 @@
+package com.hisabx.service;
+
+import com.hisabx.database.DatabaseManager;
+import com.hisabx.model.Product;
+import com.hisabx.model.StockMovement;
+import com.hisabx.model.StockMovementType;
+import com.hisabx.model.dto.Stocktake;
+import com.hisabx.model.dto.StocktakeLine;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StocktakeServiceTest {
+    private final InventoryService inventoryService = new InventoryService();
+    private final StocktakeService stocktakeService = new StocktakeService();
+
+    @BeforeAll
+    static void openDatabase() {
+        TestDatabase.initialize();
+    }
+
+    @BeforeEach
+    void closeOpenStocktake() {
+        // Only one stocktake can be open; a failed earlier run may have left one behind
+        stocktakeService.getOpenStocktake().ifPresent(open -> stocktakeService.cancel(open.getId()));
+    }
+
+    @Test
+    void postAppliesApprovedVariancesOnly() throws Exception {
+        String category = TestDatabase.uniqueName("Cat");
+        Product recounted = create(category, 10);
+        Product notApproved = create(category, 5);
+        Product missing = create(category, 3);
+        Product untouched = create(category, 2);
+        Product outside = create(null, 4);
+
+        Stocktake stocktake = stocktakeService.start(category, null, null);
+        assertEquals(4, stocktake.getProductCount());
+
+        // Counts from two counters add up
+        StocktakeCounter first = stocktakeService.openCounter(stocktake.getId(), "A");
+        first.scan(recounted.getProductCode(), 4);
+        first.scan(notApproved.getProductCode(), 7);
+        assertEquals(-1, first.scan(outside.getProductCode(), 1));
+        stocktakeService.saveCounts(first);
+        StocktakeCounter second = stocktakeService.openCounter(stocktake.getId(), "B");
+        second.scan(recounted.getProductCode(), 4);
+        stocktakeService.saveCounts(second);
+        // Stock received while counting is kept: the variance is against the frozen quantity
+        inventoryService.addStock(recounted.getId(), 1.0);
+
+        Map<Long, StocktakeLine> lines = stocktakeService.reconcile(stocktake.getId()).stream()
+                .collect(Collectors.toMap(StocktakeLine::getProductId, line -> line));
+        assertEquals(8.0, lines.get(recounted.getId()).getCountedQty(), 1e-9);
+        assertEquals(2, lines.get(recounted.getId()).getCounters());
+        assertEquals(10.0, lines.get(recounted.getId()).getFrozenQty(), 1e-9);
+        assertNull(lines.get(missing.getId()).getCountedQty());
+        assertFalse(lines.containsKey(outside.getId()));
+
+        Stocktake posted = stocktakeService.post(stocktake.getId(), Set.of(recounted.getId(), missing.getId()));
+
+        assertEquals(Stocktake.POSTED, posted.getStatus());
+        assertEquals(2, posted.getAdjustedCount());
+        assertEquals(-2.0 - 3.0, posted.getVarianceValue(), 1e-9);
+        assertEquals(9.0, stockOf(recounted), 1e-9);
+        assertEquals(5.0, stockOf(notApproved), 1e-9);
+        assertEquals(0.0, stockOf(missing), 1e-9);
+        assertEquals(2.0, stockOf(untouched), 1e-9);
+
+        // The report holds counted and approved products, with a movement for each adjustment
+        Map<Long, Object[]> report = varianceReport(stocktake.getId());
+        assertEquals(Set.of(recounted.getId(), notApproved.getId(), missing.getId()), report.keySet());
+        assertEquals(-2.0, (Double) report.get(recounted.getId())[0], 1e-9);
+        assertEquals(2.0, (Double) report.get(notApproved.getId())[0], 1e-9);
+        assertEquals(0, report.get(notApproved.getId())[1]);
+        assertNull(report.get(notApproved.getId())[2]);
+
+        List<StockMovement> movements = inventoryService.getStockMovements(recounted.getId(), null, LocalDateTime.now());
+        StockMovement adjustment = movements.get(movements.size() - 1);
+        assertEquals(StockMovementType.STOCKTAKE, adjustment.getMovementType());
+        assertEquals(-2.0, adjustment.getQuantity(), 1e-9);
+        assertEquals(adjustment.getId(), report.get(recounted.getId())[2]);
+
+        assertThrows(IllegalArgumentException.class, () -> stocktakeService.post(stocktake.getId(), Set.of()));
+    }
+
+    private Product create(String category, double stock) {
+        Product product = TestDatabase.product(stock, 1);
+        product.setCategory(category);
+        return inventoryService.createProduct(product);
+    }
+
+    private double stockOf(Product product) {
+        return inventoryService.getProductById(product.getId()).orElseThrow().getQuantityInStock();
+    }
+
+    /** Report lines by product: variance, approved and movement id. */
+    private static Map<Long, Object[]> varianceReport(long stocktakeId) throws Exception {
+        Map<Long, Object[]> report = new HashMap<>();
+        try (Connection conn = DatabaseManager.openConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT product_id, variance, approved, movement_id"
+                     + " FROM stocktake_variances WHERE stocktake_id = ?")) {
+            ps.setLong(1, stocktakeId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    long movementId = rs.getLong(4);
+                    Long movement = rs.wasNull() ? null : movementId;
+                    report.put(rs.getLong(1), new Object[]{rs.getDouble(2), rs.getInt(3), movement});
+                }
+            }
+        }
+        return report;
+    }
+}
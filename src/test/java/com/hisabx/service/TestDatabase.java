@@ -0,0 +1,41 @@
+package com.hisabx.service;
+
+import com.hisabx.database.DatabaseManager;
+import com.hisabx.model.Product;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Opens the test database once per test run. It lives in the surefire working directory, so
+ * it survives between runs until {@code mvn clean}; tests create their own uniquely named rows.
+ */
+final class TestDatabase {
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+    private static boolean initialized;
+
+    private TestDatabase() {}
+
+    static synchronized void initialize() {
+        if (!initialized) {
+            DatabaseManager.initialize();
+            initialized = true;
+        }
+    }
+
+    /** A name no earlier run or test used. */
+    static String uniqueName(String prefix) {
+        return prefix + "-" + System.currentTimeMillis() + "-" + SEQUENCE.incrementAndGet();
+    }
+
+    /** An unsaved active product with the given opening stock and cost price. */
+    static Product product(double stock, double costPrice) {
+        Product product = new Product();
+        product.setProductCode(uniqueName("T"));
+        product.setName(product.getProductCode());
+        product.setUnitPrice(costPrice * 2);
+        product.setCostPrice(costPrice);
+        product.setQuantityInStock(stock);
+        product.setIsActive(true);
+        return product;
+    }
+}